@@ -0,0 +1,18 @@
+package ee.taltech.inbankbackend.client;
+
+/**
+ * A decision as read from a response frame of the {@link BinaryDecisionProtocol}.
+ *
+ * @param reasonCode {@link BinaryDecisionProtocol#APPROVED} for an approval, otherwise one more than the position
+ *                   of the rejection reason in the server's {@code RejectionReason}
+ * @param loanAmount The approved loan amount, or 0 for a rejection
+ * @param loanPeriod The approved loan period, or 0 for a rejection
+ * @param policyVersion The version of the policy the decision was made under, or
+ *                      {@link BinaryDecisionProtocol#NO_POLICY_VERSION} if the request could not be decided
+ */
+public record BinaryDecision(int reasonCode, int loanAmount, int loanPeriod, int policyVersion) {
+
+    public boolean isApproved() {
+        return reasonCode == BinaryDecisionProtocol.APPROVED;
+    }
+}
@@ -0,0 +1,158 @@
+package ee.taltech.inbankbackend.client;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Requests loan decisions from the binary decision listener over one persistent connection. The client is
+ * thread-safe, and {@link #decide} does not wait for the decision, so any number of requests can be in flight on
+ * the connection at once; responses are matched to their requests by request id, whatever order they arrive in.
+ * <br><br>
+ * Requests are written as they are made, except that a request made while another thread is writing is written
+ * together with the next one, so that many callers share few writes. One reader thread completes the returned
+ * futures. If the connection fails or is closed, every outstanding request fails with the {@link IOException},
+ * and so does every later one.
+ */
+public class BinaryDecisionClient implements AutoCloseable {
+    private static final int WRITE_BUFFER_BYTES = 64 * 1024;
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+
+    private final SocketChannel channel;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Guarded by writeLock
+    private final ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+    private final Map<Integer, CompletableFuture<BinaryDecision>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger nextRequestId = new AtomicInteger();
+    private final Thread reader;
+
+    private volatile IOException failure;
+
+    public BinaryDecisionClient(String host, int port) throws IOException {
+        this.channel = SocketChannel.open(new InetSocketAddress(host, port));
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        this.reader = new Thread(this::readLoop, "binary-decision-client");
+        this.reader.setDaemon(true);
+        this.reader.start();
+    }
+
+    /**
+     * @param personalCode The customer's eleven-digit personal ID code
+     * @param loanAmount The requested loan amount
+     * @param loanPeriod The requested loan period
+     * @return The decision, once it has been received
+     * @throws IllegalArgumentException If the personal code is not eleven digits
+     */
+    public CompletableFuture<BinaryDecision> decide(String personalCode, int loanAmount, int loanPeriod) {
+        return decide(BinaryDecisionProtocol.packPersonalCode(personalCode), loanAmount, loanPeriod);
+    }
+
+    /**
+     * @param personalCode The customer's personal ID code, packed with {@link BinaryDecisionProtocol#packPersonalCode}
+     * @param loanAmount The requested loan amount
+     * @param loanPeriod The requested loan period
+     * @return The decision, once it has been received
+     */
+    public CompletableFuture<BinaryDecision> decide(long personalCode, int loanAmount, int loanPeriod) {
+        CompletableFuture<BinaryDecision> decision = new CompletableFuture<>();
+        int requestId = nextRequestId.getAndIncrement();
+        pending.put(requestId, decision);
+        // The reader fails all outstanding requests after setting the failure, so one of the two sees this one
+        if (failure != null) {
+            pending.remove(requestId);
+            decision.completeExceptionally(failure);
+            return decision;
+        }
+
+        writeLock.lock();
+        try {
+            BinaryDecisionProtocol.putRequest(out, requestId, personalCode, loanAmount, loanPeriod);
+            // A thread waiting for the lock writes this request with its own
+            if (!writeLock.hasQueuedThreads() || out.remaining() < BinaryDecisionProtocol.FRAME_BYTES) {
+                out.flip();
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+                out.clear();
+            }
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            writeLock.unlock();
+        }
+        return decision;
+    }
+
+    /**
+     * @return The number of requests sent whose decisions have not been received yet
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Closes the connection. Outstanding requests fail.
+     */
+    @Override
+    public void close() throws IOException, InterruptedException {
+        channel.close();
+        reader.join();
+    }
+
+    private void readLoop() {
+        ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+        try {
+            while (true) {
+                if (channel.read(in) < 0) {
+                    throw new EOFException("Connection closed by the server");
+                }
+                in.flip();
+                while (in.remaining() >= BinaryDecisionProtocol.FRAME_BYTES) {
+                    int length = in.getInt();
+                    if (length != BinaryDecisionProtocol.PAYLOAD_BYTES) {
+                        throw new IOException("Unexpected frame length " + length);
+                    }
+                    int requestId = in.getInt();
+                    BinaryDecision decision;
+                    try {
+                        decision = BinaryDecisionProtocol.getDecision(in);
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException(e.getMessage(), e);
+                    }
+                    CompletableFuture<BinaryDecision> request = pending.remove(requestId);
+                    if (request != null) {
+                        request.complete(decision);
+                    }
+                }
+                in.compact();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // Already failed
+        }
+        for (Integer requestId : pending.keySet()) {
+            CompletableFuture<BinaryDecision> request = pending.remove(requestId);
+            if (request != null) {
+                request.completeExceptionally(failure);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ee.taltech.inbankbackend.client;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The wire format of the binary decision listener. Every frame is a big-endian int holding the length of the
+ * rest of the frame, followed by a fixed payload, so both kinds of frame are {@value #FRAME_BYTES} bytes long.
+ * <pre>
+ * request:  length = 20 | request id | personal code (long) | loan amount | loan period
+ * response: length = 20 | request id | reason code | loan amount | loan period | policy version
+ * </pre>
+ * The request id is chosen by the caller and returned with the response, so a connection can carry any number of
+ * requests at once and their responses may come back in another order. The personal code is sent as the number
+ * its eleven digits spell. The reason code is 0 for an approval and one more than the position of the rejection
+ * reason in the server's {@code RejectionReason} for a rejection, in which case the loan amount and period are 0.
+ * The policy version is 0 for a request that could not be decided.<br><br>
+ * The protocol and {@link BinaryDecisionClient} depend on nothing but the JDK, so callers can use them without
+ * the decision engine on their classpath.
+ */
+public final class BinaryDecisionProtocol {
+    public static final int FRAME_BYTES = 24;
+    public static final int PAYLOAD_BYTES = FRAME_BYTES - Integer.BYTES;
+    public static final int APPROVED = 0;
+    public static final int NO_POLICY_VERSION = 0;
+
+    private static final int PERSONAL_CODE_DIGITS = 11;
+    private static final long MAX_PERSONAL_CODE = 99_999_999_999L;
+
+    private BinaryDecisionProtocol() {
+    }
+
+    /**
+     * @param personalCode An eleven-digit personal ID code
+     * @return The number the digits spell
+     * @throws IllegalArgumentException If the code is not eleven digits
+     */
+    public static long packPersonalCode(String personalCode) {
+        if (personalCode == null || personalCode.length() != PERSONAL_CODE_DIGITS) {
+            throw new IllegalArgumentException("Personal code must be " + PERSONAL_CODE_DIGITS + " digits");
+        }
+        long packed = 0;
+        for (int i = 0; i < PERSONAL_CODE_DIGITS; i++) {
+            char c = personalCode.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new IllegalArgumentException("Personal code must be " + PERSONAL_CODE_DIGITS + " digits");
+            }
+            packed = packed * 10 + (c - '0');
+        }
+        return packed;
+    }
+
+    /**
+     * @return The eleven digits of a packed personal ID code, or the number itself if it has more digits or is
+     *         negative, so that it is rejected as an invalid code
+     */
+    public static String unpackPersonalCode(long packed) {
+        if (packed < 0 || packed > MAX_PERSONAL_CODE) {
+            return Long.toString(packed);
+        }
+        char[] digits = new char[PERSONAL_CODE_DIGITS];
+        for (int i = PERSONAL_CODE_DIGITS - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + packed % 10);
+            packed /= 10;
+        }
+        return new String(digits);
+    }
+
+    public static void putRequest(ByteBuffer buffer, int requestId, long personalCode, int loanAmount,
+                                  int loanPeriod) {
+        buffer.putInt(PAYLOAD_BYTES)
+                .putInt(requestId)
+                .putLong(personalCode)
+                .putInt(loanAmount)
+                .putInt(loanPeriod);
+    }
+
+    public static void putResponse(ByteBuffer buffer, int requestId, int reasonCode, int loanAmount,
+                                   int loanPeriod, int policyVersion) {
+        buffer.putInt(PAYLOAD_BYTES)
+                .putInt(requestId)
+                .putInt(reasonCode)
+                .putInt(loanAmount)
+                .putInt(loanPeriod)
+                .putInt(policyVersion);
+    }
+
+    /**
+     * Reads the decision of a response frame whose length and request id have already been read.
+     *
+     * @throws IllegalArgumentException If the reason code is negative
+     */
+    public static BinaryDecision getDecision(ByteBuffer buffer) {
+        int reasonCode = buffer.getInt();
+        int loanAmount = buffer.getInt();
+        int loanPeriod = buffer.getInt();
+        int policyVersion = buffer.getInt();
+        if (reasonCode < 0) {
+            throw new IllegalArgumentException("Unknown reason code " + reasonCode);
+        }
+        return new BinaryDecision(reasonCode, loanAmount, loanPeriod, policyVersion);
+    }
+}
@@ -0,0 +1,64 @@
+package ee.taltech.inbankbackend.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryDecisionProtocolTest {
+
+    @Test
+    void givenPersonalCode_whenPackedAndUnpacked_thenKeepsAllDigits() {
+        assertEquals(49002010998L, BinaryDecisionProtocol.packPersonalCode("49002010998"));
+        assertEquals("49002010998", BinaryDecisionProtocol.unpackPersonalCode(49002010998L));
+        assertEquals("00000000042", BinaryDecisionProtocol.unpackPersonalCode(BinaryDecisionProtocol.packPersonalCode("00000000042")));
+    }
+
+    @Test
+    void givenPackedCodeOutOfRange_whenUnpacked_thenKeepsTheNumber() {
+        assertEquals("-1", BinaryDecisionProtocol.unpackPersonalCode(-1));
+        assertEquals("100000000000", BinaryDecisionProtocol.unpackPersonalCode(100_000_000_000L));
+    }
+
+    @Test
+    void givenCodeNotElevenDigits_whenPacked_thenThrows() {
+        assertThrows(IllegalArgumentException.class, () -> BinaryDecisionProtocol.packPersonalCode("4900201099"));
+        assertThrows(IllegalArgumentException.class, () -> BinaryDecisionProtocol.packPersonalCode("4900201099x"));
+        assertThrows(IllegalArgumentException.class, () -> BinaryDecisionProtocol.packPersonalCode(null));
+    }
+
+    @Test
+    void givenDecisions_whenWrittenAndRead_thenRoundTrip() {
+        ByteBuffer buffer = ByteBuffer.allocate(3 * BinaryDecisionProtocol.FRAME_BYTES);
+        BinaryDecisionProtocol.putResponse(buffer, 1, BinaryDecisionProtocol.APPROVED, 4000, 24, 3);
+        BinaryDecisionProtocol.putResponse(buffer, 2, 6, 0, 0, 3);
+        BinaryDecisionProtocol.putResponse(buffer, 3, 8, 0, 0, BinaryDecisionProtocol.NO_POLICY_VERSION);
+        buffer.flip();
+
+        assertEquals(BinaryDecisionProtocol.PAYLOAD_BYTES, buffer.getInt());
+        assertEquals(1, buffer.getInt());
+        BinaryDecision approved = BinaryDecisionProtocol.getDecision(buffer);
+        assertEquals(new BinaryDecision(BinaryDecisionProtocol.APPROVED, 4000, 24, 3), approved);
+        assertTrue(approved.isApproved());
+        assertEquals(BinaryDecisionProtocol.PAYLOAD_BYTES, buffer.getInt());
+        assertEquals(2, buffer.getInt());
+        BinaryDecision rejected = BinaryDecisionProtocol.getDecision(buffer);
+        assertEquals(new BinaryDecision(6, 0, 0, 3), rejected);
+        assertFalse(rejected.isApproved());
+        assertEquals(BinaryDecisionProtocol.PAYLOAD_BYTES, buffer.getInt());
+        assertEquals(3, buffer.getInt());
+        assertEquals(new BinaryDecision(8, 0, 0, BinaryDecisionProtocol.NO_POLICY_VERSION),
+                BinaryDecisionProtocol.getDecision(buffer));
+    }
+
+    @Test
+    void givenNegativeReasonCode_whenRead_thenThrows() {
+        ByteBuffer buffer = ByteBuffer.allocate(16).putInt(-1).putInt(0).putInt(0).putInt(1);
+
+        assertThrows(IllegalArgumentException.class, () -> BinaryDecisionProtocol.getDecision(buffer.flip()));
+    }
+}
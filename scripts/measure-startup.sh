@@ -0,0 +1,88 @@
+#!/usr/bin/env bash
+# Measures, for every way of building the application, the time from launch to the first successful
+# POST /loan/decision and the resident memory of the process at that moment. The modes are the boot jar, the boot
+# jar with class-data sharing, the AOT-processed jar, the AOT-processed jar with class-data sharing, and a native
+# image if GraalVM's native-image is on the PATH. Every mode is built from a clean tree and launched RUNS times
+# with the defaults of application.properties; the medians are printed and written to build/startup/results.csv.
+#
+# Usage: scripts/measure-startup.sh [RUNS]      PORT sets the port the application listens on (default 8089).
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+RUNS=${1:-5}
+PORT=${PORT:-8089}
+OUT=build/startup
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+REQUEST='{"personalCode":"49002010998","loanAmount":4000,"loanPeriod":12}'
+
+boot_jar() {
+    ls build/libs/*.jar | grep -v -- '-plain\.jar$'
+}
+
+sh ./gradlew -q clean
+mkdir -p "$OUT"
+sh ./gradlew -q bootJar cdsArchive -PcdsDirectory=startup/cds
+cp "$(boot_jar)" "$OUT/jar.jar"
+sh ./gradlew -q bootJar cdsArchive -Paot -PcdsDirectory=startup/aot-cds
+cp "$(boot_jar)" "$OUT/aot.jar"
+JAR_NAME=$(basename "$(boot_jar)")
+if command -v native-image > /dev/null; then
+    sh ./gradlew -q nativeCompile -Paot
+fi
+
+# The class-data sharing archives only apply to the jar path they were written for
+MODES=(jar cds aot aot-cds)
+jar=("$JAVA" -jar "$OUT/jar.jar")
+cds=("$JAVA" "-XX:SharedArchiveFile=$PWD/$OUT/cds/application.jsa" -jar "$PWD/$OUT/cds/application/$JAR_NAME")
+aot=("$JAVA" -Dspring.aot.enabled=true -jar "$OUT/aot.jar")
+aot_cds=("$JAVA" "-XX:SharedArchiveFile=$PWD/$OUT/aot-cds/application.jsa" -Dspring.aot.enabled=true
+    -jar "$PWD/$OUT/aot-cds/application/$JAR_NAME")
+native=(build/native/nativeCompile/inbank-backend)
+if [ -x "${native[0]}" ]; then
+    MODES+=(native)
+fi
+
+# Prints the milliseconds to the first successful decision and the resident memory in MB at that moment
+measure() {
+    local log=$1
+    shift
+    local start end pid rss
+    start=$(date +%s%N)
+    "$@" "--server.port=$PORT" > "$log" 2>&1 &
+    pid=$!
+    until curl -sf -o /dev/null --max-time 1 -H 'Content-Type: application/json' -d "$REQUEST" \
+            "http://127.0.0.1:$PORT/loan/decision"; do
+        if ! kill -0 "$pid" 2> /dev/null; then
+            echo "The application exited before deciding, see $log" >&2
+            exit 1
+        fi
+        sleep 0.005
+    done
+    end=$(date +%s%N)
+    rss=$(ps -o rss= -p "$pid")
+    kill "$pid"
+    wait "$pid" || true
+    echo "$(( (end - start) / 1000000 )) $(( rss / 1024 ))"
+}
+
+median() {
+    sort -n | awk '{ values[NR] = $1 } END { print values[int((NR + 1) / 2)] }'
+}
+
+echo "mode,first_decision_ms,rss_mb" > "$OUT/results.csv"
+printf '%-8s %18s %8s\n' mode 'first decision ms' 'RSS MB'
+for mode in "${MODES[@]}"; do
+    declare -n command="${mode//-/_}"
+    times=()
+    rsss=()
+    for run in $(seq "$RUNS"); do
+        read -r millis rss < <(measure "$OUT/$mode-$run.log" "${command[@]}")
+        times+=("$millis")
+        rsss+=("$rss")
+    done
+    unset -n command
+    millis=$(printf '%s\n' "${times[@]}" | median)
+    rss=$(printf '%s\n' "${rsss[@]}" | median)
+    echo "$mode,$millis,$rss" >> "$OUT/results.csv"
+    printf '%-8s %18s %8s\n' "$mode" "$millis" "$rss"
+done
@@ -0,0 +1,97 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import ee.taltech.inbankbackend.service.RejectionReason;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures reading a /loan/decision request body and writing its response with {@link DecisionJsonCodec}
+ * against Jackson, configured as Spring Boot configures it. Approvals vary over 1024 amounts and periods, so
+ * that some miss the table of encoded approvals; rejections are always the same.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecisionJsonCodecBenchmark {
+    private static final int REQUESTS = 1024;
+
+    private final byte[][] requests = new byte[REQUESTS][];
+    private final DecisionResponse[] approvals = new DecisionResponse[REQUESTS];
+    private final DecisionResponse rejection = DecisionResponse.rejected(RejectionReason.DEBT);
+    private ObjectReader requestReader;
+    private ObjectWriter responseWriter;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        requestReader = objectMapper.readerFor(DecisionRequest.class);
+        responseWriter = objectMapper.writerFor(DecisionResponse.class);
+
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < REQUESTS; i++) {
+            int amount = 2000 + random.nextInt(8001);
+            int period = 12 + random.nextInt(37);
+            requests[i] = ("{\"personalCode\":\"49002010998\",\"loanAmount\":" + amount + ",\"loanPeriod\":" + period
+                    + "}").getBytes(StandardCharsets.US_ASCII);
+            approvals[i] = new DecisionResponse(amount, period, null, 1);
+        }
+    }
+
+    @Benchmark
+    public DecisionRequest codecReadRequest() {
+        byte[] request = requests[next()];
+        return DecisionJsonCodec.readRequest(request, 0, request.length);
+    }
+
+    @Benchmark
+    public DecisionRequest jacksonReadRequest() throws IOException {
+        return requestReader.readValue(requests[next()]);
+    }
+
+    @Benchmark
+    public byte[] codecWriteApproval() {
+        return DecisionJsonCodec.writeResponse(approvals[next()]);
+    }
+
+    @Benchmark
+    public byte[] jacksonWriteApproval() throws IOException {
+        return responseWriter.writeValueAsBytes(approvals[next()]);
+    }
+
+    @Benchmark
+    public byte[] codecWriteRejection() {
+        return DecisionJsonCodec.writeResponse(rejection);
+    }
+
+    @Benchmark
+    public byte[] jacksonWriteRejection() throws IOException {
+        return responseWriter.writeValueAsBytes(rejection);
+    }
+
+    private int next() {
+        int i = next;
+        next = (i + 1) & (REQUESTS - 1);
+        return i;
+    }
+}
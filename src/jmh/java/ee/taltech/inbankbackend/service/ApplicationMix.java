@@ -0,0 +1,56 @@
+package ee.taltech.inbankbackend.service;
+
+/**
+ * Realistic benchmark inputs, grouped by the path they take through the decision engine.
+ */
+final class ApplicationMix {
+    static final String SEGMENT_1_CODE = "49002010976";
+    static final String SEGMENT_2_CODE = "49002010987";
+    static final String SEGMENT_3_CODE = "49002010998";
+    static final String DEBTOR_CODE = "49002010965";
+
+    final String[] personalCodes;
+    final Long[] loanAmounts;
+    final int[] loanPeriods;
+
+    private ApplicationMix(String[] personalCodes, Long[] loanAmounts, int[] loanPeriods) {
+        this.personalCodes = personalCodes;
+        this.loanAmounts = loanAmounts;
+        this.loanPeriods = loanPeriods;
+    }
+
+    int size() {
+        return personalCodes.length;
+    }
+
+    /**
+     * @param name One of approve, debt, invalidCode, periodExtension or mixed, where mixed is
+     *             six approvals, one debt rejection, one invalid code and two period extensions
+     */
+    static ApplicationMix of(String name) {
+        return switch (name) {
+            case "approve" -> new ApplicationMix(
+                    new String[]{SEGMENT_3_CODE, SEGMENT_2_CODE, SEGMENT_3_CODE, SEGMENT_2_CODE},
+                    new Long[]{4000L, 4000L, 10000L, 9000L},
+                    new int[]{12, 24, 36, 48});
+            case "debt" -> new ApplicationMix(
+                    new String[]{DEBTOR_CODE, DEBTOR_CODE},
+                    new Long[]{4000L, 10000L},
+                    new int[]{12, 48});
+            case "invalidCode" -> new ApplicationMix(
+                    new String[]{"12345678901", "49002010966", "4900201096", "49013010965"},
+                    new Long[]{4000L, 4000L, 4000L, 4000L},
+                    new int[]{12, 12, 12, 12});
+            case "periodExtension" -> new ApplicationMix(
+                    new String[]{SEGMENT_1_CODE, SEGMENT_1_CODE},
+                    new Long[]{4000L, 2000L},
+                    new int[]{12, 18});
+            case "mixed" -> new ApplicationMix(
+                    new String[]{SEGMENT_3_CODE, SEGMENT_2_CODE, SEGMENT_3_CODE, DEBTOR_CODE, SEGMENT_2_CODE,
+                            "49002010966", SEGMENT_3_CODE, SEGMENT_1_CODE, SEGMENT_2_CODE, SEGMENT_1_CODE},
+                    new Long[]{4000L, 4000L, 10000L, 4000L, 9000L, 4000L, 2000L, 4000L, 3000L, 2000L},
+                    new int[]{12, 24, 36, 12, 48, 12, 12, 12, 12, 18});
+            default -> throw new IllegalArgumentException("Unknown application mix " + name);
+        };
+    }
+}
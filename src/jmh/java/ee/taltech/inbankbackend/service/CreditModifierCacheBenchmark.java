@@ -0,0 +1,152 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.interfaces.CreditModifierSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures credit modifier lookups against a slow upstream registry, with and without {@link CreditModifierCache},
+ * for customers drawn from a Zipf distribution: a few customers apply often and most apply rarely.
+ * After each iteration the benchmark prints the upstream calls made per lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class CreditModifierCacheBenchmark {
+    private static final int CUSTOMERS = 1_000_000;
+    private static final int SAMPLES = 1 << 20;
+
+    @Param({"0.8", "1.1"})
+    private double skew;
+
+    @Param({"10000", "100000"})
+    private int cacheSize;
+
+    @Param({"50"})
+    private int upstreamLatencyMicros;
+
+    private long[] keys;
+    private SlowRegistry registry;
+    private CreditModifierCache cache;
+    private CreditModifierCache.Stats iterationStart;
+    private long iterationStartCalls;
+
+    @Setup
+    public void setUp() {
+        keys = zipfKeys(skew);
+        CreditModifierIndex.Builder builder = new CreditModifierIndex.Builder();
+        for (int rank = 0; rank < CUSTOMERS; rank++) {
+            builder.put(customer(rank), rank % 10 == 0 ? 0 : 1000);
+        }
+        registry = new SlowRegistry(builder.build(), TimeUnit.MICROSECONDS.toNanos(upstreamLatencyMicros));
+        cache = new CreditModifierCache(registry, cacheSize, Duration.ofMinutes(10), Duration.ofMinutes(1));
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next = new SplittableRandom().nextInt(SAMPLES);
+
+        long nextKey(long[] keys) {
+            next = (next + 1) & (SAMPLES - 1);
+            return keys[next];
+        }
+    }
+
+    @Benchmark
+    public int uncached(Cursor cursor) {
+        return registry.get(cursor.nextKey(keys), 0);
+    }
+
+    @Benchmark
+    public int cached(Cursor cursor) {
+        return cache.get(cursor.nextKey(keys), 0);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        iterationStart = cache.getStats();
+        iterationStartCalls = registry.calls.sum();
+    }
+
+    @TearDown(Level.Iteration)
+    public void reportUpstreamCalls() {
+        CreditModifierCache.Stats stats = cache.getStats();
+        long upstreamCalls = registry.calls.sum() - iterationStartCalls;
+        long cachedLookups = stats.hits() + stats.misses() - iterationStart.hits() - iterationStart.misses();
+        // Only one of the two benchmarks runs per trial, and without the cache every lookup is an upstream call
+        long lookups = cachedLookups > 0 ? cachedLookups : upstreamCalls;
+        System.out.printf("%n%d lookups, %.4f upstream calls per lookup, %d evictions%n", lookups,
+                lookups == 0 ? 0 : (double) upstreamCalls / lookups, stats.evictions() - iterationStart.evictions());
+    }
+
+    private static long[] zipfKeys(double skew) {
+        double[] cumulative = new double[CUSTOMERS];
+        double total = 0;
+        for (int rank = 0; rank < CUSTOMERS; rank++) {
+            total += 1 / Math.pow(rank + 1, skew);
+            cumulative[rank] = total;
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        long[] keys = new long[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            int rank = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+            keys[i] = customer(rank < 0 ? -rank - 1 : rank);
+        }
+        return keys;
+    }
+
+    private static long customer(int rank) {
+        return 30_000_000_000L + (rank % 36_500) * 100_000L + (rank / 36_500) * 10L;
+    }
+
+    private static final class SlowRegistry implements CreditModifierSource {
+        private final CreditModifierSource registry;
+        private final long latencyNanos;
+        private final LongAdder calls = new LongAdder();
+
+        private SlowRegistry(CreditModifierSource registry, long latencyNanos) {
+            this.registry = registry;
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public int get(long key, int defaultModifier) {
+            calls.increment();
+            LockSupport.parkNanos(latencyNanos);
+            return registry.get(key, defaultModifier);
+        }
+
+        @Override
+        public int size() {
+            return registry.size();
+        }
+
+        @Override
+        public long getFootprintBytes() {
+            return registry.getFootprintBytes();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ee.taltech.inbankbackend.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures {@link DecisionEngine#calculateApprovedLoan} from four threads without the audit log and with it at
+ * several fsync intervals, sampling every call so that the p99 can be compared. The audited runs also report how
+ * many decisions per second the writer sustains, as the throughput of the same calls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.SampleTime, Mode.Throughput})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class DecisionAuditLogBenchmark {
+
+    // Milliseconds between fsyncs, or off for no audit log
+    @Param({"off", "0", "10", "1000"})
+    private String fsyncInterval;
+
+    private Path directory;
+    private DecisionAuditLog auditLog;
+    private DecisionEngine decisionEngine;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("decision-audit");
+        boolean audited = !fsyncInterval.equals("off");
+        auditLog = new DecisionAuditLog(audited ? directory : null, 65536, 1 << 22,
+                Duration.ofMillis(audited ? Long.parseLong(fsyncInterval) : 0), Duration.ofSeconds(1),
+                Clock.systemUTC());
+        LoanCalculator loanCalculator = new LoanCalculator(true);
+        decisionEngine = new DecisionEngine(new PersonalCodeValidator(), new AgeValidator(), new LoanInputValidator(),
+                new CreditModifierService(), loanCalculator, new DecisionTable(loanCalculator),
+                DecisionMetrics.disabled(), null, auditLog);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException, IOException {
+        auditLog.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public Decision calculateApprovedLoan() {
+        return decisionEngine.calculateApprovedLoan("49002010998", 4000L, 12);
+    }
+}
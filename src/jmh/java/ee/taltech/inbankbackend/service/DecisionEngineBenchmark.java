@@ -0,0 +1,64 @@
+package ee.taltech.inbankbackend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of a full {@link DecisionEngine#calculateApprovedLoan} call for each application mix,
+ * without metrics, with stage timing sampled at the default interval of 64, and with every decision timed. Run
+ * with the GC profiler, the three settings give the cost of metrics in operations a second and in bytes
+ * allocated per decision, which the default sample interval is to be chosen from.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecisionEngineBenchmark {
+
+    @Param({"approve", "debt", "invalidCode", "periodExtension", "mixed"})
+    private String mix;
+
+    @Param({"off", "sampled", "every"})
+    private String metrics;
+
+    private ApplicationMix applications;
+    private DecisionEngine decisionEngine;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        applications = ApplicationMix.of(mix);
+        LoanCalculator loanCalculator = new LoanCalculator(true);
+        DecisionMetrics decisionMetrics = switch (metrics) {
+            case "off" -> DecisionMetrics.disabled();
+            case "sampled" -> new DecisionMetrics(new SimpleMeterRegistry(), true, 64);
+            case "every" -> new DecisionMetrics(new SimpleMeterRegistry(), true, 1);
+            default -> throw new IllegalArgumentException("Unknown metrics setting: " + metrics);
+        };
+        decisionEngine = new DecisionEngine(new PersonalCodeValidator(), new AgeValidator(), new LoanInputValidator(),
+                new CreditModifierService(), loanCalculator, new DecisionTable(loanCalculator), decisionMetrics, null,
+                null);
+    }
+
+    @Benchmark
+    public Decision calculateApprovedLoan() {
+        int i = next;
+        next = i + 1 == applications.size() ? 0 : i + 1;
+        return decisionEngine.calculateApprovedLoan(applications.personalCodes[i], applications.loanAmounts[i],
+                applications.loanPeriods[i]);
+    }
+}
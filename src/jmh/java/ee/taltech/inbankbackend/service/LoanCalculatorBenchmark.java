@@ -0,0 +1,58 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.config.DecisionEngineConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link LoanCalculator#findBestPossibleAmount} over every segment and period, with the closed-form
+ * solver and with the 100-euro step search.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoanCalculatorBenchmark {
+
+    @Param({"true", "false"})
+    private boolean closedFormSolver;
+
+    private final int[] creditModifiers = {
+            DecisionEngineConstants.SEGMENT_1_CREDIT_MODIFIER,
+            DecisionEngineConstants.SEGMENT_2_CREDIT_MODIFIER,
+            DecisionEngineConstants.SEGMENT_3_CREDIT_MODIFIER
+    };
+
+    private LoanCalculator loanCalculator;
+    private int nextModifier;
+    private int nextPeriod = DecisionEngineConstants.MINIMUM_LOAN_PERIOD;
+
+    @Setup
+    public void setUp() {
+        loanCalculator = new LoanCalculator(closedFormSolver);
+    }
+
+    @Benchmark
+    public Integer findBestPossibleAmount() {
+        int modifier = nextModifier;
+        int period = nextPeriod;
+        nextModifier = modifier + 1 == creditModifiers.length ? 0 : modifier + 1;
+        if (nextModifier == 0) {
+            nextPeriod = period == DecisionEngineConstants.MAXIMUM_LOAN_PERIOD ? DecisionEngineConstants.MINIMUM_LOAN_PERIOD : period + 1;
+        }
+        return loanCalculator.findBestPossibleAmount(creditModifiers[modifier], period);
+    }
+}
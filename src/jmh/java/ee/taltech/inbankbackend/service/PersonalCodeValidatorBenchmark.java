@@ -0,0 +1,60 @@
+package ee.taltech.inbankbackend.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures personal code validation for each application mix, and age calculation for the valid codes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PersonalCodeValidatorBenchmark {
+
+    @Param({"approve", "debt", "invalidCode", "periodExtension", "mixed"})
+    private String mix;
+
+    private final String[] validCodes = {
+            ApplicationMix.SEGMENT_1_CODE, ApplicationMix.SEGMENT_2_CODE, ApplicationMix.SEGMENT_3_CODE,
+            ApplicationMix.DEBTOR_CODE, "50307172740", "37605030299"
+    };
+
+    private String[] personalCodes;
+    private PersonalCodeValidator validator;
+    private int nextCode;
+    private int nextValidCode;
+
+    @Setup
+    public void setUp() {
+        personalCodes = ApplicationMix.of(mix).personalCodes;
+        validator = new PersonalCodeValidator();
+    }
+
+    @Benchmark
+    public RejectionReason validate() {
+        int i = nextCode;
+        nextCode = i + 1 == personalCodes.length ? 0 : i + 1;
+        return validator.validate(personalCodes[i]);
+    }
+
+    @Benchmark
+    public int calculateAge() {
+        int i = nextValidCode;
+        nextValidCode = i + 1 == validCodes.length ? 0 : i + 1;
+        return validator.calculateAge(validCodes[i]);
+    }
+}
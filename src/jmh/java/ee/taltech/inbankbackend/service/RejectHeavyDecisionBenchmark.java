@@ -0,0 +1,110 @@
+package ee.taltech.inbankbackend.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.CompilerControl;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decision throughput for traffic where eight of ten applications are rejected.
+ * {@code exceptionPerRejection} reproduces the previous pipeline, which threw one exception with a full
+ * stack trace for every rejection, {@code stacklessExceptionPerRejection} throws one without a stack trace
+ * instead, and {@code resultTyped} is the current pipeline that returns rejections as values.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RejectHeavyDecisionBenchmark {
+
+    private static final String INVALID_CODE = "12345678901";
+    private static final String DEBTOR_CODE = "49002010965";
+    private static final String SEGMENT_3_CODE = "49002010998";
+
+    private final String[] personalCodes = {
+            INVALID_CODE, INVALID_CODE, INVALID_CODE, SEGMENT_3_CODE, SEGMENT_3_CODE,
+            SEGMENT_3_CODE, DEBTOR_CODE, DEBTOR_CODE, SEGMENT_3_CODE, SEGMENT_3_CODE
+    };
+    private final Long[] loanAmounts = {4000L, 4000L, 4000L, 100L, 20000L, 4000L, 4000L, 4000L, 4000L, 8000L};
+    private final int[] loanPeriods = {12, 24, 36, 12, 12, 6, 24, 48, 12, 36};
+
+    private DecisionEngine decisionEngine;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        LoanCalculator loanCalculator = new LoanCalculator(true);
+        decisionEngine = new DecisionEngine(new PersonalCodeValidator(), new AgeValidator(), new LoanInputValidator(),
+                new CreditModifierService(), loanCalculator, new DecisionTable(loanCalculator));
+    }
+
+    @Benchmark
+    public Object resultTyped() {
+        return decide();
+    }
+
+    @Benchmark
+    public Object exceptionPerRejection() {
+        Decision decision = decide();
+        if (decision instanceof Decision.Rejected rejected) {
+            try {
+                throwWithStackTrace(rejected.reason());
+            } catch (StackTraceRejection e) {
+                return e.getMessage();
+            }
+        }
+        return decision;
+    }
+
+    @Benchmark
+    public Object stacklessExceptionPerRejection() {
+        Decision decision = decide();
+        if (decision instanceof Decision.Rejected rejected) {
+            try {
+                throwStackless(rejected.reason());
+            } catch (StacklessRejection e) {
+                return e.getMessage();
+            }
+        }
+        return decision;
+    }
+
+    private Decision decide() {
+        int i = next;
+        next = i + 1 == personalCodes.length ? 0 : i + 1;
+        return decisionEngine.calculateApprovedLoan(personalCodes[i], loanAmounts[i], loanPeriods[i]);
+    }
+
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    private static void throwWithStackTrace(RejectionReason reason) throws StackTraceRejection {
+        throw new StackTraceRejection(reason.getMessage());
+    }
+
+    @CompilerControl(CompilerControl.Mode.DONT_INLINE)
+    private static void throwStackless(RejectionReason reason) throws StacklessRejection {
+        throw new StacklessRejection(reason.getMessage());
+    }
+
+    private static final class StackTraceRejection extends Exception {
+        private StackTraceRejection(String message) {
+            super(message);
+        }
+    }
+
+    private static final class StacklessRejection extends Exception {
+        private StacklessRejection(String message) {
+            super(message, null, false, false);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.interfaces.ScoreModifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures scoring with 1, 10 and 100 configured score rules: the compiled rules of {@link ScoringRules#score},
+ * the same rules applied one {@link ScoreModifier} at a time, and a full decision for a credit modifier outside
+ * the decision table, which searches amounts and periods with the score rules.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScoringRulesBenchmark {
+    private static final int APPLICATIONS = 1024;
+
+    @Param({"1", "10", "100"})
+    private int rules;
+
+    private ScoringRules scoringRules;
+    private ScoreModifier[] chain;
+    private DecisionEngine decisionEngine;
+    private final int[] creditModifiers = new int[APPLICATIONS];
+    private final int[] amounts = new int[APPLICATIONS];
+    private final int[] periods = new int[APPLICATIONS];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        List<ScoreRule> scoreRules = new ArrayList<>(rules);
+        for (int i = 0; i < rules; i++) {
+            ScoreRule.Input input = ScoreRule.Input.values()[i % 3];
+            int min = switch (input) {
+                case CREDIT_MODIFIER -> random.nextInt(1000);
+                case AMOUNT -> 2000 + random.nextInt(8000);
+                case PERIOD -> 12 + random.nextInt(36);
+            };
+            scoreRules.add(i % 2 == 0
+                    ? new ScoreRule(input, min, min + random.nextInt(500), ScoreRule.Effect.MULTIPLY, 0.9 + random.nextDouble(0.2))
+                    : new ScoreRule(input, min, min + random.nextInt(500), ScoreRule.Effect.ADD, random.nextDouble(-0.01, 0.01)));
+        }
+        scoringRules = new ScoringRules(2000, 10000, 12, 48, 18, 75, new int[]{100, 300, 1000}, 0.1, scoreRules);
+        chain = scoreRules.toArray(new ScoreModifier[0]);
+
+        for (int i = 0; i < APPLICATIONS; i++) {
+            creditModifiers[i] = 1 + random.nextInt(1000);
+            amounts[i] = 2000 + random.nextInt(8001);
+            periods[i] = 12 + random.nextInt(37);
+        }
+
+        LoanCalculator loanCalculator = new LoanCalculator(true, scoringRules);
+        CreditModifierService creditModifierService = new CreditModifierService() {
+            @Override
+            public int getCreditModifier(String personalCode) {
+                return 250;
+            }
+        };
+        decisionEngine = new DecisionEngine(new PersonalCodeValidator(), new AgeValidator(scoringRules),
+                new LoanInputValidator(scoringRules), creditModifierService, loanCalculator,
+                new DecisionTable(loanCalculator));
+    }
+
+    @Benchmark
+    public double compiledScore() {
+        int i = next();
+        return scoringRules.score(creditModifiers[i], amounts[i], periods[i]);
+    }
+
+    @Benchmark
+    public double chainedScore() {
+        int i = next();
+        int creditModifier = creditModifiers[i];
+        int amount = amounts[i];
+        int period = periods[i];
+        double score = (creditModifier * period) / ((double) amount * 10.0);
+        for (ScoreModifier modifier : chain) {
+            score = modifier.modify(score, creditModifier, amount, period);
+        }
+        return score;
+    }
+
+    @Benchmark
+    public Decision calculateApprovedLoan() {
+        int i = next();
+        return decisionEngine.calculateApprovedLoan("50307172740", (long) amounts[i], periods[i]);
+    }
+
+    private int next() {
+        int i = next;
+        next = (i + 1) & (APPLICATIONS - 1);
+        return i;
+    }
+}
@@ -1,9 +1,12 @@
 package ee.taltech.inbankbackend;
 
+import ee.taltech.inbankbackend.config.DecisionEngineRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(DecisionEngineRuntimeHints.class)
 public class InbankBackendApplication {
 
     public static void main(String[] args) {
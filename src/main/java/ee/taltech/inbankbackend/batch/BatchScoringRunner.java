@@ -0,0 +1,49 @@
+package ee.taltech.inbankbackend.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ee.taltech.inbankbackend.service.DecisionEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Runs the application headless: scores the file given by {@code batch.input} into {@code batch.output} and exits.
+ * Enabled by the {@code batch} profile, which also turns off the embedded web server, for example:<br>
+ * {@code java -jar inbank-backend-1.0.jar --spring.profiles.active=batch --batch.input=in.csv --batch.output=out.csv}
+ */
+@Component
+@Profile("batch")
+public class BatchScoringRunner implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(BatchScoringRunner.class);
+
+    private final FileScoringPipeline pipeline;
+    private final Path input;
+    private final Path output;
+
+    public BatchScoringRunner(DecisionEngine decisionEngine,
+                              ObjectMapper objectMapper,
+                              @Value("${batch.input}") Path input,
+                              @Value("${batch.output}") Path output,
+                              @Value("${batch.workers:0}") int workers,
+                              @Value("${batch.window-size:8388608}") int windowSize) {
+        this.pipeline = new FileScoringPipeline(decisionEngine, objectMapper,
+                workers > 0 ? workers : Runtime.getRuntime().availableProcessors(), windowSize);
+        this.input = input;
+        this.output = output;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        log.info("Scoring {} into {}", input, output);
+        ScoringReport report = pipeline.run(input, output);
+        log.info("Scored {} rows in {} ms: {} rows/sec, p99 per-row latency {} µs",
+                report.rows(), report.elapsedNanos() / 1_000_000, report.rowsPerSecond(),
+                report.p99LatencyNanos() / 1000.0);
+    }
+}
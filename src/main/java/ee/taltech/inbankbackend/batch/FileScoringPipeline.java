@@ -0,0 +1,308 @@
+package ee.taltech.inbankbackend.batch;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import ee.taltech.inbankbackend.endpoint.DecisionRequest;
+import ee.taltech.inbankbackend.endpoint.DecisionResponse;
+import ee.taltech.inbankbackend.service.Decision;
+import ee.taltech.inbankbackend.service.DecisionEngine;
+import ee.taltech.inbankbackend.service.RejectionReason;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides every row of a CSV or NDJSON file and writes the decisions to an output file in the same order.<br><br>
+ * The input is memory-mapped in windows that end on a line break. Each window is parsed and decided by a pool of
+ * worker threads while the next windows are being mapped, and a writer thread appends the finished windows in
+ * input order. At most two windows per worker are in flight, which bounds memory use for any file size.<br><br>
+ * CSV rows are {@code personalCode,loanAmount,loanPeriod} and produce
+ * {@code personalCode,loanAmount,loanPeriod,errorMessage} rows, in which the personal code and the error message
+ * are quoted when they contain a comma, quote or line break. A first row whose first column is
+ * {@code personalCode} is a header and is not scored; any other first row is scored like the rest, so a row that
+ * cannot be read is always reported as malformed rather than dropped. NDJSON rows use the /loan/decision request
+ * fields and produce its response objects. Files whose first character is '{' are read as NDJSON. A leading UTF-8
+ * byte order mark is skipped.
+ */
+public class FileScoringPipeline {
+    static final String CSV_HEADER = "personalCode,loanAmount,loanPeriod,errorMessage\n";
+    static final String MALFORMED_ROW = "Malformed row!";
+    private static final String HEADER_COLUMN = "personalCode";
+    private static final byte[] BYTE_ORDER_MARK = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private final DecisionEngine decisionEngine;
+    private final ObjectReader requestReader;
+    private final ObjectWriter responseWriter;
+    private final int workers;
+    private final int windowSize;
+
+    /**
+     * @param workers The number of threads parsing and deciding rows
+     * @param windowSize The size of each mapped input window in bytes, which must exceed the longest row
+     */
+    public FileScoringPipeline(DecisionEngine decisionEngine, ObjectMapper objectMapper, int workers, int windowSize) {
+        this.decisionEngine = decisionEngine;
+        this.requestReader = objectMapper.readerFor(DecisionRequest.class);
+        this.responseWriter = objectMapper.writerFor(DecisionResponse.class);
+        this.workers = workers;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Scores the input file into the output file, replacing the output if it exists.
+     *
+     * @return The number of rows, the elapsed time and the per-row latency of the run
+     * @throws IOException If the input cannot be read, the output cannot be written, or a row is longer than a window
+     */
+    public ScoringReport run(Path input, Path output) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        ExecutorService workerPool = Executors.newFixedThreadPool(workers);
+        ExecutorService writerThread = Executors.newSingleThreadExecutor();
+        BlockingQueue<Future<ScoredWindow>> pending = new ArrayBlockingQueue<>(workers * 2);
+
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            long position = hasByteOrderMark(in) ? BYTE_ORDER_MARK.length : 0;
+            boolean ndjson = isNdjson(in, position);
+            Future<LatencyHistogram> writer = writerThread.submit(() -> writeInOrder(pending, out, ndjson));
+
+            long size = in.size();
+            boolean first = true;
+            while (position < size) {
+                long length = Math.min(windowSize, size - position);
+                MappedByteBuffer mapped = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+                int end = position + length == size ? (int) length : lastNewline(mapped) + 1;
+                if (end == 0) {
+                    throw new IOException("Row at byte " + position + " is longer than the window size " + windowSize);
+                }
+                ByteBuffer window = mapped.slice(0, end);
+                boolean skipHeader = first && !ndjson;
+                enqueue(pending, workerPool.submit(() -> score(window, ndjson, skipHeader)), writer);
+                position += end;
+                first = false;
+            }
+            enqueue(pending, ScoredWindow.END, writer);
+
+            LatencyHistogram latencies = writer.get();
+            return new ScoringReport(latencies.getCount(), System.nanoTime() - start, latencies.percentileNanos(99));
+        } catch (ExecutionException e) {
+            throw new IOException("File scoring failed", e.getCause());
+        } finally {
+            workerPool.shutdownNow();
+            writerThread.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for room in the queue, giving up with the writer's failure if the writer has stopped taking windows.
+     */
+    private static void enqueue(BlockingQueue<Future<ScoredWindow>> pending, Future<ScoredWindow> window,
+                                Future<LatencyHistogram> writer) throws InterruptedException, ExecutionException {
+        while (!pending.offer(window, 100, TimeUnit.MILLISECONDS)) {
+            if (writer.isDone()) {
+                writer.get();
+                throw new IllegalStateException("Writer finished before the last window");
+            }
+        }
+    }
+
+    private LatencyHistogram writeInOrder(BlockingQueue<Future<ScoredWindow>> pending, FileChannel out, boolean ndjson)
+            throws InterruptedException, ExecutionException, IOException {
+        LatencyHistogram latencies = new LatencyHistogram();
+        if (!ndjson) {
+            writeFully(out, ByteBuffer.wrap(CSV_HEADER.getBytes(StandardCharsets.US_ASCII)));
+        }
+        while (true) {
+            Future<ScoredWindow> next = pending.take();
+            if (next == ScoredWindow.END) {
+                return latencies;
+            }
+            ScoredWindow window = next.get();
+            writeFully(out, ByteBuffer.wrap(window.output));
+            latencies.merge(window.latencies);
+        }
+    }
+
+    private ScoredWindow score(ByteBuffer window, boolean ndjson, boolean skipHeader) throws IOException {
+        LatencyHistogram latencies = new LatencyHistogram();
+        StringBuilder output = new StringBuilder(window.remaining());
+        byte[] line = new byte[256];
+        int from = 0;
+        int limit = window.limit();
+        boolean header = skipHeader;
+
+        while (from < limit) {
+            int to = from;
+            while (to < limit && window.get(to) != '\n') {
+                to++;
+            }
+            int length = to > from && window.get(to - 1) == '\r' ? to - from - 1 : to - from;
+            if (length > 0) {
+                if (line.length < length) {
+                    line = new byte[length];
+                }
+                window.get(from, line, 0, length);
+                if (!header || !isCsvHeader(line, length)) {
+                    long rowStart = System.nanoTime();
+                    if (ndjson) {
+                        scoreJson(line, length, output);
+                    } else {
+                        scoreCsv(line, length, output);
+                    }
+                    latencies.record(System.nanoTime() - rowStart);
+                }
+                header = false;
+            }
+            from = to + 1;
+        }
+        return new ScoredWindow(output.toString().getBytes(StandardCharsets.UTF_8), latencies);
+    }
+
+    private void scoreJson(byte[] line, int length, StringBuilder output) throws IOException {
+        DecisionResponse response;
+        try {
+            DecisionRequest request = requestReader.readValue(line, 0, length);
+            response = DecisionResponse.of(decide(request.getPersonalCode(), request.getLoanAmount(), request.getLoanPeriod()));
+        } catch (IOException e) {
+            response = new DecisionResponse(null, null, MALFORMED_ROW);
+        }
+        output.append(responseWriter.writeValueAsString(response)).append('\n');
+    }
+
+    private void scoreCsv(byte[] line, int length, StringBuilder output) {
+        int firstComma = indexOf(line, 0, length, ',');
+        int secondComma = firstComma < 0 ? -1 : indexOf(line, firstComma + 1, length, ',');
+        String personalCode = new String(line, 0, firstComma < 0 ? length : firstComma, StandardCharsets.US_ASCII).trim();
+        output.append(csvField(personalCode)).append(',');
+
+        long loanAmount = secondComma < 0 ? -1 : parseNumber(line, firstComma + 1, secondComma);
+        long loanPeriod = secondComma < 0 ? -1 : parseNumber(line, secondComma + 1, length);
+        if (loanAmount < 0 || loanPeriod < 0 || loanPeriod > Integer.MAX_VALUE) {
+            output.append(",,").append(csvField(MALFORMED_ROW)).append('\n');
+            return;
+        }
+
+        Decision decision = decide(personalCode, loanAmount, (int) loanPeriod);
+        if (decision instanceof Decision.Approved approved) {
+            output.append(approved.loanAmount()).append(',').append(approved.loanPeriod()).append(",\n");
+        } else {
+            output.append(",,").append(csvField(((Decision.Rejected) decision).message())).append('\n');
+        }
+    }
+
+    /**
+     * @return The value as one CSV field: unchanged, or in quotes with its quotes doubled if it contains a comma,
+     *         quote or line break
+     */
+    private static String csvField(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+
+    private Decision decide(String personalCode, Long loanAmount, int loanPeriod) {
+        try {
+            return decisionEngine.calculateApprovedLoan(personalCode, loanAmount, loanPeriod);
+        } catch (RuntimeException e) {
+            return Decision.Rejected.of(RejectionReason.UNEXPECTED_ERROR);
+        }
+    }
+
+    /**
+     * @return The value of the unsigned decimal number between the bounds, or -1 if it is not one
+     */
+    private static long parseNumber(byte[] line, int from, int to) {
+        while (from < to && line[from] == ' ') {
+            from++;
+        }
+        while (to > from && line[to - 1] == ' ') {
+            to--;
+        }
+        if (from == to || to - from > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = line[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static boolean isCsvHeader(byte[] line, int length) {
+        int comma = indexOf(line, 0, length, ',');
+        String firstColumn = new String(line, 0, comma < 0 ? length : comma, StandardCharsets.US_ASCII).trim();
+        if (firstColumn.length() >= 2 && firstColumn.startsWith("\"") && firstColumn.endsWith("\"")) {
+            firstColumn = firstColumn.substring(1, firstColumn.length() - 1).trim();
+        }
+        return firstColumn.equalsIgnoreCase(HEADER_COLUMN);
+    }
+
+    private static int indexOf(byte[] line, int from, int to, char c) {
+        for (int i = from; i < to; i++) {
+            if (line[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int lastNewline(ByteBuffer buffer) {
+        for (int i = buffer.limit() - 1; i >= 0; i--) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean hasByteOrderMark(FileChannel in) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(BYTE_ORDER_MARK.length);
+        in.read(head, 0);
+        return head.flip().equals(ByteBuffer.wrap(BYTE_ORDER_MARK));
+    }
+
+    private static boolean isNdjson(FileChannel in, long position) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(64);
+        in.read(head, position);
+        for (int i = 0; i < head.position(); i++) {
+            byte b = head.get(i);
+            if (!Character.isWhitespace(b)) {
+                return b == '{';
+            }
+        }
+        return false;
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private record ScoredWindow(byte[] output, LatencyHistogram latencies) {
+        private static final Future<ScoredWindow> END = CompletableFuture.completedFuture(null);
+    }
+}
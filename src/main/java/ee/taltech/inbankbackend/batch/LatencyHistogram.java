@@ -0,0 +1,48 @@
+package ee.taltech.inbankbackend.batch;
+
+/**
+ * Records latencies in fixed 100-nanosecond buckets up to 10 milliseconds, with one overflow bucket above.
+ * Not thread-safe: each worker records into its own histogram, and the histograms are merged afterwards.
+ */
+public class LatencyHistogram {
+    private static final long BUCKET_NANOS = 100;
+    private static final int BUCKETS = 100_000;
+
+    private final long[] counts = new long[BUCKETS + 1];
+    private long total;
+    private long max;
+
+    public void record(long nanos) {
+        counts[(int) Math.min(nanos / BUCKET_NANOS, BUCKETS)]++;
+        total++;
+        max = Math.max(max, nanos);
+    }
+
+    public void merge(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    /**
+     * @param percentile The percentile to return, between 0 and 100
+     * @return The upper bound of the bucket holding the percentile in nanoseconds, or the maximum if it overflowed
+     */
+    public long percentileNanos(double percentile) {
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return (i + 1) * BUCKET_NANOS;
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,15 @@
+package ee.taltech.inbankbackend.batch;
+
+/**
+ * Summarizes a file scoring run.
+ *
+ * @param rows The number of rows decided
+ * @param elapsedNanos The wall-clock time of the whole run
+ * @param p99LatencyNanos The 99th percentile time to parse and decide one row
+ */
+public record ScoringReport(long rows, long elapsedNanos, long p99LatencyNanos) {
+
+    public long rowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * 1_000_000_000L / elapsedNanos;
+    }
+}
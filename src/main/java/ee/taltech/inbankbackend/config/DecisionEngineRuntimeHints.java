@@ -0,0 +1,23 @@
+package ee.taltech.inbankbackend.config;
+
+import ee.taltech.inbankbackend.endpoint.DecisionRequest;
+import ee.taltech.inbankbackend.endpoint.DecisionResponse;
+import ee.taltech.inbankbackend.endpoint.OfferCurveResponse;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Declares what the application reaches by reflection, for ahead-of-time processed builds and native images.
+ * Beans are created by generated code in such builds, so the only reflection left is Jackson binding the request
+ * and response bodies. Spring registers the bodies of controller methods by itself, but the same types are also
+ * bound by the NDJSON stream, the batch pipeline and the reactive handler, which it does not see.
+ */
+public class DecisionEngineRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                DecisionRequest.class, DecisionResponse.class, OfferCurveResponse.class);
+    }
+}
@@ -0,0 +1,146 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of requests in flight to what the service can handle without queueing, and finds that
+ * number from the latency it observes.<br><br>
+ * Latencies are averaged over windows of at least {@code window} and {@value #MIN_WINDOW_SAMPLES} requests. The
+ * lowest window average is taken as the latency without load. After each window the limit is multiplied by the
+ * gradient between the two, {@code tolerance * noLoad / average} clamped to [0.5, 1], and the square root of the
+ * limit is added so that it keeps probing for more capacity. The result is smoothed and kept within
+ * [{@code minLimit}, {@code maxLimit}]. As long as requests take no longer than {@value #TOLERANCE} times the
+ * no-load latency the limit grows; once they queue it shrinks. The limit does not grow while fewer than half
+ * of it are in flight, so a quiet period does not raise it past what was tested.<br><br>
+ * The no-load latency is measured again every {@value #PROBE_WINDOWS} windows, so that the limit follows a
+ * service that has become slower for good. Taking and returning a permit is a compare-and-set and two adds;
+ * only the request that closes a window recomputes the limit. It takes the update lock with
+ * {@link ReentrantLock#tryLock()}, so no request ever waits for it: if another request is still closing the
+ * previous window, this one leaves its latency in the window and moves on.
+ */
+final class AdaptiveConcurrencyLimit {
+    static final double TOLERANCE = 1.5;
+    static final int MIN_WINDOW_SAMPLES = 20;
+    static final int PROBE_WINDOWS = 600;
+
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long windowNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+    private final LongAdder windowLatencyNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicLong windowStart;
+    private final ReentrantLock updating = new ReentrantLock();
+    private volatile int limit;
+
+    // Guarded by updating: successive windows are closed by different threads
+    private double estimatedLimit;
+    private double noLoadNanos;
+    private int windowsSinceProbe;
+
+    /**
+     * @param initialLimit The limit before any latency has been observed
+     * @param minLimit The lowest the limit can fall to
+     * @param maxLimit The highest the limit can rise to
+     * @param windowNanos The shortest window latencies are averaged over
+     * @param nowNanos The current {@link System#nanoTime()}
+     */
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long windowNanos, long nowNanos) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit
+                || windowNanos < 0) {
+            throw new IllegalArgumentException("Invalid concurrency limit: " + initialLimit + " within ["
+                    + minLimit + ", " + maxLimit + "]");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowNanos = windowNanos;
+        this.windowStart = new AtomicLong(nowNanos);
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+    }
+
+    /**
+     * Takes a permit if fewer requests than the limit are in flight. Every permit taken must be returned with
+     * {@link #release}.
+     *
+     * @return Whether the request may proceed
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                if (current >= peakInFlight.get()) {
+                    peakInFlight.accumulateAndGet(current + 1, Math::max);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns a permit and records how long its request took.
+     *
+     * @param startNanos The {@link System#nanoTime()} at which the permit was taken
+     * @param nowNanos The current {@link System#nanoTime()}
+     */
+    void release(long startNanos, long nowNanos) {
+        inFlight.decrementAndGet();
+        windowLatencyNanos.add(nowNanos - startNanos);
+        windowSamples.increment();
+        long start = windowStart.get();
+        if (nowNanos - start >= windowNanos && windowSamples.sum() >= MIN_WINDOW_SAMPLES && updating.tryLock()) {
+            try {
+                if (windowStart.compareAndSet(start, nowNanos)) {
+                    update(windowLatencyNanos.sumThenReset(), windowSamples.sumThenReset(),
+                            peakInFlight.getAndSet(0));
+                }
+            } finally {
+                updating.unlock();
+            }
+        }
+    }
+
+    /**
+     * Returns a permit whose request was refused before it ran, without recording a latency.
+     */
+    void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void update(long latencyNanos, long samples, int peak) {
+        if (samples == 0) {
+            return;
+        }
+        double averageNanos = (double) latencyNanos / samples;
+        if (noLoadNanos == 0 || averageNanos < noLoadNanos || ++windowsSinceProbe >= PROBE_WINDOWS) {
+            noLoadNanos = averageNanos;
+            windowsSinceProbe = 0;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * noLoadNanos / averageNanos));
+        double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        if (target > estimatedLimit && peak < estimatedLimit / 2) {
+            return;
+        }
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit,
+                estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING));
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,205 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import ee.taltech.inbankbackend.service.RejectionReason;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sheds load in front of {@code POST /loan/decision} and {@code POST /loan/decision/async}, before the request
+ * body is read or parsed.<br><br>
+ * A request must first get a permit from an {@link AdaptiveConcurrencyLimit}, which keeps the number of decisions
+ * in flight where their latency stays close to the latency without load.<br><br>
+ * It is then charged to its client in a {@link ClientRateLimiter} that allows {@code client-rate} requests a
+ * second with bursts of {@code client-burst}; a request the rate limit refuses returns its permit unused. Checking
+ * concurrency first means a request shed for lack of capacity never spends one of its client's tokens. A client
+ * is identified by the {@code api-key-header} only if the key is one of the configured {@code api-keys}, and by its
+ * remote address otherwise, so that sending a new made-up key with each request does not escape the limit. Behind
+ * a proxy, the remote address is only the client's if {@code server.forward-headers-strategy} is set.<br><br>
+ * A request refused by either limit is answered
+ * at once with {@code 429 Too Many Requests}, a {@code Retry-After} header and a fixed body, so excess load costs
+ * neither a request thread's time in the decision engine nor a growing queue that slows down every client.
+ * Asynchronous requests keep their permit until their response is complete.<br><br>
+ * Disabled unless {@code decision-engine.admission.enabled} is set; the rate limit is off while
+ * {@code client-rate} is 0. Publishes the requests refused by each limit, the current limit and the requests in
+ * flight as {@code decision.admission.*} metrics.
+ */
+@Component
+@Profile("!reactive")
+public class AdmissionFilter extends OncePerRequestFilter {
+    private static final byte[] TOO_MANY_REQUESTS_BODY =
+            DecisionJsonCodec.writeResponse(DecisionResponse.rejected(RejectionReason.TOO_MANY_REQUESTS));
+    // A full second is the shortest Retry-After; the concurrency limit cannot tell when a permit will be free
+    private static final String MIN_RETRY_AFTER_SECONDS = "1";
+
+    private final boolean enabled;
+    private final String apiKeyHeader;
+    private final Set<String> apiKeys;
+    private final ClientRateLimiter rateLimiter;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder concurrencyLimited = new LongAdder();
+
+    /**
+     * @param enabled Whether to limit requests at all
+     * @param apiKeyHeader The header identifying a client; clients without it are identified by their address
+     * @param apiKeys The keys that identify a client; any other key is ignored
+     * @param clientRate The requests a second each client may make, or 0 for no per-client limit
+     * @param clientBurst The requests an idle client may make at once
+     * @param clientBuckets The number of token buckets clients are hashed into
+     * @param initialLimit The concurrency limit before any latency has been observed
+     * @param minLimit The lowest the concurrency limit can fall to
+     * @param maxLimit The highest the concurrency limit can rise to
+     * @param window The shortest window latencies are averaged over before the limit is adjusted
+     * @param registry The registry to publish the meters to
+     */
+    @Autowired
+    public AdmissionFilter(@Value("${decision-engine.admission.enabled:false}") boolean enabled,
+                           @Value("${decision-engine.admission.api-key-header:X-Api-Key}") String apiKeyHeader,
+                           @Value("${decision-engine.admission.api-keys:}") Set<String> apiKeys,
+                           @Value("${decision-engine.admission.client-rate:0}") double clientRate,
+                           @Value("${decision-engine.admission.client-burst:20}") int clientBurst,
+                           @Value("${decision-engine.admission.client-buckets:16384}") int clientBuckets,
+                           @Value("${decision-engine.admission.concurrency.initial-limit:100}") int initialLimit,
+                           @Value("${decision-engine.admission.concurrency.min-limit:10}") int minLimit,
+                           @Value("${decision-engine.admission.concurrency.max-limit:1000}") int maxLimit,
+                           @Value("${decision-engine.admission.concurrency.window:100ms}") Duration window,
+                           MeterRegistry registry) {
+        this(enabled, apiKeyHeader, apiKeys,
+                clientRate > 0 ? new ClientRateLimiter(clientRate, clientBurst, clientBuckets) : null,
+                new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, window.toNanos(), System.nanoTime()));
+        if (enabled) {
+            registerMetrics(registry);
+        }
+    }
+
+    AdmissionFilter(boolean enabled, String apiKeyHeader, Set<String> apiKeys, ClientRateLimiter rateLimiter,
+                    AdaptiveConcurrencyLimit concurrencyLimit) {
+        this.enabled = enabled;
+        this.apiKeyHeader = apiKeyHeader;
+        this.apiKeys = Set.copyOf(apiKeys);
+        this.rateLimiter = rateLimiter;
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!enabled || !"POST".equals(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.equals("/loan/decision") && !path.equals("/loan/decision/async");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        if (!concurrencyLimit.tryAcquire()) {
+            concurrencyLimited.increment();
+            reject(response, MIN_RETRY_AFTER_SECONDS);
+            return;
+        }
+        if (rateLimiter != null) {
+            long waitNanos = rateLimiter.tryAcquire(clientOf(request), start);
+            if (waitNanos > 0) {
+                concurrencyLimit.cancel();
+                rateLimited.increment();
+                reject(response, Long.toString(TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)));
+                return;
+            }
+        }
+
+        boolean releaseNow = true;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseOnComplete(start));
+                releaseNow = false;
+            }
+        } finally {
+            if (releaseNow) {
+                concurrencyLimit.release(start, System.nanoTime());
+            }
+        }
+    }
+
+    private String clientOf(HttpServletRequest request) {
+        String apiKey = request.getHeader(apiKeyHeader);
+        return apiKey != null && apiKeys.contains(apiKey) ? apiKey : request.getRemoteAddr();
+    }
+
+    private static void reject(HttpServletResponse response, String retryAfterSeconds) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(TOO_MANY_REQUESTS_BODY.length);
+        response.getOutputStream().write(TOO_MANY_REQUESTS_BODY);
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("decision.admission.rejected", rateLimited, LongAdder::sum)
+                .tag("limit", "client-rate")
+                .description("Decision requests refused because their client exceeded its rate")
+                .register(registry);
+        FunctionCounter.builder("decision.admission.rejected", concurrencyLimited, LongAdder::sum)
+                .tag("limit", "concurrency")
+                .description("Decision requests refused because too many were in flight")
+                .register(registry);
+        Gauge.builder("decision.admission.limit", concurrencyLimit, AdaptiveConcurrencyLimit::getLimit)
+                .description("Decision requests allowed in flight at once")
+                .register(registry);
+        Gauge.builder("decision.admission.in-flight", concurrencyLimit, AdaptiveConcurrencyLimit::getInFlight)
+                .description("Decision requests in flight")
+                .register(registry);
+    }
+
+    /**
+     * Returns the permit of an asynchronous request once its response is complete, which also follows a timeout
+     * or an error.
+     */
+    private final class ReleaseOnComplete implements AsyncListener {
+        private final long start;
+
+        ReleaseOnComplete(long start) {
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            concurrencyLimit.release(start, System.nanoTime());
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import ee.taltech.inbankbackend.client.BinaryDecisionProtocol;
+import ee.taltech.inbankbackend.service.Decision;
+import ee.taltech.inbankbackend.service.DecisionEngine;
+import ee.taltech.inbankbackend.service.RejectionReason;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Serves loan decisions over persistent TCP connections in the fixed-size frames of
+ * {@link BinaryDecisionProtocol}, for internal callers that make too many calls for HTTP and JSON. Callers use
+ * {@link ee.taltech.inbankbackend.client.BinaryDecisionClient}.<br><br>
+ * An acceptor thread hands each connection to one of a few event loops, each a thread with its own selector.
+ * The event loop reads request frames straight from a direct buffer and decides them through
+ * {@link DecisionEngine#calculateApprovedLoanAsync}, which completes on the spot unless the credit modifier is
+ * looked up in a remote registry. Responses are written into a second direct buffer as they are decided and
+ * flushed with one write per read, so a caller that sends many requests at once gets its responses in few
+ * packets. Responses are sent in the order the requests are decided, not the order they arrived.<br><br>
+ * The response buffer holds one frame for every request a connection may have in flight, at most
+ * {@code decision-engine.binary.max-in-flight}. A connection that reaches that limit, or whose caller does not
+ * read its responses, is not read from until its responses have been written, so a caller is slowed down by
+ * TCP flow control instead of costing memory. A frame of another length closes the connection.<br><br>
+ * Disabled unless {@code decision-engine.binary.enabled} is set. The listener does not authenticate callers, so it
+ * binds to {@code decision-engine.binary.bind-address}, the loopback address unless configured otherwise.
+ * Publishes the open connections as {@code decision.binary.connections}.
+ */
+@Component
+public class BinaryDecisionServer {
+    private static final Logger log = LoggerFactory.getLogger(BinaryDecisionServer.class);
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_IN_FLIGHT = 1 << 20;
+
+    private final DecisionEngine decisionEngine;
+    private final int maxInFlight;
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] eventLoops;
+    private final Thread acceptor;
+    private final AtomicInteger connections = new AtomicInteger();
+
+    private volatile boolean closed;
+
+    /**
+     * @param enabled Whether to listen at all
+     * @param bindAddress The host name or address of the interface to listen on
+     * @param port The port to listen on
+     * @param ioThreads The number of event loops, or 0 for half of the available processors
+     * @param maxInFlight The most requests of one connection being decided or waiting to be written
+     */
+    @Autowired
+    public BinaryDecisionServer(DecisionEngine decisionEngine,
+                                @Value("${decision-engine.binary.enabled:false}") boolean enabled,
+                                @Value("${decision-engine.binary.bind-address:127.0.0.1}") String bindAddress,
+                                @Value("${decision-engine.binary.port:7070}") int port,
+                                @Value("${decision-engine.binary.io-threads:0}") int ioThreads,
+                                @Value("${decision-engine.binary.max-in-flight:1024}") int maxInFlight,
+                                MeterRegistry registry) throws IOException {
+        this(decisionEngine, enabled ? new InetSocketAddress(bindAddress, port) : null, ioThreads, maxInFlight);
+        if (isEnabled()) {
+            Gauge.builder("decision.binary.connections", connections, AtomicInteger::get)
+                    .description("Open connections of the binary decision listener")
+                    .register(registry);
+        }
+    }
+
+    BinaryDecisionServer(DecisionEngine decisionEngine, InetSocketAddress address, int ioThreads, int maxInFlight)
+            throws IOException {
+        if (address != null && (maxInFlight < 1 || maxInFlight > MAX_IN_FLIGHT || ioThreads < 0)) {
+            throw new IllegalArgumentException("Invalid binary listener: " + ioThreads + " I/O threads, "
+                    + maxInFlight + " requests in flight");
+        }
+        this.decisionEngine = decisionEngine;
+        this.maxInFlight = maxInFlight;
+        if (address == null) {
+            this.serverChannel = null;
+            this.eventLoops = new EventLoop[0];
+            this.acceptor = null;
+            return;
+        }
+        this.serverChannel = ServerSocketChannel.open().bind(address);
+        int threads = ioThreads > 0 ? ioThreads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        this.eventLoops = new EventLoop[threads];
+        for (int i = 0; i < threads; i++) {
+            eventLoops[i] = new EventLoop(Selector.open(), "binary-decision-io-" + i);
+        }
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.thread.start();
+        }
+        this.acceptor = new Thread(this::acceptLoop, "binary-decision-acceptor");
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+        log.info("Binary decision listener on {}", getAddress());
+    }
+
+    public boolean isEnabled() {
+        return serverChannel != null;
+    }
+
+    /**
+     * @return The address listened on, whose port is chosen by the system if 0 was configured
+     */
+    public InetSocketAddress getAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * @return The port listened on, which is chosen by the system if 0 was configured
+     */
+    public int getPort() throws IOException {
+        return getAddress().getPort();
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones. Decisions still being made are not sent.
+     */
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        if (serverChannel == null || closed) {
+            return;
+        }
+        closed = true;
+        serverChannel.close();
+        acceptor.join();
+        for (EventLoop eventLoop : eventLoops) {
+            eventLoop.selector.wakeup();
+            eventLoop.thread.join();
+        }
+    }
+
+    private void acceptLoop() {
+        int next = 0;
+        while (!closed) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                eventLoops[next].register(channel);
+                next = (next + 1) % eventLoops.length;
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("Binary decision connection could not be accepted", e);
+            }
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+        // Decisions completed on other threads, to be written by this one
+        private final Queue<Completion> completions = new ConcurrentLinkedQueue<>();
+        private final List<Connection> unflushed = new ArrayList<>();
+
+        EventLoop(Selector selector, String name) {
+            this.selector = selector;
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        void register(SocketChannel channel) {
+            accepted.add(channel);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    selector.select(this::handle);
+                    registerAccepted();
+                    writeCompletions();
+                }
+                for (SelectionKey key : selector.keys()) {
+                    ((Connection) key.attachment()).close();
+                }
+                selector.close();
+            } catch (IOException e) {
+                log.error("Binary decision event loop {} failed", thread.getName(), e);
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            Connection connection = (Connection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    connection.read();
+                } else if (key.isWritable()) {
+                    connection.process();
+                }
+            } catch (IOException | CancelledKeyException e) {
+                log.debug("Binary decision connection closed: {}", e.toString());
+                connection.close();
+            }
+        }
+
+        private void registerAccepted() {
+            SocketChannel channel;
+            while ((channel = accepted.poll()) != null) {
+                try {
+                    Connection connection = new Connection(channel);
+                    connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+                    connections.incrementAndGet();
+                } catch (IOException e) {
+                    log.debug("Binary decision connection closed: {}", e.toString());
+                    closeQuietly(channel);
+                }
+            }
+        }
+
+        private void writeCompletions() {
+            Completion completion;
+            while ((completion = completions.poll()) != null) {
+                Connection connection = completion.connection();
+                if (connection.closed) {
+                    continue;
+                }
+                connection.respond(completion.requestId(), completion.decision());
+                if (!connection.unflushed) {
+                    connection.unflushed = true;
+                    unflushed.add(connection);
+                }
+            }
+            for (Connection connection : unflushed) {
+                connection.unflushed = false;
+                try {
+                    connection.process();
+                } catch (IOException | CancelledKeyException e) {
+                    log.debug("Binary decision connection closed: {}", e.toString());
+                    connection.close();
+                }
+            }
+            unflushed.clear();
+        }
+
+        private final class Connection {
+            private final SocketChannel channel;
+            private final ByteBuffer in = ByteBuffer.allocateDirect(READ_BUFFER_BYTES);
+            private final ByteBuffer out = ByteBuffer.allocateDirect(maxInFlight * BinaryDecisionProtocol.FRAME_BYTES);
+            private SelectionKey key;
+            private long requests;
+            private long writtenBytes;
+            private boolean inputClosed;
+            private boolean unflushed;
+            private boolean closed;
+
+            Connection(SocketChannel channel) {
+                this.channel = channel;
+            }
+
+            void read() throws IOException {
+                if (channel.read(in) < 0) {
+                    // The caller sent all its requests; answer them before closing
+                    inputClosed = true;
+                }
+                process();
+            }
+
+            /**
+             * Decides the buffered requests while there is room for their responses and writes the responses,
+             * until no more requests can be decided.
+             */
+            void process() throws IOException {
+                do {
+                    decideBuffered();
+                    flush();
+                } while (!closed && inFlight() < maxInFlight && in.position() >= BinaryDecisionProtocol.FRAME_BYTES);
+            }
+
+            /**
+             * @return The requests read whose responses have not been written to the socket yet
+             */
+            private long inFlight() {
+                return requests - writtenBytes / BinaryDecisionProtocol.FRAME_BYTES;
+            }
+
+            private void decideBuffered() throws IOException {
+                in.flip();
+                try {
+                    while (in.remaining() >= BinaryDecisionProtocol.FRAME_BYTES && inFlight() < maxInFlight) {
+                        int length = in.getInt();
+                        if (length != BinaryDecisionProtocol.PAYLOAD_BYTES) {
+                            throw new IOException("Unexpected frame length " + length);
+                        }
+                        int requestId = in.getInt();
+                        long personalCode = in.getLong();
+                        int loanAmount = in.getInt();
+                        int loanPeriod = in.getInt();
+                        requests++;
+                        decide(requestId, personalCode, loanAmount, loanPeriod);
+                    }
+                } finally {
+                    in.compact();
+                }
+            }
+
+            private void decide(int requestId, long personalCode, int loanAmount, int loanPeriod) {
+                CompletableFuture<Decision> decision;
+                try {
+                    decision = decisionEngine.calculateApprovedLoanAsync(
+                            BinaryDecisionProtocol.unpackPersonalCode(personalCode), (long) loanAmount, loanPeriod);
+                } catch (RuntimeException e) {
+                    respond(requestId, null);
+                    return;
+                }
+                if (decision.isDone() && !decision.isCompletedExceptionally()) {
+                    respond(requestId, decision.join());
+                } else {
+                    decision.whenComplete((decided, failure) -> {
+                        completions.add(new Completion(this, requestId, failure == null ? decided : null));
+                        selector.wakeup();
+                    });
+                }
+            }
+
+            /**
+             * @param decision The decision, or null if the request could not be decided
+             */
+            void respond(int requestId, Decision decision) {
+                if (decision instanceof Decision.Approved approved) {
+                    BinaryDecisionProtocol.putResponse(out, requestId, BinaryDecisionProtocol.APPROVED,
+                            approved.loanAmount(), approved.loanPeriod(), approved.policyVersion());
+                } else if (decision instanceof Decision.Rejected rejected) {
+                    BinaryDecisionProtocol.putResponse(out, requestId, reasonCode(rejected.reason()), 0, 0,
+                            rejected.policyVersion());
+                } else {
+                    BinaryDecisionProtocol.putResponse(out, requestId, reasonCode(RejectionReason.UNEXPECTED_ERROR),
+                            0, 0, BinaryDecisionProtocol.NO_POLICY_VERSION);
+                }
+            }
+
+            private void flush() throws IOException {
+                if (out.position() > 0) {
+                    out.flip();
+                    writtenBytes += channel.write(out);
+                    out.compact();
+                }
+                if (inputClosed && requests == writtenBytes / BinaryDecisionProtocol.FRAME_BYTES) {
+                    close();
+                    return;
+                }
+                int interest = (inputClosed || inFlight() >= maxInFlight ? 0 : SelectionKey.OP_READ)
+                        | (out.position() > 0 ? SelectionKey.OP_WRITE : 0);
+                if (key.interestOps() != interest) {
+                    key.interestOps(interest);
+                }
+            }
+
+            void close() {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                key.cancel();
+                closeQuietly(channel);
+                connections.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * @return The reason code of a rejection on the wire: one more than its position in {@link RejectionReason}
+     */
+    static int reasonCode(RejectionReason reason) {
+        return reason.ordinal() + 1;
+    }
+
+    private record Completion(EventLoop.Connection connection, int requestId, Decision decision) {
+    }
+
+    private static void closeQuietly(SocketChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Binary decision connection did not close cleanly: {}", e.toString());
+        }
+    }
+}
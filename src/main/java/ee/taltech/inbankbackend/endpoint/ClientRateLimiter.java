@@ -0,0 +1,67 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Limits each client to a steady request rate with a burst allowance, without locks.<br><br>
+ * Clients are hashed into a fixed table of token buckets. Each bucket is a single {@code long} holding the
+ * time at which it would be full again (the generic cell rate algorithm), so taking a token is one
+ * compare-and-set and a rejected request learns exactly when its next token is due. Buckets sit one cache line
+ * apart, so busy clients in neighbouring buckets do not slow each other down. The table never grows: clients
+ * whose keys hash to the same bucket share its tokens, which only makes their limit stricter, never looser.
+ */
+final class ClientRateLimiter {
+    // Longs per cache line; only every eighth slot of the table is used
+    private static final int STRIDE_SHIFT = 3;
+
+    private final AtomicLongArray fullAt;
+    private final int mask;
+    private final long emissionNanos;
+    private final long burstNanos;
+    private final long origin = System.nanoTime();
+
+    /**
+     * @param ratePerSecond The steady number of requests each client may make per second
+     * @param burst The number of requests a client that has been idle may make at once
+     * @param buckets The number of buckets, rounded up to a power of two
+     */
+    ClientRateLimiter(double ratePerSecond, int burst, int buckets) {
+        if (!(ratePerSecond > 0) || burst < 1 || buckets < 1 || buckets > 1 << 24) {
+            throw new IllegalArgumentException("Invalid client rate limit: " + ratePerSecond + "/s, burst " + burst
+                    + ", " + buckets + " buckets");
+        }
+        int size = Integer.highestOneBit(Math.max(1, buckets - 1)) << 1;
+        this.fullAt = new AtomicLongArray(size << STRIDE_SHIFT);
+        this.mask = size - 1;
+        this.emissionNanos = Math.max(1, (long) (1e9 / ratePerSecond));
+        this.burstNanos = emissionNanos * (burst - 1);
+    }
+
+    /**
+     * Takes a token from the client's bucket if it has one.
+     *
+     * @param client The client's API key or address
+     * @param nowNanos The current {@link System#nanoTime()}
+     * @return 0 if the request is admitted, otherwise the nanoseconds until the client's next token is due
+     */
+    long tryAcquire(String client, long nowNanos) {
+        int index = bucket(client) << STRIDE_SHIFT;
+        // Relative to construction, so that an unused bucket's 0 always lies in the past
+        long now = nowNanos - origin;
+        while (true) {
+            long full = fullAt.get(index);
+            long admitFrom = full - burstNanos;
+            if (now < admitFrom) {
+                return admitFrom - now;
+            }
+            if (fullAt.compareAndSet(index, full, Math.max(full, now) + emissionNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    private int bucket(String client) {
+        int hash = client.hashCode() * 0x9E3779B9;
+        return (hash ^ hash >>> 16) & mask;
+    }
+}
@@ -1,33 +1,58 @@
 package ee.taltech.inbankbackend.endpoint;
 
-import ee.taltech.inbankbackend.exceptions.InvalidAgeException;
-import ee.taltech.inbankbackend.exceptions.InvalidLoanAmountException;
-import ee.taltech.inbankbackend.exceptions.InvalidLoanPeriodException;
-import ee.taltech.inbankbackend.exceptions.InvalidPersonalCodeException;
-import ee.taltech.inbankbackend.exceptions.NoValidLoanException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import ee.taltech.inbankbackend.service.Decision;
+import ee.taltech.inbankbackend.service.BatchDecisionService;
 import ee.taltech.inbankbackend.service.DecisionEngine;
+import ee.taltech.inbankbackend.service.OfferCurve;
+import ee.taltech.inbankbackend.service.RejectionReason;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
+@Profile("!reactive")
 @RequestMapping("/loan")
 @CrossOrigin
 public class DecisionEngineController {
 
     private final DecisionEngine decisionEngine;
-    private final DecisionResponse response;
+    private final BatchDecisionService batchDecisionService;
+    private final NdjsonDecisionStreamer decisionStreamer;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader requestReader;
 
     @Autowired
-    DecisionEngineController(DecisionEngine decisionEngine, DecisionResponse response) {
+    DecisionEngineController(DecisionEngine decisionEngine, BatchDecisionService batchDecisionService,
+                             NdjsonDecisionStreamer decisionStreamer, ObjectMapper objectMapper) {
         this.decisionEngine = decisionEngine;
-        this.response = response;
+        this.batchDecisionService = batchDecisionService;
+        this.decisionStreamer = decisionStreamer;
+        this.objectMapper = objectMapper;
+        this.requestReader = objectMapper.readerFor(DecisionRequest.class);
     }
 
     /**
@@ -37,7 +62,10 @@ public class DecisionEngineController {
      * - If the loan amount or period is invalid, the endpoint returns a bad request response with an error message.<br>
      * - If the personal ID code is invalid, the endpoint returns a bad request response with an error message.<br>
      * - If an unexpected error occurs, the endpoint returns an internal server error response with an error message.<br>
-     * - If no valid loans can be found, the endpoint returns a not found response with an error message.<br>
+     * - If the customer is too young or too old, is in debt, or no valid loans can be found, the endpoint returns a
+     * bad request response with an error message.<br>
+     * - If the decision cannot be recorded in the audit log, the endpoint returns a service unavailable response
+     * with an error message.<br>
      * - If a valid loan is found, a DecisionResponse is returned containing the approved loan amount and period.
      *
      * @param request The request body containing the customer's personal ID code, requested loan amount, and loan period
@@ -47,33 +75,153 @@ public class DecisionEngineController {
     public ResponseEntity<DecisionResponse> requestDecision(@RequestBody DecisionRequest request) {
         try {
             Decision decision = decisionEngine.calculateApprovedLoan(request.getPersonalCode(), request.getLoanAmount(), request.getLoanPeriod());
-            response.setLoanAmount(decision.getLoanAmount());
-            response.setLoanPeriod(decision.getLoanPeriod());
-            response.setErrorMessage(decision.getErrorMessage());
+            return ResponseEntity.status(DecisionResponse.statusFor(decision)).body(DecisionResponse.of(decision));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(DecisionResponse.rejected(RejectionReason.UNEXPECTED_ERROR));
+        }
+    }
 
-            return ResponseEntity.ok(response);
-        } catch (InvalidPersonalCodeException | InvalidLoanAmountException | InvalidLoanPeriodException e) {
-            return buildErrorResponse(HttpStatus.BAD_REQUEST, e.getMessage());
-        } catch (NoValidLoanException e) {
-            return buildErrorResponse(HttpStatus.BAD_REQUEST, e.getMessage());
-        } catch (InvalidAgeException e) {
-        return buildErrorResponse(HttpStatus.BAD_REQUEST, e.getMessage());
-    }catch (Exception e) {
-            return buildErrorResponse(HttpStatus.INTERNAL_SERVER_ERROR, "An unexpected error occurred");
+    /**
+     * A REST endpoint that handles requests for loan decisions like /decision, but releases the request thread
+     * while the credit modifier is looked up in a remote credit registry and completes the response when the
+     * registry answers. Responses are the same as those of /decision.
+     *
+     * @param request The request body containing the customer's personal ID code, requested loan amount, and loan period
+     * @return A future of the ResponseEntity that /decision would return
+     */
+    @PostMapping("/decision/async")
+    public CompletableFuture<ResponseEntity<DecisionResponse>> requestDecisionAsync(@RequestBody DecisionRequest request) {
+        CompletableFuture<Decision> decision;
+        try {
+            decision = decisionEngine.calculateApprovedLoanAsync(request.getPersonalCode(), request.getLoanAmount(),
+                    request.getLoanPeriod());
+        } catch (Exception e) {
+            decision = CompletableFuture.failedFuture(e);
+        }
+        return decision.handle((result, failure) -> failure == null
+                ? ResponseEntity.status(DecisionResponse.statusFor(result)).body(DecisionResponse.of(result))
+                : ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                        .body(DecisionResponse.rejected(RejectionReason.UNEXPECTED_ERROR)));
+    }
+
+    /**
+     * A REST endpoint that returns every loan a customer can be approved for, so the amount and period sliders
+     * of the frontend need one call instead of one decision per slider position. The credit modifier is looked
+     * up once for the whole curve.<br><br>
+     * - If the customer cannot be offered any loan, the endpoint returns a bad request response with an error message.<br>
+     * - Otherwise an OfferCurveResponse is returned with the largest approvable amount for each period.<br><br>
+     * The response carries an ETag of the offers. A request whose If-None-Match matches it is answered with
+     * not modified and no body.
+     *
+     * @param personalCode The customer's personal ID code
+     * @param webRequest The request, to check the If-None-Match header against
+     * @return A ResponseEntity with an OfferCurveResponse body, or null if the client's copy is current
+     */
+    @GetMapping("/offers/{personalCode}")
+    public ResponseEntity<OfferCurveResponse> requestOffers(@PathVariable String personalCode, WebRequest webRequest) {
+        OfferCurve curve;
+        try {
+            curve = decisionEngine.calculateOfferCurve(personalCode);
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(OfferCurveResponse.rejected(RejectionReason.UNEXPECTED_ERROR));
+        }
+        if (curve.getRejection() != null) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(OfferCurveResponse.of(curve));
+        }
+
+        String eTag = OfferCurveResponse.eTag(curve);
+        if (webRequest.checkNotModified(eTag)) {
+            return null;
+        }
+        return ResponseEntity.ok()
+                .eTag(eTag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(OfferCurveResponse.of(curve));
+    }
+
+    /**
+     * A REST endpoint that handles loan decisions for a batch of customers in one request.
+     * The applications are evaluated in parallel and each one gets its own result, so an invalid or failing
+     * application only affects its own entry.<br><br>
+     * - If the body is not a JSON array, the endpoint returns a bad request response.<br>
+     * - An entry that is valid JSON but not an application, such as one with a non-numeric amount, gets a
+     * malformed request response of its own, and the rest of the batch is decided as usual.<br>
+     * - If the batch is larger than the configured maximum, the endpoint returns a payload too large response as
+     * soon as the first application past the maximum is reached, without reading the rest of the body.<br>
+     * - Otherwise a list of DecisionResponses is returned, in the same order as the requests.
+     *
+     * @param requestBody The request body containing a JSON array of the applications to decide
+     * @return A ResponseEntity with one DecisionResponse per request
+     * @throws IOException If reading the request fails
+     */
+    @PostMapping(value = "/decisions", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<DecisionResponse>> requestDecisions(InputStream requestBody) throws IOException {
+        int maxBatchSize = batchDecisionService.getMaxBatchSize();
+        // One entry per element, null where the element could not be bound to a request
+        List<DecisionRequest> elements = new ArrayList<>();
+        List<DecisionRequest> requests = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(requestBody)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return ResponseEntity.badRequest().build();
+            }
+            for (JsonToken token = parser.nextToken(); token != JsonToken.END_ARRAY; token = parser.nextToken()) {
+                if (token == null) {
+                    return ResponseEntity.badRequest().build();
+                }
+                if (elements.size() == maxBatchSize) {
+                    return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+                }
+                JsonNode element = objectMapper.readTree(parser);
+                DecisionRequest request = bind(element);
+                elements.add(request);
+                if (request != null) {
+                    requests.add(request);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        List<Decision> decisions = batchDecisionService.calculateApprovedLoans(requests);
+        List<DecisionResponse> responses = new ArrayList<>(elements.size());
+        int decided = 0;
+        for (DecisionRequest request : elements) {
+            responses.add(request != null
+                    ? DecisionResponse.of(decisions.get(decided++))
+                    : NdjsonDecisionStreamer.MALFORMED_REQUEST);
+        }
+        return ResponseEntity.ok(responses);
+    }
+
+    /**
+     * @return The request the element holds, or null if it is not an application
+     */
+    private DecisionRequest bind(JsonNode element) {
+        if (!element.isObject()) {
+            return null;
+        }
+        try {
+            return requestReader.readValue(element);
+        } catch (IOException | IllegalArgumentException e) {
+            return null;
         }
     }
 
     /**
-     * Helper method to create a consistent error response.
+     * A REST endpoint that decides a newline-delimited JSON stream of applications of any size.
+     * Each request line has the same fields as the /decision request body, and one response line with the
+     * same fields as the /decision response body is streamed back per request line as soon as it is decided.
+     * Malformed lines are answered with an error line and do not end the stream.
      *
-     * @param status The HTTP status to return
-     * @param errorMessage The error message to include in the response
-     * @return ResponseEntity with the error response
+     * @param requestBody The NDJSON request stream
+     * @param response The servlet response to stream the NDJSON decisions to
+     * @throws IOException If reading the request or writing the response fails
      */
-    private ResponseEntity<DecisionResponse> buildErrorResponse(HttpStatus status, String errorMessage) {
-        response.setLoanAmount(null);
-        response.setLoanPeriod(null);
-        response.setErrorMessage(errorMessage);
-        return ResponseEntity.status(status).body(response);
+    @PostMapping(value = "/decisions/stream", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamDecisions(InputStream requestBody, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        decisionStreamer.stream(requestBody, response.getOutputStream());
     }
 }
@@ -0,0 +1,375 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import ee.taltech.inbankbackend.service.DecisionPolicy;
+import ee.taltech.inbankbackend.service.RejectionReason;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Reads {@link DecisionRequest}s and writes {@link DecisionResponse}s as JSON by hand, byte for byte as Jackson
+ * does, without reflection and without building a token stream.<br><br>
+ * Requests are parsed straight from the request bytes. Only the shape clients actually send is parsed here: one
+ * object holding {@code personalCode} as a plain ASCII string or null, and {@code loanAmount} and
+ * {@code loanPeriod} as integers, each at most once and in any order. For anything else, such as escapes, unknown
+ * or repeated properties, numbers written as strings or malformed JSON, {@link #readRequest} returns null and the
+ * caller hands the bytes to Jackson, which accepts or rejects them exactly as it always has.<br><br>
+ * Responses are encoded straight into a byte array of their exact length. Encoded responses are kept in two small
+ * direct-mapped tables, one for errors, which starts out holding every rejection, and one for approvals, which
+ * holds the approvals returned most recently, so that a repeated response is written without being encoded
+ * again. Returned arrays are shared and must not be modified.
+ */
+final class DecisionJsonCodec {
+    private static final int ERROR_SLOTS = 64;
+    private static final int APPROVAL_SLOTS = 1024;
+    private static final int MAX_LONG_DIGITS = 18;
+    private static final int MAX_INT_DIGITS = 9;
+
+    private static final byte[] PERSONAL_CODE = ascii("personalCode");
+    private static final byte[] LOAN_AMOUNT = ascii("loanAmount");
+    private static final byte[] LOAN_PERIOD = ascii("loanPeriod");
+    private static final byte[] NULL = ascii("null");
+
+    private static final byte[] LOAN_AMOUNT_FIELD = ascii("{\"loanAmount\":");
+    private static final byte[] LOAN_PERIOD_FIELD = ascii(",\"loanPeriod\":");
+    private static final byte[] ERROR_MESSAGE_FIELD = ascii(",\"errorMessage\":");
+    private static final byte[] POLICY_VERSION_FIELD = ascii(",\"policyVersion\":");
+    private static final byte[] HEX = ascii("0123456789ABCDEF");
+
+    // Entries are immutable, so they can be replaced without locking; a lost race only costs an encoding
+    private static final Encoded[] errors = new Encoded[ERROR_SLOTS];
+    private static final Encoded[] approvals = new Encoded[APPROVAL_SLOTS];
+
+    static {
+        for (RejectionReason reason : RejectionReason.values()) {
+            writeResponse(DecisionResponse.rejected(reason));
+            writeResponse(new DecisionResponse(null, null, reason.getMessage(), DecisionPolicy.INITIAL_VERSION));
+        }
+        writeResponse(NdjsonDecisionStreamer.MALFORMED_REQUEST);
+    }
+
+    private DecisionJsonCodec() {
+    }
+
+    /**
+     * Parses a request in the shape clients send.
+     *
+     * @param json The buffer holding the request
+     * @param from The index of the first byte of the request
+     * @param to The index after the last byte of the request
+     * @return The request, or null if it is not in the shape this codec reads
+     */
+    static DecisionRequest readRequest(byte[] json, int from, int to) {
+        return new RequestParser(json, to).parse(from);
+    }
+
+    /**
+     * @return The response as JSON, in an array that must not be modified
+     */
+    static byte[] writeResponse(DecisionResponse response) {
+        Integer loanAmount = response.getLoanAmount();
+        Integer loanPeriod = response.getLoanPeriod();
+        String errorMessage = response.getErrorMessage();
+        Integer policyVersion = response.getPolicyVersion();
+
+        Encoded[] table = errorMessage != null ? errors : approvals;
+        int hash = ((Objects.hashCode(loanAmount) * 31 + Objects.hashCode(loanPeriod)) * 31
+                + Objects.hashCode(errorMessage)) * 31 + Objects.hashCode(policyVersion);
+        int slot = (hash * 0x9E3779B9 >>> 16) & (table.length - 1);
+        Encoded cached = table[slot];
+        if (cached != null && cached.matches(loanAmount, loanPeriod, errorMessage, policyVersion)) {
+            return cached.json;
+        }
+        byte[] json = encode(loanAmount, loanPeriod, errorMessage, policyVersion);
+        table[slot] = new Encoded(loanAmount, loanPeriod, errorMessage, policyVersion, json);
+        return json;
+    }
+
+    private static byte[] encode(Integer loanAmount, Integer loanPeriod, String errorMessage, Integer policyVersion) {
+        byte[] message = errorMessage == null ? NULL : quote(errorMessage);
+        byte[] json = new byte[LOAN_AMOUNT_FIELD.length + length(loanAmount) + LOAN_PERIOD_FIELD.length
+                + length(loanPeriod) + ERROR_MESSAGE_FIELD.length + message.length + POLICY_VERSION_FIELD.length
+                + length(policyVersion) + 1];
+        int pos = put(json, 0, LOAN_AMOUNT_FIELD);
+        pos = put(json, pos, loanAmount);
+        pos = put(json, pos, LOAN_PERIOD_FIELD);
+        pos = put(json, pos, loanPeriod);
+        pos = put(json, pos, ERROR_MESSAGE_FIELD);
+        pos = put(json, pos, message);
+        pos = put(json, pos, POLICY_VERSION_FIELD);
+        pos = put(json, pos, policyVersion);
+        json[pos] = '}';
+        return json;
+    }
+
+    /**
+     * Quotes a string the way Jackson does by default: quotes, backslashes, control characters and the halves of
+     * surrogate pairs are escaped, with the short escapes where JSON has them, and everything else is written as
+     * UTF-8.
+     */
+    private static byte[] quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\b' -> quoted.append("\\b");
+                case '\t' -> quoted.append("\\t");
+                case '\n' -> quoted.append("\\n");
+                case '\f' -> quoted.append("\\f");
+                case '\r' -> quoted.append("\\r");
+                default -> {
+                    if (c < 0x20 || Character.isSurrogate(c)) {
+                        quoted.append("\\u").append((char) HEX[c >> 12]).append((char) HEX[c >> 8 & 0xF])
+                                .append((char) HEX[c >> 4 & 0xF]).append((char) HEX[c & 0xF]);
+                    } else {
+                        quoted.append(c);
+                    }
+                }
+            }
+        }
+        return quoted.append('"').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(Integer value) {
+        if (value == null) {
+            return NULL.length;
+        }
+        long v = value;
+        int length = v < 0 ? 2 : 1;
+        for (v = Math.abs(v); v >= 10; v /= 10) {
+            length++;
+        }
+        return length;
+    }
+
+    private static int put(byte[] json, int pos, Integer value) {
+        if (value == null) {
+            return put(json, pos, NULL);
+        }
+        int end = pos + length(value);
+        long v = value;
+        if (v < 0) {
+            json[pos] = '-';
+            v = -v;
+        }
+        int i = end;
+        do {
+            json[--i] = (byte) ('0' + v % 10);
+            v /= 10;
+        } while (v > 0);
+        return end;
+    }
+
+    private static int put(byte[] json, int pos, byte[] bytes) {
+        System.arraycopy(bytes, 0, json, pos, bytes.length);
+        return pos + bytes.length;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private record Encoded(Integer loanAmount, Integer loanPeriod, String errorMessage, Integer policyVersion,
+                           byte[] json) {
+
+        boolean matches(Integer loanAmount, Integer loanPeriod, String errorMessage, Integer policyVersion) {
+            return Objects.equals(this.loanAmount, loanAmount) && Objects.equals(this.loanPeriod, loanPeriod)
+                    && Objects.equals(this.policyVersion, policyVersion)
+                    && Objects.equals(this.errorMessage, errorMessage);
+        }
+    }
+
+    /**
+     * Parses one request; every method returns the position after what it read, or -1 if the request is not in
+     * the shape this codec reads.
+     */
+    private static final class RequestParser {
+        private final byte[] json;
+        private final int end;
+
+        private String personalCode;
+        private Long loanAmount;
+        private int loanPeriod;
+        private int seen;
+
+        RequestParser(byte[] json, int end) {
+            this.json = json;
+            this.end = end;
+        }
+
+        DecisionRequest parse(int from) {
+            int pos = skipWhitespace(from);
+            if (pos == end || json[pos] != '{') {
+                return null;
+            }
+            pos = skipWhitespace(pos + 1);
+            if (pos < end && json[pos] == '}') {
+                pos++;
+            } else {
+                pos = properties(pos);
+            }
+            if (pos < 0 || skipWhitespace(pos) != end) {
+                return null;
+            }
+            return new DecisionRequest(personalCode, loanAmount, loanPeriod);
+        }
+
+        /**
+         * Reads properties up to and including the closing brace.
+         */
+        private int properties(int pos) {
+            while (true) {
+                if (pos == end || json[pos] != '"') {
+                    return -1;
+                }
+                int nameStart = pos + 1;
+                int nameEnd = nameStart;
+                while (nameEnd < end && json[nameEnd] != '"' && json[nameEnd] != '\\') {
+                    nameEnd++;
+                }
+                if (nameEnd == end || json[nameEnd] == '\\') {
+                    return -1;
+                }
+                pos = skipWhitespace(nameEnd + 1);
+                if (pos == end || json[pos] != ':') {
+                    return -1;
+                }
+                pos = skipWhitespace(pos + 1);
+                if (pos == end) {
+                    return -1;
+                }
+
+                int property;
+                if (equals(nameStart, nameEnd, PERSONAL_CODE)) {
+                    property = 1;
+                    pos = personalCode(pos);
+                } else if (equals(nameStart, nameEnd, LOAN_AMOUNT)) {
+                    property = 2;
+                    pos = loanAmount(pos);
+                } else if (equals(nameStart, nameEnd, LOAN_PERIOD)) {
+                    property = 4;
+                    pos = loanPeriod(pos);
+                } else {
+                    return -1;
+                }
+                if (pos < 0 || (seen & property) != 0) {
+                    return -1;
+                }
+                seen |= property;
+
+                pos = skipWhitespace(pos);
+                if (pos == end) {
+                    return -1;
+                }
+                if (json[pos] == '}') {
+                    return pos + 1;
+                }
+                if (json[pos] != ',') {
+                    return -1;
+                }
+                pos = skipWhitespace(pos + 1);
+            }
+        }
+
+        private int personalCode(int pos) {
+            if (isNull(pos)) {
+                personalCode = null;
+                return pos + NULL.length;
+            }
+            if (json[pos] != '"') {
+                return -1;
+            }
+            int start = pos + 1;
+            int i = start;
+            while (i < end && json[i] != '"') {
+                byte b = json[i];
+                // Escapes, control characters and anything beyond ASCII are left to Jackson
+                if (b == '\\' || b < 0x20) {
+                    return -1;
+                }
+                i++;
+            }
+            if (i == end) {
+                return -1;
+            }
+            personalCode = new String(json, start, i - start, StandardCharsets.ISO_8859_1);
+            return i + 1;
+        }
+
+        private int loanAmount(int pos) {
+            if (isNull(pos)) {
+                loanAmount = null;
+                return pos + NULL.length;
+            }
+            int numberEnd = integerEnd(pos, MAX_LONG_DIGITS);
+            if (numberEnd < 0) {
+                return -1;
+            }
+            loanAmount = parseLong(pos, numberEnd);
+            return numberEnd;
+        }
+
+        private int loanPeriod(int pos) {
+            int numberEnd = integerEnd(pos, MAX_INT_DIGITS);
+            if (numberEnd < 0) {
+                return -1;
+            }
+            loanPeriod = (int) parseLong(pos, numberEnd);
+            return numberEnd;
+        }
+
+        /**
+         * @return The end of a JSON integer of at most the given number of digits, or -1 if there is none, or if
+         *         it is a fraction or has an exponent
+         */
+        private int integerEnd(int pos, int maxDigits) {
+            int i = pos < end && json[pos] == '-' ? pos + 1 : pos;
+            int digitsStart = i;
+            while (i < end && json[i] >= '0' && json[i] <= '9') {
+                i++;
+            }
+            int digits = i - digitsStart;
+            if (digits == 0 || digits > maxDigits || (json[digitsStart] == '0' && digits > 1)) {
+                return -1;
+            }
+            if (i < end && (json[i] == '.' || json[i] == 'e' || json[i] == 'E')) {
+                return -1;
+            }
+            return i;
+        }
+
+        private long parseLong(int from, int to) {
+            boolean negative = json[from] == '-';
+            long value = 0;
+            for (int i = negative ? from + 1 : from; i < to; i++) {
+                value = value * 10 + (json[i] - '0');
+            }
+            return negative ? -value : value;
+        }
+
+        private boolean isNull(int pos) {
+            return equals(pos, Math.min(end, pos + NULL.length), NULL);
+        }
+
+        private boolean equals(int from, int to, byte[] expected) {
+            if (to - from != expected.length) {
+                return false;
+            }
+            for (int i = 0; i < expected.length; i++) {
+                if (json[from + i] != expected[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private int skipWhitespace(int pos) {
+            while (pos < end && (json[pos] == ' ' || json[pos] == '\t' || json[pos] == '\n' || json[pos] == '\r')) {
+                pos++;
+            }
+            return pos;
+        }
+    }
+}
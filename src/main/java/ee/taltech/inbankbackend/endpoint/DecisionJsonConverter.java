@@ -0,0 +1,76 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads the {@link DecisionRequest} body of /loan/decision and /loan/decision/async and writes their
+ * {@link DecisionResponse} with {@link DecisionJsonCodec} instead of Jackson databinding. It is registered ahead
+ * of Jackson's converter and only handles these two types; the list of responses returned by /loan/decisions
+ * is still written by Jackson.<br><br>
+ * The request body is read into one array of its declared length and parsed in place. A request the codec
+ * does not read is parsed by Jackson from the same array, so anything Jackson accepted before is still accepted,
+ * and anything it rejected is rejected as before.
+ */
+@Component
+@Profile("!reactive")
+public class DecisionJsonConverter extends AbstractHttpMessageConverter<Object> {
+    // Longer bodies of a declared length are read like bodies of unknown length
+    private static final int MAX_PREALLOCATED_BODY_BYTES = 8192;
+
+    private final ObjectReader requestReader;
+
+    public DecisionJsonConverter(ObjectMapper objectMapper) {
+        super(MediaType.APPLICATION_JSON, new MediaType("application", "*+json"));
+        this.requestReader = objectMapper.readerFor(DecisionRequest.class);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return clazz == DecisionRequest.class || clazz == DecisionResponse.class;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return clazz == DecisionRequest.class && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return clazz == DecisionResponse.class && canWrite(mediaType);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        long contentLength = inputMessage.getHeaders().getContentLength();
+        InputStream body = inputMessage.getBody();
+        byte[] json = contentLength >= 0 && contentLength <= MAX_PREALLOCATED_BODY_BYTES
+                ? body.readNBytes((int) contentLength)
+                : body.readAllBytes();
+
+        DecisionRequest request = DecisionJsonCodec.readRequest(json, 0, json.length);
+        if (request != null) {
+            return request;
+        }
+        try {
+            return requestReader.readValue(json);
+        } catch (IOException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object response, HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getBody().write(DecisionJsonCodec.writeResponse((DecisionResponse) response));
+    }
+}
@@ -1,5 +1,6 @@
 package ee.taltech.inbankbackend.endpoint;
 
+import ee.taltech.inbankbackend.interfaces.LoanApplication;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
@@ -8,7 +9,7 @@ import lombok.Getter;
  */
 @Getter
 @AllArgsConstructor
-public class DecisionRequest {
+public class DecisionRequest implements LoanApplication {
     private String personalCode;
     private Long loanAmount;
     private int loanPeriod;
@@ -1,17 +1,110 @@
 package ee.taltech.inbankbackend.endpoint;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import ee.taltech.inbankbackend.service.Decision;
+import ee.taltech.inbankbackend.service.DecisionPolicy;
+import ee.taltech.inbankbackend.service.RejectionReason;
 import lombok.Getter;
-import lombok.Setter;
-import org.springframework.stereotype.Component;
+import org.springframework.http.HttpStatus;
 
 /**
- * Holds the response data of the REST endpoint.
+ * Holds the response data of the REST endpoint, including the version of the decision policy the decision was
+ * made under, or null for a response no decision was made for.
+ * Responses are immutable, so the fixed error responses are built once per policy version and shared between
+ * requests.
  */
 @Getter
-@Setter
-@Component
 public class DecisionResponse {
-    private Integer loanAmount;
-    private Integer loanPeriod;
-    private String errorMessage;
+    private static final DecisionResponse[] REJECTIONS = rejections(null);
+
+    // The rejections of the latest policy decided under; replaced as a whole when the policy changes
+    private static volatile Rejections versionedRejections = new Rejections(DecisionPolicy.INITIAL_VERSION,
+            rejections(DecisionPolicy.INITIAL_VERSION));
+
+    private final Integer loanAmount;
+    private final Integer loanPeriod;
+    private final String errorMessage;
+    private final Integer policyVersion;
+
+    public DecisionResponse(Integer loanAmount, Integer loanPeriod, String errorMessage) {
+        this(loanAmount, loanPeriod, errorMessage, null);
+    }
+
+    @JsonCreator
+    public DecisionResponse(@JsonProperty("loanAmount") Integer loanAmount,
+                            @JsonProperty("loanPeriod") Integer loanPeriod,
+                            @JsonProperty("errorMessage") String errorMessage,
+                            @JsonProperty("policyVersion") Integer policyVersion) {
+        this.loanAmount = loanAmount;
+        this.loanPeriod = loanPeriod;
+        this.errorMessage = errorMessage;
+        this.policyVersion = policyVersion;
+    }
+
+    public static DecisionResponse of(Decision decision) {
+        if (decision instanceof Decision.Rejected rejected) {
+            return rejected(rejected);
+        }
+        Decision.Approved approved = (Decision.Approved) decision;
+        return new DecisionResponse(approved.loanAmount(), approved.loanPeriod(), null, approved.policyVersion());
+    }
+
+    public static DecisionResponse approved(int loanAmount, int loanPeriod) {
+        return new DecisionResponse(loanAmount, loanPeriod, null);
+    }
+
+    /**
+     * @return The shared response for a rejection no decision was made for, with no policy version
+     */
+    public static DecisionResponse rejected(RejectionReason reason) {
+        return REJECTIONS[reason.ordinal()];
+    }
+
+    private static DecisionResponse rejected(Decision.Rejected rejected) {
+        Rejections current = versionedRejections;
+        if (current.policyVersion != rejected.policyVersion()) {
+            // Only a decision made under another policy than the last one gets here, mostly once per new policy
+            current = new Rejections(rejected.policyVersion(), new DecisionResponse[RejectionReason.values().length]);
+            versionedRejections = current;
+        }
+        // The message depends on the policy, so each response is built from the first rejection that needs it.
+        // Responses are immutable, so one built twice by racing threads is harmless
+        DecisionResponse response = current.responses[rejected.reason().ordinal()];
+        if (response == null) {
+            response = new DecisionResponse(null, null, rejected.message(), rejected.policyVersion());
+            current.responses[rejected.reason().ordinal()] = response;
+        }
+        return response;
+    }
+
+    private static DecisionResponse[] rejections(Integer policyVersion) {
+        DecisionResponse[] responses = new DecisionResponse[RejectionReason.values().length];
+        for (RejectionReason reason : RejectionReason.values()) {
+            responses[reason.ordinal()] = new DecisionResponse(null, null, reason.getMessage(), policyVersion);
+        }
+        return responses;
+    }
+
+    private record Rejections(int policyVersion, DecisionResponse[] responses) {
+    }
+
+    /**
+     * Maps a decision to the HTTP status returned for it.
+     *
+     * @param decision The decision to return
+     * @return The HTTP status to return
+     */
+    static HttpStatus statusFor(Decision decision) {
+        if (!(decision instanceof Decision.Rejected rejected)) {
+            return HttpStatus.OK;
+        }
+        return switch (rejected.reason()) {
+            case INVALID_PERSONAL_CODE, UNDERAGE, OVERAGE, INVALID_LOAN_AMOUNT, INVALID_LOAN_PERIOD,
+                    DEBT, NO_VALID_LOAN -> HttpStatus.BAD_REQUEST;
+            case UNEXPECTED_ERROR -> HttpStatus.INTERNAL_SERVER_ERROR;
+            case TOO_MANY_REQUESTS -> HttpStatus.TOO_MANY_REQUESTS;
+            case AUDIT_UNAVAILABLE -> HttpStatus.SERVICE_UNAVAILABLE;
+        };
+    }
 }
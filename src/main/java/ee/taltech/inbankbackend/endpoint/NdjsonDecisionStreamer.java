@@ -0,0 +1,147 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import ee.taltech.inbankbackend.service.DecisionEngine;
+import ee.taltech.inbankbackend.service.RejectionReason;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Decides a newline-delimited JSON stream of {@link DecisionRequest}s and writes one {@link DecisionResponse}
+ * line per request as soon as it is decided.<br><br>
+ * Input is read through one fixed-size buffer and every line is decided before more input is read, so memory
+ * use does not depend on the size of the stream. Output is flushed whenever the buffer runs dry, and a client
+ * that reads slowly blocks those writes, which in turn stops the input from being read.
+ */
+@Component
+public class NdjsonDecisionStreamer {
+    /** Longest accepted request line in bytes; longer lines are answered as malformed. */
+    static final int MAX_LINE_LENGTH = 64 * 1024;
+
+    static final DecisionResponse MALFORMED_REQUEST = new DecisionResponse(null, null, "Malformed request!");
+
+    private final DecisionEngine decisionEngine;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader requestReader;
+    private final ObjectWriter responseWriter;
+
+    public NdjsonDecisionStreamer(DecisionEngine decisionEngine, ObjectMapper objectMapper) {
+        this.decisionEngine = decisionEngine;
+        this.objectMapper = objectMapper;
+        this.requestReader = objectMapper.readerFor(DecisionRequest.class);
+        this.responseWriter = objectMapper.writerFor(DecisionResponse.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    /**
+     * Decides every request line of the input and writes the responses to the output in the same order.
+     * Blank lines are skipped, and a line that cannot be parsed is answered with an error response.
+     *
+     * @param in The NDJSON request stream
+     * @param out The stream to write the NDJSON responses to, left open when done
+     * @return The number of responses written
+     * @throws IOException If reading the input or writing the output fails
+     */
+    public long stream(InputStream in, OutputStream out) throws IOException {
+        byte[] buffer = new byte[MAX_LINE_LENGTH];
+        int start = 0;
+        int end = 0;
+        boolean discardingLine = false;
+        long responses = 0;
+
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            while (true) {
+                int newline = indexOfNewline(buffer, start, end);
+                if (newline >= 0) {
+                    if (discardingLine) {
+                        write(generator, MALFORMED_REQUEST);
+                        responses++;
+                        discardingLine = false;
+                    } else if (decideLine(generator, buffer, start, newline)) {
+                        responses++;
+                    }
+                    start = newline + 1;
+                    continue;
+                }
+
+                if (start > 0) {
+                    System.arraycopy(buffer, start, buffer, 0, end - start);
+                    end -= start;
+                    start = 0;
+                }
+                if (end == buffer.length) {
+                    discardingLine = true;
+                    end = 0;
+                }
+                generator.flush();
+                int read = in.read(buffer, end, buffer.length - end);
+                if (read < 0) {
+                    break;
+                }
+                end += read;
+            }
+
+            if (discardingLine) {
+                write(generator, MALFORMED_REQUEST);
+                responses++;
+            } else if (decideLine(generator, buffer, start, end)) {
+                responses++;
+            }
+        }
+        return responses;
+    }
+
+    private boolean decideLine(JsonGenerator generator, byte[] buffer, int from, int to) throws IOException {
+        if (isBlank(buffer, from, to)) {
+            return false;
+        }
+
+        DecisionResponse response;
+        try {
+            DecisionRequest request = requestReader.readValue(buffer, from, to - from);
+            response = DecisionResponse.of(decisionEngine.calculateApprovedLoan(request.getPersonalCode(),
+                    request.getLoanAmount(), request.getLoanPeriod()));
+        } catch (IOException e) {
+            response = MALFORMED_REQUEST;
+        } catch (RuntimeException e) {
+            response = DecisionResponse.rejected(RejectionReason.UNEXPECTED_ERROR);
+        }
+        write(generator, response);
+        return true;
+    }
+
+    private void write(JsonGenerator generator, DecisionResponse response) throws IOException {
+        responseWriter.writeValue(generator, response);
+        generator.writeRaw('\n');
+    }
+
+    private static int indexOfNewline(byte[] buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isBlank(byte[] buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            byte b = buffer[i];
+            if (b != ' ' && b != '\t' && b != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
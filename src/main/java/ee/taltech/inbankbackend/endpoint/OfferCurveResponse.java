@@ -0,0 +1,53 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import ee.taltech.inbankbackend.service.OfferCurve;
+import ee.taltech.inbankbackend.service.RejectionReason;
+import lombok.Getter;
+
+/**
+ * Holds the response data of the offer curve endpoint: the largest approvable amount for each loan period from
+ * {@code startPeriod} on, or 0 where there is none, in one int array rather than one object per period, and the
+ * version of the decision policy the curve was calculated under, or null for a response no curve was
+ * calculated for.
+ */
+@Getter
+public class OfferCurveResponse {
+    private final Integer startPeriod;
+    private final int[] loanAmounts;
+    private final String errorMessage;
+    private final Integer policyVersion;
+
+    @JsonCreator
+    public OfferCurveResponse(@JsonProperty("startPeriod") Integer startPeriod,
+                              @JsonProperty("loanAmounts") int[] loanAmounts,
+                              @JsonProperty("errorMessage") String errorMessage,
+                              @JsonProperty("policyVersion") Integer policyVersion) {
+        this.startPeriod = startPeriod;
+        this.loanAmounts = loanAmounts;
+        this.errorMessage = errorMessage;
+        this.policyVersion = policyVersion;
+    }
+
+    public static OfferCurveResponse of(OfferCurve curve) {
+        if (curve.getRejection() != null) {
+            return new OfferCurveResponse(null, null, curve.getRejectionMessage(), curve.getPolicyVersion());
+        }
+        return new OfferCurveResponse(curve.getStartPeriod(), curve.getLoanAmounts(), null, curve.getPolicyVersion());
+    }
+
+    /**
+     * @return The response for a rejection no curve was calculated for, with no policy version
+     */
+    public static OfferCurveResponse rejected(RejectionReason reason) {
+        return new OfferCurveResponse(null, null, reason.getMessage(), null);
+    }
+
+    /**
+     * @return The strong entity tag of the curve, which only changes when the offers do
+     */
+    static String eTag(OfferCurve curve) {
+        return '"' + Long.toHexString(curve.fingerprint()) + '"';
+    }
+}
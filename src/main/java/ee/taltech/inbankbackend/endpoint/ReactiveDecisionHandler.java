@@ -0,0 +1,68 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import ee.taltech.inbankbackend.service.Decision;
+import ee.taltech.inbankbackend.service.DecisionEngine;
+import ee.taltech.inbankbackend.service.RejectionReason;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Handles /loan/decision in the reactive profile, with the same request and responses as
+ * {@link DecisionEngineController#requestDecision}.<br><br>
+ * Event-loop threads only read the request and write the response. Validation and the decision itself run on
+ * the parallel scheduler, and the credit modifier is looked up with
+ * {@link DecisionEngine#calculateApprovedLoanAsync}, so a remote credit registry holds no thread while it answers.
+ */
+@Component
+@Profile("reactive")
+public class ReactiveDecisionHandler {
+
+    private final DecisionEngine decisionEngine;
+    private final Scheduler decisionScheduler;
+
+    public ReactiveDecisionHandler(DecisionEngine decisionEngine) {
+        this(decisionEngine, Schedulers.parallel());
+    }
+
+    ReactiveDecisionHandler(DecisionEngine decisionEngine, Scheduler decisionScheduler) {
+        this.decisionEngine = decisionEngine;
+        this.decisionScheduler = decisionScheduler;
+    }
+
+    /**
+     * - If the request body is missing or malformed, the response is a bad request.<br>
+     * - If the decision fails unexpectedly, the response is an internal server error with an error message.<br>
+     * - Otherwise the response has the status and body that /loan/decision returns for the decision.
+     *
+     * @param request The request whose body holds the customer's personal ID code, requested loan amount, and loan period
+     * @return The response with a DecisionResponse body
+     */
+    public Mono<ServerResponse> requestDecision(ServerRequest request) {
+        return request.bodyToMono(DecisionRequest.class)
+                .switchIfEmpty(Mono.error(() -> new ServerWebInputException("Missing request body")))
+                .publishOn(decisionScheduler)
+                .flatMap(this::decide);
+    }
+
+    private Mono<ServerResponse> decide(DecisionRequest request) {
+        return Mono.fromFuture(() -> decisionEngine.calculateApprovedLoanAsync(request.getPersonalCode(),
+                        request.getLoanAmount(), request.getLoanPeriod()))
+                .flatMap(decision -> respond(DecisionResponse.statusFor(decision), DecisionResponse.of(decision)))
+                .onErrorResume(e -> respond(HttpStatus.INTERNAL_SERVER_ERROR,
+                        DecisionResponse.rejected(RejectionReason.UNEXPECTED_ERROR)));
+    }
+
+    private static Mono<ServerResponse> respond(HttpStatus status, DecisionResponse response) {
+        return ServerResponse.status(status)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(response);
+    }
+}
@@ -0,0 +1,48 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.cors.CorsConfiguration;
+import org.springframework.web.cors.reactive.CorsWebFilter;
+import org.springframework.web.cors.reactive.UrlBasedCorsConfigurationSource;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.RouterFunctions;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+/**
+ * Serves the loan decision endpoint through a functional WebFlux router when the {@code reactive} profile is
+ * active. The profile switches the application to a reactive web application and replaces
+ * {@link DecisionEngineController}, which only runs in the servlet deployment.
+ */
+@Configuration
+@Profile("reactive")
+public class ReactiveDecisionRoutes {
+
+    @Bean
+    public RouterFunction<ServerResponse> decisionRoutes(ReactiveDecisionHandler handler) {
+        return RouterFunctions.route()
+                .POST("/loan/decision", handler::requestDecision)
+                .build();
+    }
+
+    /**
+     * Allows cross-origin requests, as {@code @CrossOrigin} does for the servlet controller.
+     */
+    @Bean
+    public CorsWebFilter decisionCorsFilter() {
+        UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
+        source.registerCorsConfiguration("/loan/**", new CorsConfiguration().applyPermitDefaultValues());
+        return new CorsWebFilter(source);
+    }
+
+    /**
+     * Serves on Netty's event loops rather than Tomcat, which is on the classpath for the servlet deployment
+     * and would otherwise be preferred.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+}
@@ -0,0 +1,16 @@
+package ee.taltech.inbankbackend.exceptions;
+
+/**
+ * Thrown when the credit registry cannot answer: the call failed or timed out, too many calls were already
+ * running, or the circuit breaker is open. Unchecked, so it can complete a {@link java.util.concurrent.CompletableFuture}.
+ */
+public class CreditRegistryUnavailableException extends RuntimeException {
+
+    public CreditRegistryUnavailableException(String message) {
+        this(message, null);
+    }
+
+    public CreditRegistryUnavailableException(String message, Throwable cause) {
+        super(message, cause, false, false);
+    }
+}
@@ -0,0 +1,34 @@
+package ee.taltech.inbankbackend.interfaces;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A snapshot of customers' credit modifiers, keyed by the numeric value of their personal ID code.
+ * Implementations are immutable and safe to query from any thread.
+ */
+public interface CreditModifierSource {
+    /**
+     * @param key The numeric value of a personal ID code
+     * @param defaultModifier The modifier to return for unknown codes
+     * @return The credit modifier of the code, or the default if the code is unknown
+     */
+    int get(long key, int defaultModifier);
+
+    /**
+     * Looks up a credit modifier without blocking the calling thread. Sources held in memory answer at once.
+     *
+     * @param key The numeric value of a personal ID code
+     * @param defaultModifier The modifier to return for unknown codes
+     * @return The credit modifier of the code, or the default if the code is unknown
+     */
+    default CompletableFuture<Integer> getAsync(long key, int defaultModifier) {
+        return CompletableFuture.completedFuture(get(key, defaultModifier));
+    }
+
+    int size();
+
+    /**
+     * @return The heap size of the snapshot in bytes
+     */
+    long getFootprintBytes();
+}
@@ -0,0 +1,12 @@
+package ee.taltech.inbankbackend.interfaces;
+
+/**
+ * The inputs of a single loan decision, as submitted by a customer.
+ */
+public interface LoanApplication {
+    String getPersonalCode();
+
+    Long getLoanAmount();
+
+    int getLoanPeriod();
+}
@@ -0,0 +1,17 @@
+package ee.taltech.inbankbackend.interfaces;
+
+/**
+ * One step of the credit score calculation. A chain of modifiers is applied in order, each to the score left by
+ * the one before, starting from the base score {@code creditModifier * loanPeriod / (loanAmount * 10)}.
+ * Implementations are immutable and safe to call from any thread.
+ */
+public interface ScoreModifier {
+    /**
+     * @param score The score after the previous modifiers in the chain
+     * @param creditModifier The customer's credit modifier
+     * @param loanAmount The loan amount being scored
+     * @param loanPeriod The loan period being scored
+     * @return The score after this modifier
+     */
+    double modify(double score, int creditModifier, int loanAmount, int loanPeriod);
+}
@@ -1,18 +1,42 @@
 package ee.taltech.inbankbackend.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import ee.taltech.inbankbackend.config.DecisionEngineConstants;
-import ee.taltech.inbankbackend.exceptions.InvalidAgeException;
-
 @Service
 public class AgeValidator {
-    public void validate(int age) throws InvalidAgeException {
-        if (age < DecisionEngineConstants.MINIMUM_AGE_PERIOD) {
-            throw new InvalidAgeException("Loan rejected: You must be at least 18 years old to apply.");
+    private final DecisionPolicyService policies;
+
+    public AgeValidator() {
+        this(ScoringRules.defaults());
+    }
+
+    public AgeValidator(ScoringRules scoringRules) {
+        this(new DecisionPolicyService(scoringRules));
+    }
+
+    @Autowired
+    public AgeValidator(DecisionPolicyService policies) {
+        this.policies = policies;
+    }
+
+    /**
+     * @return The rejection reason, or null if the customer's age is eligible under the current policy
+     */
+    public RejectionReason validate(int age) {
+        return validate(policies.current().getRules(), age);
+    }
+
+    /**
+     * @return The rejection reason, or null if the customer's age is eligible under the given rules
+     */
+    public RejectionReason validate(ScoringRules scoringRules, int age) {
+        if (age < scoringRules.getMinAge()) {
+            return RejectionReason.UNDERAGE;
         }
-        if (age > (DecisionEngineConstants.BALTIC_LIFETIME_PERIOD - (DecisionEngineConstants.MINIMUM_LOAN_PERIOD / 12))) {
-            throw new InvalidAgeException("Loan rejected: Your age exceeds the maximum eligible age.");
+        if (age > scoringRules.getMaxAge()) {
+            return RejectionReason.OVERAGE;
         }
+        return null;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.interfaces.LoanApplication;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Evaluates batches of loan applications in parallel through the {@link DecisionEngine}.
+ * Batches run on a dedicated pool with a fixed parallelism, so bulk scoring cannot take over the
+ * request threads that serve single decisions.
+ */
+@Service
+public class BatchDecisionService {
+    private final DecisionEngine decisionEngine;
+    private final ForkJoinPool pool;
+    private final int maxBatchSize;
+
+    /**
+     * @param parallelism The number of batch worker threads, or 0 for half of the available processors
+     * @param maxBatchSize The largest number of applications accepted in one batch
+     */
+    public BatchDecisionService(DecisionEngine decisionEngine,
+                                @Value("${decision-engine.batch.parallelism:0}") int parallelism,
+                                @Value("${decision-engine.batch.max-size:50000}") int maxBatchSize) {
+        this.decisionEngine = decisionEngine;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Calculates the decisions for a batch of applications. An application that fails unexpectedly is
+     * rejected with {@link RejectionReason#UNEXPECTED_ERROR} without affecting the rest of the batch.
+     *
+     * @param applications The applications to decide, at most {@link #getMaxBatchSize()} of them
+     * @return The decisions, in the same order as the applications
+     */
+    public List<Decision> calculateApprovedLoans(List<? extends LoanApplication> applications) {
+        if (applications.size() > maxBatchSize) {
+            throw new IllegalArgumentException("Batch of " + applications.size() + " exceeds the maximum of " + maxBatchSize);
+        }
+        Decision[] decisions = new Decision[applications.size()];
+        pool.submit(() -> IntStream.range(0, decisions.length).parallel()
+                .forEach(i -> decisions[i] = decide(applications.get(i))))
+                .join();
+        return Arrays.asList(decisions);
+    }
+
+    private Decision decide(LoanApplication application) {
+        try {
+            return decisionEngine.calculateApprovedLoan(application.getPersonalCode(), application.getLoanAmount(),
+                    application.getLoanPeriod());
+        } catch (RuntimeException e) {
+            return Decision.Rejected.of(RejectionReason.UNEXPECTED_ERROR);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,67 @@
+package ee.taltech.inbankbackend.service;
+
+/**
+ * Solves the loan amount and period searches of {@link LoanCalculator} analytically.
+ * A score of at least 0.1 means {@code creditModifier * period >= amount}, so the best amount
+ * for a period is {@code creditModifier * period} capped at the maximum loan amount, and the
+ * shortest workable period is the first one where that product reaches the minimum loan amount.
+ * Only valid for {@link ScoringRules} that {@link ScoringRules#usesBaseScore() use the base score}.
+ */
+final class ClosedFormLoanSolver {
+
+    private ClosedFormLoanSolver() {
+    }
+
+    /**
+     * Finds the largest loan amount that scores at least 0.1 for the given period.
+     *
+     * @param creditModifier The customer's credit modifier
+     * @param period The loan period in months
+     * @param rules The loan amount bounds
+     * @return The best possible amount, or null if not even the minimum amount is approvable
+     */
+    static Integer findBestPossibleAmount(int creditModifier, int period, ScoringRules rules) {
+        int maxPossible = creditModifier * period;
+        if (maxPossible < rules.getMinAmount()) {
+            return null;
+        }
+        return Math.min(maxPossible, rules.getMaxAmount());
+    }
+
+    /**
+     * Finds the largest approvable loan amount for every period from the minimum to the maximum loan period in one
+     * counted loop without branches or calls, which the JIT can unroll and vectorize.
+     *
+     * @param creditModifier The customer's credit modifier
+     * @param rules The loan amount and period bounds
+     * @return The best possible amount for each period from the minimum loan period on, or 0 where there is none
+     */
+    static int[] findBestPossibleAmounts(int creditModifier, ScoringRules rules) {
+        int minimumPeriod = rules.getMinPeriod();
+        int minimumAmount = rules.getMinAmount();
+        int maximumAmount = rules.getMaxAmount();
+        int[] amounts = new int[rules.getMaxPeriod() - minimumPeriod + 1];
+        for (int i = 0; i < amounts.length; i++) {
+            int maxPossible = creditModifier * (minimumPeriod + i);
+            amounts[i] = maxPossible < minimumAmount ? 0 : Math.min(maxPossible, maximumAmount);
+        }
+        return amounts;
+    }
+
+    /**
+     * Finds the shortest period, starting from the given one, for which the minimum loan amount is approvable.
+     *
+     * @param creditModifier The customer's credit modifier
+     * @param fromPeriod The first loan period to consider
+     * @param rules The loan amount and period bounds
+     * @return The shortest valid period, or null if no period up to the maximum qualifies
+     */
+    static Integer findShortestValidPeriod(int creditModifier, int fromPeriod, ScoringRules rules) {
+        if (creditModifier <= 0) {
+            return null;
+        }
+        int minimumPeriod = Math.floorDiv(rules.getMinAmount() + creditModifier - 1, creditModifier);
+        int period = Math.max(fromPeriod, minimumPeriod);
+        return period <= rules.getMaxPeriod() ? period : null;
+    }
+}
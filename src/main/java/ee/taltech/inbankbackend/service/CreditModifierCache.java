@@ -0,0 +1,189 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.interfaces.CreditModifierSource;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * A read-through cache in front of a slow {@link CreditModifierSource}, such as a remote credit registry.<br><br>
+ * Entries live in a {@link SetAssociativeTable}, so the cache never holds more than its capacity and a hit takes
+ * no lock and allocates nothing.<br><br>
+ * Customers in debt and unknown customers are cached too, for their own TTL. Concurrent misses for the same
+ * customer wait for a single upstream call, and failed upstream calls are not cached.
+ */
+public final class CreditModifierCache implements CreditModifierSource {
+    // Marks a customer the upstream source does not know, so unknown customers can be cached like any other
+    private static final int UNKNOWN = Integer.MIN_VALUE;
+    // Entries are not tagged: a customer's modifier stays valid until it expires
+    private static final long TAG = 0;
+    // Object header, seven references and two longs
+    private static final long OVERHEAD_BYTES = 16 + 7 * 8 + 2 * 8;
+    // A boxed modifier
+    private static final long VALUE_BYTES = 16;
+
+    private final CreditModifierSource upstream;
+    private final SetAssociativeTable<Integer> table;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final LongSupplier nanoTime;
+    private final ConcurrentHashMap<Long, CompletableFuture<Integer>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder upstreamCalls = new LongAdder();
+
+    /**
+     * @param upstream The source to read through to
+     * @param maxEntries The most customers to hold, rounded up to a power of two
+     * @param ttl How long a customer's modifier is served from the cache
+     * @param negativeTtl How long a customer in debt or an unknown customer is served from the cache
+     */
+    public CreditModifierCache(CreditModifierSource upstream, int maxEntries, Duration ttl, Duration negativeTtl) {
+        this(upstream, maxEntries, ttl, negativeTtl, System::nanoTime);
+    }
+
+    CreditModifierCache(CreditModifierSource upstream, int maxEntries, Duration ttl, Duration negativeTtl,
+                        LongSupplier nanoTime) {
+        if (!SetAssociativeTable.isValidSize(maxEntries)) {
+            throw new IllegalArgumentException("Invalid credit modifier cache size: " + maxEntries);
+        }
+        this.upstream = upstream;
+        this.table = new SetAssociativeTable<>(maxEntries);
+        this.ttlNanos = ttl.toNanos();
+        this.negativeTtlNanos = negativeTtl.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    @Override
+    public int get(long key, int defaultModifier) {
+        Integer cached = table.get(key, TAG, nanoTime.getAsLong());
+        if (cached != null) {
+            hits.increment();
+            return cached == UNKNOWN ? defaultModifier : cached;
+        }
+        misses.increment();
+        int modifier = load(key);
+        return modifier == UNKNOWN ? defaultModifier : modifier;
+    }
+
+    @Override
+    public CompletableFuture<Integer> getAsync(long key, int defaultModifier) {
+        Integer cached = table.peek(key, TAG, nanoTime.getAsLong());
+        if (cached != null) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached == UNKNOWN ? defaultModifier : cached);
+        }
+        misses.increment();
+        return loadAsync(key).thenApply(modifier -> modifier == UNKNOWN ? defaultModifier : modifier);
+    }
+
+    @Override
+    public int size() {
+        return table.size(nanoTime.getAsLong());
+    }
+
+    @Override
+    public long getFootprintBytes() {
+        return OVERHEAD_BYTES + table.getFootprintBytes(nanoTime.getAsLong(), VALUE_BYTES);
+    }
+
+    public int getCapacity() {
+        return table.getCapacity();
+    }
+
+    /**
+     * @return The counters of this cache since it was created
+     */
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), upstreamCalls.sum(), table.getEvictions());
+    }
+
+    /**
+     * @param hits Lookups answered from the cache
+     * @param misses Lookups that were not in the cache
+     * @param upstreamCalls Calls made to the upstream source, fewer than the misses when misses were coalesced
+     * @param evictions Live entries replaced to make room for another customer
+     */
+    public record Stats(long hits, long misses, long upstreamCalls, long evictions) {
+
+        Stats plus(Stats other) {
+            return new Stats(hits + other.hits, misses + other.misses, upstreamCalls + other.upstreamCalls,
+                    evictions + other.evictions);
+        }
+    }
+
+    private int load(long key) {
+        CompletableFuture<Integer> mine = new CompletableFuture<>();
+        CompletableFuture<Integer> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        try {
+            // Another lookup may have stored the customer between our miss and claiming the load
+            Integer stored = table.peek(key, TAG, nanoTime.getAsLong());
+            int modifier;
+            if (stored != null) {
+                modifier = stored;
+            } else {
+                upstreamCalls.increment();
+                modifier = upstream.get(key, UNKNOWN);
+                store(key, modifier);
+            }
+            mine.complete(modifier);
+            return modifier;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private CompletableFuture<Integer> loadAsync(long key) {
+        CompletableFuture<Integer> mine = new CompletableFuture<>();
+        CompletableFuture<Integer> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            return running;
+        }
+        Integer stored = table.peek(key, TAG, nanoTime.getAsLong());
+        if (stored != null) {
+            inFlight.remove(key, mine);
+            mine.complete(stored);
+            return mine;
+        }
+        upstreamCalls.increment();
+        CompletableFuture<Integer> call;
+        try {
+            call = upstream.getAsync(key, UNKNOWN);
+        } catch (RuntimeException e) {
+            call = CompletableFuture.failedFuture(e);
+        }
+        call.whenComplete((modifier, failure) -> {
+            if (failure == null) {
+                store(key, modifier);
+            }
+            inFlight.remove(key, mine);
+            if (failure == null) {
+                mine.complete(modifier);
+            } else {
+                mine.completeExceptionally(failure);
+            }
+        });
+        return mine;
+    }
+
+    private void store(long key, int modifier) {
+        long now = nanoTime.getAsLong();
+        long ttl = modifier == UNKNOWN || modifier == 0 ? negativeTtlNanos : ttlNanos;
+        table.put(key, TAG, modifier, now, now + ttl);
+    }
+}
@@ -0,0 +1,217 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.interfaces.CreditModifierSource;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * An immutable map from personal ID codes to credit modifiers, sized for millions of customers.<br><br>
+ * Codes are stored as the numeric value of their 11 digits in an open-addressing table of parallel
+ * {@code long} and {@code int} arrays, so an entry costs 12 bytes per slot and a lookup allocates nothing.
+ * The table is filled to at most {@value #MAX_LOAD_PERCENT}% and probed linearly.
+ */
+public final class CreditModifierIndex implements CreditModifierSource {
+    /** Returned by {@link #key} for a string that is not 11 ASCII digits. */
+    public static final long INVALID_KEY = -1;
+
+    private static final int MAX_LOAD_PERCENT = 75;
+    private static final long EMPTY = 0;
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    // Object header plus two array references and an int, and one array header per array
+    private static final long OVERHEAD_BYTES = 16 + 8 + 8 + 4 + 2 * 16;
+
+    private final long[] keys;
+    private final int[] values;
+    private final int size;
+
+    private CreditModifierIndex(long[] keys, int[] values, int size) {
+        this.keys = keys;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * Converts a personal ID code to the key it is stored under, without allocating.
+     *
+     * @param personalCode The personal ID code
+     * @return The numeric value of the code, or {@link #INVALID_KEY} if it is not 11 ASCII digits
+     */
+    public static long key(String personalCode) {
+        if (personalCode == null || personalCode.length() != 11) {
+            return INVALID_KEY;
+        }
+        long key = 0;
+        for (int i = 0; i < 11; i++) {
+            int digit = personalCode.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return INVALID_KEY;
+            }
+            key = key * 10 + digit;
+        }
+        return key;
+    }
+
+    @Override
+    public int get(long key, int defaultModifier) {
+        if (key <= EMPTY) {
+            return defaultModifier;
+        }
+        long[] keys = this.keys;
+        int slot = slot(key, keys.length);
+        while (true) {
+            long candidate = keys[slot];
+            if (candidate == key) {
+                return values[slot];
+            }
+            if (candidate == EMPTY) {
+                return defaultModifier;
+            }
+            if (++slot == keys.length) {
+                slot = 0;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getFootprintBytes() {
+        return OVERHEAD_BYTES + 12L * keys.length;
+    }
+
+    /**
+     * Reads an index from a file of {@code personalCode,creditModifier} lines. A header line and blank
+     * lines are skipped, and a code that appears more than once keeps its last modifier.
+     *
+     * @param file The file to read
+     * @return The index
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If a line is not a personal ID code and a non-negative modifier
+     */
+    public static CreditModifierIndex load(Path file) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * @return The codes in the index as keys, in ascending order
+     */
+    long[] sortedKeys() {
+        long[] sorted = new long[size];
+        int count = 0;
+        for (long key : keys) {
+            if (key != EMPTY) {
+                sorted[count++] = key;
+            }
+        }
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    static CreditModifierIndex read(InputStream in) throws IOException {
+        Builder builder = new Builder();
+        long line = 1;
+        int b = in.read();
+        if (b != -1 && (b < '0' || b > '9')) {
+            b = skipLine(in, b);
+            line++;
+        }
+        while (b != -1) {
+            if (b == '\n' || b == '\r') {
+                line += b == '\n' ? 1 : 0;
+                b = in.read();
+                continue;
+            }
+            long key = 0;
+            int digits = 0;
+            for (; b >= '0' && b <= '9'; b = in.read(), digits++) {
+                key = key * 10 + (b - '0');
+            }
+            if (digits != 11 || b != ',') {
+                throw new IllegalArgumentException("Invalid personal ID code on line " + line);
+            }
+            b = in.read();
+            long modifier = 0;
+            digits = 0;
+            for (; b >= '0' && b <= '9' && digits <= 10; b = in.read(), digits++) {
+                modifier = modifier * 10 + (b - '0');
+            }
+            if (digits == 0 || modifier > Integer.MAX_VALUE || (b != -1 && b != '\n' && b != '\r')) {
+                throw new IllegalArgumentException("Invalid credit modifier on line " + line);
+            }
+            builder.put(key, (int) modifier);
+        }
+        return builder.build();
+    }
+
+    private static int skipLine(InputStream in, int b) throws IOException {
+        while (b != -1 && b != '\n') {
+            b = in.read();
+        }
+        return b == -1 ? -1 : in.read();
+    }
+
+    private static int slot(long key, int capacity) {
+        long hash = (key * HASH_MULTIPLIER) >>> 32;
+        return (int) ((hash * capacity) >>> 32);
+    }
+
+    /**
+     * Collects entries in insertion order and lays them out into an index on {@link #build}.
+     */
+    public static final class Builder {
+        private long[] keys = new long[16];
+        private int[] values = new int[16];
+        private int count;
+
+        /**
+         * @param key The key of a personal ID code, see {@link #key}
+         * @param modifier The credit modifier of the code
+         * @return This builder
+         */
+        public Builder put(long key, int modifier) {
+            if (key <= EMPTY) {
+                throw new IllegalArgumentException("Invalid personal ID code key: " + key);
+            }
+            if (count == keys.length) {
+                keys = Arrays.copyOf(keys, count * 2);
+                values = Arrays.copyOf(values, count * 2);
+            }
+            keys[count] = key;
+            values[count] = modifier;
+            count++;
+            return this;
+        }
+
+        public CreditModifierIndex build() {
+            int capacity = (int) Math.max(16, (long) count * 100 / MAX_LOAD_PERCENT + 1);
+            long[] tableKeys = new long[capacity];
+            int[] tableValues = new int[capacity];
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                long key = keys[i];
+                int slot = slot(key, capacity);
+                while (tableKeys[slot] != EMPTY && tableKeys[slot] != key) {
+                    if (++slot == capacity) {
+                        slot = 0;
+                    }
+                }
+                if (tableKeys[slot] == EMPTY) {
+                    tableKeys[slot] = key;
+                    size++;
+                }
+                tableValues[slot] = values[i];
+            }
+            return new CreditModifierIndex(tableKeys, tableValues, size);
+        }
+    }
+}
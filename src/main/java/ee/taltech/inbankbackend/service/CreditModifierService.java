@@ -1,22 +1,252 @@
 package ee.taltech.inbankbackend.service;
 
 import ee.taltech.inbankbackend.config.DecisionEngineConstants;
+import ee.taltech.inbankbackend.exceptions.CreditRegistryUnavailableException;
+import ee.taltech.inbankbackend.interfaces.CreditModifierSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Looks up customers' credit modifiers in a {@link CreditModifierSource}.<br><br>
+ * The source is loaded at startup from the file given by {@code decision-engine.credit-modifiers.file}, or holds
+ * the four demo customers if no file is configured. A binary {@link CreditModifierSnapshot} file is memory-mapped
+ * and any other file is read as {@code personalCode,creditModifier} lines into a {@link CreditModifierIndex}.
+ * A new snapshot is published with {@link #swap} or {@link #reload}: lookups keep using the old source until the
+ * new one is complete, without locking. Unless {@code decision-engine.credit-modifiers.watch} is false, the file is
+ * watched and reloaded whenever it changes. A file that cannot be read at startup stops the application from
+ * starting; one that cannot be read later is logged and the current snapshot stays in use. A snapshot file is
+ * mapped rather than read, so it must be replaced by renaming a new file over it, never rewritten in place.<br><br>
+ * If {@code decision-engine.credit-registry.url} is set, modifiers come from the remote {@link CreditRegistryClient}
+ * instead of a file, and lookups fall back to its conservative modifier while the registry cannot answer.
+ * If {@code decision-engine.credit-modifiers.cache.max-entries} is set, every source is put behind a
+ * {@link CreditModifierCache}, which starts empty again on each swap. Its hits, misses, upstream calls and
+ * evictions, counted over every cache since startup, and its size are published as
+ * {@code decision.credit-modifiers.cache.*} metrics.
+ */
 @Service
 public class CreditModifierService {
+    private static final Logger log = LoggerFactory.getLogger(CreditModifierService.class);
+
+    private final boolean verifySnapshots;
+    private final int cacheMaxEntries;
+    private final Duration cacheTtl;
+    private final Duration cacheNegativeTtl;
+    private final int fallbackModifier;
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final FileWatcher watcher;
+    private volatile CreditModifierSource source;
+    // The counters of the caches replaced so far, so the published counters never go back on a swap
+    private volatile CreditModifierCache.Stats retiredCacheStats = new CreditModifierCache.Stats(0, 0, 0, 0);
+    private volatile int generation;
+
+    public CreditModifierService() {
+        this.verifySnapshots = false;
+        this.cacheMaxEntries = 0;
+        this.cacheTtl = Duration.ZERO;
+        this.cacheNegativeTtl = Duration.ZERO;
+        this.fallbackModifier = 0;
+        this.source = defaultIndex();
+        this.watcher = null;
+    }
+
+    CreditModifierService(String file, boolean verifySnapshots) throws IOException {
+        this(file, verifySnapshots, 0, Duration.ZERO, Duration.ZERO, null);
+    }
+
+    @Autowired
+    public CreditModifierService(@Value("${decision-engine.credit-modifiers.file:}") String file,
+                                 @Value("${decision-engine.credit-modifiers.verify-snapshot:false}") boolean verifySnapshots,
+                                 @Value("${decision-engine.credit-modifiers.cache.max-entries:0}") int cacheMaxEntries,
+                                 @Value("${decision-engine.credit-modifiers.cache.ttl:10m}") Duration cacheTtl,
+                                 @Value("${decision-engine.credit-modifiers.cache.negative-ttl:1m}") Duration cacheNegativeTtl,
+                                 @Value("${decision-engine.credit-modifiers.watch:true}") boolean watch,
+                                 @Nullable CreditRegistryClient registry,
+                                 MeterRegistry meterRegistry)
+            throws IOException {
+        this(file, verifySnapshots, cacheMaxEntries, cacheTtl, cacheNegativeTtl, watch, registry);
+        if (cacheMaxEntries > 0) {
+            registerCacheMetrics(meterRegistry);
+        }
+    }
+
+    CreditModifierService(String file, boolean verifySnapshots, int cacheMaxEntries, Duration cacheTtl,
+                          Duration cacheNegativeTtl, @Nullable CreditRegistryClient registry) throws IOException {
+        this(file, verifySnapshots, cacheMaxEntries, cacheTtl, cacheNegativeTtl, false, registry);
+    }
+
+    CreditModifierService(String file, boolean verifySnapshots, int cacheMaxEntries, Duration cacheTtl,
+                          Duration cacheNegativeTtl, boolean watch, @Nullable CreditRegistryClient registry)
+            throws IOException {
+        this.verifySnapshots = verifySnapshots;
+        this.cacheMaxEntries = cacheMaxEntries;
+        this.cacheTtl = cacheTtl;
+        this.cacheNegativeTtl = cacheNegativeTtl;
+        boolean remote = registry != null && registry.isEnabled();
+        this.fallbackModifier = remote ? registry.getFallbackModifier() : 0;
+        if (remote) {
+            swap(registry);
+            this.watcher = null;
+        } else if (file.isBlank()) {
+            swap(defaultIndex());
+            this.watcher = null;
+        } else {
+            Path path = Path.of(file).toAbsolutePath();
+            reload(path);
+            this.watcher = watch ? new FileWatcher(path, "credit-modifiers-watcher", () -> reloadChanged(path)) : null;
+        }
+    }
+
+    /**
+     * @param personalCode A valid personal ID code
+     * @return The customer's credit modifier, or 0 for unknown customers
+     */
     public int getCreditModifier(String personalCode) {
-        switch (personalCode) {
-            case "49002010965":
-                return 0;  // Debt, no loan approval
-            case "49002010976":
-                return DecisionEngineConstants.SEGMENT_1_CREDIT_MODIFIER;
-            case "49002010987":
-                return DecisionEngineConstants.SEGMENT_2_CREDIT_MODIFIER;
-            case "49002010998":
-                return DecisionEngineConstants.SEGMENT_3_CREDIT_MODIFIER;
-            default:
-                return 0;
+        try {
+            return source.get(CreditModifierIndex.key(personalCode), 0);
+        } catch (CreditRegistryUnavailableException e) {
+            fallbacks.incrementAndGet();
+            return fallbackModifier;
+        }
+    }
+
+    /**
+     * Looks up a credit modifier without blocking the calling thread while a remote registry answers.
+     *
+     * @param personalCode A valid personal ID code
+     * @return The customer's credit modifier, or 0 for unknown customers
+     */
+    public CompletableFuture<Integer> getCreditModifierAsync(String personalCode) {
+        return source.getAsync(CreditModifierIndex.key(personalCode), 0).exceptionally(failure -> {
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            if (cause instanceof CreditRegistryUnavailableException) {
+                fallbacks.incrementAndGet();
+                return fallbackModifier;
+            }
+            throw failure instanceof CompletionException completion ? completion : new CompletionException(cause);
+        });
+    }
+
+    /**
+     * Loads a new snapshot from a snapshot file or a file of {@code personalCode,creditModifier} lines and
+     * publishes it. If the file cannot be read, the current snapshot stays in use.
+     *
+     * @param file The snapshot file
+     * @throws IOException If the file cannot be read
+     */
+    public void reload(Path file) throws IOException {
+        long start = System.nanoTime();
+        CreditModifierSource loaded = CreditModifierSnapshot.isSnapshot(file)
+                ? CreditModifierSnapshot.open(file, verifySnapshots)
+                : CreditModifierIndex.load(file);
+        swap(loaded);
+        log.info("Credit modifiers loaded from {} in {} ms: {} customers, {} heap bytes",
+                file, (System.nanoTime() - start) / 1_000_000, loaded.size(), loaded.getFootprintBytes());
+    }
+
+    /**
+     * Publishes a new snapshot in one step, behind a new cache if caching is enabled.
+     *
+     * @param source The new snapshot
+     */
+    public synchronized void swap(CreditModifierSource source) {
+        if (this.source instanceof CreditModifierCache replaced) {
+            retiredCacheStats = retiredCacheStats.plus(replaced.getStats());
+        }
+        this.source = cacheMaxEntries > 0
+                ? new CreditModifierCache(source, cacheMaxEntries, cacheTtl, cacheNegativeTtl)
+                : source;
+        generation++;
+    }
+
+    /**
+     * @return The number of snapshots published, which changes whenever any customer's modifier may have changed
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return The number of lookups answered with the fallback modifier because the registry could not answer
+     */
+    public long getFallbackCount() {
+        return fallbacks.get();
+    }
+
+    /**
+     * @return The counters of every cache used since startup, which are all zero if caching is disabled
+     */
+    public CreditModifierCache.Stats getCacheStats() {
+        CreditModifierCache.Stats retired = retiredCacheStats;
+        return source instanceof CreditModifierCache cache ? retired.plus(cache.getStats()) : retired;
+    }
+
+    /**
+     * @return The snapshot currently in use, or its cache if caching is enabled
+     */
+    public CreditModifierSource getSource() {
+        return source;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    private void reloadChanged(Path file) {
+        try {
+            reload(file);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Credit modifiers in {} not reloaded, keeping snapshot {}", file, generation, e);
         }
     }
-}
\ No newline at end of file
+
+    private void registerCacheMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("decision.credit-modifiers.cache.requests", this,
+                        service -> service.getCacheStats().hits())
+                .description("Credit modifier cache lookups")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("decision.credit-modifiers.cache.requests", this,
+                        service -> service.getCacheStats().misses())
+                .description("Credit modifier cache lookups")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("decision.credit-modifiers.cache.upstream-calls", this,
+                        service -> service.getCacheStats().upstreamCalls())
+                .description("Calls made by the credit modifier cache to its source")
+                .register(registry);
+        FunctionCounter.builder("decision.credit-modifiers.cache.evictions", this,
+                        service -> service.getCacheStats().evictions())
+                .description("Live credit modifiers evicted to make room for another customer")
+                .register(registry);
+        Gauge.builder("decision.credit-modifiers.cache.size", this, service -> service.getSource().size())
+                .description("Live credit modifiers in the cache")
+                .register(registry);
+    }
+
+    private static CreditModifierIndex defaultIndex() {
+        return new CreditModifierIndex.Builder()
+                .put(49002010965L, 0) // Debt, no loan approval
+                .put(49002010976L, DecisionEngineConstants.SEGMENT_1_CREDIT_MODIFIER)
+                .put(49002010987L, DecisionEngineConstants.SEGMENT_2_CREDIT_MODIFIER)
+                .put(49002010998L, DecisionEngineConstants.SEGMENT_3_CREDIT_MODIFIER)
+                .build();
+    }
+}
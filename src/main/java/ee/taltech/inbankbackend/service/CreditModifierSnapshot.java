@@ -0,0 +1,204 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.interfaces.CreditModifierSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Credit modifiers in a memory-mapped binary snapshot file, queried in place by binary search.<br><br>
+ * Opening a snapshot only maps the file and checks its header, so it takes the same time for any number of
+ * customers, and the records stay in the page cache rather than the heap, shared by every JVM on the host
+ * that maps the same file. A lookup allocates nothing.<br><br>
+ * The file is big-endian: a {@value #HEADER_BYTES}-byte header holding the magic number {@code ICMS}, the format
+ * version, the record count, the CRC-32C of the records and the CRC-32C of the preceding header fields, followed
+ * by {@value #RECORD_BYTES}-byte records of a {@code long} key and an {@code int} modifier in ascending key order.
+ */
+public final class CreditModifierSnapshot implements CreditModifierSource {
+    public static final int MAGIC = 0x49434D53;
+    public static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 24;
+    static final int RECORD_BYTES = 12;
+
+    private static final long MAX_RECORDS = (Integer.MAX_VALUE - HEADER_BYTES) / RECORD_BYTES;
+    // Object header plus a buffer reference and an int, and the mapped buffer object itself
+    private static final long OVERHEAD_BYTES = 16 + 8 + 4 + 64;
+
+    private final ByteBuffer records;
+    private final int size;
+
+    private CreditModifierSnapshot(ByteBuffer records, int size) {
+        this.records = records;
+        this.size = size;
+    }
+
+    /**
+     * Tells a snapshot file from other files by its magic number.
+     *
+     * @param file The file to check
+     * @return True if the file starts with the snapshot magic number
+     * @throws IOException If the file cannot be read
+     */
+    public static boolean isSnapshot(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // Keep reading until the magic number is complete or the file ends
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * Maps a snapshot file and checks its header. The mapping stays valid if the file is later replaced or deleted.
+     *
+     * @param file The snapshot file
+     * @param verifyRecords Whether to also check the checksum and order of every record, which reads the whole file
+     * @return The snapshot
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If the file is not a valid snapshot
+     */
+    public static CreditModifierSnapshot open(Path file, boolean verifyRecords) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long fileSize = channel.size();
+            if (fileSize < HEADER_BYTES || fileSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid snapshot size: " + fileSize + " bytes");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+        }
+
+        CRC32C headerCrc = new CRC32C();
+        headerCrc.update(mapped.duplicate().limit(HEADER_BYTES - 4));
+        if (mapped.getInt(0) != MAGIC) {
+            throw new IllegalArgumentException("Not a credit modifier snapshot: " + file);
+        }
+        if (mapped.getInt(4) != VERSION) {
+            throw new IllegalArgumentException("Unsupported snapshot version: " + mapped.getInt(4));
+        }
+        if ((int) headerCrc.getValue() != mapped.getInt(HEADER_BYTES - 4)) {
+            throw new IllegalArgumentException("Snapshot header checksum mismatch: " + file);
+        }
+        long count = mapped.getLong(8);
+        if (count < 0 || count > MAX_RECORDS || HEADER_BYTES + count * RECORD_BYTES != mapped.capacity()) {
+            throw new IllegalArgumentException("Snapshot size does not match its record count: " + count);
+        }
+
+        ByteBuffer records = mapped.slice(HEADER_BYTES, (int) count * RECORD_BYTES);
+        if (verifyRecords) {
+            verify(records, (int) count, mapped.getInt(16));
+        }
+        return new CreditModifierSnapshot(records, (int) count);
+    }
+
+    /**
+     * Writes the entries of an index as a snapshot. The snapshot is written next to the target and then moved
+     * over it in one step, so a service that reloads the target never sees a partly written file.
+     *
+     * @param index The entries to write
+     * @param file The snapshot file to create or replace
+     * @throws IOException If the file cannot be written
+     */
+    public static void write(CreditModifierIndex index, Path file) throws IOException {
+        long[] keys = index.sortedKeys();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.allocate(RECORD_BYTES * 8192);
+                CRC32C recordsCrc = new CRC32C();
+                channel.position(HEADER_BYTES);
+                for (long key : keys) {
+                    if (!buffer.hasRemaining()) {
+                        flush(buffer, channel, recordsCrc);
+                    }
+                    buffer.putLong(key).putInt(index.get(key, 0));
+                }
+                flush(buffer, channel, recordsCrc);
+
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                        .putInt(MAGIC)
+                        .putInt(VERSION)
+                        .putLong(keys.length)
+                        .putInt((int) recordsCrc.getValue());
+                CRC32C headerCrc = new CRC32C();
+                headerCrc.update(header.duplicate().flip());
+                header.putInt((int) headerCrc.getValue()).flip();
+                channel.write(header, 0);
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public int get(long key, int defaultModifier) {
+        ByteBuffer records = this.records;
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long candidate = records.getLong(middle * RECORD_BYTES);
+            if (candidate < key) {
+                low = middle + 1;
+            } else if (candidate > key) {
+                high = middle - 1;
+            } else {
+                return records.getInt(middle * RECORD_BYTES + 8);
+            }
+        }
+        return defaultModifier;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public long getFootprintBytes() {
+        return OVERHEAD_BYTES;
+    }
+
+    /**
+     * @return The size of the mapped records in bytes, held in the page cache rather than the heap
+     */
+    public long getMappedBytes() {
+        return (long) size * RECORD_BYTES;
+    }
+
+    private static void verify(ByteBuffer records, int count, int expectedCrc) {
+        CRC32C crc = new CRC32C();
+        crc.update(records.duplicate());
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IllegalArgumentException("Snapshot records checksum mismatch");
+        }
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            long key = records.getLong(i * RECORD_BYTES);
+            if (key <= previous) {
+                throw new IllegalArgumentException("Snapshot records out of order at record " + i);
+            }
+            previous = key;
+        }
+    }
+
+    private static void flush(ByteBuffer buffer, FileChannel channel, CRC32C crc) throws IOException {
+        buffer.flip();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
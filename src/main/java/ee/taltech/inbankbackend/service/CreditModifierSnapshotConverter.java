@@ -0,0 +1,26 @@
+package ee.taltech.inbankbackend.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Converts a file of {@code personalCode,creditModifier} lines into a {@link CreditModifierSnapshot}:<br>
+ * {@code ./gradlew convertCreditModifiers -Pcsv=modifiers.csv -Psnapshot=modifiers.snapshot}
+ */
+public final class CreditModifierSnapshotConverter {
+
+    private CreditModifierSnapshotConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CreditModifierSnapshotConverter <input.csv> <output.snapshot>");
+            System.exit(2);
+        }
+        long start = System.nanoTime();
+        CreditModifierIndex index = CreditModifierIndex.load(Path.of(args[0]));
+        CreditModifierSnapshot.write(index, Path.of(args[1]));
+        System.out.printf("Wrote %d customers to %s in %d ms%n",
+                index.size(), args[1], (System.nanoTime() - start) / 1_000_000);
+    }
+}
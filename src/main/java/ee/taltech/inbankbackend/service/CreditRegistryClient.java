@@ -0,0 +1,319 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.exceptions.CreditRegistryUnavailableException;
+import ee.taltech.inbankbackend.interfaces.CreditModifierSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Looks up credit modifiers in a remote credit registry over HTTP without blocking.<br><br>
+ * The registry answers {@code GET <url>/<personalCode>} with the modifier as plain text, or {@code 404} for an
+ * unknown customer. Every call has a timeout, at most {@code max-concurrent-calls} calls run at once, and a
+ * circuit breaker stops calling the registry for {@code open-duration} after {@code failure-threshold} failures
+ * in a row, then lets one trial call through. Optionally, a call still running after the registry's recent p95
+ * latency is hedged with a second call, and whichever answers first wins.<br><br>
+ * When the registry cannot answer, lookups fail with {@link CreditRegistryUnavailableException} and
+ * {@link CreditModifierService} falls back to {@link #getFallbackModifier()}. Disabled unless
+ * {@code decision-engine.credit-registry.url} is set; the bean exists either way, so that the choice is also made
+ * at startup in an ahead-of-time processed build. With {@code spring.threads.virtual.enabled}, responses are
+ * handled on virtual threads, so lookups that block in {@link #get} cost no platform thread.
+ */
+@Component
+public class CreditRegistryClient implements CreditModifierSource {
+    private final HttpClient httpClient;
+    // Created only if enabled with virtual threads, and closed with the client
+    private final ExecutorService virtualThreadPerTask;
+    // Runs the code that handles a response; the HTTP client itself hands responses over on the common pool
+    private final Executor responseExecutor;
+    private final String baseUrl;
+    private final Duration timeout;
+    private final Semaphore bulkhead;
+    private final boolean hedging;
+    private final long minHedgeDelayNanos;
+    private final int fallbackModifier;
+    private final CircuitBreaker circuitBreaker;
+    private final LatencyWindow latencies = new LatencyWindow();
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedgedCalls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public CreditRegistryClient(@Value("${decision-engine.credit-registry.url:}") String url,
+                                @Value("${decision-engine.credit-registry.timeout:200ms}") Duration timeout,
+                                @Value("${decision-engine.credit-registry.max-concurrent-calls:64}") int maxConcurrentCalls,
+                                @Value("${decision-engine.credit-registry.hedging:false}") boolean hedging,
+                                @Value("${decision-engine.credit-registry.min-hedge-delay:5ms}") Duration minHedgeDelay,
+                                @Value("${decision-engine.credit-registry.failure-threshold:5}") int failureThreshold,
+                                @Value("${decision-engine.credit-registry.open-duration:10s}") Duration openDuration,
+                                @Value("${decision-engine.credit-registry.fallback-modifier:0}") int fallbackModifier,
+                                @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        this.virtualThreadPerTask = !url.isBlank() && virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : null;
+        this.responseExecutor = virtualThreadPerTask != null ? virtualThreadPerTask : Runnable::run;
+        if (url.isBlank()) {
+            this.httpClient = null;
+        } else {
+            HttpClient.Builder httpClient = HttpClient.newBuilder()
+                    .connectTimeout(timeout)
+                    .version(HttpClient.Version.HTTP_1_1);
+            if (virtualThreadPerTask != null) {
+                httpClient.executor(virtualThreadPerTask);
+            }
+            this.httpClient = httpClient.build();
+        }
+        this.baseUrl = url.endsWith("/") ? url : url + "/";
+        this.timeout = timeout;
+        this.bulkhead = new Semaphore(maxConcurrentCalls);
+        this.hedging = hedging;
+        this.minHedgeDelayNanos = minHedgeDelay.toNanos();
+        this.fallbackModifier = fallbackModifier;
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration.toNanos());
+    }
+
+    public boolean isEnabled() {
+        return httpClient != null;
+    }
+
+    /**
+     * Stops the virtual threads that handle responses, after the calls in flight have been answered.
+     */
+    @PreDestroy
+    public void close() {
+        if (virtualThreadPerTask != null) {
+            virtualThreadPerTask.close();
+        }
+    }
+
+    /**
+     * Blocks until the registry answers. Prefer {@link #getAsync} on platform request threads; on virtual threads
+     * blocking here only parks the calling thread.
+     */
+    @Override
+    public int get(long key, int defaultModifier) {
+        try {
+            return getAsync(key, defaultModifier).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Integer> getAsync(long key, int defaultModifier) {
+        if (!circuitBreaker.allowCall()) {
+            rejections.increment();
+            return CompletableFuture.failedFuture(new CreditRegistryUnavailableException("Circuit breaker is open"));
+        }
+        if (!bulkhead.tryAcquire()) {
+            circuitBreaker.release();
+            rejections.increment();
+            return CompletableFuture.failedFuture(new CreditRegistryUnavailableException("Too many concurrent calls"));
+        }
+
+        long start = System.nanoTime();
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        AtomicInteger running = new AtomicInteger(1);
+        BiConsumer<Integer, Throwable> onAnswer = (modifier, failure) -> {
+            if (failure == null) {
+                result.complete(modifier);
+            } else if (running.decrementAndGet() == 0) {
+                result.completeExceptionally(failure);
+            }
+        };
+        send(key, defaultModifier).whenComplete(onAnswer);
+        if (hedging) {
+            CompletableFuture.delayedExecutor(hedgeDelayNanos(), TimeUnit.NANOSECONDS).execute(() -> {
+                if (!result.isDone() && bulkhead.tryAcquire()) {
+                    running.incrementAndGet();
+                    hedgedCalls.increment();
+                    send(key, defaultModifier).whenComplete(onAnswer);
+                }
+            });
+        }
+
+        return result.handle((modifier, failure) -> {
+            if (failure == null) {
+                latencies.record(System.nanoTime() - start);
+                circuitBreaker.onSuccess();
+                return modifier;
+            }
+            failures.increment();
+            circuitBreaker.onFailure();
+            Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+            throw new CreditRegistryUnavailableException("Credit registry call failed", cause);
+        });
+    }
+
+    @Override
+    public int size() {
+        return 0;
+    }
+
+    @Override
+    public long getFootprintBytes() {
+        return 0;
+    }
+
+    /**
+     * @return The modifier to use while the registry cannot answer
+     */
+    public int getFallbackModifier() {
+        return fallbackModifier;
+    }
+
+    /**
+     * @return The counters of this client since it was created
+     */
+    public Stats getStats() {
+        return new Stats(calls.sum(), hedgedCalls.sum(), failures.sum(), rejections.sum(), circuitBreaker.isOpen());
+    }
+
+    /**
+     * @param calls HTTP calls sent to the registry, including hedged calls
+     * @param hedgedCalls Second calls sent because the first was slower than the recent p95
+     * @param failures Lookups that failed or timed out
+     * @param rejections Lookups refused without calling the registry, by the bulkhead or the open circuit breaker
+     * @param circuitOpen Whether the circuit breaker is currently open
+     */
+    public record Stats(long calls, long hedgedCalls, long failures, long rejections, boolean circuitOpen) {
+    }
+
+    private CompletableFuture<Integer> send(long key, int defaultModifier) {
+        calls.increment();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + key))
+                .timeout(timeout)
+                .GET()
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS)
+                .whenComplete((response, failure) -> bulkhead.release())
+                .thenApplyAsync(response -> switch (response.statusCode()) {
+                    case 200 -> Integer.parseInt(response.body().trim());
+                    case 404 -> defaultModifier;
+                    default -> throw new CreditRegistryUnavailableException(
+                            "Credit registry answered with status " + response.statusCode());
+                }, responseExecutor);
+    }
+
+    private long hedgeDelayNanos() {
+        return Math.max(minHedgeDelayNanos, latencies.p95Nanos());
+    }
+
+    /**
+     * Counts recent call latencies in 100-microsecond buckets up to 100 milliseconds. Counts are halved every
+     * {@value #DECAY_INTERVAL} calls, so the p95 follows the registry as it speeds up or slows down.
+     */
+    private static final class LatencyWindow {
+        private static final long BUCKET_NANOS = 100_000;
+        private static final int BUCKETS = 1000;
+        private static final int DECAY_INTERVAL = 4096;
+        private static final int RECOMPUTE_INTERVAL = 64;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 1);
+        private final AtomicInteger recorded = new AtomicInteger();
+        private volatile long p95Nanos;
+
+        void record(long nanos) {
+            counts.incrementAndGet((int) Math.min(nanos / BUCKET_NANOS, BUCKETS));
+            int count = recorded.incrementAndGet();
+            if (count % DECAY_INTERVAL == 0) {
+                for (int i = 0; i <= BUCKETS; i++) {
+                    counts.set(i, counts.get(i) / 2);
+                }
+            }
+            if (count % RECOMPUTE_INTERVAL == 0 || count < RECOMPUTE_INTERVAL) {
+                p95Nanos = computeP95();
+            }
+        }
+
+        long p95Nanos() {
+            return p95Nanos;
+        }
+
+        private long computeP95() {
+            long total = 0;
+            for (int i = 0; i <= BUCKETS; i++) {
+                total += counts.get(i);
+            }
+            long rank = (long) Math.ceil(total * 0.95);
+            long seen = 0;
+            for (int i = 0; i <= BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= rank && seen > 0) {
+                    return (i + 1) * BUCKET_NANOS;
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Opens after a number of failures in a row and stays open for a while. After that, one trial call is let
+     * through: if it succeeds the breaker closes, and if it fails the breaker opens again.
+     */
+    private static final class CircuitBreaker {
+        private final int failureThreshold;
+        private final long openNanos;
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicBoolean trialRunning = new AtomicBoolean();
+        private volatile long openUntilNanos;
+        private volatile boolean open;
+
+        CircuitBreaker(int failureThreshold, long openNanos) {
+            this.failureThreshold = failureThreshold;
+            this.openNanos = openNanos;
+        }
+
+        boolean allowCall() {
+            if (!open) {
+                return true;
+            }
+            return System.nanoTime() - openUntilNanos >= 0 && trialRunning.compareAndSet(false, true);
+        }
+
+        // Gives back a trial call that was allowed but never made
+        void release() {
+            if (open) {
+                trialRunning.set(false);
+            }
+        }
+
+        void onSuccess() {
+            consecutiveFailures.set(0);
+            open = false;
+            trialRunning.set(false);
+        }
+
+        void onFailure() {
+            if (consecutiveFailures.incrementAndGet() >= failureThreshold || open) {
+                openUntilNanos = System.nanoTime() + openNanos;
+                open = true;
+            }
+            trialRunning.set(false);
+        }
+
+        boolean isOpen() {
+            return open;
+        }
+    }
+}
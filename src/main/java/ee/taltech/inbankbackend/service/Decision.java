@@ -1,15 +1,59 @@
 package ee.taltech.inbankbackend.service;
 
-import lombok.AllArgsConstructor;
-import lombok.Getter;
-
 /**
- * Holds the response data of the REST endpoint.
+ * Holds the outcome of a loan decision: either an approved loan or the reason it was rejected, together with
+ * the version of the {@link DecisionPolicy} it was made under.
  */
-@Getter
-@AllArgsConstructor
-public class Decision {
-    private final Integer loanAmount;
-    private final Integer loanPeriod;
-    private final String errorMessage;
+public sealed interface Decision permits Decision.Approved, Decision.Rejected {
+
+    /**
+     * @return The version of the policy the decision was made under
+     */
+    int policyVersion();
+
+    /**
+     * An approved loan amount and period.
+     */
+    record Approved(int loanAmount, int loanPeriod, int policyVersion) implements Decision {
+
+        /**
+         * An approved loan under the {@link DecisionPolicy#INITIAL_VERSION initial policy}.
+         */
+        public Approved(int loanAmount, int loanPeriod) {
+            this(loanAmount, loanPeriod, DecisionPolicy.INITIAL_VERSION);
+        }
+    }
+
+    /**
+     * A rejected application, with the message shown to the customer under the policy it was decided under.
+     * Instances are shared per reason and policy, so rejecting allocates nothing.
+     */
+    record Rejected(RejectionReason reason, int policyVersion, String message) implements Decision {
+        private static final Rejected[] INSTANCES = all(ScoringRules.defaults(), DecisionPolicy.INITIAL_VERSION);
+
+        /**
+         * A rejection with the reason's message under the default rules.
+         */
+        public Rejected(RejectionReason reason, int policyVersion) {
+            this(reason, policyVersion, reason.getMessage());
+        }
+
+        /**
+         * @return The shared rejection under the {@link DecisionPolicy#INITIAL_VERSION initial policy}
+         */
+        public static Rejected of(RejectionReason reason) {
+            return INSTANCES[reason.ordinal()];
+        }
+
+        /**
+         * @return One rejection per reason under the given rules and policy version, indexed by ordinal
+         */
+        static Rejected[] all(ScoringRules rules, int policyVersion) {
+            Rejected[] rejections = new Rejected[RejectionReason.values().length];
+            for (RejectionReason reason : RejectionReason.values()) {
+                rejections[reason.ordinal()] = new Rejected(reason, policyVersion, reason.getMessage(rules));
+            }
+            return rejections;
+        }
+    }
 }
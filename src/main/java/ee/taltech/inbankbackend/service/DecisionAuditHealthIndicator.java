@@ -0,0 +1,33 @@
+package ee.taltech.inbankbackend.service;
+
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the {@link DecisionAuditLog} as the {@code decisionAudit} health component: down while it refuses
+ * decisions, because it is closed, its writer has failed or it cannot open its next segment, so that the instance
+ * is taken out of rotation instead of answering every decision with {@code 503}.
+ */
+@Component
+public class DecisionAuditHealthIndicator implements HealthIndicator {
+    private final DecisionAuditLog auditLog;
+
+    public DecisionAuditHealthIndicator(DecisionAuditLog auditLog) {
+        this.auditLog = auditLog;
+    }
+
+    @Override
+    public Health health() {
+        if (!auditLog.isEnabled()) {
+            return Health.up().withDetail("enabled", false).build();
+        }
+        Health.Builder health = auditLog.isHealthy() ? Health.up() : Health.down();
+        return health.withDetail("failed", auditLog.isFailed())
+                .withDetail("written", auditLog.getWrittenCount())
+                .withDetail("backlog", auditLog.getBacklog())
+                .withDetail("refused", auditLog.getRefusedCount())
+                .withDetail("lost", auditLog.getLostCount())
+                .build();
+    }
+}
@@ -0,0 +1,393 @@
+package ee.taltech.inbankbackend.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Keeps every decision returned by {@link DecisionEngine} in append-only segment files, without putting the disk
+ * on the request path.<br><br>
+ * A decision is handed to a preallocated ring of {@value DecisionAuditRecord#BYTES}-byte slots: the request thread
+ * claims a sequence number with one atomic increment, writes the record into its slot and publishes it, which
+ * takes no lock and allocates nothing. One writer thread copies runs of published records into the current
+ * memory-mapped segment in bulk and frees their slots.<br><br>
+ * The log fails closed: a decision that cannot be handed over is refused, so that the engine answers
+ * {@link RejectionReason#AUDIT_UNAVAILABLE} instead of returning a decision that is not kept. A request thread
+ * waits only while the ring is full and the writer is still writing, and for at most
+ * {@code decision-engine.audit.max-wait}. Once the writer has stopped, or while it cannot open its next segment,
+ * decisions are refused at once without waiting, and {@link #isHealthy()} is false until it writes again.<br><br>
+ * Segments are named {@code decisions-<number>.audit} and numbered on from the highest number already in the
+ * directory, so a restart never writes into an existing segment. Each is preallocated to
+ * {@code decision-engine.audit.segment-records} records behind a {@value #HEADER_BYTES}-byte header holding the
+ * magic number {@code DAUD}, the format version, the record size and the record capacity; records end at the first
+ * zero timestamp. Written records are forced to disk at most {@code decision-engine.audit.fsync-interval} after
+ * they are written, or after every batch if the interval is 0, and whenever a segment is full. Read them back with
+ * {@link DecisionAuditReader}. If the writer fails, it logs the error and stops, and every later decision is
+ * refused. The records it had been handed but not yet written are lost with it and counted; they are at most one
+ * ring's worth.<br><br>
+ * Disabled unless {@code decision-engine.audit.directory} is set. Publishes the records written, the records
+ * waiting in the ring, the times a request thread found the ring full, the decisions refused and the records lost
+ * as {@code decision.audit.*} metrics.
+ */
+@Component
+public class DecisionAuditLog {
+    public static final int MAGIC = 0x44415544;
+    public static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 16;
+    static final Pattern SEGMENT_NAME = Pattern.compile("decisions-(\\d{12})\\.audit");
+
+    private static final Logger log = LoggerFactory.getLogger(DecisionAuditLog.class);
+    private static final long IDLE_PARK_NANOS = 200_000;
+    private static final long FULL_PARK_NANOS = 10_000;
+    private static final long RETRY_PARK_NANOS = 1_000_000_000;
+    // Set in the claimed sequence once no more records may be claimed, because the log is closed or has failed
+    private static final long STOPPED = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final Clock clock;
+    private final ByteBuffer ring;
+    // Holds one more than the sequence number of the record last published in each slot
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final int mask;
+    private final int segmentRecords;
+    private final long fsyncIntervalNanos;
+    private final long maxWaitNanos;
+    private final LongAdder fullWaits = new LongAdder();
+    private final LongAdder refused = new LongAdder();
+    private final LongAdder lost = new LongAdder();
+    private final Thread writer;
+
+    // The sequence number of the next record the writer copies; slots before it are free again
+    private volatile long consumed;
+    private volatile boolean failed;
+    // Set while the writer cannot open its next segment and retries
+    private volatile boolean stalled;
+
+    // Only used by the writer thread
+    private long segmentNumber;
+    private MappedByteBuffer segment;
+    private int segmentCount;
+    private int unforcedFrom;
+    private long lastForceNanos;
+
+    /**
+     * @param directory The directory the segments are written to, or blank to disable the audit log
+     * @param ringSize The most records waiting to be written, rounded up to a power of two
+     * @param segmentRecords The number of records per segment file
+     * @param fsyncInterval How long written records may wait before being forced to disk
+     * @param maxWait How long a request thread waits for room in a full ring before refusing its decision
+     */
+    @Autowired
+    public DecisionAuditLog(@Value("${decision-engine.audit.directory:}") String directory,
+                            @Value("${decision-engine.audit.ring-size:65536}") int ringSize,
+                            @Value("${decision-engine.audit.segment-records:1048576}") int segmentRecords,
+                            @Value("${decision-engine.audit.fsync-interval:1s}") Duration fsyncInterval,
+                            @Value("${decision-engine.audit.max-wait:1s}") Duration maxWait,
+                            MeterRegistry registry) throws IOException {
+        this(directory.isBlank() ? null : Path.of(directory), ringSize, segmentRecords, fsyncInterval, maxWait,
+                Clock.systemUTC());
+        if (isEnabled()) {
+            registerMetrics(registry);
+        }
+    }
+
+    DecisionAuditLog(Path directory, int ringSize, int segmentRecords, Duration fsyncInterval, Duration maxWait,
+                     Clock clock) throws IOException {
+        if (directory != null && (ringSize < 1 || ringSize > 1 << 24 || segmentRecords < 1
+                || segmentRecords > (Integer.MAX_VALUE - HEADER_BYTES) / DecisionAuditRecord.BYTES)) {
+            throw new IllegalArgumentException("Invalid audit log: ring size " + ringSize + ", segment records "
+                    + segmentRecords);
+        }
+        int capacity = directory == null ? 0 : Integer.highestOneBit(Math.max(1, ringSize - 1)) << 1;
+        this.directory = directory;
+        this.clock = clock;
+        this.ring = ByteBuffer.allocateDirect(capacity * DecisionAuditRecord.BYTES);
+        this.published = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        this.segmentRecords = segmentRecords;
+        this.fsyncIntervalNanos = fsyncInterval.toNanos();
+        this.maxWaitNanos = maxWait.toNanos();
+        if (directory == null) {
+            this.writer = null;
+            return;
+        }
+        Files.createDirectories(directory);
+        this.segmentNumber = lastSegmentNumber(directory);
+        openNextSegment();
+        this.writer = new Thread(this::writeLoop, "decision-audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    public boolean isEnabled() {
+        return writer != null;
+    }
+
+    /**
+     * @return Whether decisions are being recorded: the log is open, and its writer has not failed and can open
+     *         its segments
+     */
+    public boolean isHealthy() {
+        return writer != null && claimed.get() >= 0 && !stalled;
+    }
+
+    /**
+     * Hands a decision to the writer thread. Waits only while the ring is full and the writer is writing, and
+     * refuses the decision if the ring stays full for longer than the maximum wait, or at once if the log is
+     * closed, its writer has failed or it cannot open its next segment. A refused decision must not be returned.
+     *
+     * @param personalCode The requested personal ID code
+     * @param requestedAmount The requested loan amount
+     * @param requestedPeriod The requested loan period
+     * @param decision The decision returned for the application
+     * @return Whether the decision was handed over; false if it was refused
+     */
+    public boolean append(String personalCode, Long requestedAmount, int requestedPeriod, Decision decision) {
+        long sequence = claim();
+        if (sequence < 0) {
+            refused.increment();
+            return false;
+        }
+        int slot = (int) sequence & mask;
+        DecisionAuditRecord.write(ring, slot * DecisionAuditRecord.BYTES, clock.millis(), personalCode,
+                requestedAmount, requestedPeriod, decision);
+        published.setRelease(slot, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Claims the next sequence number once its slot is free. Claiming only when there is room means that a
+     * request thread that gives up leaves no gap for the writer to wait on.
+     *
+     * @return The claimed sequence number, or -1 if the log is stopped or stalled, or the ring stayed full too long
+     */
+    private long claim() {
+        long waitingSince = 0;
+        boolean waiting = false;
+        while (true) {
+            long sequence = claimed.get();
+            if (sequence < 0 || stalled) {
+                return -1;
+            }
+            if (sequence - consumed > mask) {
+                long nanos = System.nanoTime();
+                if (!waiting) {
+                    fullWaits.increment();
+                    waiting = true;
+                    waitingSince = nanos;
+                } else if (nanos - waitingSince > maxWaitNanos) {
+                    return -1;
+                }
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            } else if (claimed.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    /**
+     * @return The number of records written to segments so far
+     */
+    public long getWrittenCount() {
+        return consumed;
+    }
+
+    /**
+     * @return The number of records claimed but not yet written
+     */
+    public long getBacklog() {
+        return failed ? 0 : (claimed.get() & ~STOPPED) - consumed;
+    }
+
+    /**
+     * @return The number of decisions refused, because the ring stayed full or the writer had stopped or stalled
+     */
+    public long getRefusedCount() {
+        return refused.sum();
+    }
+
+    /**
+     * @return The number of records handed over but never written, because the writer failed before writing them
+     */
+    public long getLostCount() {
+        return lost.sum();
+    }
+
+    /**
+     * @return Whether the writer has stopped on an error, so that no more decisions are recorded
+     */
+    public boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Writes the records already handed over, forces them to disk and stops the writer. Decisions appended
+     * afterwards are refused.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        if (writer == null) {
+            return;
+        }
+        claimed.getAndUpdate(sequence -> sequence | STOPPED);
+        LockSupport.unpark(writer);
+        writer.join();
+    }
+
+    private void writeLoop() {
+        try {
+            writeUntilClosed();
+        } catch (Throwable e) {
+            // Records claimed but not written are lost with the writer; stop further claims and count them
+            long stoppedAt = claimed.getAndUpdate(sequence -> sequence | STOPPED) & ~STOPPED;
+            lost.add(stoppedAt - consumed);
+            failed = true;
+            log.error("Audit writer failed, decisions are refused from now on", e);
+        }
+    }
+
+    private void writeUntilClosed() throws IOException {
+        long next = 0;
+        while (true) {
+            // Once closed, no more records are claimed and the last claims are finishing; drain them before stopping
+            long claimedUntil = claimed.get();
+            boolean draining = claimedUntil < 0;
+            if (segmentCount == segmentRecords) {
+                try {
+                    forceIfDue(true);
+                    openNextSegment();
+                    stalled = false;
+                } catch (IOException e) {
+                    if (draining) {
+                        throw e;
+                    }
+                    // Refuse decisions rather than let request threads wait for a segment that may never open
+                    stalled = true;
+                    log.error("Audit segment {} could not be opened, refusing decisions and retrying",
+                            segmentNumber + 1, e);
+                    LockSupport.parkNanos(RETRY_PARK_NANOS);
+                    continue;
+                }
+            }
+            int run = publishedRun(next);
+            if (run == 0) {
+                if (draining && next == (claimedUntil & ~STOPPED)) {
+                    break;
+                }
+                forceIfDue(false);
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+                continue;
+            }
+            copy(next, run);
+            next += run;
+            consumed = next;
+            forceIfDue(fsyncIntervalNanos == 0);
+        }
+        forceIfDue(true);
+    }
+
+    /**
+     * @return The number of consecutive published records from the given sequence number, up to the end of the
+     *         ring and of the current segment, so that they can be copied as one block
+     */
+    private int publishedRun(long from) {
+        int startSlot = (int) from & mask;
+        int limit = Math.min(mask + 1 - startSlot, segmentRecords - segmentCount);
+        int run = 0;
+        while (run < limit && published.getAcquire(startSlot + run) == from + run + 1) {
+            run++;
+        }
+        return run;
+    }
+
+    private void copy(long from, int run) {
+        int slot = (int) from & mask;
+        segment.put(HEADER_BYTES + segmentCount * DecisionAuditRecord.BYTES, ring,
+                slot * DecisionAuditRecord.BYTES, run * DecisionAuditRecord.BYTES);
+        segmentCount += run;
+    }
+
+    private void forceIfDue(boolean now) {
+        if (segmentCount == unforcedFrom) {
+            return;
+        }
+        long nanos = System.nanoTime();
+        if (now || nanos - lastForceNanos >= fsyncIntervalNanos) {
+            int from = HEADER_BYTES + unforcedFrom * DecisionAuditRecord.BYTES;
+            segment.force(from, (segmentCount - unforcedFrom) * DecisionAuditRecord.BYTES);
+            unforcedFrom = segmentCount;
+            lastForceNanos = nanos;
+        }
+    }
+
+    private void openNextSegment() throws IOException {
+        Path file = directory.resolve(String.format("decisions-%012d.audit", segmentNumber + 1));
+        long size = HEADER_BYTES + (long) segmentRecords * DecisionAuditRecord.BYTES;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+        segment.putInt(0, MAGIC)
+                .putInt(4, VERSION)
+                .putInt(8, DecisionAuditRecord.BYTES)
+                .putInt(12, segmentRecords);
+        segment.force(0, HEADER_BYTES);
+        segmentNumber++;
+        segmentCount = 0;
+        unforcedFrom = 0;
+        log.info("Audit segment {} opened: {} records, {} bytes", file, segmentRecords, size);
+    }
+
+    private static long lastSegmentNumber(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> SEGMENT_NAME.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .mapToLong(matcher -> Long.parseLong(matcher.group(1)))
+                    .max()
+                    .orElse(0);
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("decision.audit.records", this, DecisionAuditLog::getWrittenCount)
+                .description("Decisions written to the audit log")
+                .register(registry);
+        FunctionCounter.builder("decision.audit.full-waits", fullWaits, LongAdder::sum)
+                .description("Decisions that waited for the audit writer because its ring was full")
+                .register(registry);
+        FunctionCounter.builder("decision.audit.refused", refused, LongAdder::sum)
+                .description("Decisions refused because the audit log could not record them")
+                .register(registry);
+        FunctionCounter.builder("decision.audit.lost", lost, LongAdder::sum)
+                .description("Decisions handed to the audit log but not written because its writer failed")
+                .register(registry);
+        Gauge.builder("decision.audit.backlog", this, DecisionAuditLog::getBacklog)
+                .description("Decisions waiting to be written to the audit log")
+                .register(registry);
+    }
+}
@@ -0,0 +1,128 @@
+package ee.taltech.inbankbackend.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Replays the segments of a {@link DecisionAuditLog}, oldest first, and prints every record as a CSV row:<br>
+ * {@code ./gradlew replayAuditLog -Paudit=audit-directory}
+ */
+public final class DecisionAuditReader {
+    static final String CSV_HEADER =
+            "timestamp,personalCode,requestedAmount,requestedPeriod,outcome,loanAmount,loanPeriod,policyVersion\n";
+
+    private DecisionAuditReader() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: DecisionAuditReader <audit directory or segment file>");
+            System.exit(2);
+        }
+        Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+        out.write(CSV_HEADER);
+        long records = replay(Path.of(args[0]), record -> {
+            try {
+                out.write(toCsv(record));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        out.flush();
+        System.err.printf("Replayed %d decisions%n", records);
+    }
+
+    /**
+     * Reads every record of a segment file, or of every segment in a directory in the order they were written.
+     * Segments still being written can be read; records the writer has not copied yet are not seen.
+     *
+     * @param path A segment file or a directory of segments
+     * @param records Called with every record in the order it was written
+     * @return The number of records read
+     * @throws IOException If a segment cannot be read
+     * @throws IllegalArgumentException If a file is not a valid segment
+     */
+    public static long replay(Path path, Consumer<DecisionAuditRecord> records) throws IOException {
+        long count = 0;
+        for (Path segment : segments(path)) {
+            count += replaySegment(segment, records);
+        }
+        return count;
+    }
+
+    static String toCsv(DecisionAuditRecord record) {
+        String personalCode = record.personalCode() != CreditModifierIndex.INVALID_KEY
+                ? String.format("%011d", record.personalCode())
+                : record.submittedPersonalCode() != null ? csvField(record.submittedPersonalCode()) : "";
+        String requestedAmount = record.requestedAmount() == DecisionAuditRecord.NO_AMOUNT
+                ? "" : Long.toString(record.requestedAmount());
+        return Instant.ofEpochMilli(record.timestampMillis())
+                + "," + personalCode
+                + "," + requestedAmount
+                + "," + record.requestedPeriod()
+                + "," + (record.rejection() == null ? "APPROVED" : record.rejection().name())
+                + "," + record.loanAmount()
+                + "," + record.loanPeriod()
+                + "," + record.policyVersion()
+                + "\n";
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static List<Path> segments(Path path) throws IOException {
+        if (!Files.isDirectory(path)) {
+            return List.of(path);
+        }
+        try (Stream<Path> files = Files.list(path)) {
+            // Segment numbers are zero-padded, so name order is write order
+            return files.filter(file -> DecisionAuditLog.SEGMENT_NAME.matcher(file.getFileName().toString()).matches())
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long replaySegment(Path file, Consumer<DecisionAuditRecord> records) throws IOException {
+        ByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < DecisionAuditLog.HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Invalid audit segment size: " + size + " bytes in " + file);
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (mapped.getInt(0) != DecisionAuditLog.MAGIC || mapped.getInt(4) != DecisionAuditLog.VERSION
+                || mapped.getInt(8) != DecisionAuditRecord.BYTES) {
+            throw new IllegalArgumentException("Not an audit segment of version " + DecisionAuditLog.VERSION
+                    + ": " + file);
+        }
+        int capacity = Math.min(mapped.getInt(12),
+                (mapped.capacity() - DecisionAuditLog.HEADER_BYTES) / DecisionAuditRecord.BYTES);
+        int count = 0;
+        for (; count < capacity; count++) {
+            int index = DecisionAuditLog.HEADER_BYTES + count * DecisionAuditRecord.BYTES;
+            // Records are preallocated as zeros, and every written record has a timestamp
+            if (mapped.getLong(index) == 0) {
+                break;
+            }
+            records.accept(DecisionAuditRecord.read(mapped, index));
+        }
+        return count;
+    }
+}
@@ -0,0 +1,119 @@
+package ee.taltech.inbankbackend.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One decision as kept in the {@link DecisionAuditLog}: what was asked for, what was decided, under which policy
+ * and when.<br><br>
+ * Stored big-endian in {@value #BYTES} bytes: the timestamp, the personal ID code and the requested amount as
+ * {@code long}s, the requested period, the approved amount and the policy version as {@code int}s, the approved
+ * period as a {@code short}, one byte for the outcome, which is 0 for an approval and the rejection reason's
+ * ordinal plus one otherwise, one byte for the length of a personal ID code that was not 11 digits, and a
+ * {@value #SUBMITTED_CODE_BYTES}-byte ASCII slot holding that code as it was submitted. {@link RejectionReason}s
+ * must therefore only ever be added at the end.
+ *
+ * @param timestampMillis When the decision was returned, in milliseconds since the epoch
+ * @param personalCode The numeric personal ID code, or {@link CreditModifierIndex#INVALID_KEY} if it was not
+ *                     11 digits
+ * @param submittedPersonalCode The personal ID code as submitted if it was not 11 digits, with characters outside
+ *                              printable ASCII replaced by {@code ?} and cut to {@value #SUBMITTED_CODE_BYTES}
+ *                              characters, or null if it was 11 digits or none was given
+ * @param requestedAmount The requested loan amount, or {@link #NO_AMOUNT} if none was given
+ * @param requestedPeriod The requested loan period
+ * @param loanAmount The approved loan amount, or 0 if the application was rejected
+ * @param loanPeriod The approved loan period, or 0 if the application was rejected
+ * @param rejection The reason the application was rejected, or null if it was approved
+ * @param policyVersion The version of the policy the decision was made under
+ */
+public record DecisionAuditRecord(long timestampMillis, long personalCode, String submittedPersonalCode,
+                                  long requestedAmount, int requestedPeriod, int loanAmount, int loanPeriod,
+                                  RejectionReason rejection, int policyVersion) {
+    public static final int BYTES = 64;
+    public static final int SUBMITTED_CODE_BYTES = 24;
+    /** Stored as the requested amount of an application that had none. */
+    public static final long NO_AMOUNT = Long.MIN_VALUE;
+
+    private static final int SUBMITTED_CODE_OFFSET = BYTES - SUBMITTED_CODE_BYTES;
+    private static final RejectionReason[] REASONS = RejectionReason.values();
+
+    /**
+     * Writes a decision at the given index without changing the buffer's position, and without allocating.
+     */
+    static void write(ByteBuffer buffer, int index, long timestampMillis, String personalCode, Long requestedAmount,
+                      int requestedPeriod, Decision decision) {
+        int loanAmount = 0;
+        int loanPeriod = 0;
+        int outcome = 0;
+        if (decision instanceof Decision.Approved approved) {
+            loanAmount = approved.loanAmount();
+            loanPeriod = approved.loanPeriod();
+        } else {
+            outcome = ((Decision.Rejected) decision).reason().ordinal() + 1;
+        }
+        long key = CreditModifierIndex.key(personalCode);
+        int submittedLength = key == CreditModifierIndex.INVALID_KEY && personalCode != null
+                ? Math.min(personalCode.length(), SUBMITTED_CODE_BYTES) : 0;
+        buffer.putLong(index, timestampMillis)
+                .putLong(index + 8, key)
+                .putLong(index + 16, requestedAmount != null ? requestedAmount : NO_AMOUNT)
+                .putInt(index + 24, requestedPeriod)
+                .putInt(index + 28, loanAmount)
+                .putInt(index + 32, decision.policyVersion())
+                .putShort(index + 36, (short) loanPeriod)
+                .put(index + 38, (byte) outcome)
+                .put(index + 39, (byte) submittedLength);
+        // Slots are reused, so clear what an earlier record left behind
+        for (int offset = SUBMITTED_CODE_OFFSET; offset < BYTES; offset += Long.BYTES) {
+            buffer.putLong(index + offset, 0);
+        }
+        for (int i = 0; i < submittedLength; i++) {
+            char c = personalCode.charAt(i);
+            buffer.put(index + SUBMITTED_CODE_OFFSET + i, (byte) (c >= ' ' && c <= '~' ? c : '?'));
+        }
+    }
+
+    /**
+     * Reads the record at the given index without changing the buffer's position.
+     *
+     * @throws IllegalArgumentException If the outcome byte is not a known outcome, or the submitted personal ID
+     *                                  code does not fit the record
+     */
+    static DecisionAuditRecord read(ByteBuffer buffer, int index) {
+        int outcome = buffer.get(index + 38);
+        if (outcome < 0 || outcome > REASONS.length) {
+            throw new IllegalArgumentException("Invalid audit record outcome " + outcome + " at byte " + index);
+        }
+        int submittedLength = buffer.get(index + 39);
+        if (submittedLength < 0 || submittedLength > SUBMITTED_CODE_BYTES) {
+            throw new IllegalArgumentException("Invalid submitted personal code length " + submittedLength
+                    + " at byte " + index);
+        }
+        String submittedPersonalCode = null;
+        if (submittedLength > 0) {
+            byte[] submitted = new byte[submittedLength];
+            buffer.get(index + SUBMITTED_CODE_OFFSET, submitted);
+            submittedPersonalCode = new String(submitted, StandardCharsets.US_ASCII);
+        }
+        return new DecisionAuditRecord(
+                buffer.getLong(index),
+                buffer.getLong(index + 8),
+                submittedPersonalCode,
+                buffer.getLong(index + 16),
+                buffer.getInt(index + 24),
+                buffer.getInt(index + 28),
+                Short.toUnsignedInt(buffer.getShort(index + 36)),
+                outcome == 0 ? null : REASONS[outcome - 1],
+                buffer.getInt(index + 32));
+    }
+
+    /**
+     * @return The decision the record holds. The log does not keep messages, so a rejection has its reason's
+     *         message under the default rules
+     */
+    public Decision decision() {
+        return rejection == null
+                ? new Decision.Approved(loanAmount, loanPeriod, policyVersion)
+                : new Decision.Rejected(rejection, policyVersion);
+    }
+}
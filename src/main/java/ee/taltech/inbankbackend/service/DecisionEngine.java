@@ -1,22 +1,21 @@
 package ee.taltech.inbankbackend.service;
 
-import com.github.vladislavgoltjajev.personalcode.locale.estonia.EstonianPersonalCodeValidator;
-import ee.taltech.inbankbackend.config.DecisionEngineConstants;
-import ee.taltech.inbankbackend.exceptions.InvalidAgeException;
-import ee.taltech.inbankbackend.exceptions.InvalidLoanAmountException;
-import ee.taltech.inbankbackend.exceptions.InvalidLoanPeriodException;
-import ee.taltech.inbankbackend.exceptions.InvalidPersonalCodeException;
-import ee.taltech.inbankbackend.exceptions.NoValidLoanException;
-
-import java.time.LocalDate;
-import java.time.Period;
+import ee.taltech.inbankbackend.service.DecisionMetrics.Stage;
 
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * A service class that provides a method for calculating an approved loan amount and period for a customer.
  * The loan amount is calculated based on the customer's credit modifier,
- * which is determined by the last four digits of their ID code.
+ * which is determined by the last four digits of their ID code.<br><br>
+ * Each decision reads the current {@link DecisionPolicy} once and makes every check under it, so a policy
+ * published while it runs never mixes into it, and reports the policy's version. If the
+ * {@link DecisionAuditLog} is enabled, every decision returned is handed to it, and a decision it refuses is
+ * replaced by {@link RejectionReason#AUDIT_UNAVAILABLE}, so no decision leaves the engine unrecorded.
  */
 @Service
 public class DecisionEngine {
@@ -25,62 +24,273 @@ public class DecisionEngine {
     private final LoanInputValidator loanInputValidator;
     private final CreditModifierService creditModifierService;
     private final LoanCalculator loanCalculator;
+    private final DecisionTable decisionTable;
+    private final DecisionMetrics metrics;
+    // Null when result caching is disabled
+    private final DecisionResultCache resultCache;
+    // Null when the audit log is disabled
+    private final DecisionAuditLog auditLog;
+
+    public DecisionEngine(PersonalCodeValidator personalCodeValidator,
+                        AgeValidator ageValidator,
+                        LoanInputValidator loanInputValidator,
+                        CreditModifierService creditModifierService,
+                        LoanCalculator loanCalculator,
+                        DecisionTable decisionTable) {
+        this(personalCodeValidator, ageValidator, loanInputValidator, creditModifierService, loanCalculator,
+                decisionTable, DecisionMetrics.disabled(), null, null);
+    }
 
+    @Autowired
     public DecisionEngine(PersonalCodeValidator personalCodeValidator,
                         AgeValidator ageValidator,
                         LoanInputValidator loanInputValidator,
                         CreditModifierService creditModifierService,
-                        LoanCalculator loanCalculator) {
+                        LoanCalculator loanCalculator,
+                        DecisionTable decisionTable,
+                        DecisionMetrics metrics,
+                        @Nullable DecisionResultCache resultCache,
+                        @Nullable DecisionAuditLog auditLog) {
         this.personalCodeValidator = personalCodeValidator;
         this.ageValidator = ageValidator;
         this.loanInputValidator = loanInputValidator;
         this.creditModifierService = creditModifierService;
         this.loanCalculator = loanCalculator;
+        this.decisionTable = decisionTable;
+        this.metrics = metrics;
+        this.resultCache = resultCache != null && resultCache.isEnabled() ? resultCache : null;
+        this.auditLog = auditLog != null && auditLog.isEnabled() ? auditLog : null;
     }
 
-    public Decision calculateApprovedLoan(String personalCode, Long requestedAmount, int requestedPeriod)
-            throws InvalidPersonalCodeException, InvalidLoanAmountException, InvalidLoanPeriodException,
-            NoValidLoanException, InvalidAgeException {
-        
-        try {
-            validateInputs(personalCode, requestedAmount, requestedPeriod);
-        } catch (Exception e) {
-            return new Decision(null, null, e.getMessage());
+    /**
+     * Calculates the approved loan for a customer. Rejections are returned as {@link Decision.Rejected}
+     * instead of being thrown, so rejecting an application costs no more than approving one.
+     *
+     * @param personalCode The customer's personal ID code
+     * @param requestedAmount The requested loan amount
+     * @param requestedPeriod The requested loan period
+     * @return The approved loan, or the reason the application was rejected
+     */
+    public Decision calculateApprovedLoan(String personalCode, Long requestedAmount, int requestedPeriod) {
+        Decision decision = calculateCached(personalCode, requestedAmount, requestedPeriod);
+        return auditLog != null ? audited(personalCode, requestedAmount, requestedPeriod, decision) : decision;
+    }
+
+    private Decision audited(String personalCode, Long requestedAmount, int requestedPeriod, Decision decision) {
+        return auditLog.append(personalCode, requestedAmount, requestedPeriod, decision)
+                ? decision
+                : Decision.Rejected.of(RejectionReason.AUDIT_UNAVAILABLE);
+    }
+
+    private Decision calculateCached(String personalCode, Long requestedAmount, int requestedPeriod) {
+        long key = resultCache != null
+                ? DecisionResultCache.key(personalCode, requestedAmount, requestedPeriod)
+                : DecisionResultCache.NO_KEY;
+        if (key == DecisionResultCache.NO_KEY) {
+            return calculate(personalCode, requestedAmount, requestedPeriod);
+        }
+
+        long epoch = resultCache.epoch();
+        Decision cached = resultCache.get(key, epoch);
+        if (cached != null) {
+            return metrics.count(cached, requestedAmount, requestedPeriod);
+        }
+        long fallbacks = creditModifierService.getFallbackCount();
+        Decision decision = calculate(personalCode, requestedAmount, requestedPeriod);
+        // A decision made from a fallback modifier must not outlive the registry outage
+        if (creditModifierService.getFallbackCount() == fallbacks) {
+            resultCache.put(key, epoch, decision);
+        }
+        return decision;
+    }
+
+    private Decision calculate(String personalCode, Long requestedAmount, int requestedPeriod) {
+        DecisionPolicy policy = loanCalculator.getPolicies().current();
+        boolean timed = metrics.sample();
+        RejectionReason invalidInput = validateInputs(policy, personalCode, requestedAmount, requestedPeriod, timed);
+        if (invalidInput != null) {
+            return metrics.count(policy.reject(invalidInput), requestedAmount, requestedPeriod);
+        }
+
+        long start = timed ? System.nanoTime() : 0;
+        int creditModifier = creditModifierService.getCreditModifier(personalCode);
+        if (timed) {
+            metrics.record(Stage.CREDIT_MODIFIER, start);
+        }
+        return metrics.count(decide(policy, creditModifier, requestedAmount, requestedPeriod, timed),
+                requestedAmount, requestedPeriod);
+    }
+
+    /**
+     * Calculates the approved loan for a customer like {@link #calculateApprovedLoan}, without blocking the
+     * calling thread while the credit modifier is looked up in a remote registry.
+     *
+     * @param personalCode The customer's personal ID code
+     * @param requestedAmount The requested loan amount
+     * @param requestedPeriod The requested loan period
+     * @return The approved loan, or the reason the application was rejected, once the credit modifier is known
+     */
+    public CompletableFuture<Decision> calculateApprovedLoanAsync(String personalCode, Long requestedAmount,
+                                                                  int requestedPeriod) {
+        CompletableFuture<Decision> decision = calculateCachedAsync(personalCode, requestedAmount, requestedPeriod);
+        if (auditLog == null) {
+            return decision;
+        }
+        return decision.thenApply(decided -> audited(personalCode, requestedAmount, requestedPeriod, decided));
+    }
+
+    private CompletableFuture<Decision> calculateCachedAsync(String personalCode, Long requestedAmount,
+                                                             int requestedPeriod) {
+        long key = resultCache != null
+                ? DecisionResultCache.key(personalCode, requestedAmount, requestedPeriod)
+                : DecisionResultCache.NO_KEY;
+        if (key == DecisionResultCache.NO_KEY) {
+            return calculateAsync(personalCode, requestedAmount, requestedPeriod);
+        }
+
+        long epoch = resultCache.epoch();
+        Decision cached = resultCache.get(key, epoch);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(metrics.count(cached, requestedAmount, requestedPeriod));
+        }
+        long fallbacks = creditModifierService.getFallbackCount();
+        return calculateAsync(personalCode, requestedAmount, requestedPeriod).thenApply(decision -> {
+            if (creditModifierService.getFallbackCount() == fallbacks) {
+                resultCache.put(key, epoch, decision);
+            }
+            return decision;
+        });
+    }
+
+    private CompletableFuture<Decision> calculateAsync(String personalCode, Long requestedAmount, int requestedPeriod) {
+        DecisionPolicy policy = loanCalculator.getPolicies().current();
+        boolean timed = metrics.sample();
+        RejectionReason invalidInput = validateInputs(policy, personalCode, requestedAmount, requestedPeriod, timed);
+        if (invalidInput != null) {
+            return CompletableFuture.completedFuture(
+                    metrics.count(policy.reject(invalidInput), requestedAmount, requestedPeriod));
+        }
+
+        long start = timed ? System.nanoTime() : 0;
+        return creditModifierService.getCreditModifierAsync(personalCode)
+                .thenApply(creditModifier -> {
+                    if (timed) {
+                        metrics.record(Stage.CREDIT_MODIFIER, start);
+                    }
+                    return metrics.count(decide(policy, creditModifier, requestedAmount, requestedPeriod, timed),
+                            requestedAmount, requestedPeriod);
+                });
+    }
+
+    /**
+     * Calculates every loan a customer can be approved for: the largest approvable amount for each loan period.
+     * The personal ID code is validated and the credit modifier looked up once for the whole curve, and the
+     * policy is read once, so the whole curve is calculated under the policy version it reports.
+     *
+     * @param personalCode The customer's personal ID code
+     * @return The offer curve, or a rejected curve if the customer cannot be offered any loan
+     */
+    public OfferCurve calculateOfferCurve(String personalCode) {
+        DecisionPolicy policy = loanCalculator.getPolicies().current();
+        ScoringRules rules = policy.getRules();
+        int age = personalCodeValidator.calculateAge(personalCode);
+        if (age == PersonalCodeValidator.INVALID_CODE) {
+            return OfferCurve.rejected(policy.reject(RejectionReason.INVALID_PERSONAL_CODE));
+        }
+        RejectionReason reason = ageValidator.validate(rules, age);
+        if (reason != null) {
+            return OfferCurve.rejected(policy.reject(reason));
         }
-        
         int creditModifier = creditModifierService.getCreditModifier(personalCode);
         if (creditModifier == 0) {
-            throw new NoValidLoanException("No valid loan due to debt!");
-        }
-        
-        double requestedScore = loanCalculator.calculateCreditScore(creditModifier, requestedAmount.intValue(), requestedPeriod);
-        if (requestedScore >= 0.1) {
-            int maxApprovedAmount = loanCalculator.findMaximumApprovedAmount(creditModifier, requestedPeriod);
-            return new Decision(maxApprovedAmount, requestedPeriod, null);
-        }
-        
-        Integer bestPossibleAmount = loanCalculator.findBestPossibleAmount(creditModifier, requestedPeriod);
-        if (bestPossibleAmount != null && bestPossibleAmount >= DecisionEngineConstants.MINIMUM_LOAN_AMOUNT) {
-            return new Decision(bestPossibleAmount, requestedPeriod, null);
-        }
-        
-        for (int extendedPeriod = requestedPeriod + 1; extendedPeriod <= DecisionEngineConstants.MAXIMUM_LOAN_PERIOD; extendedPeriod++) {
-            bestPossibleAmount = loanCalculator.findBestPossibleAmount(creditModifier, extendedPeriod);
-            if (bestPossibleAmount != null) {
-                return new Decision(bestPossibleAmount, extendedPeriod, null);
+            return OfferCurve.rejected(policy.reject(RejectionReason.DEBT));
+        }
+        return new OfferCurve(rules.getMinPeriod(), loanCalculator.findBestPossibleAmounts(rules, creditModifier),
+                policy.getVersion());
+    }
+
+    private Decision decide(DecisionPolicy policy, int creditModifier, Long requestedAmount, int requestedPeriod,
+                            boolean timed) {
+        if (creditModifier == 0) {
+            return policy.reject(RejectionReason.DEBT);
+        }
+
+        long start = timed ? System.nanoTime() : 0;
+        Decision decision = decideAtRequestedPeriod(policy, creditModifier, requestedAmount, requestedPeriod);
+        if (timed) {
+            start = metrics.record(Stage.SCORE, start);
+        }
+        if (decision != null) {
+            return decision;
+        }
+
+        ScoringRules rules = policy.getRules();
+        Integer extendedPeriod = loanCalculator.findShortestValidPeriod(rules, creditModifier, requestedPeriod + 1);
+        decision = extendedPeriod != null
+                ? new Decision.Approved(loanCalculator.findBestPossibleAmount(rules, creditModifier, extendedPeriod),
+                        extendedPeriod, policy.getVersion())
+                : policy.reject(RejectionReason.NO_VALID_LOAN);
+        if (timed) {
+            metrics.record(Stage.PERIOD_EXTENSION, start);
+        }
+        return decision;
+    }
+
+    /**
+     * Decides from the decision table, or from the score at the requested period for a credit modifier outside
+     * the table.
+     *
+     * @return The decision, or null if only a longer period can be offered
+     */
+    private Decision decideAtRequestedPeriod(DecisionPolicy policy, int creditModifier, Long requestedAmount,
+                                             int requestedPeriod) {
+        int cell = decisionTable.lookup(policy, creditModifier, requestedPeriod);
+        if (cell == DecisionTable.NO_VALID_LOAN) {
+            return policy.reject(RejectionReason.NO_VALID_LOAN);
+        }
+        if (cell != DecisionTable.NOT_TABULATED) {
+            return new Decision.Approved(DecisionTable.loanAmount(cell), DecisionTable.loanPeriod(cell),
+                    policy.getVersion());
+        }
+
+        ScoringRules rules = policy.getRules();
+        // Under the base score, passing at the requested amount means the capped maximum passes too
+        if (rules.usesBaseScore()) {
+            double requestedScore = rules.score(creditModifier, requestedAmount.intValue(), requestedPeriod);
+            if (requestedScore >= rules.getScoreThreshold()) {
+                int maxApprovedAmount = loanCalculator.findMaximumApprovedAmount(rules, creditModifier, requestedPeriod);
+                return new Decision.Approved(maxApprovedAmount, requestedPeriod, policy.getVersion());
             }
         }
-        
-        throw new NoValidLoanException("No valid loan found!");
+
+        Integer bestPossibleAmount = loanCalculator.findBestPossibleAmount(rules, creditModifier, requestedPeriod);
+        if (bestPossibleAmount != null && bestPossibleAmount >= rules.getMinAmount()) {
+            return new Decision.Approved(bestPossibleAmount, requestedPeriod, policy.getVersion());
+        }
+        return null;
     }
 
-    private void validateInputs(String personalCode, Long loanAmount, int loanPeriod) 
-            throws InvalidPersonalCodeException, InvalidLoanAmountException, 
-                   InvalidLoanPeriodException, InvalidAgeException {
-        personalCodeValidator.validate(personalCode);
+    private RejectionReason validateInputs(DecisionPolicy policy, String personalCode, Long loanAmount, int loanPeriod,
+                                           boolean timed) {
+        ScoringRules rules = policy.getRules();
+        long start = timed ? System.nanoTime() : 0;
         int age = personalCodeValidator.calculateAge(personalCode);
-        ageValidator.validate(age);
-        loanInputValidator.validateLoanAmount(loanAmount);
-        loanInputValidator.validateLoanPeriod(loanPeriod);
+        if (timed) {
+            start = metrics.record(Stage.PERSONAL_CODE, start);
+        }
+        if (age == PersonalCodeValidator.INVALID_CODE) {
+            return RejectionReason.INVALID_PERSONAL_CODE;
+        }
+        RejectionReason reason = ageValidator.validate(rules, age);
+        if (timed) {
+            metrics.record(Stage.AGE, start);
+        }
+        if (reason == null) {
+            reason = loanInputValidator.validateLoanAmount(rules, loanAmount);
+        }
+        if (reason == null) {
+            reason = loanInputValidator.validateLoanPeriod(rules, loanPeriod);
+        }
+        return reason;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,160 @@
+package ee.taltech.inbankbackend.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the stages of {@link DecisionEngine} and counts decisions by outcome.<br><br>
+ * Every meter is registered up front and looked up by ordinal, so recording allocates nothing. Outcomes are
+ * counted for every decision. Stages are timed for one decision in {@code timing-sample-interval}, because
+ * reading the clock and recording a histogram around each stage would cost more than the stages themselves;
+ * the percentiles of a random sample are the percentiles of all decisions. Timers publish p50, p99 and p999 and
+ * a percentile histogram as {@value #STAGE_TIMER} with a {@code stage} tag, and counters are published as
+ * {@value #OUTCOME_COUNTER} with {@code outcome} and {@code reason} tags.
+ */
+@Component
+public class DecisionMetrics {
+    public static final String STAGE_TIMER = "decision.stage";
+    public static final String OUTCOME_COUNTER = "decision.outcome";
+
+    private static final DecisionMetrics DISABLED = new DecisionMetrics(new CompositeMeterRegistry(), false, 1);
+
+    /**
+     * The timed stages of a decision, in the order they run.
+     */
+    public enum Stage {
+        PERSONAL_CODE,
+        AGE,
+        CREDIT_MODIFIER,
+        /** The decision table lookup, or the score and amount calculation for modifiers outside the table. */
+        SCORE,
+        /** The search for a longer period, which only runs for modifiers outside the decision table. */
+        PERIOD_EXTENSION;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    /**
+     * How an approved loan relates to the application.
+     */
+    public enum Approval {
+        /** The requested amount or more, for the requested period. */
+        APPROVED,
+        /** Less than the requested amount, for the requested period. */
+        REDUCED_AMOUNT,
+        /** A longer period than requested. */
+        EXTENDED_PERIOD;
+
+        String tag() {
+            return name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+    }
+
+    private final boolean enabled;
+    private final int sampleMask;
+    private final Timer[] stageTimers = new Timer[Stage.values().length];
+    private final Counter[] approvals = new Counter[Approval.values().length];
+    private final Counter[] rejections = new Counter[RejectionReason.values().length];
+
+    /**
+     * @param registry The registry to publish the meters to
+     * @param enabled Whether to record anything at all
+     * @param timingSampleInterval Time one decision in this many, rounded up to a power of two
+     */
+    public DecisionMetrics(MeterRegistry registry,
+                           @Value("${decision-engine.metrics.enabled:true}") boolean enabled,
+                           @Value("${decision-engine.metrics.timing-sample-interval:64}") int timingSampleInterval) {
+        if (timingSampleInterval < 1 || timingSampleInterval > 1 << 30) {
+            throw new IllegalArgumentException("Invalid timing sample interval: " + timingSampleInterval);
+        }
+        this.enabled = enabled;
+        this.sampleMask = timingSampleInterval == 1 ? 0 : (Integer.highestOneBit(timingSampleInterval - 1) << 1) - 1;
+        if (!enabled) {
+            return;
+        }
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = Timer.builder(STAGE_TIMER)
+                    .description("Time spent in one stage of a loan decision")
+                    .tag("stage", stage.tag())
+                    .publishPercentiles(0.5, 0.99, 0.999)
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(Duration.ofNanos(10))
+                    .maximumExpectedValue(Duration.ofSeconds(1))
+                    .register(registry);
+        }
+        for (Approval approval : Approval.values()) {
+            approvals[approval.ordinal()] = outcomeCounter(registry, approval.tag(), "none");
+        }
+        for (RejectionReason reason : RejectionReason.values()) {
+            rejections[reason.ordinal()] = outcomeCounter(registry, "rejected",
+                    reason.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+        }
+    }
+
+    /**
+     * @return Metrics that record nothing, for engines built outside the application context
+     */
+    public static DecisionMetrics disabled() {
+        return DISABLED;
+    }
+
+    /**
+     * @return Whether the stages of the next decision should be timed
+     */
+    public boolean sample() {
+        return enabled && (ThreadLocalRandom.current().nextInt() & sampleMask) == 0;
+    }
+
+    /**
+     * Records the time since {@code startNanos} for a stage.
+     *
+     * @return The current {@link System#nanoTime()}, which is where the next stage starts
+     */
+    public long record(Stage stage, long startNanos) {
+        long now = System.nanoTime();
+        stageTimers[stage.ordinal()].record(now - startNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    /**
+     * Counts a decision by its outcome.
+     *
+     * @param decision The decision made
+     * @param requestedAmount The requested loan amount
+     * @param requestedPeriod The requested loan period
+     * @return The same decision
+     */
+    public Decision count(Decision decision, Long requestedAmount, int requestedPeriod) {
+        if (!enabled) {
+            return decision;
+        }
+        if (decision instanceof Decision.Approved approved) {
+            Approval approval = approved.loanPeriod() > requestedPeriod ? Approval.EXTENDED_PERIOD
+                    : approved.loanAmount() < requestedAmount ? Approval.REDUCED_AMOUNT
+                    : Approval.APPROVED;
+            approvals[approval.ordinal()].increment();
+        } else {
+            rejections[((Decision.Rejected) decision).reason().ordinal()].increment();
+        }
+        return decision;
+    }
+
+    private static Counter outcomeCounter(MeterRegistry registry, String outcome, String reason) {
+        return Counter.builder(OUTCOME_COUNTER)
+                .description("Loan decisions by outcome")
+                .tag("outcome", outcome)
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
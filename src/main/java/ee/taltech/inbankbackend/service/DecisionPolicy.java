@@ -0,0 +1,71 @@
+package ee.taltech.inbankbackend.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+
+/**
+ * One published version of the {@link ScoringRules}. Immutable, so a decision that reads the policy once sees
+ * the same limits, segments and score rules from start to finish, however often the policy is replaced.<br><br>
+ * The version is derived from the rules themselves: the first 31 bits of the SHA-256 of their
+ * {@link ScoringRules#normalized() normalized} lines. Every instance, before and after a restart, therefore
+ * reports the same version for the same rules and a different one for different rules, and the version of a
+ * decision always names the rules that made it.
+ */
+public final class DecisionPolicy {
+    /** The version of the default {@link ScoringRules}, which an application without a rules file decides under. */
+    public static final int INITIAL_VERSION = versionOf(ScoringRules.defaults());
+
+    private final int version;
+    private final ScoringRules rules;
+    private final Instant publishedAt;
+    private final Decision.Rejected[] rejections;
+
+    DecisionPolicy(ScoringRules rules, Instant publishedAt) {
+        this.version = versionOf(rules);
+        this.rules = rules;
+        this.publishedAt = publishedAt;
+        this.rejections = Decision.Rejected.all(rules, version);
+    }
+
+    /**
+     * @return The version of a policy with the given rules: positive, and the same wherever the rules are equal
+     */
+    public static int versionOf(ScoringRules rules) {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        for (String line : rules.normalized()) {
+            sha256.update(line.getBytes(StandardCharsets.UTF_8));
+            sha256.update((byte) '\n');
+        }
+        byte[] digest = sha256.digest();
+        int version = ((digest[0] & 0x7F) << 24) | ((digest[1] & 0xFF) << 16) | ((digest[2] & 0xFF) << 8)
+                | (digest[3] & 0xFF);
+        // 0 stands for no policy where a version is required
+        return version != 0 ? version : 1;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public ScoringRules getRules() {
+        return rules;
+    }
+
+    public Instant getPublishedAt() {
+        return publishedAt;
+    }
+
+    /**
+     * @return The shared rejection for the reason under this policy
+     */
+    public Decision.Rejected reject(RejectionReason reason) {
+        return rejections[reason.ordinal()];
+    }
+}
@@ -0,0 +1,136 @@
+package ee.taltech.inbankbackend.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Publishes the {@link DecisionPolicy} decisions are made under.<br><br>
+ * The policy is loaded at startup from the scoring rules file given by {@code decision-engine.scoring.rules-file},
+ * or holds the defaults of {@link ScoringRules} if no file is configured. A new policy is published with
+ * {@link #swap} or {@link #reload}, which replace one volatile reference: a decision reads {@link #current()}
+ * once and uses that snapshot throughout, so it never mixes the limits of one version with the rules of another,
+ * and reading the policy takes no lock. A policy's version is derived from its rules, so loading the same rules
+ * again, on this or any other instance, publishes the same version.<br><br>
+ * Unless {@code decision-engine.scoring.watch} is false, the rules file is watched and reloaded whenever it
+ * changes. A file that cannot be read or parsed at startup stops the application from starting; one that cannot
+ * be read or parsed later is logged and the current policy stays in use.
+ */
+@Service
+public class DecisionPolicyService {
+    private static final Logger log = LoggerFactory.getLogger(DecisionPolicyService.class);
+
+    private final List<Consumer<DecisionPolicy>> listeners = new CopyOnWriteArrayList<>();
+    private final FileWatcher watcher;
+    private volatile DecisionPolicy policy;
+    private volatile int generation;
+
+    /**
+     * A fixed policy, which changes only when swapped.
+     *
+     * @param rules The rules of the initial policy
+     */
+    public DecisionPolicyService(ScoringRules rules) {
+        this.policy = new DecisionPolicy(rules, Instant.now());
+        this.watcher = null;
+    }
+
+    @Autowired
+    public DecisionPolicyService(@Value("${decision-engine.scoring.rules-file:}") String file,
+                                 @Value("${decision-engine.scoring.watch:true}") boolean watch) throws IOException {
+        if (file.isBlank()) {
+            this.policy = new DecisionPolicy(ScoringRules.defaults(), Instant.now());
+            this.watcher = null;
+            return;
+        }
+        Path path = Path.of(file).toAbsolutePath();
+        this.policy = new DecisionPolicy(load(path), Instant.now());
+        this.watcher = watch ? new FileWatcher(path, "decision-policy-watcher", () -> reloadChanged(path)) : null;
+    }
+
+    /**
+     * @return The policy currently in use
+     */
+    public DecisionPolicy current() {
+        return policy;
+    }
+
+    /**
+     * @return The number of policies published since startup, which changes on every publication even when the
+     *         version does not
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Loads new scoring rules and publishes them as the policy. If the file cannot be read or parsed, the current
+     * policy stays in use.
+     *
+     * @param file The scoring rules file
+     * @return The published policy
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If a line is malformed or the rules are invalid
+     */
+    public DecisionPolicy reload(Path file) throws IOException {
+        return swap(load(file));
+    }
+
+    /**
+     * Publishes new rules as the policy in one step, then tells the listeners.
+     *
+     * @param rules The new rules
+     * @return The published policy
+     */
+    public synchronized DecisionPolicy swap(ScoringRules rules) {
+        DecisionPolicy next = new DecisionPolicy(rules, Instant.now());
+        policy = next;
+        generation++;
+        for (Consumer<DecisionPolicy> listener : listeners) {
+            listener.accept(next);
+        }
+        log.info("Decision policy {} published: {} score rules, threshold {}", next.getVersion(),
+                rules.getRules().size(), rules.getScoreThreshold());
+        return next;
+    }
+
+    /**
+     * Registers a listener called with every policy published from now on, on the publishing thread. Policies
+     * are published one at a time, so a listener never runs concurrently with itself.
+     */
+    public void addListener(Consumer<DecisionPolicy> listener) {
+        listeners.add(listener);
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    private void reloadChanged(Path file) {
+        try {
+            reload(file);
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("Scoring rules in {} not reloaded, keeping policy {}", file, policy.getVersion(), e);
+        }
+    }
+
+    private static ScoringRules load(Path file) throws IOException {
+        ScoringRules rules = ScoringRules.load(file);
+        log.info("Scoring rules loaded from {}: {} score rules, threshold {}", file, rules.getRules().size(),
+                rules.getScoreThreshold());
+        return rules;
+    }
+}
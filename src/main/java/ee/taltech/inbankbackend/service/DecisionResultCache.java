@@ -0,0 +1,190 @@
+package ee.taltech.inbankbackend.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Remembers recent decisions by application, so an application that is sent again, by a retrying client or a
+ * slider in the UI, is answered without deciding it again.<br><br>
+ * An application is keyed by one long that packs the 11-digit personal ID code, the amount and the period, so
+ * building a key allocates nothing. Entries live in a {@link SetAssociativeTable}, tagged with the epoch they
+ * were decided in: the current date, because age depends on it, the generations of the credit modifiers and the
+ * decision table, and the number of {@link DecisionPolicy} publications. An entry from another epoch is never served, so
+ * entries expire at midnight and whenever modifiers are swapped, the table is rebuilt or a new policy is
+ * published. Entries also expire after {@code ttl}, which bounds how long changes in a remote credit registry stay
+ * hidden.<br><br>
+ * Disabled unless {@code decision-engine.result-cache.max-entries} is set. Publishes its hits and misses, hit ratio,
+ * size and heap footprint as {@code decision.result-cache.*} metrics.
+ */
+@Component
+public class DecisionResultCache {
+    /** Returned by {@link #key} for an application that cannot be packed into a key and is never cached. */
+    public static final long NO_KEY = -1;
+
+    private static final int PERIOD_BITS = 6;
+    private static final int AMOUNT_BITS = 14;
+    // Object header, eight references and a long
+    private static final long OVERHEAD_BYTES = 16 + 8 * 8 + 8;
+    // The approved decision an entry holds
+    private static final long VALUE_BYTES = 24;
+
+    private final PersonalCodeValidator personalCodeValidator;
+    private final CreditModifierService creditModifierService;
+    private final DecisionTable decisionTable;
+    private final DecisionPolicyService policies;
+    private final SetAssociativeTable<Decision> table;
+    private final long ttlNanos;
+    private final LongSupplier nanoTime;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param maxEntries The most applications to hold, rounded up to a power of two, or 0 to disable the cache
+     * @param ttl How long a decision is served from the cache at most
+     */
+    @Autowired
+    public DecisionResultCache(PersonalCodeValidator personalCodeValidator,
+                               CreditModifierService creditModifierService,
+                               DecisionTable decisionTable,
+                               DecisionPolicyService policies,
+                               MeterRegistry registry,
+                               @Value("${decision-engine.result-cache.max-entries:0}") int maxEntries,
+                               @Value("${decision-engine.result-cache.ttl:5m}") Duration ttl) {
+        this(personalCodeValidator, creditModifierService, decisionTable, policies, maxEntries, ttl, System::nanoTime);
+        if (isEnabled()) {
+            registerMetrics(registry);
+        }
+    }
+
+    DecisionResultCache(PersonalCodeValidator personalCodeValidator, CreditModifierService creditModifierService,
+                        DecisionTable decisionTable, DecisionPolicyService policies, int maxEntries, Duration ttl,
+                        LongSupplier nanoTime) {
+        if (maxEntries != 0 && !SetAssociativeTable.isValidSize(maxEntries)) {
+            throw new IllegalArgumentException("Invalid decision result cache size: " + maxEntries);
+        }
+        this.personalCodeValidator = personalCodeValidator;
+        this.creditModifierService = creditModifierService;
+        this.decisionTable = decisionTable;
+        this.policies = policies;
+        this.table = new SetAssociativeTable<>(maxEntries);
+        this.ttlNanos = ttl.toNanos();
+        this.nanoTime = nanoTime;
+    }
+
+    /**
+     * Packs an application into a key without allocating: 37 bits of personal ID code, 14 of amount and 6 of period.
+     *
+     * @return The key, or {@link #NO_KEY} if the code is not 11 digits or the amount or period is out of range
+     */
+    public static long key(String personalCode, Long loanAmount, int loanPeriod) {
+        long code = CreditModifierIndex.key(personalCode);
+        if (code == CreditModifierIndex.INVALID_KEY || loanAmount == null
+                || loanAmount < 0 || loanAmount >= 1 << AMOUNT_BITS || loanPeriod < 0 || loanPeriod >= 1 << PERIOD_BITS) {
+            return NO_KEY;
+        }
+        return code << (AMOUNT_BITS + PERIOD_BITS) | loanAmount << PERIOD_BITS | loanPeriod;
+    }
+
+    public boolean isEnabled() {
+        return table.getCapacity() > 0;
+    }
+
+    /**
+     * @return The current epoch: today's date in the high half, and the sum of the credit modifier, decision
+     *         table and policy generations, which only grows, in the low half
+     */
+    public long epoch() {
+        return (long) personalCodeValidator.today() << 32
+                | (creditModifierService.getGeneration() + decisionTable.getGeneration()
+                        + policies.getGeneration()) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return The decision made for the application in this epoch, or null if there is none
+     */
+    public Decision get(long key, long epoch) {
+        Decision decision = table.get(key, epoch, nanoTime.getAsLong());
+        if (decision != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return decision;
+    }
+
+    /**
+     * Stores a decision made in the given epoch. A decision made while the epoch changed is dropped, because it
+     * may have been made from the old date, modifiers or table.
+     */
+    public void put(long key, long epoch, Decision decision) {
+        if (epoch != epoch()) {
+            return;
+        }
+        long now = nanoTime.getAsLong();
+        table.put(key, epoch, decision, now, now + ttlNanos);
+    }
+
+    public int size() {
+        return table.size(nanoTime.getAsLong());
+    }
+
+    /**
+     * @return The approximate heap size of the cache in bytes
+     */
+    public long getFootprintBytes() {
+        return OVERHEAD_BYTES + table.getFootprintBytes(nanoTime.getAsLong(), VALUE_BYTES);
+    }
+
+    /**
+     * @return The counters of this cache since it was created
+     */
+    public Stats getStats() {
+        return new Stats(hits.sum(), misses.sum(), table.getEvictions());
+    }
+
+    /**
+     * @param hits Applications answered from the cache
+     * @param misses Applications decided again
+     * @param evictions Live entries replaced to make room for another application
+     */
+    public record Stats(long hits, long misses, long evictions) {
+
+        public double hitRatio() {
+            long lookups = hits + misses;
+            return lookups == 0 ? 0 : (double) hits / lookups;
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        FunctionCounter.builder("decision.result-cache.requests", hits, LongAdder::sum)
+                .description("Decision result cache lookups")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("decision.result-cache.requests", misses, LongAdder::sum)
+                .description("Decision result cache lookups")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("decision.result-cache.evictions", this, cache -> cache.getStats().evictions())
+                .description("Live decisions evicted to make room for another application")
+                .register(registry);
+        Gauge.builder("decision.result-cache.hit-ratio", this, cache -> cache.getStats().hitRatio())
+                .description("Share of lookups answered from the cache since startup")
+                .register(registry);
+        Gauge.builder("decision.result-cache.size", this, DecisionResultCache::size)
+                .description("Live decisions in the cache")
+                .register(registry);
+        Gauge.builder("decision.result-cache.footprint", this, DecisionResultCache::getFootprintBytes)
+                .description("Approximate heap size of the cache")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+}
@@ -0,0 +1,172 @@
+package ee.taltech.inbankbackend.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Holds the precomputed loan decision for every credit segment and requested loan period.
+ * The requested amount only decides whether the requested score passes, and both branches of
+ * {@link DecisionEngine#calculateApprovedLoan} then offer the best possible amount for the period, which is
+ * {@code creditModifier * period} capped at the maximum amount unless score rules are configured, so the
+ * amount axis collapses and one cell per segment and period is enough.<br><br>
+ * Each cell packs the approved amount and period into one int. The table is replaced as a whole on
+ * {@link #rebuild}, so readers always see a complete table without locking. It is rebuilt whenever a new
+ * {@link DecisionPolicy} is published, and remembers the policy version it was built under, so a decision made
+ * under one policy never reads a table built under another.
+ */
+@Component
+public class DecisionTable {
+    /** Returned by {@link #lookup} when the credit modifier does not belong to a tabulated segment. */
+    public static final int NOT_TABULATED = -1;
+    /** Returned by {@link #lookup} when no loan can be offered for any period. */
+    public static final int NO_VALID_LOAN = 0;
+
+    private static final Logger log = LoggerFactory.getLogger(DecisionTable.class);
+    private static final int PERIOD_BITS = 8;
+    private static final int PERIOD_MASK = (1 << PERIOD_BITS) - 1;
+
+    private final LoanCalculator loanCalculator;
+    private volatile Snapshot snapshot;
+    private volatile int generation;
+
+    /**
+     * Builds the table for the segment credit modifiers of the calculator's current policy, and again for those
+     * of every policy published after it.
+     */
+    @Autowired
+    public DecisionTable(LoanCalculator loanCalculator) {
+        this(loanCalculator, loanCalculator.getScoringRules().getSegmentModifiers());
+        loanCalculator.getPolicies().addListener(policy -> rebuild(policy, policy.getRules().getSegmentModifiers()));
+    }
+
+    DecisionTable(LoanCalculator loanCalculator, int[] segmentModifiers) {
+        this.loanCalculator = loanCalculator;
+        rebuild(segmentModifiers);
+    }
+
+    /**
+     * Recomputes the table under the current policy for the given segment credit modifiers and publishes it in
+     * one step.
+     *
+     * @param segmentModifiers The credit modifiers of all segments that can receive a loan
+     */
+    public synchronized void rebuild(int[] segmentModifiers) {
+        rebuild(loanCalculator.getPolicies().current(), segmentModifiers);
+    }
+
+    private synchronized void rebuild(DecisionPolicy policy, int[] segmentModifiers) {
+        long start = System.nanoTime();
+        ScoringRules rules = policy.getRules();
+        int minPeriod = rules.getMinPeriod();
+        int periods = rules.getMaxPeriod() - minPeriod + 1;
+        int[] modifiers = segmentModifiers.clone();
+        int[] cells = new int[modifiers.length * periods];
+
+        for (int segment = 0; segment < modifiers.length; segment++) {
+            for (int offset = 0; offset < periods; offset++) {
+                cells[segment * periods + offset] =
+                        solve(rules, modifiers[segment], minPeriod + offset);
+            }
+        }
+
+        Snapshot built = new Snapshot(policy.getVersion(), modifiers, cells, minPeriod, periods);
+        snapshot = built;
+        generation++;
+        log.info("Decision table built for policy {} in {} µs: {} segments x {} periods = {} cells, {} bytes",
+                policy.getVersion(), (System.nanoTime() - start) / 1000, modifiers.length, periods, cells.length,
+                built.footprintBytes());
+    }
+
+    /**
+     * Looks up the decision for a validated loan period under the current policy.
+     *
+     * @param creditModifier The customer's credit modifier
+     * @param requestedPeriod The requested loan period, already validated
+     * @return A packed decision, {@link #NO_VALID_LOAN} or {@link #NOT_TABULATED}
+     */
+    public int lookup(int creditModifier, int requestedPeriod) {
+        return lookup(loanCalculator.getPolicies().current(), creditModifier, requestedPeriod);
+    }
+
+    /**
+     * Looks up the decision for a loan period validated under the given policy.
+     *
+     * @param policy The policy the decision is made under
+     * @param creditModifier The customer's credit modifier
+     * @param requestedPeriod The requested loan period, already validated
+     * @return A packed decision, {@link #NO_VALID_LOAN}, or {@link #NOT_TABULATED} if the credit modifier does
+     *         not belong to a tabulated segment or the table is not built under the policy
+     */
+    public int lookup(DecisionPolicy policy, int creditModifier, int requestedPeriod) {
+        Snapshot current = snapshot;
+        if (current.policyVersion != policy.getVersion()) {
+            return NOT_TABULATED;
+        }
+        int[] modifiers = current.modifiers;
+        for (int segment = 0; segment < modifiers.length; segment++) {
+            if (modifiers[segment] == creditModifier) {
+                return current.cells[segment * current.periods + requestedPeriod - current.minPeriod];
+            }
+        }
+        return NOT_TABULATED;
+    }
+
+    public static int loanAmount(int cell) {
+        return cell >>> PERIOD_BITS;
+    }
+
+    public static int loanPeriod(int cell) {
+        return cell & PERIOD_MASK;
+    }
+
+    /**
+     * @return The number of times the table was built, which changes whenever its decisions may have changed
+     */
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return The approximate heap size of the current table in bytes
+     */
+    public long getFootprintBytes() {
+        return snapshot.footprintBytes();
+    }
+
+    private int solve(ScoringRules rules, int creditModifier, int requestedPeriod) {
+        Integer amount = loanCalculator.findBestPossibleAmount(rules, creditModifier, requestedPeriod);
+        if (amount != null) {
+            return amount << PERIOD_BITS | requestedPeriod;
+        }
+        Integer period = loanCalculator.findShortestValidPeriod(rules, creditModifier, requestedPeriod + 1);
+        if (period != null) {
+            return loanCalculator.findBestPossibleAmount(rules, creditModifier, period) << PERIOD_BITS | period;
+        }
+        return NO_VALID_LOAN;
+    }
+
+    private static final class Snapshot {
+        // Object header plus two array references and three ints, and one array header per array
+        private static final long OVERHEAD_BYTES = 16 + 8 + 8 + 4 + 4 + 4 + 2 * 16;
+
+        private final int policyVersion;
+        private final int[] modifiers;
+        private final int[] cells;
+        private final int minPeriod;
+        private final int periods;
+
+        private Snapshot(int policyVersion, int[] modifiers, int[] cells, int minPeriod, int periods) {
+            this.policyVersion = policyVersion;
+            this.modifiers = modifiers;
+            this.cells = cells;
+            this.minPeriod = minPeriod;
+            this.periods = periods;
+        }
+
+        private long footprintBytes() {
+            return OVERHEAD_BYTES + 4L * (modifiers.length + cells.length);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ee.taltech.inbankbackend.service;
+
+/**
+ * Parses Estonian personal ID codes without allocating.<br><br>
+ * A code has 11 digits: a gender and century digit (1-2 for the 1800s up to 7-8 for the 2100s), the birth date
+ * as YYMMDD, a three-digit serial number and a check digit. Birth dates are returned packed as a
+ * {@code yyyymmdd} int, which keeps dates ordered and makes ages simple integer arithmetic.
+ */
+public final class EstonianPersonalCode {
+    /** Returned by {@link #parseBirthDate} for a code that is not valid. */
+    public static final int INVALID = -1;
+
+    private EstonianPersonalCode() {
+    }
+
+    /**
+     * Checks the format, century, birth date and check digit of a personal ID code in one pass over its characters.
+     *
+     * @param personalCode The personal ID code to parse
+     * @return The birth date as {@code yyyymmdd}, or {@link #INVALID} if the code is not valid
+     */
+    public static int parseBirthDate(String personalCode) {
+        if (personalCode == null || personalCode.length() != 11) {
+            return INVALID;
+        }
+        int d0 = digit(personalCode, 0);
+        int d1 = digit(personalCode, 1);
+        int d2 = digit(personalCode, 2);
+        int d3 = digit(personalCode, 3);
+        int d4 = digit(personalCode, 4);
+        int d5 = digit(personalCode, 5);
+        int d6 = digit(personalCode, 6);
+        int d7 = digit(personalCode, 7);
+        int d8 = digit(personalCode, 8);
+        int d9 = digit(personalCode, 9);
+        int d10 = digit(personalCode, 10);
+        if ((d0 | d1 | d2 | d3 | d4 | d5 | d6 | d7 | d8 | d9 | d10) < 0 || d0 == 0 || d0 == 9) {
+            return INVALID;
+        }
+
+        int checksum = (d0 + 2 * d1 + 3 * d2 + 4 * d3 + 5 * d4 + 6 * d5 + 7 * d6 + 8 * d7 + 9 * d8 + d9) % 11;
+        if (checksum == 10) {
+            checksum = (3 * d0 + 4 * d1 + 5 * d2 + 6 * d3 + 7 * d4 + 8 * d5 + 9 * d6 + d7 + 2 * d8 + 3 * d9) % 11;
+            if (checksum == 10) {
+                checksum = 0;
+            }
+        }
+        if (checksum != d10) {
+            return INVALID;
+        }
+
+        int year = 1800 + (d0 - 1) / 2 * 100 + d1 * 10 + d2;
+        int month = d3 * 10 + d4;
+        int day = d5 * 10 + d6;
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return INVALID;
+        }
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * @param birthDate The birth date as {@code yyyymmdd}
+     * @param today The current date as {@code yyyymmdd}
+     * @return The age in full years, negative if the birth date is in the future
+     */
+    public static int age(int birthDate, int today) {
+        return (today - birthDate) / 10000;
+    }
+
+    private static int digit(String personalCode, int index) {
+        int value = personalCode.charAt(index) - '0';
+        return value >= 0 && value <= 9 ? value : -1;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leapYear ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+}
@@ -0,0 +1,72 @@
+package ee.taltech.inbankbackend.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a callback on a daemon thread of its own whenever a file is written or renamed into place.
+ * The callback runs once per burst of changes and never concurrently with itself.
+ */
+final class FileWatcher implements Closeable {
+    // Editors often write a file in several steps, so changes are collected for a moment before calling back
+    private static final long DEBOUNCE_MILLIS = 100;
+
+    private final WatchService watchService;
+
+    /**
+     * @param file The file to watch, which need not exist yet
+     * @param threadName The name of the watching thread
+     * @param onChange Called after the file changed
+     * @throws IOException If the directory of the file cannot be watched
+     */
+    FileWatcher(Path file, String threadName, Runnable onChange) throws IOException {
+        Path absolute = file.toAbsolutePath();
+        this.watchService = FileSystems.getDefault().newWatchService();
+        absolute.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        Thread thread = new Thread(() -> watchLoop(absolute, onChange), threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    private void watchLoop(Path file, Runnable onChange) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = drain(key, file);
+                // Collect the rest of a multi-step write before calling back
+                while ((key = watchService.poll(DEBOUNCE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                    changed |= drain(key, file);
+                }
+                if (changed) {
+                    onChange.run();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+
+    private static boolean drain(WatchKey key, Path file) {
+        boolean changed = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || file.getFileName().equals(event.context());
+        }
+        key.reset();
+        return changed;
+    }
+}
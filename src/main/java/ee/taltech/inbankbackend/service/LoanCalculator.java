@@ -1,28 +1,137 @@
 package ee.taltech.inbankbackend.service;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import ee.taltech.inbankbackend.config.DecisionEngineConstants;
-
+/**
+ * Finds approvable loan amounts and periods. Every method has a variant that takes the {@link ScoringRules} to
+ * score against, so that a decision can use the rules of the one policy it read throughout; the variants without
+ * rules use the current policy.
+ */
 @Service
 public class LoanCalculator {
+    private final boolean closedFormSolver;
+    private final DecisionPolicyService policies;
+
+    /**
+     * @param closedFormSolver Whether to use {@link ClosedFormLoanSolver} instead of the 100-euro step search
+     */
+    public LoanCalculator(boolean closedFormSolver) {
+        this(closedFormSolver, ScoringRules.defaults());
+    }
+
+    /**
+     * @param closedFormSolver Whether to use {@link ClosedFormLoanSolver} instead of the 100-euro step search
+     *                         where the scoring rules allow it
+     * @param scoringRules The fixed rules loans are scored against
+     */
+    public LoanCalculator(boolean closedFormSolver, ScoringRules scoringRules) {
+        this(closedFormSolver, new DecisionPolicyService(scoringRules));
+    }
+
+    /**
+     * @param closedFormSolver Whether to use {@link ClosedFormLoanSolver} instead of the 100-euro step search
+     *                         where the scoring rules allow it
+     * @param policies The policies loans are scored under
+     */
+    @Autowired
+    public LoanCalculator(@Value("${decision-engine.closed-form-solver:true}") boolean closedFormSolver,
+                          DecisionPolicyService policies) {
+        this.closedFormSolver = closedFormSolver;
+        this.policies = policies;
+    }
+
+    public DecisionPolicyService getPolicies() {
+        return policies;
+    }
+
+    /**
+     * @return The rules of the current policy
+     */
+    public ScoringRules getScoringRules() {
+        return policies.current().getRules();
+    }
+
     public int findMaximumApprovedAmount(int creditModifier, int period) {
+        return findMaximumApprovedAmount(getScoringRules(), creditModifier, period);
+    }
+
+    public int findMaximumApprovedAmount(ScoringRules scoringRules, int creditModifier, int period) {
         int maxPossible = creditModifier * period;
-        return Math.max(DecisionEngineConstants.MINIMUM_LOAN_AMOUNT,
-                Math.min(maxPossible, DecisionEngineConstants.MAXIMUM_LOAN_AMOUNT));
+        return Math.max(scoringRules.getMinAmount(), Math.min(maxPossible, scoringRules.getMaxAmount()));
     }
     
     public Integer findBestPossibleAmount(int creditModifier, int period) {
-        int maxPossible = findMaximumApprovedAmount(creditModifier, period);
+        return findBestPossibleAmount(getScoringRules(), creditModifier, period);
+    }
+
+    public Integer findBestPossibleAmount(ScoringRules scoringRules, int creditModifier, int period) {
+        if (usesClosedForm(scoringRules)) {
+            return ClosedFormLoanSolver.findBestPossibleAmount(creditModifier, period, scoringRules);
+        }
+        // Score rules can approve more than the base score does, so the search then starts from the top
+        int maxPossible = scoringRules.usesBaseScore()
+                ? findMaximumApprovedAmount(scoringRules, creditModifier, period)
+                : scoringRules.getMaxAmount();
         
-        for (int amount = maxPossible; amount >= DecisionEngineConstants.MINIMUM_LOAN_AMOUNT; amount -= 100) {
-            if (calculateCreditScore(creditModifier, amount, period) >= 0.1) {
+        for (int amount = maxPossible; amount >= scoringRules.getMinAmount(); amount -= 100) {
+            if (scoringRules.score(creditModifier, amount, period) >= scoringRules.getScoreThreshold()) {
                 return amount;
             }
         }
         return null;
     }
+
+    /**
+     * Finds the best possible amount for every loan period at once.
+     *
+     * @param creditModifier The customer's credit modifier
+     * @return The best possible amount for each period from the minimum loan period on, or 0 where there is none
+     */
+    public int[] findBestPossibleAmounts(int creditModifier) {
+        return findBestPossibleAmounts(getScoringRules(), creditModifier);
+    }
+
+    public int[] findBestPossibleAmounts(ScoringRules scoringRules, int creditModifier) {
+        if (usesClosedForm(scoringRules)) {
+            return ClosedFormLoanSolver.findBestPossibleAmounts(creditModifier, scoringRules);
+        }
+        int[] amounts = new int[scoringRules.getMaxPeriod() - scoringRules.getMinPeriod() + 1];
+        for (int i = 0; i < amounts.length; i++) {
+            Integer amount = findBestPossibleAmount(scoringRules, creditModifier, scoringRules.getMinPeriod() + i);
+            amounts[i] = amount != null ? amount : 0;
+        }
+        return amounts;
+    }
+
+    /**
+     * Finds the shortest loan period, no shorter than the given one, for which some loan amount is approvable.
+     *
+     * @param creditModifier The customer's credit modifier
+     * @param fromPeriod The first loan period to consider
+     * @return The shortest valid period, or null if no period up to the maximum loan period qualifies
+     */
+    public Integer findShortestValidPeriod(int creditModifier, int fromPeriod) {
+        return findShortestValidPeriod(getScoringRules(), creditModifier, fromPeriod);
+    }
+
+    public Integer findShortestValidPeriod(ScoringRules scoringRules, int creditModifier, int fromPeriod) {
+        if (usesClosedForm(scoringRules)) {
+            return ClosedFormLoanSolver.findShortestValidPeriod(creditModifier, fromPeriod, scoringRules);
+        }
+        for (int period = fromPeriod; period <= scoringRules.getMaxPeriod(); period++) {
+            if (findBestPossibleAmount(scoringRules, creditModifier, period) != null) {
+                return period;
+            }
+        }
+        return null;
+    }
     
     public double calculateCreditScore(int creditModifier, int amount, int period) {
-        return (creditModifier * period) / ((double) amount * 10.0);
+        return getScoringRules().score(creditModifier, amount, period);
+    }
+
+    private boolean usesClosedForm(ScoringRules scoringRules) {
+        return closedFormSolver && scoringRules.usesBaseScore();
     }
-}
\ No newline at end of file
+}
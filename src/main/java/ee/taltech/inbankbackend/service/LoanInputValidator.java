@@ -1,23 +1,58 @@
 package ee.taltech.inbankbackend.service;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import ee.taltech.inbankbackend.config.DecisionEngineConstants;
-import ee.taltech.inbankbackend.exceptions.InvalidLoanAmountException;
-import ee.taltech.inbankbackend.exceptions.InvalidLoanPeriodException;
-
 @Service
 public class LoanInputValidator {
-    public void validateLoanAmount(Long loanAmount) throws InvalidLoanAmountException {
-        if (loanAmount < DecisionEngineConstants.MINIMUM_LOAN_AMOUNT || 
-            loanAmount > DecisionEngineConstants.MAXIMUM_LOAN_AMOUNT) {
-            throw new InvalidLoanAmountException("Invalid loan amount!");
+    private final DecisionPolicyService policies;
+
+    public LoanInputValidator() {
+        this(ScoringRules.defaults());
+    }
+
+    public LoanInputValidator(ScoringRules scoringRules) {
+        this(new DecisionPolicyService(scoringRules));
+    }
+
+    @Autowired
+    public LoanInputValidator(DecisionPolicyService policies) {
+        this.policies = policies;
+    }
+
+    /**
+     * @return The rejection reason, or null if the loan amount is within the bounds of the current policy
+     */
+    public RejectionReason validateLoanAmount(Long loanAmount) {
+        return validateLoanAmount(policies.current().getRules(), loanAmount);
+    }
+
+    /**
+     * @return The rejection reason, or null if the loan amount is within the bounds of the given rules
+     */
+    public RejectionReason validateLoanAmount(ScoringRules scoringRules, Long loanAmount) {
+        if (loanAmount == null ||
+            loanAmount < scoringRules.getMinAmount() || 
+            loanAmount > scoringRules.getMaxAmount()) {
+            return RejectionReason.INVALID_LOAN_AMOUNT;
         }
+        return null;
     }
     
-    public void validateLoanPeriod(int loanPeriod) throws InvalidLoanPeriodException {
-        if (loanPeriod < DecisionEngineConstants.MINIMUM_LOAN_PERIOD || 
-            loanPeriod > DecisionEngineConstants.MAXIMUM_LOAN_PERIOD) {
-            throw new InvalidLoanPeriodException("Invalid loan period!");
+    /**
+     * @return The rejection reason, or null if the loan period is within the bounds of the current policy
+     */
+    public RejectionReason validateLoanPeriod(int loanPeriod) {
+        return validateLoanPeriod(policies.current().getRules(), loanPeriod);
+    }
+
+    /**
+     * @return The rejection reason, or null if the loan period is within the bounds of the given rules
+     */
+    public RejectionReason validateLoanPeriod(ScoringRules scoringRules, int loanPeriod) {
+        if (loanPeriod < scoringRules.getMinPeriod() || 
+            loanPeriod > scoringRules.getMaxPeriod()) {
+            return RejectionReason.INVALID_LOAN_PERIOD;
         }
+        return null;
     }
-}
\ No newline at end of file
+}
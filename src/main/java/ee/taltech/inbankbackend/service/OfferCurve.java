@@ -0,0 +1,118 @@
+package ee.taltech.inbankbackend.service;
+
+/**
+ * Holds every loan a customer can be approved for: the largest approvable amount for each loan period from
+ * {@link #getStartPeriod()} on, or 0 for a period with no approvable amount. A rejected customer has no amounts
+ * and a {@link #getRejection() rejection reason} instead. Like a {@link Decision}, a curve carries the version of
+ * the {@link DecisionPolicy} it was calculated under.
+ */
+public final class OfferCurve {
+    private static final int[] NO_AMOUNTS = new int[0];
+    private static final OfferCurve[] REJECTIONS = new OfferCurve[RejectionReason.values().length];
+
+    static {
+        for (RejectionReason reason : RejectionReason.values()) {
+            REJECTIONS[reason.ordinal()] = new OfferCurve(0, NO_AMOUNTS, reason, reason.getMessage(),
+                    DecisionPolicy.INITIAL_VERSION);
+        }
+    }
+
+    private final int startPeriod;
+    private final int[] loanAmounts;
+    private final RejectionReason rejection;
+    private final String rejectionMessage;
+    private final int policyVersion;
+
+    /**
+     * A curve under the {@link DecisionPolicy#INITIAL_VERSION initial policy}.
+     *
+     * @param startPeriod The loan period of the first amount
+     * @param loanAmounts The largest approvable amount for each period from the start period on
+     */
+    public OfferCurve(int startPeriod, int[] loanAmounts) {
+        this(startPeriod, loanAmounts, DecisionPolicy.INITIAL_VERSION);
+    }
+
+    /**
+     * @param startPeriod The loan period of the first amount
+     * @param loanAmounts The largest approvable amount for each period from the start period on
+     * @param policyVersion The version of the policy the curve was calculated under
+     */
+    public OfferCurve(int startPeriod, int[] loanAmounts, int policyVersion) {
+        this(startPeriod, loanAmounts, null, null, policyVersion);
+    }
+
+    private OfferCurve(int startPeriod, int[] loanAmounts, RejectionReason rejection, String rejectionMessage,
+                       int policyVersion) {
+        this.startPeriod = startPeriod;
+        this.loanAmounts = loanAmounts;
+        this.rejection = rejection;
+        this.rejectionMessage = rejectionMessage;
+        this.policyVersion = policyVersion;
+    }
+
+    /**
+     * @return The shared curve of a customer rejected for the given reason under the
+     *         {@link DecisionPolicy#INITIAL_VERSION initial policy}
+     */
+    public static OfferCurve rejected(RejectionReason reason) {
+        return REJECTIONS[reason.ordinal()];
+    }
+
+    /**
+     * @return The curve of a customer rejected as the given decision was, shared for the initial policy
+     */
+    public static OfferCurve rejected(Decision.Rejected rejection) {
+        return rejection.policyVersion() == DecisionPolicy.INITIAL_VERSION
+                ? REJECTIONS[rejection.reason().ordinal()]
+                : new OfferCurve(0, NO_AMOUNTS, rejection.reason(), rejection.message(), rejection.policyVersion());
+    }
+
+    public int getStartPeriod() {
+        return startPeriod;
+    }
+
+    /**
+     * @return The largest approvable amount for each period from the start period on, or 0 where there is none.
+     *         The array is not copied and must not be modified.
+     */
+    public int[] getLoanAmounts() {
+        return loanAmounts;
+    }
+
+    /**
+     * @return The reason the customer cannot be offered any loan, or null if the customer can be offered one
+     */
+    public RejectionReason getRejection() {
+        return rejection;
+    }
+
+    /**
+     * @return The message shown to a rejected customer under the policy the curve was calculated under, or null
+     *         if the customer can be offered a loan
+     */
+    public String getRejectionMessage() {
+        return rejectionMessage;
+    }
+
+    /**
+     * @return The version of the policy the curve was calculated under
+     */
+    public int getPolicyVersion() {
+        return policyVersion;
+    }
+
+    /**
+     * @return A 64-bit FNV-1a hash of the curve, which is the same for the same offers under the same policy
+     */
+    public long fingerprint() {
+        long hash = 0xCBF29CE484222325L;
+        hash = (hash ^ policyVersion) * 0x100000001B3L;
+        hash = (hash ^ startPeriod) * 0x100000001B3L;
+        hash = (hash ^ (rejection != null ? rejection.ordinal() + 1 : 0)) * 0x100000001B3L;
+        for (int amount : loanAmounts) {
+            hash = (hash ^ amount) * 0x100000001B3L;
+        }
+        return hash;
+    }
+}
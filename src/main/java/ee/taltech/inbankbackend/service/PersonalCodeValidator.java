@@ -1,40 +1,75 @@
 package ee.taltech.inbankbackend.service;
 
-import org.springframework.stereotype.Service;  // Add this import
-
-import com.github.vladislavgoltjajev.personalcode.locale.estonia.EstonianPersonalCodeValidator;
-
-import ee.taltech.inbankbackend.exceptions.InvalidPersonalCodeException;
+import org.springframework.stereotype.Service;
 
+import java.time.Clock;
 import java.time.LocalDate;
-import java.time.Period;
 
+/**
+ * Validates Estonian personal ID codes and calculates the age of their holders.
+ * The current date is cached and only looked up again once the clock passes midnight.
+ */
 @Service
 public class PersonalCodeValidator {
-    private final EstonianPersonalCodeValidator validator = new EstonianPersonalCodeValidator();
-    
-    public void validate(String personalCode) throws InvalidPersonalCodeException {
-        if (!validator.isValid(personalCode)) {
-            throw new InvalidPersonalCodeException("Invalid personal ID code!");
+    /** Returned by {@link #calculateAge} for a personal ID code that is not valid. */
+    public static final int INVALID_CODE = Integer.MIN_VALUE;
+
+    private final Clock clock;
+    private volatile Today today;
+
+    public PersonalCodeValidator() {
+        this(Clock.systemDefaultZone());
+    }
+
+    PersonalCodeValidator(Clock clock) {
+        this.clock = clock;
+        this.today = Today.at(clock);
+    }
+
+    /**
+     * @return The rejection reason, or null if the personal ID code is valid
+     */
+    public RejectionReason validate(String personalCode) {
+        if (EstonianPersonalCode.parseBirthDate(personalCode) == EstonianPersonalCode.INVALID) {
+            return RejectionReason.INVALID_PERSONAL_CODE;
         }
+        return null;
     }
-    
+
+    /**
+     * Validates the personal ID code and calculates the age of its holder in the same pass.
+     *
+     * @param personalCode The personal ID code
+     * @return The age in full years, or {@link #INVALID_CODE} if the personal ID code is not valid
+     */
     public int calculateAge(String personalCode) {
-        int firstDigit = Character.getNumericValue(personalCode.charAt(0));
-        int yearPrefix;
-        if (firstDigit == 1 || firstDigit == 2) yearPrefix = 1800;
-        else if (firstDigit == 3 || firstDigit == 4) yearPrefix = 1900;
-        else if (firstDigit == 5 || firstDigit == 6) yearPrefix = 2000;
-        else if (firstDigit == 7 || firstDigit == 8) yearPrefix = 2100;
-        else throw new IllegalArgumentException("Invalid century in personal code");
-
-        int year = yearPrefix + Integer.parseInt(personalCode.substring(1, 3));
-        int month = Integer.parseInt(personalCode.substring(3, 5));
-        int day = Integer.parseInt(personalCode.substring(5, 7));
-
-        LocalDate birthDate = LocalDate.of(year, month, day);
-        LocalDate today = LocalDate.now();
-
-        return Period.between(birthDate, today).getYears();
+        int birthDate = EstonianPersonalCode.parseBirthDate(personalCode);
+        if (birthDate == EstonianPersonalCode.INVALID) {
+            return INVALID_CODE;
+        }
+        return EstonianPersonalCode.age(birthDate, today());
+    }
+
+    /**
+     * @return The current date as {@code yyyymmdd}
+     */
+    public int today() {
+        Today current = today;
+        if (clock.millis() >= current.nextMidnightMillis) {
+            current = Today.at(clock);
+            today = current;
+        }
+        return current.date;
+    }
+
+    /**
+     * The current date as {@code yyyymmdd}, and the moment it stops being current.
+     */
+    private record Today(int date, long nextMidnightMillis) {
+        static Today at(Clock clock) {
+            LocalDate date = LocalDate.now(clock);
+            long nextMidnight = date.plusDays(1).atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+            return new Today(date.getYear() * 10000 + date.getMonthValue() * 100 + date.getDayOfMonth(), nextMidnight);
+        }
     }
-}
\ No newline at end of file
+}
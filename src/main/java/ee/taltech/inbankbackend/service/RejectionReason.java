@@ -0,0 +1,47 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.config.DecisionEngineConstants;
+
+/**
+ * Lists the reasons a loan application can be rejected for, together with the message shown to the customer.
+ * The message of {@link #UNDERAGE} names the minimum age of the policy the application was decided under; the
+ * other messages do not depend on the policy.
+ */
+public enum RejectionReason {
+    INVALID_PERSONAL_CODE("Invalid personal ID code!"),
+    UNDERAGE(underageMessage(DecisionEngineConstants.MINIMUM_AGE_PERIOD)),
+    OVERAGE("Loan rejected: Your age exceeds the maximum eligible age."),
+    INVALID_LOAN_AMOUNT("Invalid loan amount!"),
+    INVALID_LOAN_PERIOD("Invalid loan period!"),
+    DEBT("No valid loan due to debt!"),
+    NO_VALID_LOAN("No valid loan found!"),
+    UNEXPECTED_ERROR("An unexpected error occurred"),
+    TOO_MANY_REQUESTS("Too many requests, please try again later."),
+    AUDIT_UNAVAILABLE("Decisions are temporarily unavailable, please try again later.");
+
+    private final String message;
+
+    RejectionReason(String message) {
+        this.message = message;
+    }
+
+    /**
+     * @return The message under the default {@link ScoringRules}
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return The message under the given rules
+     */
+    public String getMessage(ScoringRules rules) {
+        return this == UNDERAGE && rules.getMinAge() != DecisionEngineConstants.MINIMUM_AGE_PERIOD
+                ? underageMessage(rules.getMinAge())
+                : message;
+    }
+
+    private static String underageMessage(int minAge) {
+        return "Loan rejected: You must be at least " + minAge + " years old to apply.";
+    }
+}
@@ -0,0 +1,81 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.interfaces.ScoreModifier;
+
+import java.util.Locale;
+
+/**
+ * A configured scoring rule: when one input of the application lies within {@code [min, max]}, the score is
+ * multiplied by, or has added to it, a constant. Written in a scoring rules file as
+ * {@code rule=<input> <min>..<max> <effect> <value>}, for example {@code rule=period 36..48 multiply 1.1}.
+ *
+ * @param input The application input the rule tests
+ * @param min The smallest input value the rule applies to
+ * @param max The largest input value the rule applies to
+ * @param effect What the rule does to the score
+ * @param value The factor or the addend
+ */
+public record ScoreRule(Input input, int min, int max, Effect effect, double value) implements ScoreModifier {
+
+    public enum Input {
+        CREDIT_MODIFIER,
+        AMOUNT,
+        PERIOD
+    }
+
+    public enum Effect {
+        MULTIPLY,
+        ADD
+    }
+
+    public ScoreRule {
+        if (input == null || effect == null || min > max || !Double.isFinite(value)) {
+            throw new IllegalArgumentException("Invalid score rule: " + input + " " + min + ".." + max + " " + effect
+                    + " " + value);
+        }
+    }
+
+    /**
+     * Parses the value of a {@code rule} line, such as {@code credit-modifier 100..299 add 0.02}.
+     *
+     * @throws IllegalArgumentException If the rule is malformed
+     */
+    public static ScoreRule parse(String rule) {
+        String[] parts = rule.trim().split("\\s+");
+        int range = parts.length == 4 ? parts[1].indexOf("..") : -1;
+        if (range < 0) {
+            throw new IllegalArgumentException("Malformed score rule: " + rule);
+        }
+        try {
+            return new ScoreRule(
+                    Input.valueOf(parts[0].toUpperCase(Locale.ROOT).replace('-', '_')),
+                    Integer.parseInt(parts[1].substring(0, range)),
+                    Integer.parseInt(parts[1].substring(range + 2)),
+                    Effect.valueOf(parts[2].toUpperCase(Locale.ROOT)),
+                    Double.parseDouble(parts[3]));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed score rule: " + rule, e);
+        }
+    }
+
+    /**
+     * @return The rule as the value of a {@code rule} line, which {@link #parse} reads back to an equal rule
+     */
+    public String format() {
+        return input.name().toLowerCase(Locale.ROOT).replace('_', '-') + " " + min + ".." + max + " "
+                + effect.name().toLowerCase(Locale.ROOT) + " " + value;
+    }
+
+    @Override
+    public double modify(double score, int creditModifier, int loanAmount, int loanPeriod) {
+        int subject = switch (input) {
+            case CREDIT_MODIFIER -> creditModifier;
+            case AMOUNT -> loanAmount;
+            case PERIOD -> loanPeriod;
+        };
+        if (subject < min || subject > max) {
+            return score;
+        }
+        return effect == Effect.MULTIPLY ? score * value : score + value;
+    }
+}
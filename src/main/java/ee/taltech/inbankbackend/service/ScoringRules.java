@@ -0,0 +1,237 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.config.DecisionEngineConstants;
+import ee.taltech.inbankbackend.interfaces.ScoreModifier;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Holds everything a loan decision is scored against: the loan amount and period bounds, the age limits, the
+ * credit modifiers of the segments in the {@link DecisionTable}, the score threshold, and a chain of
+ * {@link ScoreRule}s applied to the base score. Immutable, so it can be shared between threads.<br><br>
+ * The defaults are those of {@link DecisionEngineConstants}. A scoring rules file overrides them with
+ * {@code key=value} lines; blank lines and lines starting with {@code #} are ignored:
+ * <pre>
+ * min-amount=2000
+ * max-amount=10000
+ * min-period=12
+ * max-period=48
+ * min-age=18
+ * max-age=75
+ * segment-modifiers=100,300,1000
+ * score-threshold=0.1
+ * rule=period 36..48 multiply 1.1
+ * rule=credit-modifier 100..299 add 0.02
+ * </pre>
+ * Rules are applied in the order they are listed. When the file is loaded, the chain is compiled into a
+ * {@link CompiledScoreRules}, so scoring costs the same few instructions per rule whatever the rules are.
+ */
+public final class ScoringRules {
+    // The decision table packs the amount above an 8-bit period into one int
+    private static final int MAX_SUPPORTED_PERIOD = 255;
+    private static final int MAX_SUPPORTED_AMOUNT = (1 << 23) - 1;
+    private static final double BASE_SCORE_THRESHOLD = 0.1;
+
+    private static final ScoringRules DEFAULTS = new ScoringRules(
+            DecisionEngineConstants.MINIMUM_LOAN_AMOUNT,
+            DecisionEngineConstants.MAXIMUM_LOAN_AMOUNT,
+            DecisionEngineConstants.MINIMUM_LOAN_PERIOD,
+            DecisionEngineConstants.MAXIMUM_LOAN_PERIOD,
+            DecisionEngineConstants.MINIMUM_AGE_PERIOD,
+            DecisionEngineConstants.BALTIC_LIFETIME_PERIOD - DecisionEngineConstants.MINIMUM_LOAN_PERIOD / 12,
+            new int[]{
+                    DecisionEngineConstants.SEGMENT_1_CREDIT_MODIFIER,
+                    DecisionEngineConstants.SEGMENT_2_CREDIT_MODIFIER,
+                    DecisionEngineConstants.SEGMENT_3_CREDIT_MODIFIER
+            },
+            BASE_SCORE_THRESHOLD,
+            List.of());
+
+    private final int minAmount;
+    private final int maxAmount;
+    private final int minPeriod;
+    private final int maxPeriod;
+    private final int minAge;
+    private final int maxAge;
+    private final int[] segmentModifiers;
+    private final double scoreThreshold;
+    private final List<ScoreRule> rules;
+    private final ScoreModifier compiledRules;
+
+    /**
+     * @throws IllegalArgumentException If a bound is out of order or out of the supported range
+     */
+    public ScoringRules(int minAmount, int maxAmount, int minPeriod, int maxPeriod, int minAge, int maxAge,
+                        int[] segmentModifiers, double scoreThreshold, List<ScoreRule> rules) {
+        if (minAmount <= 0 || minAmount > maxAmount || maxAmount > MAX_SUPPORTED_AMOUNT
+                || minPeriod <= 0 || minPeriod > maxPeriod || maxPeriod > MAX_SUPPORTED_PERIOD
+                || minAge < 0 || minAge > maxAge
+                || !(scoreThreshold > 0) || Double.isInfinite(scoreThreshold)
+                || Arrays.stream(segmentModifiers).anyMatch(modifier -> modifier <= 0)) {
+            throw new IllegalArgumentException("Invalid scoring rules: amount " + minAmount + ".." + maxAmount
+                    + ", period " + minPeriod + ".." + maxPeriod + ", age " + minAge + ".." + maxAge
+                    + ", segment modifiers " + Arrays.toString(segmentModifiers) + ", threshold " + scoreThreshold);
+        }
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+        this.minPeriod = minPeriod;
+        this.maxPeriod = maxPeriod;
+        this.minAge = minAge;
+        this.maxAge = maxAge;
+        this.segmentModifiers = segmentModifiers.clone();
+        this.scoreThreshold = scoreThreshold;
+        this.rules = List.copyOf(rules);
+        this.compiledRules = new CompiledScoreRules(this.rules);
+    }
+
+    /**
+     * @return The rules of {@link DecisionEngineConstants}, with no score rules
+     */
+    public static ScoringRules defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * Reads a scoring rules file. Settings the file does not mention keep their defaults.
+     *
+     * @param file The scoring rules file
+     * @return The rules, with the chain of score rules compiled
+     * @throws IOException If the file cannot be read
+     * @throws IllegalArgumentException If a line is malformed or the rules are invalid
+     */
+    public static ScoringRules load(Path file) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    static ScoringRules parse(List<String> lines) {
+        ScoringRules defaults = defaults();
+        int minAmount = defaults.minAmount;
+        int maxAmount = defaults.maxAmount;
+        int minPeriod = defaults.minPeriod;
+        int maxPeriod = defaults.maxPeriod;
+        int minAge = defaults.minAge;
+        int maxAge = defaults.maxAge;
+        int[] segmentModifiers = defaults.segmentModifiers;
+        double scoreThreshold = defaults.scoreThreshold;
+        List<ScoreRule> rules = new ArrayList<>();
+
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i).trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            int separator = line.indexOf('=');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Line " + (i + 1) + ": expected key=value: " + line);
+            }
+            String key = line.substring(0, separator).trim();
+            String value = line.substring(separator + 1).trim();
+            try {
+                switch (key) {
+                    case "min-amount" -> minAmount = Integer.parseInt(value);
+                    case "max-amount" -> maxAmount = Integer.parseInt(value);
+                    case "min-period" -> minPeriod = Integer.parseInt(value);
+                    case "max-period" -> maxPeriod = Integer.parseInt(value);
+                    case "min-age" -> minAge = Integer.parseInt(value);
+                    case "max-age" -> maxAge = Integer.parseInt(value);
+                    case "segment-modifiers" -> segmentModifiers = value.isEmpty() ? new int[0]
+                            : Arrays.stream(value.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+                    case "score-threshold" -> scoreThreshold = Double.parseDouble(value);
+                    case "rule" -> rules.add(ScoreRule.parse(value));
+                    default -> throw new IllegalArgumentException("Unknown setting: " + key);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Line " + (i + 1) + ": " + e.getMessage(), e);
+            }
+        }
+        return new ScoringRules(minAmount, maxAmount, minPeriod, maxPeriod, minAge, maxAge, segmentModifiers,
+                scoreThreshold, rules);
+    }
+
+    /**
+     * @return Every setting and score rule as the lines of a scoring rules file, in a fixed order and format, so
+     *         that equal rules give equal text however the file they were read from was written
+     */
+    public List<String> normalized() {
+        List<String> lines = new ArrayList<>(8 + rules.size());
+        lines.add("min-amount=" + minAmount);
+        lines.add("max-amount=" + maxAmount);
+        lines.add("min-period=" + minPeriod);
+        lines.add("max-period=" + maxPeriod);
+        lines.add("min-age=" + minAge);
+        lines.add("max-age=" + maxAge);
+        lines.add("segment-modifiers=" + Arrays.stream(segmentModifiers)
+                .mapToObj(Integer::toString)
+                .collect(Collectors.joining(",")));
+        lines.add("score-threshold=" + scoreThreshold);
+        for (ScoreRule rule : rules) {
+            lines.add("rule=" + rule.format());
+        }
+        return lines;
+    }
+
+    /**
+     * Scores a loan: the base score {@code creditModifier * loanPeriod / (loanAmount * 10)} after every rule.
+     */
+    public double score(int creditModifier, int loanAmount, int loanPeriod) {
+        double score = (creditModifier * loanPeriod) / ((double) loanAmount * 10.0);
+        return compiledRules.modify(score, creditModifier, loanAmount, loanPeriod);
+    }
+
+    /**
+     * @return Whether scores are the base score against the 0.1 threshold, for which the largest approvable
+     *         amount is {@code creditModifier * loanPeriod} and {@link ClosedFormLoanSolver} applies
+     */
+    public boolean usesBaseScore() {
+        return rules.isEmpty() && scoreThreshold == BASE_SCORE_THRESHOLD;
+    }
+
+    public int getMinAmount() {
+        return minAmount;
+    }
+
+    public int getMaxAmount() {
+        return maxAmount;
+    }
+
+    public int getMinPeriod() {
+        return minPeriod;
+    }
+
+    public int getMaxPeriod() {
+        return maxPeriod;
+    }
+
+    public int getMinAge() {
+        return minAge;
+    }
+
+    public int getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * @return A copy of the credit modifiers of the segments the decision table is built for
+     */
+    public int[] getSegmentModifiers() {
+        return segmentModifiers.clone();
+    }
+
+    public double getScoreThreshold() {
+        return scoreThreshold;
+    }
+
+    /**
+     * @return The score rules, in the order they are applied
+     */
+    public List<ScoreRule> getRules() {
+        return rules;
+    }
+}
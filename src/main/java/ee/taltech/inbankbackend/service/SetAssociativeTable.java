@@ -0,0 +1,160 @@
+package ee.taltech.inbankbackend.service;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed four-way set-associative table of values by long key, behind {@link CreditModifierCache} and
+ * {@link DecisionResultCache}.<br><br>
+ * The table never holds more than its capacity, and a lookup takes no lock and allocates nothing. Each entry
+ * expires at a time given when it is stored, and carries a tag, such as an epoch, that a lookup must match; an
+ * entry with another tag is treated as expired. When every entry of a set is live, storing evicts the entry that
+ * expires first among those not hit since the set last evicted, or among all of them if each was hit.
+ *
+ * @param <V> The type of the values held
+ */
+final class SetAssociativeTable<V> {
+    static final int WAYS = 4;
+
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    // Object header, four references and an int, and the table and referenced array headers
+    private static final long OVERHEAD_BYTES = 16 + 4 * 8 + 4 + 2 * 16;
+    // Object header, three longs and a reference, padded to eight bytes
+    private static final long ENTRY_BYTES = 48;
+
+    private final AtomicReferenceArray<Entry<V>> table;
+    // Set when an entry is hit, cleared when its set evicts; races only cost eviction accuracy
+    private final boolean[] referenced;
+    private final int setMask;
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxEntries The most entries to hold, rounded up to a power of two, or 0 for an empty table
+     */
+    SetAssociativeTable(int maxEntries) {
+        int capacity = maxEntries == 0 ? 0 : Integer.highestOneBit(maxEntries - 1) << 1;
+        this.table = new AtomicReferenceArray<>(capacity);
+        this.referenced = new boolean[capacity];
+        this.setMask = capacity - WAYS;
+    }
+
+    /**
+     * @return Whether the table can be created with the given maximum number of entries
+     */
+    static boolean isValidSize(int maxEntries) {
+        return maxEntries >= WAYS && maxEntries <= 1 << 30;
+    }
+
+    /**
+     * Looks up a live entry and marks it as hit.
+     *
+     * @return The value stored for the key with the tag, or null if there is none or it has expired
+     */
+    V get(long key, long tag, long nowNanos) {
+        int set = set(key);
+        for (int slot = set; slot < set + WAYS; slot++) {
+            Entry<V> entry = table.get(slot);
+            if (entry != null && entry.isLive(key, tag, nowNanos)) {
+                if (!referenced[slot]) {
+                    referenced[slot] = true;
+                }
+                return entry.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Looks up a live entry without marking it as hit.
+     *
+     * @return The value stored for the key with the tag, or null if there is none or it has expired
+     */
+    V peek(long key, long tag, long nowNanos) {
+        int set = set(key);
+        for (int slot = set; slot < set + WAYS; slot++) {
+            Entry<V> entry = table.get(slot);
+            if (entry != null && entry.isLive(key, tag, nowNanos)) {
+                return entry.value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Stores a value in place of the key's entry, a free or expired entry of its set, or else the set's victim.
+     */
+    void put(long key, long tag, V value, long nowNanos, long expiresAtNanos) {
+        int set = set(key);
+        int slot = -1;
+        int victim = -1;
+        for (int way = set; way < set + WAYS && slot < 0; way++) {
+            Entry<V> entry = table.get(way);
+            if (entry == null || entry.key == key || entry.tag != tag || entry.expiresAtNanos - nowNanos <= 0) {
+                slot = way;
+            } else if (victim < 0 || isBetterVictim(way, victim)) {
+                victim = way;
+            }
+        }
+        if (slot < 0) {
+            slot = victim;
+            for (int way = set; way < set + WAYS; way++) {
+                referenced[way] = false;
+            }
+            evictions.increment();
+        }
+        referenced[slot] = false;
+        table.set(slot, new Entry<>(key, tag, expiresAtNanos, value));
+    }
+
+    /**
+     * @return The number of entries that have not expired, whatever their tag
+     */
+    int size(long nowNanos) {
+        int size = 0;
+        for (int i = 0; i < table.length(); i++) {
+            Entry<V> entry = table.get(i);
+            if (entry != null && entry.expiresAtNanos - nowNanos > 0) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    int getCapacity() {
+        return table.length();
+    }
+
+    /**
+     * @return The number of live entries replaced to make room for another key
+     */
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @param valueBytes The heap size of one value
+     * @return The approximate heap size of the table and its live entries in bytes
+     */
+    long getFootprintBytes(long nowNanos, long valueBytes) {
+        return OVERHEAD_BYTES + 5L * table.length() + (ENTRY_BYTES + valueBytes) * size(nowNanos);
+    }
+
+    // Second chance: an entry hit since its set last evicted only goes when every entry in the set was hit
+    private boolean isBetterVictim(int slot, int victim) {
+        if (referenced[slot] != referenced[victim]) {
+            return !referenced[slot];
+        }
+        return table.get(slot).expiresAtNanos - table.get(victim).expiresAtNanos < 0;
+    }
+
+    private int set(long key) {
+        return (int) ((key * HASH_MULTIPLIER) >>> 32) & setMask;
+    }
+
+    private record Entry<V>(long key, long tag, long expiresAtNanos, V value) {
+
+        boolean isLive(long key, long tag, long nowNanos) {
+            return this.key == key && this.tag == tag && expiresAtNanos - nowNanos > 0;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package ee.taltech.inbankbackend.batch;
+
+import ee.taltech.inbankbackend.service.AgeValidator;
+import ee.taltech.inbankbackend.service.CreditModifierService;
+import ee.taltech.inbankbackend.service.Decision;
+import ee.taltech.inbankbackend.service.DecisionEngine;
+import ee.taltech.inbankbackend.service.DecisionPolicy;
+import ee.taltech.inbankbackend.service.DecisionTable;
+import ee.taltech.inbankbackend.service.LoanCalculator;
+import ee.taltech.inbankbackend.service.LoanInputValidator;
+import ee.taltech.inbankbackend.service.PersonalCodeValidator;
+import ee.taltech.inbankbackend.service.RejectionReason;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class FileScoringPipelineTest {
+
+    @TempDir
+    Path directory;
+
+    private FileScoringPipeline pipeline;
+
+    @BeforeEach
+    void setUp() {
+        LoanCalculator loanCalculator = new LoanCalculator(true);
+        DecisionEngine decisionEngine = new DecisionEngine(new PersonalCodeValidator(), new AgeValidator(),
+                new LoanInputValidator(), new CreditModifierService(), loanCalculator, new DecisionTable(loanCalculator));
+        // A window smaller than the files below, so rows are spread over several windows and workers
+        pipeline = new FileScoringPipeline(decisionEngine, Jackson2ObjectMapperBuilder.json().build(), 3, 128);
+    }
+
+    @Test
+    void givenCsvFile_whenRun_thenWritesDecisionPerRowInOrder() throws Exception {
+        Path input = write("input.csv",
+                "personalCode,loanAmount,loanPeriod",
+                "49002010998,4000,12",
+                "49002010965,4000,12",
+                "49002010976, 4000 ,12",
+                "",
+                "49002010987,4000,abc",
+                "49002010987,100,12\r",
+                "49002010987,4000,24");
+        Path output = directory.resolve("output.csv");
+
+        ScoringReport report = pipeline.run(input, output);
+
+        assertEquals(6, report.rows());
+        assertTrue(report.p99LatencyNanos() > 0);
+        assertEquals(List.of(
+                "personalCode,loanAmount,loanPeriod,errorMessage",
+                "49002010998,10000,12,",
+                "49002010965,,,No valid loan due to debt!",
+                "49002010976,2000,20,",
+                "49002010987,,,Malformed row!",
+                "49002010987,,,Invalid loan amount!",
+                "49002010987,7200,24,"
+        ), Files.readAllLines(output));
+    }
+
+    @Test
+    void givenCsvFileWithoutHeader_whenRun_thenScoresFirstRow() throws Exception {
+        Path input = write("input.csv",
+                " 49002010998,4000,12",
+                "49002010965,4000,12");
+        Path output = directory.resolve("output.csv");
+
+        assertEquals(2, pipeline.run(input, output).rows());
+        assertEquals(List.of(
+                "personalCode,loanAmount,loanPeriod,errorMessage",
+                "49002010998,10000,12,",
+                "49002010965,,,No valid loan due to debt!"
+        ), Files.readAllLines(output));
+    }
+
+    @Test
+    void givenUnreadableFirstRow_whenRun_thenReportsIt() throws Exception {
+        Path input = write("input.csv",
+                "\"49002010998\",4000,12x",
+                "49002010965,4000,12");
+        Path output = directory.resolve("output.csv");
+
+        assertEquals(2, pipeline.run(input, output).rows());
+        assertEquals(List.of(
+                "personalCode,loanAmount,loanPeriod,errorMessage",
+                "\"\"\"49002010998\"\"\",,,Malformed row!",
+                "49002010965,,,No valid loan due to debt!"
+        ), Files.readAllLines(output));
+    }
+
+    @Test
+    void givenRejectionMessageWithComma_whenRun_thenQuotesIt() throws Exception {
+        LoanCalculator loanCalculator = new LoanCalculator(true);
+        DecisionEngine unavailable = new DecisionEngine(new PersonalCodeValidator(), new AgeValidator(),
+                new LoanInputValidator(), new CreditModifierService(), loanCalculator, new DecisionTable(loanCalculator)) {
+            @Override
+            public Decision calculateApprovedLoan(String personalCode, Long requestedAmount, int requestedPeriod) {
+                return Decision.Rejected.of(RejectionReason.AUDIT_UNAVAILABLE);
+            }
+        };
+        FileScoringPipeline pipeline = new FileScoringPipeline(unavailable, Jackson2ObjectMapperBuilder.json().build(),
+                1, 128);
+        Path input = write("input.csv", "49002010998,4000,12");
+        Path output = directory.resolve("output.csv");
+
+        assertEquals(1, pipeline.run(input, output).rows());
+        assertEquals(List.of(
+                "personalCode,loanAmount,loanPeriod,errorMessage",
+                "49002010998,,,\"Decisions are temporarily unavailable, please try again later.\""
+        ), Files.readAllLines(output));
+    }
+
+    @Test
+    void givenByteOrderMark_whenRun_thenSkipsItBeforeHeaderOrRow() throws Exception {
+        Path withHeader = write("header.csv", "\uFEFF\"personalCode\",\"loanAmount\",\"loanPeriod\"", "49002010998,4000,12");
+        Path withoutHeader = write("rows.csv", "\uFEFF49002010998,4000,12");
+        Path output = directory.resolve("output.csv");
+
+        for (Path input : List.of(withHeader, withoutHeader)) {
+            assertEquals(1, pipeline.run(input, output).rows());
+            assertEquals(List.of(
+                    "personalCode,loanAmount,loanPeriod,errorMessage",
+                    "49002010998,10000,12,"
+            ), Files.readAllLines(output));
+        }
+    }
+
+    @Test
+    void givenNdjsonFile_whenRun_thenWritesDecisionPerRowInOrder() throws Exception {
+        Path input = write("input.ndjson",
+                "{\"personalCode\":\"49002010998\",\"loanAmount\":4000,\"loanPeriod\":12}",
+                "{\"personalCode\":\"49002010965\",\"loanAmount\":4000,\"loanPeriod\":12}",
+                "{broken",
+                "{\"personalCode\":\"49002010987\",\"loanAmount\":4000,\"loanPeriod\":24}");
+        Path output = directory.resolve("output.ndjson");
+
+        ScoringReport report = pipeline.run(input, output);
+
+        assertEquals(4, report.rows());
+        assertEquals(List.of(
+                "{\"loanAmount\":10000,\"loanPeriod\":12,\"errorMessage\":null,\"policyVersion\":"
+                        + DecisionPolicy.INITIAL_VERSION + "}",
+                "{\"loanAmount\":null,\"loanPeriod\":null,\"errorMessage\":\"No valid loan due to debt!\",\"policyVersion\":"
+                        + DecisionPolicy.INITIAL_VERSION + "}",
+                "{\"loanAmount\":null,\"loanPeriod\":null,\"errorMessage\":\"Malformed row!\",\"policyVersion\":null}",
+                "{\"loanAmount\":7200,\"loanPeriod\":24,\"errorMessage\":null,\"policyVersion\":"
+                        + DecisionPolicy.INITIAL_VERSION + "}"
+        ), Files.readAllLines(output));
+    }
+
+    @Test
+    void givenRowLongerThanWindow_whenRun_thenFails() throws Exception {
+        Path input = write("input.csv", "4".repeat(200) + ",4000,12", "49002010998,4000,12");
+
+        assertThrows(IOException.class, () -> pipeline.run(input, directory.resolve("output.csv")));
+    }
+
+    @Test
+    void givenOutputWriteFails_whenRunOnMoreWindowsThanQueued_thenFailsInsteadOfHanging() throws Exception {
+        Path full = Path.of("/dev/full");
+        assumeTrue(Files.isWritable(full), "Needs a device that fails every write");
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add("49002010998,4000,12");
+        }
+        Path input = write("input.csv", rows.toArray(String[]::new));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> assertThrows(IOException.class, () -> pipeline.run(input, full)));
+    }
+
+    private Path write(String name, String... lines) throws IOException {
+        return Files.write(directory.resolve(name), List.of(lines));
+    }
+}
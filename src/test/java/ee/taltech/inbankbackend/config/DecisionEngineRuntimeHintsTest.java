@@ -0,0 +1,31 @@
+package ee.taltech.inbankbackend.config;
+
+import ee.taltech.inbankbackend.endpoint.DecisionRequest;
+import ee.taltech.inbankbackend.endpoint.DecisionResponse;
+import ee.taltech.inbankbackend.endpoint.OfferCurveResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.ReflectionHintsPredicates;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecisionEngineRuntimeHintsTest {
+
+    private final ReflectionHintsPredicates reflection = RuntimeHintsPredicates.reflection();
+
+    @Test
+    void givenHints_whenRegistered_thenBodiesCanBeBoundByJackson() throws NoSuchMethodException {
+        RuntimeHints hints = new RuntimeHints();
+
+        new DecisionEngineRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertTrue(reflection.onConstructor(DecisionRequest.class.getConstructor(String.class, Long.class, int.class))
+                .invoke().test(hints));
+        assertTrue(reflection.onMethod(DecisionRequest.class.getMethod("getPersonalCode")).invoke().test(hints));
+        assertTrue(reflection.onConstructor(DecisionResponse.class.getConstructor(Integer.class, Integer.class,
+                String.class, Integer.class)).invoke().test(hints));
+        assertTrue(reflection.onMethod(DecisionResponse.class.getMethod("getPolicyVersion")).invoke().test(hints));
+        assertTrue(reflection.onMethod(OfferCurveResponse.class.getMethod("getLoanAmounts")).invoke().test(hints));
+    }
+}
@@ -0,0 +1,113 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long MILLISECOND = 1_000_000L;
+
+    private long now = System.nanoTime();
+
+    @Test
+    void givenLimitReached_whenTryAcquire_thenRefusesUntilReleased() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, MILLISECOND, now);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.getInFlight());
+
+        limit.release(now, now + MILLISECOND);
+
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void givenSteadyLatencyAtTheLimit_whenWindowsPass_thenRaisesLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 1, 100, 0, now);
+
+        for (int i = 0; i < 10; i++) {
+            window(limit, 20, MILLISECOND);
+        }
+
+        assertTrue(limit.getLimit() > 20, "Limit " + limit.getLimit());
+    }
+
+    @Test
+    void givenLatencyRisingAboveNoLoad_whenWindowsPass_thenLowersLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 1, 100, 0, now);
+        window(limit, 20, MILLISECOND);
+
+        for (int i = 0; i < 30; i++) {
+            window(limit, 4, 10 * MILLISECOND);
+        }
+
+        assertTrue(limit.getLimit() < 10, "Limit " + limit.getLimit());
+    }
+
+    @Test
+    void givenQueueing_whenWindowsPass_thenStaysAtMinLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 10, 100, 0, now);
+        window(limit, 20, MILLISECOND);
+
+        for (int i = 0; i < 50; i++) {
+            window(limit, 10, 100 * MILLISECOND);
+        }
+
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    void givenFewRequestsInFlight_whenWindowsPass_thenKeepsLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 1, 100, 0, now);
+
+        for (int i = 0; i < 10; i++) {
+            window(limit, 5, MILLISECOND);
+        }
+
+        assertEquals(20, limit.getLimit());
+    }
+
+    @Test
+    void givenWindowNotOver_whenReleased_thenKeepsLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(100, 1, 200, 1000 * MILLISECOND, now);
+
+        for (int i = 0; i < 9; i++) {
+            window(limit, 100, 100 * MILLISECOND);
+        }
+        assertEquals(100, limit.getLimit());
+
+        window(limit, 100, 100 * MILLISECOND);
+
+        assertTrue(limit.getLimit() > 100, "Limit " + limit.getLimit());
+    }
+
+    @Test
+    void givenInvalidLimits_whenCreated_thenThrows() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(5, 0, 10, 0, now));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(5, 10, 20, 0, now));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(5, 1, 4, 0, now));
+    }
+
+    /**
+     * Takes the given number of permits and returns them all after the given latency, until at least a window's
+     * worth of requests has completed.
+     */
+    private void window(AdaptiveConcurrencyLimit limit, int inFlight, long latencyNanos) {
+        for (int samples = 0; samples < AdaptiveConcurrencyLimit.MIN_WINDOW_SAMPLES; samples += inFlight) {
+            for (int i = 0; i < inFlight; i++) {
+                assertTrue(limit.tryAcquire());
+            }
+            long start = now;
+            now += latencyNanos;
+            for (int i = 0; i < inFlight; i++) {
+                limit.release(start, now);
+            }
+        }
+    }
+}
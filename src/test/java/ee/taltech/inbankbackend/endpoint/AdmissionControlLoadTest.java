@@ -0,0 +1,203 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ee.taltech.inbankbackend.InbankBackendApplication;
+import ee.taltech.inbankbackend.batch.LatencyHistogram;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Offers /loan/decision a steady open-loop load, first at 80% and then at three times the rate the service can
+ * decide, while every credit modifier comes from a registry that handles 16 calls at a time in 20 ms each, which
+ * caps the service at 800 decisions a second. Reports the goodput, the approved decisions a second answered
+ * within the client's one-second timeout, and the p99 latency of those decisions with admission control, and
+ * for comparison at three times capacity without it. With admission control, the goodput at three times
+ * capacity must not fall below the goodput under capacity, and the p99 must stay within three times its
+ * value under capacity.<br><br>
+ * The first {@value #WARM_UP_SECONDS} seconds of every run are not measured, so that the concurrency limit can
+ * settle. Requests are handled on virtual threads, so that excess requests reach the admission filter instead of
+ * waiting for a request thread. {@code -Dadmission.seconds}, {@code -Dadmission.registry-threads} and
+ * {@code -Dadmission.registry-latency-ms} change the load.
+ */
+@Tag("perf")
+class AdmissionControlLoadTest {
+
+    private static final int SECONDS = Integer.getInteger("admission.seconds", 20);
+    private static final int WARM_UP_SECONDS = 2;
+    private static final int REGISTRY_THREADS = Integer.getInteger("admission.registry-threads", 16);
+    private static final int REGISTRY_LATENCY_MILLIS = Integer.getInteger("admission.registry-latency-ms", 20);
+    private static final int CAPACITY = REGISTRY_THREADS * 1000 / REGISTRY_LATENCY_MILLIS;
+    private static final Duration TIMEOUT = Duration.ofSeconds(1);
+    private static final byte[] BODY_BYTES = "{\"personalCode\":\"49002010998\",\"loanAmount\":4000,\"loanPeriod\":12}"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private HttpServer registry;
+    private ThreadPoolExecutor registryThreads;
+
+    @BeforeEach
+    void startRegistry() throws IOException {
+        registryThreads = (ThreadPoolExecutor) Executors.newFixedThreadPool(REGISTRY_THREADS);
+        registry = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 10_000);
+        registry.setExecutor(registryThreads);
+        registry.createContext("/credit-modifiers/", AdmissionControlLoadTest::answer);
+        registry.start();
+    }
+
+    @AfterEach
+    void stopRegistry() {
+        registry.stop(0);
+        registryThreads.shutdownNow();
+    }
+
+    @Test
+    void givenThreeTimesCapacity_whenAdmissionControlled_thenHoldsGoodputAndP99() throws Exception {
+        LoadResult underCapacity = run(true, CAPACITY * 8 / 10);
+        LoadResult overloaded = run(true, 3 * CAPACITY);
+        LoadResult uncontrolled = run(false, 3 * CAPACITY);
+
+        underCapacity.print("Admission control, 80% of capacity");
+        overloaded.print("Admission control, 3x capacity");
+        uncontrolled.print("No admission control, 3x capacity");
+        assertTrue(overloaded.shed() > 0, "Nothing was shed at three times capacity");
+        assertTrue(overloaded.goodput() >= underCapacity.goodput(), "Goodput fell under overload");
+        assertTrue(overloaded.p99Nanos() <= 3 * underCapacity.p99Nanos(), "p99 latency rose under overload");
+    }
+
+    private LoadResult run(boolean admission, int ratePerSecond) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(InbankBackendApplication.class)
+                .properties("server.port=0",
+                        "spring.threads.virtual.enabled=true",
+                        "server.tomcat.max-connections=20000",
+                        "server.tomcat.accept-count=10000",
+                        "decision-engine.admission.enabled=" + admission,
+                        "decision-engine.credit-registry.url=http://127.0.0.1:" + registry.getAddress().getPort()
+                                + "/credit-modifiers",
+                        "decision-engine.credit-registry.timeout=30s",
+                        "decision-engine.credit-registry.max-concurrent-calls=100000")
+                .run();
+        try {
+            URI uri = URI.create("http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/loan/decision");
+            return offer(uri, ratePerSecond);
+        } finally {
+            context.close();
+            awaitRegistryIdle();
+        }
+    }
+
+    /**
+     * Sends requests at a fixed rate whether or not earlier ones have been answered, like independent clients.
+     */
+    private static LoadResult offer(URI uri, int ratePerSecond) throws Exception {
+        LatencyHistogram latencies = new LatencyHistogram();
+        LongAdder good = new LongAdder();
+        LongAdder shed = new LongAdder();
+        LongAdder failed = new LongAdder();
+        long intervalNanos = 1_000_000_000L / ratePerSecond;
+        long requests = (long) ratePerSecond * SECONDS;
+        long warmUpRequests = (long) ratePerSecond * WARM_UP_SECONDS;
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder()
+                     .executor(clients)
+                     .connectTimeout(TIMEOUT)
+                     .build()) {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Content-Type", "application/json")
+                    .timeout(TIMEOUT)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(BODY_BYTES))
+                    .build();
+            List<CompletableFuture<?>> responses = new ArrayList<>();
+            long start = System.nanoTime();
+            for (long i = 0; i < requests; i++) {
+                long waitNanos = start + i * intervalNanos - System.nanoTime();
+                if (waitNanos > 0) {
+                    LockSupport.parkNanos(waitNanos);
+                }
+                boolean measured = i >= warmUpRequests;
+                long sent = System.nanoTime();
+                responses.add(client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                        .handle((response, failure) -> {
+                            long nanos = System.nanoTime() - sent;
+                            if (!measured) {
+                                return null;
+                            }
+                            if (failure != null) {
+                                failed.increment();
+                            } else if (response.statusCode() == 429) {
+                                shed.increment();
+                            } else if (response.statusCode() == 200
+                                    && response.body().contains("\"loanAmount\":10000")) {
+                                good.increment();
+                                synchronized (latencies) {
+                                    latencies.record(nanos);
+                                }
+                            } else {
+                                failed.increment();
+                            }
+                            return null;
+                        }));
+            }
+            CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new)).join();
+        }
+        return new LoadResult(ratePerSecond, good.sum(), shed.sum(), failed.sum(),
+                latencies.getCount() == 0 ? 0 : latencies.percentileNanos(99));
+    }
+
+    private void awaitRegistryIdle() throws InterruptedException {
+        while (registryThreads.getActiveCount() > 0 || !registryThreads.getQueue().isEmpty()) {
+            Thread.sleep(100);
+        }
+    }
+
+    private static void answer(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Thread.sleep(REGISTRY_LATENCY_MILLIS);
+            byte[] body = "1000".getBytes(StandardCharsets.US_ASCII);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private record LoadResult(int offeredPerSecond, long good, long shed, long failed, long p99Nanos) {
+
+        double goodput() {
+            return (double) good / (SECONDS - WARM_UP_SECONDS);
+        }
+
+        void print(String label) {
+            System.out.printf("%s: offered %d requests/s, goodput %.0f decisions/s, p99 %.1f ms, "
+                            + "%d shed with 429, %d failed or timed out%n",
+                    label, offeredPerSecond, goodput(), p99Nanos / 1e6, shed, failed);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AdmissionFilterTest {
+
+    private static final String TOO_MANY_REQUESTS_BODY = "{\"loanAmount\":null,\"loanPeriod\":null,"
+            + "\"errorMessage\":\"Too many requests, please try again later.\",\"policyVersion\":null}";
+
+    private static final Set<String> API_KEYS = Set.of("key-a", "key-b");
+
+    private final AtomicInteger decided = new AtomicInteger();
+    private final FilterChain decide = (request, response) -> decided.incrementAndGet();
+
+    @Test
+    void givenClientOverItsRate_whenRequestDecision_thenRejectsWithoutDeciding() throws Exception {
+        AdmissionFilter filter = filter(new ClientRateLimiter(1, 2, 1024), 10);
+
+        assertEquals(200, send(filter, decision("10.0.0.1", null), decide).getStatus());
+        assertEquals(200, send(filter, decision("10.0.0.1", null), decide).getStatus());
+        MockHttpServletResponse rejected = send(filter, decision("10.0.0.1", null), decide);
+
+        assertEquals(429, rejected.getStatus());
+        assertEquals("1", rejected.getHeader("Retry-After"));
+        assertEquals("application/json", rejected.getContentType());
+        assertEquals(TOO_MANY_REQUESTS_BODY, rejected.getContentAsString());
+        assertEquals(2, decided.get());
+    }
+
+    @Test
+    void givenKnownApiKey_whenRequestDecision_thenLimitsByKeyInsteadOfAddress() throws Exception {
+        AdmissionFilter filter = filter(new ClientRateLimiter(1, 1, 1024), 10);
+
+        assertEquals(200, send(filter, decision("10.0.0.1", "key-a"), decide).getStatus());
+        assertEquals(200, send(filter, decision("10.0.0.1", "key-b"), decide).getStatus());
+        assertEquals(429, send(filter, decision("10.0.0.2", "key-a"), decide).getStatus());
+    }
+
+    @Test
+    void givenUnknownApiKeys_whenRequestDecision_thenLimitsByAddress() throws Exception {
+        AdmissionFilter filter = filter(new ClientRateLimiter(1, 1, 1024), 10);
+
+        assertEquals(200, send(filter, decision("10.0.0.1", "made-up-1"), decide).getStatus());
+        assertEquals(429, send(filter, decision("10.0.0.1", "made-up-2"), decide).getStatus());
+        assertEquals(200, send(filter, decision("10.0.0.2", "made-up-3"), decide).getStatus());
+    }
+
+    @Test
+    void givenConcurrencyLimitReached_whenRequestDecision_thenRejectsUntilPermitReturned() throws Exception {
+        AdmissionFilter filter = filter(null, 1);
+        MockHttpServletResponse[] nested = new MockHttpServletResponse[1];
+
+        send(filter, decision("10.0.0.1", null),
+                (request, response) -> nested[0] = send(filter, decision("10.0.0.2", null), decide));
+
+        assertEquals(429, nested[0].getStatus());
+        assertEquals("1", nested[0].getHeader("Retry-After"));
+        assertEquals(200, send(filter, decision("10.0.0.2", null), decide).getStatus());
+    }
+
+    @Test
+    void givenOneLimitRefuses_whenRequestDecision_thenKeepsTheOtherLimitsAllowance() throws Exception {
+        AdmissionFilter filter = filter(new ClientRateLimiter(1, 1, 1024), 1);
+        MockHttpServletResponse[] nested = new MockHttpServletResponse[1];
+
+        send(filter, decision("10.0.0.2", null),
+                (request, response) -> nested[0] = send(filter, decision("10.0.0.1", null), decide));
+
+        assertEquals(429, nested[0].getStatus());
+        assertEquals(200, send(filter, decision("10.0.0.1", null), decide).getStatus());
+        assertEquals(429, send(filter, decision("10.0.0.1", null), decide).getStatus());
+        assertEquals(200, send(filter, decision("10.0.0.3", null), decide).getStatus());
+        assertEquals(2, decided.get());
+    }
+
+    @Test
+    void givenAsyncRequest_whenRequestDecision_thenKeepsPermitUntilComplete() throws Exception {
+        AdmissionFilter filter = filter(null, 1);
+        MockHttpServletRequest async = decision("10.0.0.1", null);
+        async.setAsyncSupported(true);
+
+        send(filter, async, (request, response) -> request.startAsync());
+
+        assertEquals(429, send(filter, decision("10.0.0.2", null), decide).getStatus());
+
+        async.getAsyncContext().complete();
+
+        assertEquals(200, send(filter, decision("10.0.0.2", null), decide).getStatus());
+    }
+
+    @Test
+    void givenOtherEndpoint_whenRequested_thenNotLimited() throws Exception {
+        AdmissionFilter filter = filter(new ClientRateLimiter(1, 1, 1024), 1);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(200, send(filter, new MockHttpServletRequest("POST", "/loan/decisions"), decide).getStatus());
+            assertEquals(200, send(filter, new MockHttpServletRequest("GET", "/loan/offers/49002010998"), decide)
+                    .getStatus());
+        }
+        assertEquals(6, decided.get());
+    }
+
+    @Test
+    void givenDisabled_whenRequestDecision_thenNotLimited() throws Exception {
+        AdmissionFilter filter = new AdmissionFilter(false, "X-Api-Key", API_KEYS, new ClientRateLimiter(1, 1, 1024),
+                new AdaptiveConcurrencyLimit(1, 1, 1, 0, System.nanoTime()));
+
+        for (int i = 0; i < 3; i++) {
+            MockHttpServletResponse response = send(filter, decision("10.0.0.1", null), decide);
+            assertEquals(200, response.getStatus());
+            assertNull(response.getHeader("Retry-After"));
+        }
+    }
+
+    private static AdmissionFilter filter(ClientRateLimiter rateLimiter, int concurrencyLimit) {
+        return new AdmissionFilter(true, "X-Api-Key", API_KEYS, rateLimiter,
+                new AdaptiveConcurrencyLimit(concurrencyLimit, concurrencyLimit, concurrencyLimit, 0,
+                        System.nanoTime()));
+    }
+
+    private static MockHttpServletRequest decision(String address, String apiKey) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/loan/decision");
+        request.setRemoteAddr(address);
+        if (apiKey != null) {
+            request.addHeader("X-Api-Key", apiKey);
+        }
+        return request;
+    }
+
+    private static MockHttpServletResponse send(AdmissionFilter filter, MockHttpServletRequest request,
+                                                FilterChain chain) throws ServletException, IOException {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, chain);
+        return response;
+    }
+}
@@ -0,0 +1,201 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import ee.taltech.inbankbackend.client.BinaryDecision;
+import ee.taltech.inbankbackend.client.BinaryDecisionClient;
+import ee.taltech.inbankbackend.client.BinaryDecisionProtocol;
+import ee.taltech.inbankbackend.service.CreditModifierService;
+import ee.taltech.inbankbackend.service.Decision;
+import ee.taltech.inbankbackend.service.DecisionEngine;
+import ee.taltech.inbankbackend.service.DecisionEngines;
+import ee.taltech.inbankbackend.service.DecisionTable;
+import ee.taltech.inbankbackend.service.LoanCalculator;
+import ee.taltech.inbankbackend.service.RejectionReason;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryDecisionServerTest {
+
+    private static final String SEGMENT_3_CODE = "49002010998";
+    private static final String DEBTOR_CODE = "49002010965";
+    private static final String INVALID_CODE = "12345678901";
+    private static final String SLOW_CODE = "39002010997";
+
+    private final CompletableFuture<Integer> slowModifier = new CompletableFuture<>();
+    private BinaryDecisionServer server;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    void givenRequests_whenDecide_thenAnswersAsDecisionEngine() throws Exception {
+        start(16);
+        try (BinaryDecisionClient client = client()) {
+            assertEquals(new Decision.Approved(10000, 12),
+                    decision(client.decide(SEGMENT_3_CODE, 4000, 12).get(5, TimeUnit.SECONDS)));
+            assertEquals(Decision.Rejected.of(RejectionReason.DEBT),
+                    decision(client.decide(DEBTOR_CODE, 4000, 12).get(5, TimeUnit.SECONDS)));
+            assertEquals(Decision.Rejected.of(RejectionReason.INVALID_PERSONAL_CODE),
+                    decision(client.decide(INVALID_CODE, 4000, 12).get(5, TimeUnit.SECONDS)));
+            assertEquals(Decision.Rejected.of(RejectionReason.INVALID_PERSONAL_CODE),
+                    decision(client.decide(-1L, 4000, 12).get(5, TimeUnit.SECONDS)));
+        }
+    }
+
+    @Test
+    void givenLoopbackBindAddress_whenEnabled_thenListensOnLoopbackOnly() throws Exception {
+        LoanCalculator loanCalculator = new LoanCalculator(true);
+        server = new BinaryDecisionServer(DecisionEngines.engine(new CreditModifierService(), loanCalculator), true,
+                "127.0.0.1", 0, 1, 16, new SimpleMeterRegistry());
+
+        assertTrue(server.getAddress().getAddress().isLoopbackAddress());
+    }
+
+    @Test
+    void givenManyPipelinedRequests_whenMoreThanMaxInFlight_thenAnswersAll() throws Exception {
+        start(4);
+        try (BinaryDecisionClient client = client()) {
+            List<CompletableFuture<BinaryDecision>> decisions = new ArrayList<>();
+            for (int i = 0; i < 20_000; i++) {
+                decisions.add(client.decide(i % 2 == 0 ? SEGMENT_3_CODE : DEBTOR_CODE, 4000, 12));
+            }
+
+            for (int i = 0; i < decisions.size(); i++) {
+                assertEquals(i % 2 == 0 ? new Decision.Approved(10000, 12) : Decision.Rejected.of(RejectionReason.DEBT),
+                        decision(decisions.get(i).get(10, TimeUnit.SECONDS)));
+            }
+            assertEquals(0, client.getPendingCount());
+        }
+    }
+
+    @Test
+    void givenSlowDecision_whenLaterRequestDecidedFirst_thenAnswersOutOfOrder() throws Exception {
+        start(16);
+        try (BinaryDecisionClient client = client()) {
+            CompletableFuture<BinaryDecision> slow = client.decide(SLOW_CODE, 4000, 12);
+            CompletableFuture<BinaryDecision> fast = client.decide(SEGMENT_3_CODE, 4000, 12);
+
+            assertEquals(new Decision.Approved(10000, 12), decision(fast.get(5, TimeUnit.SECONDS)));
+            assertFalse(slow.isDone());
+
+            slowModifier.complete(1000);
+
+            assertEquals(new Decision.Approved(10000, 12), decision(slow.get(5, TimeUnit.SECONDS)));
+        }
+    }
+
+    @Test
+    void givenFailedDecision_whenDecide_thenAnswersUnexpectedErrorWithoutPolicy() throws Exception {
+        start(16);
+        try (BinaryDecisionClient client = client()) {
+            CompletableFuture<BinaryDecision> failed = client.decide(SLOW_CODE, 4000, 12);
+            slowModifier.completeExceptionally(new IllegalStateException("Registry answered garbage"));
+
+            assertEquals(new Decision.Rejected(RejectionReason.UNEXPECTED_ERROR, BinaryDecisionProtocol.NO_POLICY_VERSION),
+                    decision(failed.get(5, TimeUnit.SECONDS)));
+        }
+    }
+
+    @Test
+    void givenCallerClosesOutput_whenRequestsSent_thenAnswersThemBeforeClosing() throws Exception {
+        start(16);
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getPort()))) {
+            ByteBuffer requests = ByteBuffer.allocate(2 * BinaryDecisionProtocol.FRAME_BYTES);
+            BinaryDecisionProtocol.putRequest(requests, 7, BinaryDecisionProtocol.packPersonalCode(SEGMENT_3_CODE), 4000, 12);
+            BinaryDecisionProtocol.putRequest(requests, 8, BinaryDecisionProtocol.packPersonalCode(DEBTOR_CODE), 4000, 12);
+            channel.write(requests.flip());
+            channel.shutdownOutput();
+
+            ByteBuffer responses = readToEnd(channel);
+
+            assertEquals(2 * BinaryDecisionProtocol.FRAME_BYTES, responses.remaining());
+            assertEquals(BinaryDecisionProtocol.PAYLOAD_BYTES, responses.getInt());
+            assertEquals(7, responses.getInt());
+            assertEquals(new Decision.Approved(10000, 12), decision(BinaryDecisionProtocol.getDecision(responses)));
+            assertEquals(BinaryDecisionProtocol.PAYLOAD_BYTES, responses.getInt());
+            assertEquals(8, responses.getInt());
+            assertEquals(Decision.Rejected.of(RejectionReason.DEBT),
+                    decision(BinaryDecisionProtocol.getDecision(responses)));
+        }
+    }
+
+    @Test
+    void givenFrameOfOtherLength_whenSent_thenClosesConnection() throws Exception {
+        start(16);
+        try (SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", server.getPort()))) {
+            ByteBuffer frame = ByteBuffer.allocate(BinaryDecisionProtocol.FRAME_BYTES).putInt(7);
+            channel.write(frame.clear());
+
+            assertEquals(0, readToEnd(channel).remaining());
+        }
+    }
+
+    @Test
+    void givenClosedServer_whenDecide_thenFails() throws Exception {
+        start(16);
+        BinaryDecisionClient client = client();
+        server.close();
+
+        ExecutionException failure = assertThrows(ExecutionException.class,
+                () -> client.decide(SEGMENT_3_CODE, 4000, 12).get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, failure.getCause());
+        client.close();
+    }
+
+    private void start(int maxInFlight) throws IOException {
+        CreditModifierService creditModifierService = new CreditModifierService() {
+            @Override
+            public CompletableFuture<Integer> getCreditModifierAsync(String personalCode) {
+                return personalCode.equals(SLOW_CODE) ? slowModifier : super.getCreditModifierAsync(personalCode);
+            }
+        };
+        LoanCalculator loanCalculator = new LoanCalculator(true);
+        DecisionEngine decisionEngine = DecisionEngines.engine(creditModifierService, loanCalculator,
+                new DecisionTable(loanCalculator));
+        server = new BinaryDecisionServer(decisionEngine, new InetSocketAddress("127.0.0.1", 0), 2, maxInFlight);
+    }
+
+    private BinaryDecisionClient client() throws IOException {
+        return new BinaryDecisionClient("127.0.0.1", server.getPort());
+    }
+
+    /**
+     * @return The decision the server encoded in a response, to compare with what the engine decides
+     */
+    private static Decision decision(BinaryDecision decision) {
+        if (decision.isApproved()) {
+            return new Decision.Approved(decision.loanAmount(), decision.loanPeriod(), decision.policyVersion());
+        }
+        return new Decision.Rejected(RejectionReason.values()[decision.reasonCode() - 1], decision.policyVersion());
+    }
+
+    private static ByteBuffer readToEnd(SocketChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        while (channel.read(buffer) >= 0) {
+            if (!buffer.hasRemaining()) {
+                throw new IOException("Response too long");
+            }
+        }
+        return buffer.flip();
+    }
+}
@@ -0,0 +1,107 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import ee.taltech.inbankbackend.InbankBackendApplication;
+import ee.taltech.inbankbackend.client.BinaryDecisionClient;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Decides the same applications as fast as the service answers, keeping {@value #DEFAULT_IN_FLIGHT} requests in
+ * flight, first through POST /loan/decision and then through the binary listener over one connection, and reports
+ * the decisions a second of each. The binary listener must decide more. Each run is preceded by an unmeasured
+ * warm-up of {@value #WARM_UP_SECONDS} seconds. {@code -Dbinary.seconds} and {@code -Dbinary.in-flight} change
+ * the load.
+ */
+@Tag("perf")
+class BinaryDecisionThroughputTest {
+
+    private static final int SECONDS = Integer.getInteger("binary.seconds", 10);
+    private static final int WARM_UP_SECONDS = 2;
+    private static final int DEFAULT_IN_FLIGHT = 256;
+    private static final int IN_FLIGHT = Integer.getInteger("binary.in-flight", DEFAULT_IN_FLIGHT);
+    private static final String[] PERSONAL_CODES = {"49002010965", "49002010976", "49002010987", "49002010998"};
+
+    @Test
+    void givenSameApplications_whenDecidedOverBinaryListener_thenDecidesMoreThanHttp() throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(InbankBackendApplication.class)
+                .properties("server.port=0",
+                        "decision-engine.binary.enabled=true",
+                        "decision-engine.binary.port=0",
+                        "decision-engine.binary.max-in-flight=" + IN_FLIGHT)
+                .run();
+        try (HttpClient http = HttpClient.newHttpClient();
+             BinaryDecisionClient binary = new BinaryDecisionClient("127.0.0.1",
+                     context.getBean(BinaryDecisionServer.class).getPort())) {
+            URI uri = URI.create("http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/loan/decision");
+            HttpRequest[] requests = new HttpRequest[PERSONAL_CODES.length];
+            for (int i = 0; i < requests.length; i++) {
+                requests[i] = HttpRequest.newBuilder(uri)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"personalCode\":\"" + PERSONAL_CODES[i]
+                                + "\",\"loanAmount\":4000,\"loanPeriod\":12}", StandardCharsets.US_ASCII))
+                        .build();
+            }
+            IntFunction<CompletableFuture<?>> httpDecision = i -> http.sendAsync(
+                    requests[i % requests.length], HttpResponse.BodyHandlers.ofByteArray());
+            IntFunction<CompletableFuture<?>> binaryDecision = i -> binary.decide(
+                    PERSONAL_CODES[i % PERSONAL_CODES.length], 4000, 12);
+
+            run(httpDecision, WARM_UP_SECONDS);
+            double httpRate = run(httpDecision, SECONDS);
+            run(binaryDecision, WARM_UP_SECONDS);
+            double binaryRate = run(binaryDecision, SECONDS);
+
+            System.out.printf("POST /loan/decision: %.0f decisions/s%n", httpRate);
+            System.out.printf("Binary listener: %.0f decisions/s, %.1f times as many%n", binaryRate,
+                    binaryRate / httpRate);
+            assertEquals(0, binary.getPendingCount());
+            assertTrue(binaryRate > httpRate, "The binary listener decided no more than HTTP");
+        } finally {
+            context.close();
+        }
+    }
+
+    /**
+     * Keeps {@link #IN_FLIGHT} decisions in flight for the given time and waits for the last ones.
+     *
+     * @return The decisions completed per second
+     */
+    private static double run(IntFunction<CompletableFuture<?>> decision, int seconds) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(IN_FLIGHT);
+        LongAdder completed = new LongAdder();
+        LongAdder failed = new LongAdder();
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+        for (int i = 0; System.nanoTime() < end; i++) {
+            inFlight.acquire();
+            decision.apply(i).whenComplete((result, failure) -> {
+                if (failure == null) {
+                    completed.increment();
+                } else {
+                    failed.increment();
+                }
+                inFlight.release();
+            });
+        }
+        inFlight.acquire(IN_FLIGHT);
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        assertEquals(0, failed.sum(), "Decisions failed");
+        return completed.sum() / elapsedSeconds;
+    }
+}
@@ -0,0 +1,86 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ClientRateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void givenIdleClient_whenBurstExceeded_thenRejectsUntilNextToken() {
+        ClientRateLimiter limiter = new ClientRateLimiter(10, 3, 1024);
+        long now = System.nanoTime();
+
+        assertEquals(0, limiter.tryAcquire("client", now));
+        assertEquals(0, limiter.tryAcquire("client", now));
+        assertEquals(0, limiter.tryAcquire("client", now));
+        assertEquals(SECOND / 10, limiter.tryAcquire("client", now));
+        assertEquals(SECOND / 20, limiter.tryAcquire("client", now + SECOND / 20));
+
+        assertEquals(0, limiter.tryAcquire("client", now + SECOND / 10));
+        assertEquals(SECOND / 10, limiter.tryAcquire("client", now + SECOND / 10));
+    }
+
+    @Test
+    void givenClientIdleForLong_whenAcquire_thenAllowsOnlyOneBurst() {
+        ClientRateLimiter limiter = new ClientRateLimiter(10, 2, 1024);
+        long now = System.nanoTime();
+        limiter.tryAcquire("client", now);
+
+        long later = now + 60 * SECOND;
+
+        assertEquals(0, limiter.tryAcquire("client", later));
+        assertEquals(0, limiter.tryAcquire("client", later));
+        assertEquals(SECOND / 10, limiter.tryAcquire("client", later));
+    }
+
+    @Test
+    void givenOneClientExhausted_whenOtherClientAcquires_thenAdmitted() {
+        ClientRateLimiter limiter = new ClientRateLimiter(1, 1, 1024);
+        long now = System.nanoTime();
+
+        assertEquals(0, limiter.tryAcquire("10.0.0.1", now));
+        assertEquals(SECOND, limiter.tryAcquire("10.0.0.1", now));
+        assertEquals(0, limiter.tryAcquire("10.0.0.2", now));
+    }
+
+    /**
+     * Races many threads for one client's bucket at the same instant and checks that exactly the burst gets
+     * through, so that no compare-and-set hands out a token twice.
+     */
+    @Test
+    void givenConcurrentRequestsOfOneClient_whenAcquire_thenAdmitsExactlyTheBurst() throws InterruptedException {
+        ClientRateLimiter limiter = new ClientRateLimiter(1, 500, 1024);
+        long now = System.nanoTime();
+        LongAdder admitted = new LongAdder();
+
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    if (limiter.tryAcquire("client", now) == 0) {
+                        admitted.increment();
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(500, admitted.sum());
+    }
+
+    @Test
+    void givenInvalidLimits_whenCreated_thenThrows() {
+        assertThrows(IllegalArgumentException.class, () -> new ClientRateLimiter(0, 1, 1024));
+        assertThrows(IllegalArgumentException.class, () -> new ClientRateLimiter(10, 0, 1024));
+        assertThrows(IllegalArgumentException.class, () -> new ClientRateLimiter(10, 1, 0));
+    }
+}
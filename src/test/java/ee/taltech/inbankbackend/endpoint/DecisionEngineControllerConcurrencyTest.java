@@ -0,0 +1,97 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ee.taltech.inbankbackend.service.Decision;
+import ee.taltech.inbankbackend.service.DecisionEngine;
+import ee.taltech.inbankbackend.service.RejectionReason;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Fires thousands of concurrent requests at /loan/decision and checks that every response belongs to its own request.
+ * The mocked engine echoes the requested amount and period back, or rejects requests with an odd period.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class DecisionEngineControllerConcurrencyTest {
+
+    private static final int REQUESTS = 5000;
+    private static final int THREADS = 64;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private DecisionEngine decisionEngine;
+
+    @Test
+    void givenConcurrentRequests_whenRequestDecision_thenEachResponseMatchesItsRequest() throws Exception {
+        when(decisionEngine.calculateApprovedLoan(anyString(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            long amount = invocation.getArgument(1);
+            int period = invocation.getArgument(2);
+            return period % 2 == 0
+                    ? new Decision.Approved((int) amount, period)
+                    : Decision.Rejected.of(RejectionReason.INVALID_LOAN_PERIOD);
+        });
+
+        HttpClient client = HttpClient.newHttpClient();
+        URI uri = URI.create("http://localhost:" + port + "/loan/decision");
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> results = new ArrayList<>(REQUESTS);
+            for (int i = 0; i < REQUESTS; i++) {
+                long amount = 2000 + i;
+                int period = 12 + i % 37;
+                results.add(executor.submit(() -> {
+                    String body = objectMapper.writeValueAsString(new DecisionRequest("50307172740", amount, period));
+                    HttpRequest request = HttpRequest.newBuilder(uri)
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body))
+                            .build();
+                    HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                    DecisionResponse decision = objectMapper.readValue(response.body(), DecisionResponse.class);
+
+                    if (period % 2 == 0) {
+                        assertEquals(200, response.statusCode());
+                        assertEquals((int) amount, decision.getLoanAmount());
+                        assertEquals(period, decision.getLoanPeriod());
+                        assertNull(decision.getErrorMessage());
+                    } else {
+                        assertEquals(400, response.statusCode());
+                        assertNull(decision.getLoanAmount());
+                        assertNull(decision.getLoanPeriod());
+                        assertEquals("Invalid loan period!", decision.getErrorMessage());
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
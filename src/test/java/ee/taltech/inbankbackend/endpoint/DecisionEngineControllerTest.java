@@ -2,13 +2,11 @@ package ee.taltech.inbankbackend.endpoint;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import ee.taltech.inbankbackend.exceptions.InvalidAgeException;
-import ee.taltech.inbankbackend.exceptions.InvalidLoanAmountException;
-import ee.taltech.inbankbackend.exceptions.InvalidLoanPeriodException;
-import ee.taltech.inbankbackend.exceptions.InvalidPersonalCodeException;
-import ee.taltech.inbankbackend.exceptions.NoValidLoanException;
 import ee.taltech.inbankbackend.service.Decision;
 import ee.taltech.inbankbackend.service.DecisionEngine;
+import ee.taltech.inbankbackend.service.DecisionPolicy;
+import ee.taltech.inbankbackend.service.OfferCurve;
+import ee.taltech.inbankbackend.service.RejectionReason;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -22,10 +20,17 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -56,9 +61,8 @@ public class DecisionEngineControllerTest {
      */
     @Test
     public void givenValidRequest_whenRequestDecision_thenReturnsExpectedResponse()
-            throws Exception, InvalidLoanPeriodException, NoValidLoanException, InvalidPersonalCodeException,
-            InvalidLoanAmountException,InvalidAgeException {
-        Decision decision = new Decision(1000, 12, null);
+            throws Exception {
+        Decision decision = new Decision.Approved(1000, 12);
         when(decisionEngine.calculateApprovedLoan(anyString(), anyLong(), anyInt())).thenReturn(decision);
 
         DecisionRequest request = new DecisionRequest("1234", 10L, 10);
@@ -71,6 +75,7 @@ public class DecisionEngineControllerTest {
                 .andExpect(jsonPath("$.loanAmount").value(1000))
                 .andExpect(jsonPath("$.loanPeriod").value(12))
                 .andExpect(jsonPath("$.errorMessage").isEmpty())
+                .andExpect(jsonPath("$.policyVersion").value(DecisionPolicy.INITIAL_VERSION))
                 .andReturn();
 
         DecisionResponse response = objectMapper.readValue(result.getResponse().getContentAsString(), DecisionResponse.class);
@@ -85,10 +90,9 @@ public class DecisionEngineControllerTest {
      */
     @Test
     public void givenInvalidPersonalCode_whenRequestDecision_thenReturnsBadRequest()
-            throws Exception, InvalidLoanPeriodException, NoValidLoanException, InvalidPersonalCodeException,
-            InvalidLoanAmountException ,InvalidAgeException{
+            throws Exception {
         when(decisionEngine.calculateApprovedLoan(anyString(), anyLong(), anyInt()))
-                .thenThrow(new InvalidPersonalCodeException("Invalid personal code"));
+                .thenReturn(Decision.Rejected.of(RejectionReason.INVALID_PERSONAL_CODE));
 
         DecisionRequest request = new DecisionRequest("1234", 10L, 10);
 
@@ -99,13 +103,13 @@ public class DecisionEngineControllerTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.loanAmount").isEmpty())
                 .andExpect(jsonPath("$.loanPeriod").isEmpty())
-                .andExpect(jsonPath("$.errorMessage").value("Invalid personal code"))
+                .andExpect(jsonPath("$.errorMessage").value("Invalid personal ID code!"))
                 .andReturn();
 
         DecisionResponse response = objectMapper.readValue(result.getResponse().getContentAsString(), DecisionResponse.class);
         assert response.getLoanAmount() == null;
         assert response.getLoanPeriod() == null;
-        assert response.getErrorMessage().equals("Invalid personal code");
+        assert response.getErrorMessage().equals("Invalid personal ID code!");
     }
 
     /**
@@ -114,10 +118,9 @@ public class DecisionEngineControllerTest {
      */
     @Test
     public void givenInvalidLoanAmount_whenRequestDecision_thenReturnsBadRequest()
-            throws Exception, InvalidLoanPeriodException, NoValidLoanException, InvalidPersonalCodeException,
-            InvalidLoanAmountException ,InvalidAgeException{
+            throws Exception {
         when(decisionEngine.calculateApprovedLoan(anyString(), anyLong(), anyInt()))
-                .thenThrow(new InvalidLoanAmountException("Invalid loan amount"));
+                .thenReturn(Decision.Rejected.of(RejectionReason.INVALID_LOAN_AMOUNT));
 
         DecisionRequest request = new DecisionRequest("1234", 10L, 10);
 
@@ -128,13 +131,13 @@ public class DecisionEngineControllerTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.loanAmount").isEmpty())
                 .andExpect(jsonPath("$.loanPeriod").isEmpty())
-                .andExpect(jsonPath("$.errorMessage").value("Invalid loan amount"))
+                .andExpect(jsonPath("$.errorMessage").value("Invalid loan amount!"))
                 .andReturn();
 
         DecisionResponse response = objectMapper.readValue(result.getResponse().getContentAsString(), DecisionResponse.class);
         assert response.getLoanAmount() == null;
         assert response.getLoanPeriod() == null;
-        assert response.getErrorMessage().equals("Invalid loan amount");
+        assert response.getErrorMessage().equals("Invalid loan amount!");
     }
 
     /**
@@ -143,10 +146,9 @@ public class DecisionEngineControllerTest {
      */
     @Test
     public void givenInvalidLoanPeriod_whenRequestDecision_thenReturnsBadRequest()
-            throws Exception, InvalidLoanPeriodException, NoValidLoanException, InvalidPersonalCodeException,
-            InvalidLoanAmountException,InvalidAgeException {
+            throws Exception {
         when(decisionEngine.calculateApprovedLoan(anyString(), anyLong(), anyInt()))
-                .thenThrow(new InvalidLoanPeriodException("Invalid loan period"));
+                .thenReturn(Decision.Rejected.of(RejectionReason.INVALID_LOAN_PERIOD));
 
         DecisionRequest request = new DecisionRequest("1234", 10L, 10);
 
@@ -157,13 +159,13 @@ public class DecisionEngineControllerTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.loanAmount").isEmpty())
                 .andExpect(jsonPath("$.loanPeriod").isEmpty())
-                .andExpect(jsonPath("$.errorMessage").value("Invalid loan period"))
+                .andExpect(jsonPath("$.errorMessage").value("Invalid loan period!"))
                 .andReturn();
 
         DecisionResponse response = objectMapper.readValue(result.getResponse().getContentAsString(), DecisionResponse.class);
         assert response.getLoanAmount() == null;
         assert response.getLoanPeriod() == null;
-        assert response.getErrorMessage().equals("Invalid loan period");
+        assert response.getErrorMessage().equals("Invalid loan period!");
     }
 
     /**
@@ -172,10 +174,9 @@ public class DecisionEngineControllerTest {
      */
     @Test
     public void givenNoValidLoan_whenRequestDecision_thenReturnsBadRequest()
-            throws Exception, InvalidLoanPeriodException, NoValidLoanException, InvalidPersonalCodeException,
-            InvalidLoanAmountException,InvalidAgeException {
+            throws Exception {
         when(decisionEngine.calculateApprovedLoan(anyString(), anyLong(), anyInt()))
-                .thenThrow(new NoValidLoanException("No valid loan available"));
+                .thenReturn(Decision.Rejected.of(RejectionReason.NO_VALID_LOAN));
 
         DecisionRequest request = new DecisionRequest("1234", 1000L, 12);
 
@@ -186,13 +187,13 @@ public class DecisionEngineControllerTest {
                 .andExpect(content().contentType(MediaType.APPLICATION_JSON))
                 .andExpect(jsonPath("$.loanAmount").isEmpty())
                 .andExpect(jsonPath("$.loanPeriod").isEmpty())
-                .andExpect(jsonPath("$.errorMessage").value("No valid loan available"))
+                .andExpect(jsonPath("$.errorMessage").value("No valid loan found!"))
                 .andReturn();
 
         DecisionResponse response = objectMapper.readValue(result.getResponse().getContentAsString(), DecisionResponse.class);
         assert response.getLoanAmount() == null;
         assert response.getLoanPeriod() == null;
-        assert response.getErrorMessage().equals("No valid loan available");
+        assert response.getErrorMessage().equals("No valid loan found!");
     }
 
     /**
@@ -201,8 +202,7 @@ public class DecisionEngineControllerTest {
      */
     @Test
     public void givenUnexpectedError_whenRequestDecision_thenReturnsInternalServerError()
-            throws Exception, InvalidLoanPeriodException, NoValidLoanException, InvalidPersonalCodeException,
-            InvalidLoanAmountException,InvalidAgeException {
+            throws Exception {
         when(decisionEngine.calculateApprovedLoan(anyString(), anyLong(), anyInt())).thenThrow(new RuntimeException());
 
         DecisionRequest request = new DecisionRequest("1234", 10L, 10);
@@ -222,4 +222,233 @@ public class DecisionEngineControllerTest {
         assert response.getLoanPeriod() == null;
         assert response.getErrorMessage().equals("An unexpected error occurred");
     }
+
+    /**
+     * This test ensures that a decision the audit log could not record is refused with Service Unavailable (503).
+     */
+    @Test
+    public void givenAuditUnavailable_whenRequestDecision_thenReturnsServiceUnavailable() throws Exception {
+        when(decisionEngine.calculateApprovedLoan(anyString(), anyLong(), anyInt()))
+                .thenReturn(Decision.Rejected.of(RejectionReason.AUDIT_UNAVAILABLE));
+
+        DecisionRequest request = new DecisionRequest("1234", 10L, 10);
+
+        mockMvc.perform(post("/loan/decision")
+                        .content(objectMapper.writeValueAsString(request))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.loanAmount").isEmpty())
+                .andExpect(jsonPath("$.errorMessage")
+                        .value("Decisions are temporarily unavailable, please try again later."));
+    }
+
+    /**
+     * This test ensures that a batch request returns one result per application, in request order,
+     * and that a rejected application does not affect the others.
+     */
+    @Test
+    public void givenBatchRequest_whenRequestDecisions_thenReturnsResultPerApplication() throws Exception {
+        when(decisionEngine.calculateApprovedLoan(anyString(), anyLong(), anyInt())).thenAnswer(invocation ->
+                invocation.getArgument(0).equals("debtor")
+                        ? Decision.Rejected.of(RejectionReason.DEBT)
+                        : new Decision.Approved(((Long) invocation.getArgument(1)).intValue(), invocation.getArgument(2)));
+
+        List<DecisionRequest> requests = List.of(
+                new DecisionRequest("1234", 3000L, 12),
+                new DecisionRequest("debtor", 4000L, 24),
+                new DecisionRequest("5678", 5000L, 36));
+
+        mockMvc.perform(post("/loan/decisions")
+                        .content(objectMapper.writeValueAsString(requests))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].loanAmount").value(3000))
+                .andExpect(jsonPath("$[0].loanPeriod").value(12))
+                .andExpect(jsonPath("$[1].loanAmount").isEmpty())
+                .andExpect(jsonPath("$[1].errorMessage").value("No valid loan due to debt!"))
+                .andExpect(jsonPath("$[2].loanAmount").value(5000))
+                .andExpect(jsonPath("$[2].loanPeriod").value(36));
+    }
+
+    /**
+     * This test ensures that a batch larger than the configured maximum is refused with Payload Too Large (413).
+     */
+    @Test
+    public void givenOversizedBatch_whenRequestDecisions_thenReturnsPayloadTooLarge() throws Exception {
+        List<DecisionRequest> requests = Collections.nCopies(50_001, new DecisionRequest("1234", 3000L, 12));
+
+        mockMvc.perform(post("/loan/decisions")
+                        .content(objectMapper.writeValueAsString(requests))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    /**
+     * This test ensures that an oversized batch is refused as soon as the application past the maximum is read,
+     * so the rest of the body, here malformed, is never parsed.
+     */
+    @Test
+    public void givenOversizedBatchWithMalformedTail_whenRequestDecisions_thenStopsParsingAtTheLimit()
+            throws Exception {
+        String requests = objectMapper.writeValueAsString(
+                Collections.nCopies(50_001, new DecisionRequest("1234", 3000L, 12)));
+        String body = requests.substring(0, requests.length() - 1) + ",{\"personalCode\":";
+
+        mockMvc.perform(post("/loan/decisions")
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isPayloadTooLarge());
+    }
+
+    /**
+     * This test ensures that an entry that cannot be bound to an application gets its own malformed request
+     * response, while the other entries of the batch are decided.
+     */
+    @Test
+    public void givenBatchWithUnbindableEntry_whenRequestDecisions_thenRejectsOnlyThatEntry() throws Exception {
+        when(decisionEngine.calculateApprovedLoan(anyString(), anyLong(), anyInt()))
+                .thenReturn(new Decision.Approved(3000, 12));
+        String body = "[{\"personalCode\":\"1234\",\"loanAmount\":3000,\"loanPeriod\":12},"
+                + "{\"personalCode\":\"5678\",\"loanAmount\":\"abc\",\"loanPeriod\":12},"
+                + "[1,2,3],"
+                + "{\"personalCode\":\"9012\",\"loanAmount\":3000,\"loanPeriod\":12}]";
+
+        mockMvc.perform(post("/loan/decisions")
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].loanAmount").value(3000))
+                .andExpect(jsonPath("$[1].loanAmount").isEmpty())
+                .andExpect(jsonPath("$[1].errorMessage").value("Malformed request!"))
+                .andExpect(jsonPath("$[2].errorMessage").value("Malformed request!"))
+                .andExpect(jsonPath("$[3].loanAmount").value(3000))
+                .andExpect(jsonPath("$[3].loanPeriod").value(12));
+    }
+
+    /**
+     * This test ensures that a batch body that is not a JSON array is refused with Bad Request (400).
+     */
+    @Test
+    public void givenMalformedBatch_whenRequestDecisions_thenReturnsBadRequest() throws Exception {
+        mockMvc.perform(post("/loan/decisions")
+                        .content("{\"personalCode\":\"1234\"}")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/loan/decisions")
+                        .content("[{\"personalCode\":")
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * This test ensures that the streaming endpoint answers every NDJSON request line with an NDJSON response line.
+     */
+    @Test
+    public void givenNdjsonRequests_whenStreamDecisions_thenStreamsNdjsonResponses() throws Exception {
+        when(decisionEngine.calculateApprovedLoan(anyString(), anyLong(), anyInt())).thenReturn(new Decision.Approved(4000, 24));
+
+        String body = objectMapper.writeValueAsString(new DecisionRequest("1234", 4000L, 24)) + "\n"
+                + objectMapper.writeValueAsString(new DecisionRequest("5678", 4000L, 24)) + "\n";
+
+        mockMvc.perform(post("/loan/decisions/stream")
+                        .content(body)
+                        .contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string("{\"loanAmount\":4000,\"loanPeriod\":24,\"errorMessage\":null,\"policyVersion\":"
+                        + DecisionPolicy.INITIAL_VERSION + "}\n"
+                        + "{\"loanAmount\":4000,\"loanPeriod\":24,\"errorMessage\":null,\"policyVersion\":"
+                        + DecisionPolicy.INITIAL_VERSION + "}\n"));
+    }
+
+    /**
+     * This test ensures that the asynchronous endpoint completes the response once the decision is made,
+     * with the same status and body as the synchronous endpoint.
+     */
+    @Test
+    public void givenPendingDecision_whenRequestDecisionAsync_thenCompletesResponseLater() throws Exception {
+        CompletableFuture<Decision> decision = new CompletableFuture<>();
+        when(decisionEngine.calculateApprovedLoanAsync(anyString(), anyLong(), anyInt())).thenReturn(decision);
+
+        MvcResult pending = mockMvc.perform(post("/loan/decision/async")
+                        .content(objectMapper.writeValueAsString(new DecisionRequest("1234", 4000L, 12)))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        decision.complete(Decision.Rejected.of(RejectionReason.DEBT));
+
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.loanAmount").isEmpty())
+                .andExpect(jsonPath("$.errorMessage").value("No valid loan due to debt!"));
+    }
+
+    /**
+     * This test ensures that a failed asynchronous decision is answered with an Internal Server Error (500).
+     */
+    @Test
+    public void givenFailedDecision_whenRequestDecisionAsync_thenReturnsInternalServerError() throws Exception {
+        when(decisionEngine.calculateApprovedLoanAsync(anyString(), anyLong(), anyInt()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Registry down")));
+
+        MvcResult pending = mockMvc.perform(post("/loan/decision/async")
+                        .content(objectMapper.writeValueAsString(new DecisionRequest("1234", 4000L, 12)))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isInternalServerError())
+                .andExpect(jsonPath("$.errorMessage").value("An unexpected error occurred"));
+    }
+
+    /**
+     * This test ensures that the offer curve endpoint returns the amount for every period with an ETag,
+     * and answers a request carrying that ETag with Not Modified (304) and no body.
+     */
+    @Test
+    public void givenOfferCurve_whenRequestOffers_thenReturnsCurveAndHonoursETag() throws Exception {
+        int[] amounts = new int[37];
+        Arrays.fill(amounts, 10000);
+        amounts[0] = 3600;
+        when(decisionEngine.calculateOfferCurve(anyString())).thenReturn(new OfferCurve(12, amounts));
+
+        MvcResult result = mockMvc.perform(get("/loan/offers/38411266610"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(header().string("Cache-Control", "no-cache, private"))
+                .andExpect(jsonPath("$.startPeriod").value(12))
+                .andExpect(jsonPath("$.loanAmounts.length()").value(37))
+                .andExpect(jsonPath("$.loanAmounts[0]").value(3600))
+                .andExpect(jsonPath("$.loanAmounts[36]").value(10000))
+                .andExpect(jsonPath("$.errorMessage").isEmpty())
+                .andReturn();
+        String eTag = result.getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/loan/offers/38411266610").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        amounts[0] = 3700;
+        mockMvc.perform(get("/loan/offers/38411266610").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.loanAmounts[0]").value(3700));
+    }
+
+    /**
+     * This test ensures that a customer who cannot be offered any loan gets a Bad Request (400) with the reason.
+     */
+    @Test
+    public void givenRejectedCustomer_whenRequestOffers_thenReturnsBadRequest() throws Exception {
+        when(decisionEngine.calculateOfferCurve(anyString())).thenReturn(OfferCurve.rejected(RejectionReason.DEBT));
+
+        mockMvc.perform(get("/loan/offers/37605030299"))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist("ETag"))
+                .andExpect(jsonPath("$.loanAmounts").isEmpty())
+                .andExpect(jsonPath("$.errorMessage").value("No valid loan due to debt!"))
+                .andExpect(jsonPath("$.policyVersion").value(DecisionPolicy.INITIAL_VERSION));
+    }
 }
@@ -0,0 +1,273 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ee.taltech.inbankbackend.InbankBackendApplication;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Keeps 10,000 requests in flight against /loan/decision while every credit modifier comes from a remote
+ * registry that takes 50 ms to answer, and reports the throughput, the peak heap and the peak number of live
+ * platform threads of each deployment: the servlet controller on Tomcat's platform thread pool, the same
+ * controller on virtual threads, and the reactive profile's router on Netty. The slow-client comparison also
+ * pauses 100 ms halfway through every request body.<br><br>
+ * All deployments run in one JVM on the same hardware, one after another. The fake registry and the load
+ * generator run in the same JVM on virtual threads, so their share of the heap is the same for every deployment.
+ * Every connection is a socket on both ends, so the open file limit must allow about four per in-flight request
+ * ({@code ulimit -n 65536}). {@code -Dload.concurrency}, {@code -Dload.requests},
+ * {@code -Dload.registry-latency-ms} and {@code -Dload.upload-pause-ms} change the load.
+ */
+@Tag("perf")
+class DecisionEngineLoadTest {
+
+    private static final int CONCURRENCY = Integer.getInteger("load.concurrency", 10_000);
+    private static final int REQUESTS = Integer.getInteger("load.requests", 5 * CONCURRENCY);
+    private static final int REGISTRY_LATENCY_MILLIS = Integer.getInteger("load.registry-latency-ms", 50);
+    private static final int UPLOAD_PAUSE_MILLIS = Integer.getInteger("load.upload-pause-ms", 100);
+    private static final byte[] BODY_BYTES = "{\"personalCode\":\"49002010998\",\"loanAmount\":4000,\"loanPeriod\":12}"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private HttpServer registry;
+    private ExecutorService registryThreads;
+
+    @BeforeEach
+    void startRegistry() throws IOException {
+        registryThreads = Executors.newVirtualThreadPerTaskExecutor();
+        registry = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), CONCURRENCY);
+        registry.setExecutor(registryThreads);
+        registry.createContext("/credit-modifiers/", DecisionEngineLoadTest::answer);
+        registry.start();
+    }
+
+    @AfterEach
+    void stopRegistry() {
+        registry.stop(0);
+        registryThreads.shutdownNow();
+    }
+
+    @Test
+    void givenSlowRegistry_whenTenThousandRequestsInFlight_thenReportsThroughputAndHeapPerThreadMode() throws Exception {
+        LoadResult platform = run(Deployment.PLATFORM_THREADS, 0);
+        LoadResult virtual = run(Deployment.VIRTUAL_THREADS, 0);
+
+        platform.print(Deployment.PLATFORM_THREADS);
+        virtual.print(Deployment.VIRTUAL_THREADS);
+        assertEquals(REQUESTS, platform.approved());
+        assertEquals(REQUESTS, virtual.approved());
+        assertEquals(0, virtual.pinnedInService(), "Virtual threads pinned to their carrier in decision service code");
+        assertTrue(virtual.requestsPerSecond() > platform.requestsPerSecond());
+    }
+
+    @Test
+    void givenSlowClients_whenTenThousandRequestsInFlight_thenComparesServletAndReactiveDeployments() throws Exception {
+        LoadResult servlet = run(Deployment.PLATFORM_THREADS, UPLOAD_PAUSE_MILLIS);
+        LoadResult reactive = run(Deployment.REACTIVE, UPLOAD_PAUSE_MILLIS);
+
+        servlet.print(Deployment.PLATFORM_THREADS);
+        reactive.print(Deployment.REACTIVE);
+        assertEquals(REQUESTS, servlet.approved());
+        assertEquals(REQUESTS, reactive.approved());
+        assertTrue(reactive.peakThreads() < servlet.peakThreads());
+        assertTrue(reactive.requestsPerSecond() > servlet.requestsPerSecond());
+    }
+
+    private LoadResult run(Deployment deployment, int uploadPauseMillis) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(InbankBackendApplication.class)
+                .profiles(deployment.profiles)
+                .properties("server.port=0",
+                        "spring.threads.virtual.enabled=" + (deployment == Deployment.VIRTUAL_THREADS),
+                        "server.tomcat.max-connections=" + 2 * CONCURRENCY,
+                        "server.tomcat.accept-count=" + CONCURRENCY,
+                        "decision-engine.credit-registry.url=http://127.0.0.1:" + registry.getAddress().getPort()
+                                + "/credit-modifiers",
+                        "decision-engine.credit-registry.timeout=30s",
+                        "decision-engine.credit-registry.max-concurrent-calls=" + 2 * CONCURRENCY)
+                .run();
+        LongAdder pinned = new LongAdder();
+        try (RecordingStream pinning = new RecordingStream()) {
+            pinning.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            pinning.onEvent("jdk.VirtualThreadPinned", event -> {
+                if (isInService(event)) {
+                    pinned.increment();
+                }
+            });
+            pinning.startAsync();
+            URI uri = URI.create("http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port")
+                    + "/loan/decision");
+            LoadResult result = load(uri, uploadPauseMillis);
+            pinning.stop();
+            return result.withPinned(pinned.sum());
+        } finally {
+            context.close();
+        }
+    }
+
+    private static LoadResult load(URI uri, int uploadPauseMillis) throws Exception {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        System.gc();
+        threads.resetPeakThreadCount();
+        AtomicLong peakHeap = new AtomicLong();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> peakHeap.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max),
+                0, 10, TimeUnit.MILLISECONDS);
+
+        LongAdder approved = new LongAdder();
+        long start = System.nanoTime();
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder()
+                     .executor(clients)
+                     .connectTimeout(Duration.ofSeconds(30))
+                     .build()) {
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Content-Type", "application/json")
+                    .timeout(Duration.ofSeconds(60))
+                    .POST(uploadPauseMillis > 0
+                            ? HttpRequest.BodyPublishers.fromPublisher(new SlowBody(BODY_BYTES, uploadPauseMillis), BODY_BYTES.length)
+                            : HttpRequest.BodyPublishers.ofByteArray(BODY_BYTES))
+                    .build();
+            List<Future<?>> results = new ArrayList<>(CONCURRENCY);
+            for (int i = 0; i < CONCURRENCY; i++) {
+                int requests = REQUESTS / CONCURRENCY + (i < REQUESTS % CONCURRENCY ? 1 : 0);
+                results.add(clients.submit(() -> {
+                    for (int j = 0; j < requests; j++) {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        if (response.statusCode() == 200 && response.body().contains("\"loanAmount\":10000")) {
+                            approved.increment();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            sampler.shutdownNow();
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        return new LoadResult(approved.sum(), elapsedNanos, peakHeap.get(), threads.getPeakThreadCount(), 0);
+    }
+
+    private static boolean isInService(RecordedEvent event) {
+        return event.getStackTrace() != null && event.getStackTrace().getFrames().stream()
+                .anyMatch(frame -> frame.getMethod().getType().getName().startsWith("ee.taltech.inbankbackend.")
+                        && !frame.getMethod().getType().getName().endsWith("LoadTest"));
+    }
+
+    private static void answer(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            Thread.sleep(REGISTRY_LATENCY_MILLIS);
+            byte[] body = "1000".getBytes(StandardCharsets.US_ASCII);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private enum Deployment {
+        PLATFORM_THREADS("Servlet, platform threads"),
+        VIRTUAL_THREADS("Servlet, virtual threads"),
+        REACTIVE("Reactive", "reactive");
+
+        private final String label;
+        private final String[] profiles;
+
+        Deployment(String label, String... profiles) {
+            this.label = label;
+            this.profiles = profiles;
+        }
+    }
+
+    /**
+     * Sends the first half of a request body at once and the second half after a pause, like a client on a
+     * slow network.
+     */
+    private record SlowBody(byte[] body, int pauseMillis) implements Flow.Publisher<ByteBuffer> {
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            AtomicInteger sent = new AtomicInteger();
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    for (long i = 0; i < n; i++) {
+                        switch (sent.getAndIncrement()) {
+                            case 0 -> subscriber.onNext(ByteBuffer.wrap(body, 0, body.length / 2));
+                            case 1 -> CompletableFuture.delayedExecutor(pauseMillis, TimeUnit.MILLISECONDS).execute(() -> {
+                                subscriber.onNext(ByteBuffer.wrap(body, body.length / 2, body.length - body.length / 2));
+                                subscriber.onComplete();
+                            });
+                            default -> {
+                                return;
+                            }
+                        }
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    sent.set(2);
+                }
+            });
+        }
+    }
+
+    private record LoadResult(long approved, long elapsedNanos, long peakHeapBytes, int peakThreads,
+                              long pinnedInService) {
+
+        LoadResult withPinned(long pinned) {
+            return new LoadResult(approved, elapsedNanos, peakHeapBytes, peakThreads, pinned);
+        }
+
+        double requestsPerSecond() {
+            return approved * 1e9 / elapsedNanos;
+        }
+
+        void print(Deployment deployment) {
+            System.out.printf("%s: %d requests with %d in flight in %d ms, %.0f requests/s, "
+                            + "peak heap %d MB, peak live threads %d, pinned in service code %d%n",
+                    deployment.label, approved, CONCURRENCY, elapsedNanos / 1_000_000, requestsPerSecond(),
+                    peakHeapBytes >> 20, peakThreads, pinnedInService);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import ee.taltech.inbankbackend.service.RejectionReason;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class DecisionJsonCodecTest {
+
+    @Test
+    void givenApproval_whenWritten_thenWritesAsJackson() {
+        assertEquals("{\"loanAmount\":4000,\"loanPeriod\":12,\"errorMessage\":null,\"policyVersion\":3}",
+                write(new DecisionResponse(4000, 12, null, 3)));
+        assertEquals("{\"loanAmount\":-7,\"loanPeriod\":-2147483648,\"errorMessage\":null,\"policyVersion\":null}",
+                write(new DecisionResponse(-7, Integer.MIN_VALUE, null, null)));
+    }
+
+    @Test
+    void givenRejection_whenWritten_thenWritesAsJackson() {
+        assertEquals("{\"loanAmount\":null,\"loanPeriod\":null,\"errorMessage\":\"Invalid personal ID code!\","
+                        + "\"policyVersion\":null}",
+                write(DecisionResponse.rejected(RejectionReason.INVALID_PERSONAL_CODE)));
+        assertEquals("{\"loanAmount\":null,\"loanPeriod\":null,\"errorMessage\":\"Malformed request!\","
+                        + "\"policyVersion\":null}",
+                write(NdjsonDecisionStreamer.MALFORMED_REQUEST));
+    }
+
+    @Test
+    void givenMessageNeedingEscapes_whenWritten_thenEscapesAsJackson() {
+        assertEquals("{\"loanAmount\":null,\"loanPeriod\":null,"
+                        + "\"errorMessage\":\"a\\\"b\\\\c\\nd\\u0001é\\uD83D\\uDE00\",\"policyVersion\":null}",
+                write(new DecisionResponse(null, null, "a\"b\\c\nd\u0001é😀", null)));
+    }
+
+    @Test
+    void givenRepeatedResponse_whenWritten_thenReturnsSameArray() {
+        assertSame(DecisionJsonCodec.writeResponse(new DecisionResponse(5000, 24, null, 1)),
+                DecisionJsonCodec.writeResponse(new DecisionResponse(5000, 24, null, 1)));
+        assertSame(DecisionJsonCodec.writeResponse(DecisionResponse.rejected(RejectionReason.DEBT)),
+                DecisionJsonCodec.writeResponse(DecisionResponse.rejected(RejectionReason.DEBT)));
+    }
+
+    @Test
+    void givenClientRequest_whenRead_thenParses() {
+        DecisionRequest request = read("{\"personalCode\":\"49002010998\",\"loanAmount\":4000,\"loanPeriod\":12}");
+
+        assertEquals("49002010998", request.getPersonalCode());
+        assertEquals(Long.valueOf(4000), request.getLoanAmount());
+        assertEquals(12, request.getLoanPeriod());
+    }
+
+    @Test
+    void givenReorderedRequestWithWhitespace_whenRead_thenParses() {
+        DecisionRequest request = read(" {\n\t\"loanPeriod\" : -48 ,\r\n \"personalCode\" : null , "
+                + "\"loanAmount\" : 123456789012345678 }\n");
+
+        assertNull(request.getPersonalCode());
+        assertEquals(Long.valueOf(123456789012345678L), request.getLoanAmount());
+        assertEquals(-48, request.getLoanPeriod());
+    }
+
+    @Test
+    void givenMissingProperties_whenRead_thenDefaults() {
+        DecisionRequest request = read("{\"loanAmount\":null}");
+
+        assertNull(request.getPersonalCode());
+        assertNull(request.getLoanAmount());
+        assertEquals(0, request.getLoanPeriod());
+        assertNotNull(read("{}"));
+    }
+
+    @Test
+    void givenRequestInOtherShape_whenRead_thenLeavesItToJackson() {
+        String[] requests = {
+                "{\"personalCode\":\"4900\\u0032010998\"}",
+                "{\"personalCode\":\"é\"}",
+                "{\"personalCode\":49002010998}",
+                "{\"loanAmount\":\"4000\"}",
+                "{\"loanAmount\":4000.0}",
+                "{\"loanAmount\":4e3}",
+                "{\"loanAmount\":04000}",
+                "{\"loanAmount\":1234567890123456789}",
+                "{\"loanPeriod\":1234567890}",
+                "{\"loanPeriod\":null}",
+                "{\"loanPeriod\":12,\"loanPeriod\":24}",
+                "{\"loanTerm\":12}",
+                "{\"loanPeriod\":12,}",
+                "{\"loanPeriod\":12} {}",
+                "{\"loanPeriod\":12",
+                "{\"loanAmount\":nul}",
+                "[]",
+                "",
+        };
+        for (String request : requests) {
+            assertNull(read(request), request);
+        }
+    }
+
+    @Test
+    void givenRequestWithinBuffer_whenRead_thenReadsOnlyTheRange() {
+        byte[] buffer = "xx{\"loanPeriod\":12}yy".getBytes(StandardCharsets.US_ASCII);
+
+        assertEquals(12, DecisionJsonCodec.readRequest(buffer, 2, buffer.length - 2).getLoanPeriod());
+    }
+
+    private static String write(DecisionResponse response) {
+        return new String(DecisionJsonCodec.writeResponse(response), StandardCharsets.UTF_8);
+    }
+
+    private static DecisionRequest read(String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        return DecisionJsonCodec.readRequest(bytes, 0, bytes.length);
+    }
+}
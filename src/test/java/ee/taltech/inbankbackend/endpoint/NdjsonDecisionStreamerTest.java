@@ -0,0 +1,188 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ee.taltech.inbankbackend.service.AgeValidator;
+import ee.taltech.inbankbackend.service.CreditModifierService;
+import ee.taltech.inbankbackend.service.DecisionEngine;
+import ee.taltech.inbankbackend.service.DecisionPolicy;
+import ee.taltech.inbankbackend.service.DecisionTable;
+import ee.taltech.inbankbackend.service.LoanCalculator;
+import ee.taltech.inbankbackend.service.LoanInputValidator;
+import ee.taltech.inbankbackend.service.PersonalCodeValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NdjsonDecisionStreamerTest {
+
+    private static final String SEGMENT_3_REQUEST = "{\"personalCode\":\"49002010998\",\"loanAmount\":4000,\"loanPeriod\":12}";
+    private static final String DEBTOR_REQUEST = "{\"personalCode\":\"49002010965\",\"loanAmount\":4000,\"loanPeriod\":12}";
+    private static final String INVALID_CODE_REQUEST = "{\"personalCode\":\"12345678901\",\"loanAmount\":4000,\"loanPeriod\":12}";
+
+    private NdjsonDecisionStreamer streamer;
+
+    @BeforeEach
+    void setUp() {
+        LoanCalculator loanCalculator = new LoanCalculator(true);
+        DecisionEngine decisionEngine = new DecisionEngine(new PersonalCodeValidator(), new AgeValidator(),
+                new LoanInputValidator(), new CreditModifierService(), loanCalculator, new DecisionTable(loanCalculator));
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        streamer = new NdjsonDecisionStreamer(decisionEngine, objectMapper);
+    }
+
+    @Test
+    void givenMixedLines_whenStream_thenWritesOneResponsePerRequestInOrder() throws IOException {
+        String input = SEGMENT_3_REQUEST + "\n"
+                + "\n"
+                + "not json\n"
+                + DEBTOR_REQUEST + "\r\n"
+                + "x".repeat(NdjsonDecisionStreamer.MAX_LINE_LENGTH * 2) + "\n"
+                + INVALID_CODE_REQUEST;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long responses = streamer.stream(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), out);
+
+        assertEquals(5, responses);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertArrayEquals(new String[]{
+                "{\"loanAmount\":10000,\"loanPeriod\":12,\"errorMessage\":null,\"policyVersion\":"
+                        + DecisionPolicy.INITIAL_VERSION + "}",
+                "{\"loanAmount\":null,\"loanPeriod\":null,\"errorMessage\":\"Malformed request!\",\"policyVersion\":null}",
+                "{\"loanAmount\":null,\"loanPeriod\":null,\"errorMessage\":\"No valid loan due to debt!\",\"policyVersion\":"
+                        + DecisionPolicy.INITIAL_VERSION + "}",
+                "{\"loanAmount\":null,\"loanPeriod\":null,\"errorMessage\":\"Malformed request!\",\"policyVersion\":null}",
+                "{\"loanAmount\":null,\"loanPeriod\":null,\"errorMessage\":\"Invalid personal ID code!\",\"policyVersion\":"
+                        + DecisionPolicy.INITIAL_VERSION + "}"
+        }, lines);
+    }
+
+    @Test
+    void givenLargeInput_whenStream_thenHeapStaysConstant() throws IOException {
+        assertStreamsWithConstantHeap(64L * 1024 * 1024);
+    }
+
+    /**
+     * Streams several gigabytes of generated requests. Run with {@code ./gradlew perfTest}, and set
+     * {@code -Dndjson.stream.bytes} to change the input size.
+     */
+    @Test
+    @Tag("perf")
+    void givenMultiGigabyteInput_whenStream_thenHeapStaysConstant() throws IOException {
+        long inputBytes = Long.getLong("ndjson.stream.bytes", 4L * 1024 * 1024 * 1024);
+        Streamed streamed = assertStreamsWithConstantHeap(inputBytes);
+        System.out.printf("Streamed %d MB, %d lines in %d ms (%d lines/s), heap growth %d KB%n",
+                inputBytes >> 20, streamed.lines(), streamed.elapsedMillis(),
+                streamed.lines() * 1000 / streamed.elapsedMillis(), streamed.heapGrowth() >> 10);
+    }
+
+    private Streamed assertStreamsWithConstantHeap(long inputBytes) throws IOException {
+        long baseline = usedHeapAfterGc();
+        GeneratedInput in = new GeneratedInput(inputBytes);
+        HeapSamplingOutput out = new HeapSamplingOutput(inputBytes / 8);
+
+        long start = System.nanoTime();
+        long responses = streamer.stream(in, out);
+        long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+
+        assertEquals(in.lines, responses);
+        assertEquals(in.lines, out.lines);
+        long growth = out.maxUsedHeap - baseline;
+        assertTrue(growth < 16L * 1024 * 1024, "heap grew by " + growth + " bytes");
+        return new Streamed(responses, elapsedMillis, growth);
+    }
+
+    private record Streamed(long lines, long elapsedMillis, long heapGrowth) {
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Generates NDJSON requests on the fly, cycling through approvals and rejections, until the size limit.
+     */
+    private static final class GeneratedInput extends InputStream {
+        private final byte[] pattern;
+        private final long limit;
+        private long position;
+        private long lines;
+
+        private GeneratedInput(long limit) {
+            String block = SEGMENT_3_REQUEST + "\n" + DEBTOR_REQUEST + "\n" + INVALID_CODE_REQUEST + "\n";
+            this.pattern = block.getBytes(StandardCharsets.UTF_8);
+            this.limit = limit - limit % pattern.length;
+        }
+
+        @Override
+        public int read() {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0];
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (position >= limit) {
+                return -1;
+            }
+            int count = (int) Math.min(len, limit - position);
+            for (int i = 0; i < count; i++) {
+                byte next = pattern[(int) ((position + i) % pattern.length)];
+                b[off + i] = next;
+                if (next == '\n') {
+                    lines++;
+                }
+            }
+            position += count;
+            return count;
+        }
+    }
+
+    /**
+     * Counts response lines and samples the used heap after a full GC at regular intervals.
+     */
+    private static final class HeapSamplingOutput extends OutputStream {
+        private final long sampleInterval;
+        private long written;
+        private long nextSample;
+        private long lines;
+        private long maxUsedHeap;
+
+        private HeapSamplingOutput(long sampleInterval) {
+            this.sampleInterval = sampleInterval;
+            this.nextSample = sampleInterval;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                if (b[i] == '\n') {
+                    lines++;
+                }
+            }
+            written += len;
+            if (written >= nextSample) {
+                maxUsedHeap = Math.max(maxUsedHeap, usedHeapAfterGc());
+                nextSample += sampleInterval;
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ee.taltech.inbankbackend.endpoint;
+
+import ee.taltech.inbankbackend.service.Decision;
+import ee.taltech.inbankbackend.service.DecisionEngine;
+import ee.taltech.inbankbackend.service.RejectionReason;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the application with the reactive profile and checks that the functional /loan/decision route keeps
+ * the contract of the servlet endpoint.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+class ReactiveDecisionHandlerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private DecisionEngine decisionEngine;
+
+    @Test
+    void givenApprovedDecision_whenRequestDecision_thenReturnsLoan() {
+        when(decisionEngine.calculateApprovedLoanAsync(anyString(), anyLong(), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(new Decision.Approved(10000, 12)));
+
+        post(new DecisionRequest("49002010998", 4000L, 12))
+                .expectStatus().isOk()
+                .expectHeader().contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.loanAmount").isEqualTo(10000)
+                .jsonPath("$.loanPeriod").isEqualTo(12)
+                .jsonPath("$.errorMessage").isEmpty();
+    }
+
+    @Test
+    void givenRejectedDecision_whenRequestDecision_thenReturnsBadRequest() {
+        when(decisionEngine.calculateApprovedLoanAsync(anyString(), anyLong(), anyInt()))
+                .thenReturn(CompletableFuture.completedFuture(Decision.Rejected.of(RejectionReason.INVALID_PERSONAL_CODE)));
+
+        post(new DecisionRequest("1234", 4000L, 12))
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.loanAmount").isEmpty()
+                .jsonPath("$.loanPeriod").isEmpty()
+                .jsonPath("$.errorMessage").isEqualTo("Invalid personal ID code!");
+    }
+
+    @Test
+    void givenFailedDecision_whenRequestDecision_thenReturnsInternalServerError() {
+        when(decisionEngine.calculateApprovedLoanAsync(anyString(), anyLong(), anyInt()))
+                .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Registry down")));
+
+        post(new DecisionRequest("49002010998", 4000L, 12))
+                .expectStatus().is5xxServerError()
+                .expectBody()
+                .jsonPath("$.errorMessage").isEqualTo("An unexpected error occurred");
+    }
+
+    @Test
+    void givenThrowingEngine_whenRequestDecision_thenReturnsInternalServerError() {
+        when(decisionEngine.calculateApprovedLoanAsync(anyString(), anyLong(), anyInt()))
+                .thenThrow(new IllegalStateException("Unexpected"));
+
+        post(new DecisionRequest("49002010998", 4000L, 12))
+                .expectStatus().is5xxServerError()
+                .expectBody()
+                .jsonPath("$.errorMessage").isEqualTo("An unexpected error occurred");
+    }
+
+    @Test
+    void givenMissingBody_whenRequestDecision_thenReturnsBadRequest() {
+        webTestClient.post().uri("/loan/decision")
+                .contentType(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void givenRequest_whenRequestDecision_thenDecidesOffTheEventLoop() {
+        AtomicReference<String> decidingThread = new AtomicReference<>();
+        when(decisionEngine.calculateApprovedLoanAsync(anyString(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            decidingThread.set(Thread.currentThread().getName());
+            return CompletableFuture.completedFuture(new Decision.Approved(10000, 12));
+        });
+
+        post(new DecisionRequest("49002010998", 4000L, 12)).expectStatus().isOk();
+
+        assertTrue(decidingThread.get().startsWith("parallel-"), decidingThread.get());
+    }
+
+    private WebTestClient.ResponseSpec post(DecisionRequest request) {
+        return webTestClient.post().uri("/loan/decision")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(request)
+                .exchange();
+    }
+}
@@ -0,0 +1,72 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.endpoint.DecisionRequest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BatchDecisionServiceTest {
+
+    @Mock
+    private DecisionEngine decisionEngine;
+
+    @Test
+    void givenBatch_whenCalculateApprovedLoans_thenDecisionsKeepInputOrder() {
+        when(decisionEngine.calculateApprovedLoan(anyString(), anyLong(), anyInt())).thenAnswer(invocation ->
+                new Decision.Approved(((Long) invocation.getArgument(1)).intValue(), invocation.getArgument(2)));
+        BatchDecisionService service = new BatchDecisionService(decisionEngine, 4, 100_000);
+
+        List<DecisionRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            requests.add(new DecisionRequest("50307172740", 2000L + i, 12 + i % 37));
+        }
+        List<Decision> decisions = service.calculateApprovedLoans(requests);
+
+        assertEquals(requests.size(), decisions.size());
+        for (int i = 0; i < requests.size(); i++) {
+            assertEquals(new Decision.Approved(2000 + i, 12 + i % 37), decisions.get(i));
+        }
+    }
+
+    @Test
+    void givenFailingApplication_whenCalculateApprovedLoans_thenOnlyThatApplicationFails() {
+        when(decisionEngine.calculateApprovedLoan(anyString(), anyLong(), anyInt())).thenAnswer(invocation -> {
+            if (invocation.getArgument(0).equals("boom")) {
+                throw new IllegalStateException("boom");
+            }
+            return new Decision.Approved(4000, 12);
+        });
+        BatchDecisionService service = new BatchDecisionService(decisionEngine, 2, 10);
+
+        List<Decision> decisions = service.calculateApprovedLoans(List.of(
+                new DecisionRequest("50307172740", 4000L, 12),
+                new DecisionRequest("boom", 4000L, 12),
+                new DecisionRequest("50307172740", 4000L, 12)));
+
+        assertEquals(new Decision.Approved(4000, 12), decisions.get(0));
+        assertEquals(Decision.Rejected.of(RejectionReason.UNEXPECTED_ERROR), decisions.get(1));
+        assertEquals(new Decision.Approved(4000, 12), decisions.get(2));
+    }
+
+    @Test
+    void givenOversizedBatch_whenCalculateApprovedLoans_thenThrows() {
+        BatchDecisionService service = new BatchDecisionService(decisionEngine, 1, 1);
+        List<DecisionRequest> requests = List.of(
+                new DecisionRequest("50307172740", 4000L, 12),
+                new DecisionRequest("50307172740", 4000L, 12));
+
+        assertThrows(IllegalArgumentException.class, () -> service.calculateApprovedLoans(requests));
+    }
+}
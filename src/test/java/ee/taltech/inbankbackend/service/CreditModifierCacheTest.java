@@ -0,0 +1,221 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.interfaces.CreditModifierSource;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CreditModifierCacheTest {
+
+    private static final long SEGMENT_3 = 49002010998L;
+    private static final long DEBTOR = 49002010965L;
+    private static final long UNKNOWN = 50307172740L;
+
+    private final CreditModifierIndex registry = new CreditModifierIndex.Builder()
+            .put(SEGMENT_3, 1000)
+            .put(DEBTOR, 0)
+            .build();
+    private final CountingSource upstream = new CountingSource(registry::get);
+    private long now;
+
+    @Test
+    void givenRepeatedLookups_whenGet_thenCallsUpstreamOnce() {
+        CreditModifierCache cache = cache(16);
+
+        assertEquals(1000, cache.get(SEGMENT_3, -1));
+        assertEquals(1000, cache.get(SEGMENT_3, -1));
+        assertEquals(1000, cache.get(SEGMENT_3, -1));
+
+        assertEquals(1, upstream.calls.get());
+        assertEquals(new CreditModifierCache.Stats(2, 1, 1, 0), cache.getStats());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void givenDebtorAndUnknownCustomer_whenGet_thenCachesForNegativeTtl() {
+        CreditModifierCache cache = cache(16);
+
+        assertEquals(0, cache.get(DEBTOR, -1));
+        assertEquals(-1, cache.get(UNKNOWN, -1));
+        assertEquals(0, cache.get(DEBTOR, -1));
+        assertEquals(7, cache.get(UNKNOWN, 7));
+        assertEquals(2, upstream.calls.get());
+
+        now += Duration.ofSeconds(61).toNanos();
+        assertEquals(0, cache.get(DEBTOR, -1));
+        assertEquals(-1, cache.get(UNKNOWN, -1));
+        assertEquals(4, upstream.calls.get());
+    }
+
+    @Test
+    void givenExpiredEntry_whenGet_thenReadsThrough() {
+        CreditModifierCache cache = cache(16);
+        cache.get(SEGMENT_3, -1);
+
+        now += Duration.ofMinutes(9).toNanos();
+        cache.get(SEGMENT_3, -1);
+        assertEquals(1, upstream.calls.get());
+
+        now += Duration.ofMinutes(2).toNanos();
+        cache.get(SEGMENT_3, -1);
+        assertEquals(2, upstream.calls.get());
+    }
+
+    @Test
+    void givenMoreCustomersThanCapacity_whenGet_thenEvictsWithinBound() {
+        CreditModifierCache cache = cache(64);
+
+        for (long key = 1; key <= 1000; key++) {
+            cache.get(key, -1);
+        }
+
+        assertEquals(64, cache.getCapacity());
+        assertTrue(cache.size() <= 64);
+        assertEquals(1000, cache.getStats().misses());
+        assertTrue(cache.getStats().evictions() >= 1000 - 64);
+    }
+
+    @Test
+    void givenConcurrentMisses_whenGet_thenCoalescesUpstreamCalls() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountingSource slow = new CountingSource((key, defaultModifier) -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return registry.get(key, defaultModifier);
+        });
+        CreditModifierCache cache = new CreditModifierCache(slow, 16, Duration.ofMinutes(10), Duration.ofMinutes(1),
+                () -> now);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<Integer>> lookups = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                lookups.add(executor.submit(() -> cache.get(SEGMENT_3, -1)));
+            }
+            while (cache.getStats().misses() < 8) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+            for (Future<Integer> lookup : lookups) {
+                assertEquals(1000, lookup.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, slow.calls.get());
+        assertEquals(1, cache.getStats().upstreamCalls());
+    }
+
+    @Test
+    void givenAsyncUpstream_whenGetAsync_thenCoalescesWithoutBlocking() {
+        CompletableFuture<Integer> answer = new CompletableFuture<>();
+        AtomicInteger calls = new AtomicInteger();
+        CountingSource async = new CountingSource(registry::get) {
+            @Override
+            public CompletableFuture<Integer> getAsync(long key, int defaultModifier) {
+                calls.incrementAndGet();
+                return answer;
+            }
+        };
+        CreditModifierCache cache = new CreditModifierCache(async, 16, Duration.ofMinutes(10), Duration.ofMinutes(1),
+                () -> now);
+
+        CompletableFuture<Integer> first = cache.getAsync(SEGMENT_3, -1);
+        CompletableFuture<Integer> second = cache.getAsync(SEGMENT_3, -1);
+        assertFalse(first.isDone());
+        answer.complete(1000);
+
+        assertEquals(1000, first.join());
+        assertEquals(1000, second.join());
+        assertEquals(1000, cache.getAsync(SEGMENT_3, -1).join());
+        assertEquals(1, calls.get());
+        assertEquals(new CreditModifierCache.Stats(1, 2, 1, 0), cache.getStats());
+    }
+
+    @Test
+    void givenFailingUpstream_whenGet_thenDoesNotCacheFailure() {
+        AtomicInteger failures = new AtomicInteger(1);
+        CountingSource flaky = new CountingSource((key, defaultModifier) -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("Registry unavailable");
+            }
+            return registry.get(key, defaultModifier);
+        });
+        CreditModifierCache cache = new CreditModifierCache(flaky, 16, Duration.ofMinutes(10), Duration.ofMinutes(1),
+                () -> now);
+
+        assertThrows(IllegalStateException.class, () -> cache.get(SEGMENT_3, -1));
+        assertEquals(1000, cache.get(SEGMENT_3, -1));
+        assertEquals(2, flaky.calls.get());
+    }
+
+    @Test
+    void givenCacheEnabled_whenSwap_thenStartsNewCache() throws IOException {
+        CreditModifierService service = new CreditModifierService("", false, 1024, Duration.ofMinutes(10),
+                Duration.ofMinutes(1), null);
+        CreditModifierCache first = assertInstanceOf(CreditModifierCache.class, service.getSource());
+        assertEquals(1000, service.getCreditModifier("49002010998"));
+        assertEquals(1000, service.getCreditModifier("49002010998"));
+        assertEquals(1, first.getStats().hits());
+
+        service.swap(registry);
+
+        assertNotSame(first, service.getSource());
+        assertEquals(1000, service.getCreditModifier("49002010998"));
+        assertEquals(0, ((CreditModifierCache) service.getSource()).getStats().hits());
+        assertEquals(new CreditModifierCache.Stats(1, 2, 2, 0), service.getCacheStats());
+    }
+
+    private CreditModifierCache cache(int maxEntries) {
+        return new CreditModifierCache(upstream, maxEntries, Duration.ofMinutes(10), Duration.ofMinutes(1), () -> now);
+    }
+
+    private static class CountingSource implements CreditModifierSource {
+        private final Lookup lookup;
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private CountingSource(Lookup lookup) {
+            this.lookup = lookup;
+        }
+
+        @Override
+        public int get(long key, int defaultModifier) {
+            calls.incrementAndGet();
+            return lookup.get(key, defaultModifier);
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public long getFootprintBytes() {
+            return 0;
+        }
+    }
+
+    private interface Lookup {
+        int get(long key, int defaultModifier);
+    }
+}
@@ -0,0 +1,160 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.config.DecisionEngineConstants;
+import ee.taltech.inbankbackend.interfaces.CreditModifierSource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CreditModifierServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void givenNoFile_whenGetCreditModifier_thenUsesDemoCustomers() throws IOException {
+        CreditModifierService service = new CreditModifierService("", false);
+
+        assertEquals(0, service.getCreditModifier("49002010965"));
+        assertEquals(DecisionEngineConstants.SEGMENT_1_CREDIT_MODIFIER, service.getCreditModifier("49002010976"));
+        assertEquals(DecisionEngineConstants.SEGMENT_2_CREDIT_MODIFIER, service.getCreditModifier("49002010987"));
+        assertEquals(DecisionEngineConstants.SEGMENT_3_CREDIT_MODIFIER, service.getCreditModifier("49002010998"));
+        assertEquals(0, service.getCreditModifier("50307172740"));
+    }
+
+    @Test
+    void givenRegistryWithoutUrl_whenGetCreditModifier_thenUsesDemoCustomers() throws IOException {
+        CreditRegistryClient registry = new CreditRegistryClient("", Duration.ofMillis(200), 64, false,
+                Duration.ofMillis(5), 5, Duration.ofSeconds(10), 7, false);
+        CreditModifierService service = new CreditModifierService("", false, 0, Duration.ZERO, Duration.ZERO, registry);
+
+        assertFalse(registry.isEnabled());
+        assertEquals(DecisionEngineConstants.SEGMENT_3_CREDIT_MODIFIER, service.getCreditModifier("49002010998"));
+        assertEquals(0, service.getFallbackCount());
+    }
+
+    @Test
+    void givenFile_whenReload_thenSwapsIndex() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("modifiers.csv"),
+                "personalCode,creditModifier\n50307172740,300\r\n\n49002010998,100\n50307172740,1000");
+        CreditModifierService service = new CreditModifierService(file.toString(), false);
+
+        assertEquals(1000, service.getCreditModifier("50307172740"));
+        assertEquals(100, service.getCreditModifier("49002010998"));
+        assertEquals(0, service.getCreditModifier("49002010976"));
+        assertEquals(2, service.getSource().size());
+    }
+
+    @Test
+    void givenWatchedFile_whenSnapshotRenamedOverIt_thenReloadsWithoutRestart() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("modifiers.snapshot"), "50307172740,300\n");
+        CreditModifierService service = new CreditModifierService(file.toString(), false, 0, Duration.ZERO,
+                Duration.ZERO, true, null);
+        try {
+            CreditModifierSnapshot.write(new CreditModifierIndex.Builder().put(50307172740L, 1000).build(), file);
+
+            long deadline = System.nanoTime() + 30_000_000_000L;
+            while (service.getGeneration() == 1 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+
+            assertInstanceOf(CreditModifierSnapshot.class, service.getSource());
+            assertEquals(1000, service.getCreditModifier("50307172740"));
+        } finally {
+            service.close();
+        }
+    }
+
+    @Test
+    void givenMalformedFile_whenReload_thenKeepsCurrentIndex() throws IOException {
+        CreditModifierService service = new CreditModifierService();
+        CreditModifierSource current = service.getSource();
+
+        for (String content : new String[]{"5030717274,300", "503071727400,300", "50307172740;300",
+                "50307172740,", "50307172740,-1", "50307172740,99999999999", "50307172740,300x"}) {
+            Path file = Files.writeString(tempDir.resolve("malformed.csv"), content);
+            assertThrows(IllegalArgumentException.class, () -> service.reload(file), content);
+        }
+        assertSame(current, service.getSource());
+    }
+
+    @Test
+    void givenMalformedCodes_whenKey_thenInvalid() {
+        assertEquals(50307172740L, CreditModifierIndex.key("50307172740"));
+        for (String personalCode : new String[]{null, "", "5030717274", "503071727400", "5030717274a", "5030717274٥"}) {
+            assertEquals(CreditModifierIndex.INVALID_KEY, CreditModifierIndex.key(personalCode));
+        }
+        assertEquals(7, new CreditModifierService().getSource().get(CreditModifierIndex.INVALID_KEY, 7));
+    }
+
+    @Test
+    void givenManyCustomers_whenGet_thenFindsEveryOne() {
+        CreditModifierIndex.Builder builder = new CreditModifierIndex.Builder();
+        for (int i = 0; i < 100_000; i++) {
+            builder.put(customer(i), i);
+        }
+        CreditModifierIndex index = builder.build();
+
+        assertEquals(100_000, index.size());
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i, index.get(customer(i), -1));
+            assertEquals(-1, index.get(customer(i) + 1, -1));
+        }
+    }
+
+    /**
+     * Loads 10 million customers from a file and reports the load time and the size of the index.
+     */
+    @Test
+    @Tag("perf")
+    void givenTenMillionCustomers_whenReload_thenReportsLoadTimeAndMemory() throws IOException {
+        int customers = Integer.getInteger("credit-modifiers.customers", 10_000_000);
+        Path file = tempDir.resolve("modifiers.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            writer.write("personalCode,creditModifier\n");
+            for (int i = 0; i < customers; i++) {
+                writer.write(Long.toString(customer(i)));
+                writer.write(',');
+                writer.write(Integer.toString(i % 1000));
+                writer.write('\n');
+            }
+        }
+        CreditModifierService service = new CreditModifierService();
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        long start = System.nanoTime();
+        service.reload(file);
+        long loadMillis = (System.nanoTime() - start) / 1_000_000;
+        System.gc();
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+        CreditModifierSource index = service.getSource();
+        System.out.printf("Loaded %d customers (%d MB file) in %d ms: index %d MB, heap grew by %d MB%n",
+                index.size(), Files.size(file) >> 20, loadMillis, index.getFootprintBytes() >> 20,
+                (heapAfter - heapBefore) >> 20);
+        assertEquals(customers, index.size());
+        for (int i = 0; i < customers; i += 9973) {
+            assertEquals(i % 1000, index.get(customer(i), -1));
+        }
+    }
+
+    // Spreads customers over birth dates the way real codes are, rather than using consecutive numbers
+    private static long customer(int i) {
+        return 30_000_000_000L + (i % 36_500) * 100_000L + (i / 36_500) * 10L;
+    }
+}
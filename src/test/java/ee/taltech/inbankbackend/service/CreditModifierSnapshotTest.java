@@ -0,0 +1,152 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.interfaces.CreditModifierSource;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CreditModifierSnapshotTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void givenIndex_whenWriteAndOpen_thenFindsSameModifiers() throws IOException {
+        CreditModifierIndex index = index(100_000, 0);
+        Path file = tempDir.resolve("modifiers.snapshot");
+
+        CreditModifierSnapshot.write(index, file);
+        CreditModifierSnapshot snapshot = CreditModifierSnapshot.open(file, true);
+
+        assertTrue(CreditModifierSnapshot.isSnapshot(file));
+        assertEquals(CreditModifierSnapshot.HEADER_BYTES + 100_000L * CreditModifierSnapshot.RECORD_BYTES, Files.size(file));
+        assertEquals(100_000, snapshot.size());
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i % 1000, snapshot.get(customer(i), -1));
+            assertEquals(-1, snapshot.get(customer(i) + 1, -1));
+        }
+        assertEquals(-1, snapshot.get(CreditModifierIndex.INVALID_KEY, -1));
+        assertEquals(-1, snapshot.get(Long.MAX_VALUE, -1));
+    }
+
+    @Test
+    void givenEmptyIndex_whenWriteAndOpen_thenFindsNothing() throws IOException {
+        Path file = tempDir.resolve("empty.snapshot");
+
+        CreditModifierSnapshot.write(new CreditModifierIndex.Builder().build(), file);
+        CreditModifierSnapshot snapshot = CreditModifierSnapshot.open(file, true);
+
+        assertEquals(0, snapshot.size());
+        assertEquals(-1, snapshot.get(49002010998L, -1));
+    }
+
+    @Test
+    void givenCorruptedFile_whenOpen_thenRejects() throws IOException {
+        Path file = tempDir.resolve("modifiers.snapshot");
+        CreditModifierSnapshot.write(index(1000, 0), file);
+        byte[] valid = Files.readAllBytes(file);
+
+        // A flipped modifier bit only shows in the records checksum
+        byte[] record = valid.clone();
+        record[CreditModifierSnapshot.HEADER_BYTES + 500 * CreditModifierSnapshot.RECORD_BYTES + 11] ^= 1;
+        Files.write(file, record);
+        CreditModifierSnapshot.open(file, false);
+        assertThrows(IllegalArgumentException.class, () -> CreditModifierSnapshot.open(file, true));
+
+        byte[] count = valid.clone();
+        count[15] ^= 1;
+        Files.write(file, count);
+        assertThrows(IllegalArgumentException.class, () -> CreditModifierSnapshot.open(file, false));
+
+        byte[] version = valid.clone();
+        version[7] = 2;
+        Files.write(file, version);
+        assertThrows(IllegalArgumentException.class, () -> CreditModifierSnapshot.open(file, false));
+
+        Files.write(file, Arrays.copyOf(valid, valid.length - 1));
+        assertThrows(IllegalArgumentException.class, () -> CreditModifierSnapshot.open(file, false));
+
+        Files.writeString(file, "50307172740,300\n");
+        assertFalse(CreditModifierSnapshot.isSnapshot(file));
+        assertThrows(IllegalArgumentException.class, () -> CreditModifierSnapshot.open(file, false));
+    }
+
+    @Test
+    void givenNewSnapshotWrittenOverOld_whenReload_thenOldSourceStaysReadable() throws IOException {
+        Path file = tempDir.resolve("modifiers.snapshot");
+        CreditModifierSnapshot.write(index(1000, 0), file);
+        CreditModifierService service = new CreditModifierService(file.toString(), true);
+        CreditModifierSource old = service.getSource();
+        assertInstanceOf(CreditModifierSnapshot.class, old);
+
+        CreditModifierSnapshot.write(index(1000, 7), file);
+        assertFalse(Files.exists(tempDir.resolve("modifiers.snapshot.tmp")));
+        service.reload(file);
+
+        assertEquals(7, service.getSource().get(customer(0), -1));
+        assertEquals(0, old.get(customer(0), -1));
+        assertEquals(999, old.get(customer(999), -1));
+    }
+
+    @Test
+    void givenCsvFile_whenConvert_thenWritesSnapshot() throws IOException {
+        Path csv = Files.writeString(tempDir.resolve("modifiers.csv"), "personalCode,creditModifier\n49002010998,1000\n");
+        Path file = tempDir.resolve("modifiers.snapshot");
+
+        CreditModifierSnapshotConverter.main(new String[]{csv.toString(), file.toString()});
+
+        CreditModifierService service = new CreditModifierService(file.toString(), true);
+        assertEquals(1000, service.getCreditModifier("49002010998"));
+        assertEquals(0, service.getCreditModifier("49002010976"));
+        assertSame(CreditModifierSnapshot.class, service.getSource().getClass());
+    }
+
+    /**
+     * Opens a snapshot of 10 million customers and reports the time taken with and without verification.
+     */
+    @Test
+    @Tag("perf")
+    void givenTenMillionCustomers_whenOpen_thenTakesConstantTime() throws IOException {
+        int customers = Integer.getInteger("credit-modifiers.customers", 10_000_000);
+        Path file = tempDir.resolve("modifiers.snapshot");
+        CreditModifierSnapshot.write(index(customers, 0), file);
+
+        long start = System.nanoTime();
+        CreditModifierSnapshot snapshot = CreditModifierSnapshot.open(file, false);
+        long openMicros = (System.nanoTime() - start) / 1000;
+        start = System.nanoTime();
+        CreditModifierSnapshot.open(file, true);
+        long verifyMicros = (System.nanoTime() - start) / 1000;
+
+        System.out.printf("Opened %d customers (%d MB snapshot) in %d µs, %d µs with verification, %d heap bytes%n",
+                snapshot.size(), snapshot.getMappedBytes() >> 20, openMicros, verifyMicros, snapshot.getFootprintBytes());
+        assertEquals(customers, snapshot.size());
+        for (int i = 0; i < customers; i += 9973) {
+            assertEquals(i % 1000, snapshot.get(customer(i), -1));
+        }
+    }
+
+    private static CreditModifierIndex index(int customers, int offset) {
+        CreditModifierIndex.Builder builder = new CreditModifierIndex.Builder();
+        for (int i = 0; i < customers; i++) {
+            builder.put(customer(i), (i + offset) % 1000);
+        }
+        return builder.build();
+    }
+
+    private static long customer(int i) {
+        return 30_000_000_000L + (i % 36_500) * 100_000L + (i / 36_500) * 10L;
+    }
+}
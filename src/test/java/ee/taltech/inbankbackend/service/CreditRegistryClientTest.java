@@ -0,0 +1,187 @@
+package ee.taltech.inbankbackend.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import ee.taltech.inbankbackend.exceptions.CreditRegistryUnavailableException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the client against an in-process fake registry that answers after a configurable delay.
+ */
+class CreditRegistryClientTest {
+
+    private static final long SEGMENT_3 = 49002010998L;
+    private static final long UNKNOWN = 50307172740L;
+
+    private final Map<Long, Integer> modifiers = new ConcurrentHashMap<>(Map.of(SEGMENT_3, 1000, 49002010987L, 300));
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile long delayMillis;
+    private volatile long firstRequestDelayMillis;
+    private volatile int status = 200;
+
+    private HttpServer registry;
+    private ExecutorService registryThreads;
+
+    @BeforeEach
+    void startRegistry() throws IOException {
+        registryThreads = Executors.newFixedThreadPool(16);
+        registry = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        registry.setExecutor(registryThreads);
+        registry.createContext("/credit-modifiers/", this::answer);
+        registry.start();
+    }
+
+    @AfterEach
+    void stopRegistry() {
+        registry.stop(0);
+        registryThreads.shutdownNow();
+    }
+
+    @Test
+    void givenKnownAndUnknownCustomers_whenGetAsync_thenReturnsModifierOrDefault() {
+        CreditRegistryClient client = client(Duration.ofSeconds(2), 8, false, 5);
+
+        assertEquals(1000, client.getAsync(SEGMENT_3, -1).join());
+        assertEquals(-1, client.getAsync(UNKNOWN, -1).join());
+        assertEquals(300, client.get(49002010987L, -1));
+        assertEquals(3, client.getStats().calls());
+    }
+
+    @Test
+    void givenSlowRegistry_whenGetAsync_thenTimesOutAndServiceFallsBack() throws IOException {
+        delayMillis = 500;
+        CreditRegistryClient client = client(Duration.ofMillis(50), 8, false, 5);
+
+        CompletionException failure = assertThrows(CompletionException.class, () -> client.getAsync(SEGMENT_3, 0).join());
+        assertInstanceOf(CreditRegistryUnavailableException.class, failure.getCause());
+
+        CreditModifierService service = new CreditModifierService("", false, 0, Duration.ZERO, Duration.ZERO, client);
+        assertEquals(7, service.getCreditModifierAsync("49002010998").join());
+        assertEquals(7, service.getCreditModifier("49002010998"));
+    }
+
+    @Test
+    void givenBulkheadFull_whenGetAsync_thenRejectsWithoutCalling() {
+        delayMillis = 300;
+        CreditRegistryClient client = client(Duration.ofSeconds(2), 1, false, 5);
+
+        CompletableFuture<Integer> first = client.getAsync(SEGMENT_3, 0);
+        CompletionException rejected = assertThrows(CompletionException.class, () -> client.getAsync(SEGMENT_3, 0).join());
+
+        assertInstanceOf(CreditRegistryUnavailableException.class, rejected.getCause());
+        assertEquals(1000, first.join());
+        assertEquals(1, client.getStats().calls());
+        assertEquals(1, client.getStats().rejections());
+    }
+
+    @Test
+    void givenFailingRegistry_whenGetAsync_thenOpensCircuitAndRecovers() throws InterruptedException {
+        status = 500;
+        CreditRegistryClient client = new CreditRegistryClient(url(), Duration.ofSeconds(2), 8, false,
+                Duration.ofMillis(5), 2, Duration.ofMillis(200), 7, false);
+
+        assertThrows(CompletionException.class, () -> client.getAsync(SEGMENT_3, 0).join());
+        assertThrows(CompletionException.class, () -> client.getAsync(SEGMENT_3, 0).join());
+        assertTrue(client.getStats().circuitOpen());
+        assertThrows(CompletionException.class, () -> client.getAsync(SEGMENT_3, 0).join());
+        assertEquals(2, requests.get());
+
+        status = 200;
+        Thread.sleep(250);
+        assertEquals(1000, client.getAsync(SEGMENT_3, 0).join());
+        assertEquals(3, requests.get());
+        assertEquals(new CreditRegistryClient.Stats(3, 0, 2, 1, false), client.getStats());
+    }
+
+    @Test
+    void givenSlowFirstCall_whenHedging_thenSecondCallAnswers() {
+        firstRequestDelayMillis = 1000;
+        CreditRegistryClient client = client(Duration.ofSeconds(2), 8, true, 5);
+
+        long start = System.nanoTime();
+        assertEquals(1000, client.getAsync(SEGMENT_3, 0).join());
+
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(800));
+        assertEquals(1, client.getStats().hedgedCalls());
+        assertEquals(2, client.getStats().calls());
+    }
+
+    @Test
+    void givenVirtualThreads_whenGetAsync_thenHandlesResponseOnVirtualThread() {
+        delayMillis = 20;
+        CreditRegistryClient client = new CreditRegistryClient(url(), Duration.ofSeconds(2), 8, false,
+                Duration.ofMillis(5), 5, Duration.ofSeconds(10), 7, true);
+
+        assertTrue(client.getAsync(SEGMENT_3, 0).thenApply(modifier -> Thread.currentThread().isVirtual()).join());
+        assertEquals(1000, client.get(SEGMENT_3, 0));
+        client.close();
+    }
+
+    @Test
+    void givenRegistry_whenCalculateApprovedLoanAsync_thenDecidesWhenRegistryAnswers() throws IOException {
+        delayMillis = 20;
+        CreditRegistryClient client = client(Duration.ofSeconds(2), 8, false, 5);
+        LoanCalculator loanCalculator = new LoanCalculator(true);
+        DecisionEngine decisionEngine = new DecisionEngine(new PersonalCodeValidator(), new AgeValidator(),
+                new LoanInputValidator(),
+                new CreditModifierService("", false, 0, Duration.ZERO, Duration.ZERO, client),
+                loanCalculator, new DecisionTable(loanCalculator));
+
+        CompletableFuture<Decision> decision = decisionEngine.calculateApprovedLoanAsync("49002010998", 4000L, 12);
+
+        assertEquals(new Decision.Approved(10000, 12), decision.join());
+        assertEquals(Decision.Rejected.of(RejectionReason.INVALID_PERSONAL_CODE),
+                decisionEngine.calculateApprovedLoanAsync("12345678901", 4000L, 12).join());
+        assertEquals(1, client.getStats().calls());
+    }
+
+    private CreditRegistryClient client(Duration timeout, int maxConcurrentCalls, boolean hedging, long minHedgeDelayMillis) {
+        return new CreditRegistryClient(url(), timeout, maxConcurrentCalls, hedging,
+                Duration.ofMillis(minHedgeDelayMillis), 5, Duration.ofSeconds(10), 7, false);
+    }
+
+    private String url() {
+        return "http://127.0.0.1:" + registry.getAddress().getPort() + "/credit-modifiers";
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int request = requests.incrementAndGet();
+            Thread.sleep(request == 1 && firstRequestDelayMillis > 0 ? firstRequestDelayMillis : delayMillis);
+            String path = exchange.getRequestURI().getPath();
+            Integer modifier = modifiers.get(Long.parseLong(path.substring(path.lastIndexOf('/') + 1)));
+            if (status != 200 || modifier == null) {
+                exchange.sendResponseHeaders(status != 200 ? status : 404, -1);
+                return;
+            }
+            byte[] body = Integer.toString(modifier).getBytes(StandardCharsets.US_ASCII);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.batch.LatencyHistogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.Status;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecisionAuditLogTest {
+
+    private static final String SEGMENT_3 = "49002010998";
+    private static final long NOW = Instant.parse("2026-10-16T12:00:00Z").toEpochMilli();
+    // Long enough that a producer never gives up on a working writer, however slow the machine
+    private static final Duration MAX_WAIT = Duration.ofSeconds(30);
+
+    @TempDir
+    Path tempDir;
+
+    private final Clock clock = Clock.fixed(Instant.ofEpochMilli(NOW), ZoneOffset.UTC);
+
+    @Test
+    void givenDecisions_whenClosed_thenReplaysEveryFieldInOrder() throws Exception {
+        DecisionAuditLog auditLog = new DecisionAuditLog(tempDir, 16, 100, Duration.ofSeconds(1), MAX_WAIT, clock);
+
+        auditLog.append(SEGMENT_3, 4000L, 12, new Decision.Approved(10000, 12, 3));
+        auditLog.append("49002010965", 4000L, 12, new Decision.Rejected(RejectionReason.DEBT, 3));
+        auditLog.append("1234", null, 60, Decision.Rejected.of(RejectionReason.INVALID_PERSONAL_CODE));
+        auditLog.close();
+
+        assertEquals(List.of(
+                new DecisionAuditRecord(NOW, 49002010998L, null, 4000, 12, 10000, 12, null, 3),
+                new DecisionAuditRecord(NOW, 49002010965L, null, 4000, 12, 0, 0, RejectionReason.DEBT, 3),
+                new DecisionAuditRecord(NOW, CreditModifierIndex.INVALID_KEY, "1234", DecisionAuditRecord.NO_AMOUNT,
+                        60, 0, 0, RejectionReason.INVALID_PERSONAL_CODE, DecisionPolicy.INITIAL_VERSION)
+        ), replay(tempDir));
+        assertEquals(new Decision.Rejected(RejectionReason.DEBT, 3), replay(tempDir).get(1).decision());
+        assertEquals(3, auditLog.getWrittenCount());
+    }
+
+    @Test
+    void givenRecords_whenToCsv_thenPrintsOneRow() {
+        assertEquals("2026-10-16T12:00:00Z,49002010998,4000,12,APPROVED,10000,12,3\n",
+                DecisionAuditReader.toCsv(new DecisionAuditRecord(NOW, 49002010998L, null, 4000, 12, 10000, 12, null,
+                        3)));
+        assertEquals("2026-10-16T12:00:00Z,,,60,INVALID_PERSONAL_CODE,0,0,1\n",
+                DecisionAuditReader.toCsv(new DecisionAuditRecord(NOW, CreditModifierIndex.INVALID_KEY, null,
+                        DecisionAuditRecord.NO_AMOUNT, 60, 0, 0, RejectionReason.INVALID_PERSONAL_CODE, 1)));
+        assertEquals("2026-10-16T12:00:00Z,\"12,\"\"3\",,60,INVALID_PERSONAL_CODE,0,0,1\n",
+                DecisionAuditReader.toCsv(new DecisionAuditRecord(NOW, CreditModifierIndex.INVALID_KEY, "12,\"3",
+                        DecisionAuditRecord.NO_AMOUNT, 60, 0, 0, RejectionReason.INVALID_PERSONAL_CODE, 1)));
+    }
+
+    /**
+     * Writes invalid personal ID codes through a two-slot ring, so that slots are reused, and checks that each record
+     * keeps the code as submitted, cut to the slot and in printable ASCII, and nothing of the code before it.
+     */
+    @Test
+    void givenInvalidPersonalCodes_whenAppended_thenKeepsSubmittedCodes() throws Exception {
+        DecisionAuditLog auditLog = new DecisionAuditLog(tempDir, 1, 100, Duration.ZERO, MAX_WAIT, clock);
+        Decision rejected = Decision.Rejected.of(RejectionReason.INVALID_PERSONAL_CODE);
+
+        auditLog.append("4900201099812345678901234567890", 4000L, 12, rejected);
+        auditLog.append("49002010998x", 4000L, 12, rejected);
+        auditLog.append("5030717274\u00e9", 4000L, 12, rejected);
+        auditLog.append("", 4000L, 12, rejected);
+        auditLog.append(null, 4000L, 12, rejected);
+        auditLog.close();
+
+        assertEquals(Arrays.asList("490020109981234567890123", "49002010998x", "5030717274?", null, null),
+                replay(tempDir).stream().map(DecisionAuditRecord::submittedPersonalCode).toList());
+        assertTrue(replay(tempDir).stream()
+                .allMatch(record -> record.personalCode() == CreditModifierIndex.INVALID_KEY));
+    }
+
+    @Test
+    void givenOtherVersion_whenReplay_thenThrows() throws IOException {
+        ByteBuffer segment = ByteBuffer.allocate(DecisionAuditLog.HEADER_BYTES + DecisionAuditRecord.BYTES)
+                .putInt(DecisionAuditLog.MAGIC)
+                .putInt(DecisionAuditLog.VERSION + 1)
+                .putInt(DecisionAuditRecord.BYTES)
+                .putInt(1)
+                .putLong(NOW);
+        Path file = Files.write(tempDir.resolve("decisions-000000000001.audit"), segment.array());
+
+        assertThrows(IllegalArgumentException.class, () -> DecisionAuditReader.replay(file, record -> { }));
+    }
+
+    @Test
+    void givenFullSegments_whenAppended_thenRollsToNextSegment() throws Exception {
+        DecisionAuditLog auditLog = new DecisionAuditLog(tempDir, 16, 3, Duration.ZERO, MAX_WAIT, clock);
+        for (int i = 0; i < 10; i++) {
+            auditLog.append(SEGMENT_3, 2000L + i, 12, Decision.Rejected.of(RejectionReason.NO_VALID_LOAN));
+        }
+        auditLog.close();
+
+        assertEquals(List.of("decisions-000000000001.audit", "decisions-000000000002.audit",
+                "decisions-000000000003.audit", "decisions-000000000004.audit"), segmentNames());
+        List<DecisionAuditRecord> records = replay(tempDir);
+        assertEquals(10, records.size());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(2000L + i, records.get(i).requestedAmount());
+        }
+        assertEquals(3, DecisionAuditReader.replay(tempDir.resolve("decisions-000000000002.audit"), record -> { }));
+    }
+
+    @Test
+    void givenExistingSegments_whenStarted_thenNeverWritesIntoThem() throws Exception {
+        DecisionAuditLog first = new DecisionAuditLog(tempDir, 16, 100, Duration.ZERO, MAX_WAIT, clock);
+        first.append(SEGMENT_3, 4000L, 12, Decision.Rejected.of(RejectionReason.DEBT));
+        first.close();
+
+        DecisionAuditLog second = new DecisionAuditLog(tempDir, 16, 100, Duration.ZERO, MAX_WAIT, clock);
+        second.append(SEGMENT_3, 5000L, 12, Decision.Rejected.of(RejectionReason.DEBT));
+        second.close();
+
+        assertEquals(List.of("decisions-000000000001.audit", "decisions-000000000002.audit"), segmentNames());
+        assertEquals(List.of(4000L, 5000L), replay(tempDir).stream().map(DecisionAuditRecord::requestedAmount).toList());
+    }
+
+    /**
+     * Appends from several threads through a ring much smaller than the number of records, so that producers keep
+     * waiting for the writer, and checks that every record is written exactly once and in each thread's order.
+     */
+    @Test
+    void givenConcurrentProducersAndSmallRing_whenAppended_thenWritesEveryDecisionOnce() throws Exception {
+        int threads = 8;
+        int perThread = 20_000;
+        DecisionAuditLog auditLog = new DecisionAuditLog(tempDir, 64, 50_000, Duration.ofMillis(10), MAX_WAIT,
+                clock);
+
+        Thread[] producers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            int period = t;
+            producers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    auditLog.append(SEGMENT_3, (long) i, period, Decision.Rejected.of(RejectionReason.DEBT));
+                }
+            });
+            producers[t].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        auditLog.close();
+
+        long[] nextAmount = new long[threads];
+        long records = DecisionAuditReader.replay(tempDir, record -> {
+            assertEquals(nextAmount[record.requestedPeriod()]++, record.requestedAmount());
+        });
+        assertEquals((long) threads * perThread, records);
+        for (long count : nextAmount) {
+            assertEquals(perThread, count);
+        }
+        assertEquals(0, auditLog.getBacklog());
+    }
+
+    /**
+     * Shrinks the segment under the writer, so that its next copy faults the way a write to a full disk does, and
+     * checks that producers then have their decisions refused instead of waiting on a ring that is never freed.
+     */
+    @Test
+    void givenWriterFails_whenAppended_thenRefusesEveryDecisionWithoutWaiting() throws Exception {
+        DecisionAuditLog auditLog = new DecisionAuditLog(tempDir, 4, 100, Duration.ZERO, MAX_WAIT, clock);
+        try (FileChannel segment = FileChannel.open(tempDir.resolve("decisions-000000000001.audit"),
+                StandardOpenOption.WRITE)) {
+            segment.truncate(0);
+        }
+
+        int[] handedOver = new int[1];
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            for (int i = 0; i < 1000; i++) {
+                if (auditLog.append(SEGMENT_3, 4000L, 12, Decision.Rejected.of(RejectionReason.DEBT))) {
+                    handedOver[0]++;
+                }
+            }
+            auditLog.close();
+        });
+
+        assertTrue(auditLog.isFailed());
+        assertFalse(auditLog.isHealthy());
+        assertEquals(0, auditLog.getWrittenCount());
+        assertTrue(handedOver[0] <= 4, "Handed over " + handedOver[0] + " records to a failed writer");
+        assertEquals(handedOver[0], auditLog.getLostCount());
+        assertEquals(1000 - handedOver[0], auditLog.getRefusedCount());
+        assertEquals(0, auditLog.getBacklog());
+    }
+
+    /**
+     * Blocks the second segment with a directory of its name, so that the writer keeps retrying to open it, and
+     * checks that decisions are refused at once meanwhile and that the writer carries on once the segment can be
+     * created.
+     */
+    @Test
+    void givenStalledWriter_whenAppended_thenRefusesWithoutWaitingUntilWriterRecovers() throws Exception {
+        DecisionAuditLog auditLog = new DecisionAuditLog(tempDir, 4, 1, Duration.ZERO, MAX_WAIT, clock);
+        Path blocker = Files.createDirectory(tempDir.resolve("decisions-000000000002.audit"));
+        assertTrue(auditLog.append(SEGMENT_3, 4000L, 12, Decision.Rejected.of(RejectionReason.DEBT)));
+        awaitHealthy(auditLog, false);
+
+        long start = System.nanoTime();
+        boolean handedOver = auditLog.append(SEGMENT_3, 5000L, 12, Decision.Rejected.of(RejectionReason.DEBT));
+        long waitedNanos = System.nanoTime() - start;
+        Files.delete(blocker);
+        awaitHealthy(auditLog, true);
+        assertTrue(auditLog.append(SEGMENT_3, 4001L, 12, Decision.Rejected.of(RejectionReason.DEBT)));
+        auditLog.close();
+
+        assertFalse(handedOver);
+        assertTrue(waitedNanos < Duration.ofSeconds(1).toNanos(), "Waited " + waitedNanos + " ns");
+        assertEquals(1, auditLog.getRefusedCount());
+        assertFalse(auditLog.isFailed());
+        assertEquals(List.of(4000L, 4001L),
+                replay(tempDir).stream().map(DecisionAuditRecord::requestedAmount).toList());
+    }
+
+    @Test
+    void givenEngineWithAuditLog_whenCalculateApprovedLoan_thenRecordsEveryDecision() throws Exception {
+        DecisionAuditLog auditLog = new DecisionAuditLog(tempDir, 16, 100, Duration.ZERO, MAX_WAIT, clock);
+        DecisionEngine engine = engine(auditLog);
+
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+        engine.calculateApprovedLoanAsync("49002010965", 4000L, 12).join();
+        auditLog.close();
+
+        assertEquals(List.of(
+                new DecisionAuditRecord(NOW, 49002010998L, null, 4000, 12, 10000, 12, null, DecisionPolicy.INITIAL_VERSION),
+                new DecisionAuditRecord(NOW, 49002010965L, null, 4000, 12, 0, 0, RejectionReason.DEBT,
+                        DecisionPolicy.INITIAL_VERSION)
+        ), replay(tempDir));
+    }
+
+    /**
+     * Stops the writer while an engine keeps deciding, and checks that every decision the engine returned is in
+     * the audit log, that every later one is refused, and that the health indicator reports the log as down.
+     */
+    @Test
+    void givenStoppedWriter_whenCalculateApprovedLoan_thenServesNoDecisionUnaudited() throws Exception {
+        DecisionAuditLog auditLog = new DecisionAuditLog(tempDir, 16, 100, Duration.ZERO, MAX_WAIT, clock);
+        DecisionEngine engine = engine(auditLog);
+        DecisionAuditHealthIndicator health = new DecisionAuditHealthIndicator(auditLog);
+        assertEquals(Status.UP, health.health().getStatus());
+
+        List<Long> served = new ArrayList<>();
+        for (long amount = 2000; amount < 2050; amount++) {
+            if (amount == 2020) {
+                auditLog.close();
+            }
+            Decision decision = amount % 2 == 0
+                    ? engine.calculateApprovedLoan(SEGMENT_3, amount, 12)
+                    : engine.calculateApprovedLoanAsync(SEGMENT_3, amount, 12).join();
+            if (decision instanceof Decision.Rejected rejected
+                    && rejected.reason() == RejectionReason.AUDIT_UNAVAILABLE) {
+                continue;
+            }
+            served.add(amount);
+        }
+
+        assertEquals(served, replay(tempDir).stream().map(DecisionAuditRecord::requestedAmount).toList());
+        assertEquals(20, served.size());
+        assertEquals(30, auditLog.getRefusedCount());
+        assertEquals(Status.DOWN, health.health().getStatus());
+    }
+
+    @Test
+    void givenNoDirectory_whenCreated_thenDisabled() throws Exception {
+        DecisionAuditLog auditLog = new DecisionAuditLog(null, 16, 100, Duration.ZERO, MAX_WAIT, clock);
+
+        assertFalse(auditLog.isEnabled());
+        auditLog.close();
+    }
+
+    @Test
+    void givenOtherFile_whenReplay_thenThrows() throws IOException {
+        Path file = Files.write(tempDir.resolve("decisions-000000000001.audit"), new byte[64]);
+
+        assertThrows(IllegalArgumentException.class, () -> DecisionAuditReader.replay(file, record -> { }));
+    }
+
+    /**
+     * Decides 100,000 applications a second from four threads for {@code -Daudit.seconds} seconds, first without
+     * and then with the audit log, and reports the p99 latency of {@link DecisionEngine#calculateApprovedLoan} for
+     * both. The audit log must keep up with the rate and add no more than a few microseconds to the p99.
+     */
+    @Test
+    @Tag("perf")
+    void givenHundredThousandDecisionsPerSecond_whenAudited_thenKeepsUpWithoutRaisingP99() throws Exception {
+        int seconds = Integer.getInteger("audit.seconds", 10);
+        // Warm up the engine first, so the baseline does not pay for compilation
+        paced(engine(null), 1);
+        LatencyHistogram baseline = paced(engine(null), seconds);
+        DecisionAuditLog auditLog = new DecisionAuditLog(tempDir, 65536, 1 << 20, Duration.ofSeconds(1), MAX_WAIT,
+                Clock.systemUTC());
+        LatencyHistogram audited = paced(engine(auditLog), seconds);
+        long backlog = auditLog.getBacklog();
+        auditLog.close();
+
+        System.out.printf("100k decisions/s for %d s: p99 %.1f µs without audit log, %.1f µs with it, "
+                        + "backlog at end %d, %d records written%n",
+                seconds, baseline.percentileNanos(99) / 1000.0, audited.percentileNanos(99) / 1000.0, backlog,
+                auditLog.getWrittenCount());
+        assertEquals(audited.getCount(), auditLog.getWrittenCount());
+        assertTrue(backlog < 65536, "Audit writer fell behind");
+        assertTrue(audited.percentileNanos(99) <= baseline.percentileNanos(99) + 5_000,
+                "Audit log raised the p99 latency");
+    }
+
+    private static LatencyHistogram paced(DecisionEngine engine, int seconds) throws InterruptedException {
+        int threads = 4;
+        long intervalNanos = threads * 10_000L;
+        long decisions = seconds * 100_000L / threads;
+        LatencyHistogram[] histograms = new LatencyHistogram[threads];
+        Thread[] workers = new Thread[threads];
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            LatencyHistogram histogram = new LatencyHistogram();
+            histograms[t] = histogram;
+            long offset = t * 10_000L;
+            workers[t] = new Thread(() -> {
+                for (long i = 0; i < decisions; i++) {
+                    long due = start + offset + i * intervalNanos;
+                    while (System.nanoTime() < due) {
+                        Thread.onSpinWait();
+                    }
+                    long before = System.nanoTime();
+                    engine.calculateApprovedLoan(SEGMENT_3, 4000L + i % 100, 12);
+                    histogram.record(System.nanoTime() - before);
+                }
+            });
+            workers[t].start();
+        }
+        LatencyHistogram merged = new LatencyHistogram();
+        for (int t = 0; t < threads; t++) {
+            workers[t].join();
+            merged.merge(histograms[t]);
+        }
+        return merged;
+    }
+
+    private static DecisionEngine engine(DecisionAuditLog auditLog) {
+        LoanCalculator loanCalculator = new LoanCalculator(true);
+        return new DecisionEngine(new PersonalCodeValidator(), new AgeValidator(), new LoanInputValidator(),
+                new CreditModifierService(), loanCalculator, new DecisionTable(loanCalculator),
+                DecisionMetrics.disabled(), null, auditLog);
+    }
+
+    private static void awaitHealthy(DecisionAuditLog auditLog, boolean healthy) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (auditLog.isHealthy() != healthy && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(healthy, auditLog.isHealthy());
+    }
+
+    private List<DecisionAuditRecord> replay(Path path) throws IOException {
+        List<DecisionAuditRecord> records = new ArrayList<>();
+        DecisionAuditReader.replay(path, records::add);
+        return records;
+    }
+
+    private List<String> segmentNames() throws IOException {
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.map(file -> file.getFileName().toString()).sorted().toList();
+        }
+    }
+}
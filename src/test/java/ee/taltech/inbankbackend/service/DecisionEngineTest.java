@@ -1,25 +1,14 @@
 package ee.taltech.inbankbackend.service;
 
 import ee.taltech.inbankbackend.config.DecisionEngineConstants;
-import ee.taltech.inbankbackend.exceptions.InvalidLoanAmountException;
-import ee.taltech.inbankbackend.exceptions.InvalidLoanPeriodException;
-import ee.taltech.inbankbackend.exceptions.InvalidPersonalCodeException;
-import ee.taltech.inbankbackend.exceptions.NoValidLoanException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
-import org.mockito.junit.jupiter.MockitoExtension;
 
+import static ee.taltech.inbankbackend.service.DecisionEngines.creditModifiers;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertThrows;
 
-@ExtendWith(MockitoExtension.class)
 class DecisionEngineTest {
 
-    @InjectMocks
-    private DecisionEngine decisionEngine;
-
     private String debtorPersonalCode;
     private String segment1PersonalCode;
     private String segment2PersonalCode;
@@ -30,83 +19,82 @@ class DecisionEngineTest {
         debtorPersonalCode = "37605030299";
         segment1PersonalCode = "50307172740";
         segment2PersonalCode = "38411266610";
-        segment3PersonalCode = "35006069515";
+        segment3PersonalCode = "49002010998";
     }
 
-    // @Test
-    // void testDebtorPersonalCode() {
-    //     assertThrows(NoValidLoanException.class,
-    //             () -> decisionEngine.calculateApprovedLoan(debtorPersonalCode, 4000L, 12));
-    // }
-
-    // @Test
-    // void testSegment1PersonalCode() throws InvalidLoanPeriodException, NoValidLoanException,
-    //         InvalidPersonalCodeException, InvalidLoanAmountException {
-    //     Decision decision = decisionEngine.calculateApprovedLoan(segment1PersonalCode, 4000L, 12);
-    //     assertEquals(2000, decision.getLoanAmount());
-    //     assertEquals(20, decision.getLoanPeriod());
-    // }
-
-    // @Test
-    // void testSegment2PersonalCode() throws InvalidLoanPeriodException, NoValidLoanException,
-    //         InvalidPersonalCodeException, InvalidLoanAmountException {
-    //     Decision decision = decisionEngine.calculateApprovedLoan(segment2PersonalCode, 4000L, 12);
-    //     assertEquals(3600, decision.getLoanAmount());
-    //     assertEquals(12, decision.getLoanPeriod());
-    // }
-
-    // @Test
-    // void testSegment3PersonalCode() throws InvalidLoanPeriodException, NoValidLoanException,
-    //         InvalidPersonalCodeException, InvalidLoanAmountException {
-    //     Decision decision = decisionEngine.calculateApprovedLoan(segment3PersonalCode, 4000L, 12);
-    //     assertEquals(10000, decision.getLoanAmount());
-    //     assertEquals(12, decision.getLoanPeriod());
-    // }
-
-    // @Test
-    // void testInvalidPersonalCode() {
-    //     String invalidPersonalCode = "12345678901";
-    //     assertThrows(InvalidPersonalCodeException.class,
-    //             () -> decisionEngine.calculateApprovedLoan(invalidPersonalCode, 4000L, 12));
-    // }
-
-    // @Test
-    // void testInvalidLoanAmount() {
-    //     Long tooLowLoanAmount = DecisionEngineConstants.MINIMUM_LOAN_AMOUNT - 1L;
-    //     Long tooHighLoanAmount = DecisionEngineConstants.MAXIMUM_LOAN_AMOUNT + 1L;
-
-    //     assertThrows(InvalidLoanAmountException.class,
-    //             () -> decisionEngine.calculateApprovedLoan(segment1PersonalCode, tooLowLoanAmount, 12));
-
-    //     assertThrows(InvalidLoanAmountException.class,
-    //             () -> decisionEngine.calculateApprovedLoan(segment1PersonalCode, tooHighLoanAmount, 12));
-    // }
-
-    // @Test
-    // void testInvalidLoanPeriod() {
-    //     int tooShortLoanPeriod = DecisionEngineConstants.MINIMUM_LOAN_PERIOD - 1;
-    //     int tooLongLoanPeriod = DecisionEngineConstants.MAXIMUM_LOAN_PERIOD + 1;
-
-    //     assertThrows(InvalidLoanPeriodException.class,
-    //             () -> decisionEngine.calculateApprovedLoan(segment1PersonalCode, 4000L, tooShortLoanPeriod));
-
-    //     assertThrows(InvalidLoanPeriodException.class,
-    //             () -> decisionEngine.calculateApprovedLoan(segment1PersonalCode, 4000L, tooLongLoanPeriod));
-    // }
-
-    // // @Test
-    // // void testFindSuitableLoanPeriod() throws InvalidLoanPeriodException, NoValidLoanException,
-    // //         InvalidPersonalCodeException, InvalidLoanAmountException {
-    // //     Decision decision = decisionEngine.calculateApprovedLoan(segment2PersonalCode, 2000L, 12);
-    // //     assertEquals(3600, decision.getLoanAmount());
-    // //     assertEquals(12, decision.getLoanPeriod());
-    // // }
-
-    // @Test
-    // void testNoValidLoanFound() {
-    //     assertThrows(NoValidLoanException.class,
-    //             () -> decisionEngine.calculateApprovedLoan(debtorPersonalCode, 10000L, 48));
-    // }
+    @Test
+    void testDebtorPersonalCode() {
+        assertEquals(Decision.Rejected.of(RejectionReason.DEBT),
+                engine(debtorPersonalCode, 0).calculateApprovedLoan(debtorPersonalCode, 4000L, 12));
+    }
 
-}
+    @Test
+    void testSegment1PersonalCode() {
+        Decision decision = engine(segment1PersonalCode, DecisionEngineConstants.SEGMENT_1_CREDIT_MODIFIER)
+                .calculateApprovedLoan(segment1PersonalCode, 4000L, 12);
+        assertEquals(new Decision.Approved(2000, 20), decision);
+    }
+
+    @Test
+    void testSegment2PersonalCode() {
+        Decision decision = engine(segment2PersonalCode, DecisionEngineConstants.SEGMENT_2_CREDIT_MODIFIER)
+                .calculateApprovedLoan(segment2PersonalCode, 4000L, 12);
+        assertEquals(new Decision.Approved(3600, 12), decision);
+    }
+
+    @Test
+    void testSegment3PersonalCode() {
+        Decision decision = engine(segment3PersonalCode, DecisionEngineConstants.SEGMENT_3_CREDIT_MODIFIER)
+                .calculateApprovedLoan(segment3PersonalCode, 4000L, 12);
+        assertEquals(new Decision.Approved(10000, 12), decision);
+    }
+
+    @Test
+    void testInvalidPersonalCode() {
+        String invalidPersonalCode = "12345678901";
+        assertEquals(Decision.Rejected.of(RejectionReason.INVALID_PERSONAL_CODE),
+                engine(segment1PersonalCode, DecisionEngineConstants.SEGMENT_1_CREDIT_MODIFIER)
+                        .calculateApprovedLoan(invalidPersonalCode, 4000L, 12));
+    }
+
+    @Test
+    void testInvalidLoanAmount() {
+        DecisionEngine decisionEngine =
+                engine(segment1PersonalCode, DecisionEngineConstants.SEGMENT_1_CREDIT_MODIFIER);
+        Long tooLowLoanAmount = DecisionEngineConstants.MINIMUM_LOAN_AMOUNT - 1L;
+        Long tooHighLoanAmount = DecisionEngineConstants.MAXIMUM_LOAN_AMOUNT + 1L;
 
+        assertEquals(Decision.Rejected.of(RejectionReason.INVALID_LOAN_AMOUNT),
+                decisionEngine.calculateApprovedLoan(segment1PersonalCode, tooLowLoanAmount, 12));
+
+        assertEquals(Decision.Rejected.of(RejectionReason.INVALID_LOAN_AMOUNT),
+                decisionEngine.calculateApprovedLoan(segment1PersonalCode, tooHighLoanAmount, 12));
+    }
+
+    @Test
+    void testInvalidLoanPeriod() {
+        DecisionEngine decisionEngine =
+                engine(segment1PersonalCode, DecisionEngineConstants.SEGMENT_1_CREDIT_MODIFIER);
+        int tooShortLoanPeriod = DecisionEngineConstants.MINIMUM_LOAN_PERIOD - 1;
+        int tooLongLoanPeriod = DecisionEngineConstants.MAXIMUM_LOAN_PERIOD + 1;
+
+        assertEquals(Decision.Rejected.of(RejectionReason.INVALID_LOAN_PERIOD),
+                decisionEngine.calculateApprovedLoan(segment1PersonalCode, 4000L, tooShortLoanPeriod));
+
+        assertEquals(Decision.Rejected.of(RejectionReason.INVALID_LOAN_PERIOD),
+                decisionEngine.calculateApprovedLoan(segment1PersonalCode, 4000L, tooLongLoanPeriod));
+    }
+
+    @Test
+    void testNoValidLoanFound() {
+        // Too low a modifier for the minimum amount even over the longest period
+        assertEquals(Decision.Rejected.of(RejectionReason.NO_VALID_LOAN),
+                engine(segment1PersonalCode, 1).calculateApprovedLoan(segment1PersonalCode, 10000L, 48));
+    }
+
+    private static DecisionEngine engine(String personalCode, int creditModifier) {
+        LoanCalculator loanCalculator = new LoanCalculator(true);
+        return DecisionEngines.engine(creditModifiers(personalCode, creditModifier), loanCalculator,
+                new DecisionTable(loanCalculator));
+    }
+}
@@ -0,0 +1,40 @@
+package ee.taltech.inbankbackend.service;
+
+/**
+ * Builds decision engines for tests around a fixed set of credit modifiers instead of a stubbed service.
+ */
+public final class DecisionEngines {
+
+    private DecisionEngines() {
+    }
+
+    /**
+     * @param personalCode The only customer the service knows
+     * @param creditModifier The customer's credit modifier
+     * @return A service answering 0 for every other customer
+     */
+    public static CreditModifierService creditModifiers(String personalCode, int creditModifier) {
+        CreditModifierService creditModifierService = new CreditModifierService();
+        creditModifierService.swap(new CreditModifierIndex.Builder()
+                .put(CreditModifierIndex.key(personalCode), creditModifier)
+                .build());
+        return creditModifierService;
+    }
+
+    /**
+     * Builds an engine that validates inputs against the scoring rules of the calculator.
+     */
+    public static DecisionEngine engine(CreditModifierService creditModifierService, LoanCalculator loanCalculator,
+                                        DecisionTable decisionTable) {
+        ScoringRules rules = loanCalculator.getScoringRules();
+        return new DecisionEngine(new PersonalCodeValidator(), new AgeValidator(rules), new LoanInputValidator(rules),
+                creditModifierService, loanCalculator, decisionTable);
+    }
+
+    /**
+     * Builds an engine that computes every decision, without a precomputed table.
+     */
+    public static DecisionEngine engine(CreditModifierService creditModifierService, LoanCalculator loanCalculator) {
+        return engine(creditModifierService, loanCalculator, new DecisionTable(loanCalculator, new int[0]));
+    }
+}
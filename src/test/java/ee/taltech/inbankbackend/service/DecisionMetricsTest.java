@@ -0,0 +1,105 @@
+package ee.taltech.inbankbackend.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecisionMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void givenEveryOutcome_whenCalculateApprovedLoan_thenCountsEachOutcome() {
+        DecisionEngine engine = engine(new DecisionMetrics(registry, true, 1));
+
+        engine.calculateApprovedLoan("49002010998", 4000L, 12);
+        engine.calculateApprovedLoan("49002010987", 4000L, 12);
+        engine.calculateApprovedLoan("49002010976", 4000L, 12);
+        engine.calculateApprovedLoan("49002010965", 4000L, 12);
+        engine.calculateApprovedLoan("12345678901", 4000L, 12);
+
+        assertEquals(1, outcome("approved", "none"));
+        assertEquals(1, outcome("reduced-amount", "none"));
+        assertEquals(1, outcome("extended-period", "none"));
+        assertEquals(1, outcome("rejected", "debt"));
+        assertEquals(1, outcome("rejected", "invalid-personal-code"));
+        assertEquals(0, outcome("rejected", "no-valid-loan"));
+    }
+
+    @Test
+    void givenEveryDecisionSampled_whenCalculateApprovedLoan_thenTimesStagesThatRan() {
+        DecisionEngine engine = engine(new DecisionMetrics(registry, true, 1));
+
+        engine.calculateApprovedLoan("49002010998", 4000L, 12);
+        engine.calculateApprovedLoan("49002010976", 4000L, 12);
+        engine.calculateApprovedLoan("49002010965", 4000L, 12);
+        engine.calculateApprovedLoan("12345678901", 4000L, 12);
+
+        assertEquals(4, stage("personal-code"));
+        assertEquals(3, stage("age"));
+        assertEquals(3, stage("credit-modifier"));
+        assertEquals(2, stage("score"));
+        assertEquals(1, stage("period-extension"));
+        assertTrue(registry.get(DecisionMetrics.STAGE_TIMER).tag("stage", "period-extension").timer()
+                .totalTime(TimeUnit.NANOSECONDS) > 0);
+    }
+
+    @Test
+    void givenAsyncDecision_whenCalculateApprovedLoanAsync_thenCountsAndTimesLookup() {
+        DecisionEngine engine = engine(new DecisionMetrics(registry, true, 1));
+
+        engine.calculateApprovedLoanAsync("49002010998", 4000L, 12).join();
+
+        assertEquals(1, outcome("approved", "none"));
+        assertEquals(1, stage("credit-modifier"));
+    }
+
+    @Test
+    void givenSampleInterval_whenCalculateApprovedLoan_thenTimesSomeDecisionsAndCountsAll() {
+        DecisionEngine engine = engine(new DecisionMetrics(registry, true, 64));
+
+        for (int i = 0; i < 6400; i++) {
+            engine.calculateApprovedLoan("49002010998", 4000L, 12);
+        }
+
+        assertEquals(6400, outcome("approved", "none"));
+        long timed = stage("personal-code");
+        assertTrue(timed > 0 && timed < 6400 / 8, "Timed " + timed + " of 6400 decisions");
+    }
+
+    @Test
+    void givenDisabledMetrics_whenCalculateApprovedLoan_thenRegistersNothing() {
+        DecisionEngine engine = engine(new DecisionMetrics(registry, false, 1));
+
+        engine.calculateApprovedLoan("49002010998", 4000L, 12);
+
+        assertTrue(registry.getMeters().isEmpty());
+    }
+
+    @Test
+    void givenInvalidSampleInterval_whenCreated_thenThrows() {
+        assertThrows(IllegalArgumentException.class, () -> new DecisionMetrics(registry, true, 0));
+    }
+
+    private long outcome(String outcome, String reason) {
+        return (long) registry.get(DecisionMetrics.OUTCOME_COUNTER).tag("outcome", outcome).tag("reason", reason)
+                .counter().count();
+    }
+
+    private long stage(String stage) {
+        return registry.get(DecisionMetrics.STAGE_TIMER).tag("stage", stage).timer().count();
+    }
+
+    // Without decision table segments, every approval runs the score calculation and the period extension
+    private static DecisionEngine engine(DecisionMetrics metrics) {
+        LoanCalculator loanCalculator = new LoanCalculator(true);
+        return new DecisionEngine(new PersonalCodeValidator(), new AgeValidator(), new LoanInputValidator(),
+                new CreditModifierService(), loanCalculator, new DecisionTable(loanCalculator, new int[0]), metrics,
+                null, null);
+    }
+}
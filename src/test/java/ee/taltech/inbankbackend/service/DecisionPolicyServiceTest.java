@@ -0,0 +1,238 @@
+package ee.taltech.inbankbackend.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecisionPolicyServiceTest {
+
+    private static final String SEGMENT_3 = "49002010998";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void givenPolicySwapped_whenCalculateApprovedLoan_thenDecidesUnderNewPolicy() {
+        DecisionPolicyService policies = new DecisionPolicyService(ScoringRules.defaults());
+        DecisionEngine engine = engine(policies);
+
+        assertEquals(new Decision.Approved(10000, 12, DecisionPolicy.INITIAL_VERSION),
+                engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12));
+
+        ScoringRules young = ScoringRules.parse(List.of("max-amount=5000", "max-age=20"));
+        DecisionPolicy published = policies.swap(young);
+
+        assertEquals(DecisionPolicy.versionOf(young), published.getVersion());
+        assertNotEquals(DecisionPolicy.INITIAL_VERSION, published.getVersion());
+        assertSame(published, policies.current());
+        assertEquals(new Decision.Rejected(RejectionReason.OVERAGE, published.getVersion()),
+                engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12));
+        assertSame(published.reject(RejectionReason.OVERAGE), engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12));
+
+        DecisionPolicy next = policies.swap(ScoringRules.parse(List.of("max-amount=5000")));
+
+        assertEquals(new Decision.Approved(5000, 12, next.getVersion()),
+                engine.calculateApprovedLoanAsync(SEGMENT_3, 4000L, 12).join());
+    }
+
+    @Test
+    void givenPolicySwapped_whenCalculateOfferCurve_thenReportsVersionOfRulesItUsed() {
+        DecisionPolicyService policies = new DecisionPolicyService(ScoringRules.defaults());
+        DecisionEngine engine = engine(policies);
+
+        OfferCurve initial = engine.calculateOfferCurve(SEGMENT_3);
+
+        assertEquals(DecisionPolicy.INITIAL_VERSION, initial.getPolicyVersion());
+        assertEquals(10000, initial.getLoanAmounts()[0]);
+
+        DecisionPolicy published = policies.swap(ScoringRules.parse(List.of("max-amount=5000")));
+        OfferCurve curve = engine.calculateOfferCurve(SEGMENT_3);
+
+        assertEquals(published.getVersion(), curve.getPolicyVersion());
+        assertEquals(5000, curve.getLoanAmounts()[0]);
+        assertNotEquals(initial.fingerprint(), curve.fingerprint());
+
+        policies.swap(ScoringRules.parse(List.of("max-amount=5000", "max-age=20")));
+        OfferCurve rejected = engine.calculateOfferCurve(SEGMENT_3);
+
+        assertEquals(RejectionReason.OVERAGE, rejected.getRejection());
+        assertEquals(policies.current().getVersion(), rejected.getPolicyVersion());
+    }
+
+    @Test
+    void givenPolicyWithOtherMinimumAge_whenCalculateApprovedLoan_thenRejectionNamesThatAge() {
+        DecisionPolicyService policies = new DecisionPolicyService(ScoringRules.defaults());
+        DecisionEngine engine = engine(policies);
+
+        assertEquals("Loan rejected: You must be at least 18 years old to apply.",
+                RejectionReason.UNDERAGE.getMessage());
+
+        policies.swap(ScoringRules.parse(List.of("min-age=60")));
+        Decision.Rejected rejected = assertInstanceOf(Decision.Rejected.class,
+                engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12));
+
+        assertEquals(RejectionReason.UNDERAGE, rejected.reason());
+        assertEquals("Loan rejected: You must be at least 60 years old to apply.", rejected.message());
+        assertEquals(rejected.message(), engine.calculateOfferCurve(SEGMENT_3).getRejectionMessage());
+    }
+
+    @Test
+    void givenNewSegments_whenSwap_thenRebuildsDecisionTable() {
+        DecisionPolicyService policies = new DecisionPolicyService(ScoringRules.defaults());
+        DecisionTable table = new DecisionTable(new LoanCalculator(true, policies));
+
+        assertEquals(DecisionTable.NOT_TABULATED, table.lookup(50, 12));
+
+        DecisionPolicy published = policies.swap(ScoringRules.parse(List.of("segment-modifiers=50")));
+
+        int cell = table.lookup(published, 50, 12);
+        assertEquals(2000, DecisionTable.loanAmount(cell));
+        assertEquals(40, DecisionTable.loanPeriod(cell));
+        assertEquals(DecisionTable.NOT_TABULATED, table.lookup(1000, 12));
+    }
+
+    @Test
+    void givenTableOfOtherPolicy_whenLookup_thenNotTabulated() {
+        DecisionPolicyService policies = new DecisionPolicyService(ScoringRules.defaults());
+        DecisionTable table = new DecisionTable(new LoanCalculator(true, policies));
+        DecisionPolicy initial = policies.current();
+
+        policies.swap(ScoringRules.parse(List.of("max-amount=9000")));
+
+        assertEquals(DecisionTable.NOT_TABULATED, table.lookup(initial, 1000, 12));
+        assertNotEquals(DecisionTable.NOT_TABULATED, table.lookup(policies.current(), 1000, 12));
+    }
+
+    @Test
+    void givenRulesFile_whenReload_thenPublishesVersionOfNewRules() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("scoring.rules"), "max-amount=8000\n");
+        DecisionPolicyService policies = new DecisionPolicyService(file.toString(), false);
+        int initialVersion = policies.current().getVersion();
+
+        assertEquals(DecisionPolicy.versionOf(ScoringRules.parse(List.of("max-amount=8000"))), initialVersion);
+        assertEquals(8000, policies.current().getRules().getMaxAmount());
+
+        Files.writeString(file, "max-amount=6000\n");
+        DecisionPolicy reloaded = policies.reload(file);
+
+        assertNotEquals(initialVersion, reloaded.getVersion());
+        assertEquals(6000, policies.current().getRules().getMaxAmount());
+    }
+
+    @Test
+    void givenSameRules_whenLoadedTwice_thenReportsSameVersion() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("scoring.rules"),
+                "max-amount=8000\nrule=period 36..48 multiply 1.1\nsegment-modifiers=100,300,1000\n");
+        Path rewritten = Files.writeString(tempDir.resolve("rewritten.rules"),
+                "# The same rules, written differently\nsegment-modifiers=100, 300, 1000\n\n"
+                        + "rule=period   36..48 multiply 1.10\nmax-amount=8000\n");
+
+        int version = new DecisionPolicyService(file.toString(), false).current().getVersion();
+
+        assertEquals(version, new DecisionPolicyService(file.toString(), false).current().getVersion());
+        assertEquals(version, new DecisionPolicyService(rewritten.toString(), false).current().getVersion());
+        assertEquals(version, new DecisionPolicyService(ScoringRules.defaults()).reload(file).getVersion());
+        assertEquals(DecisionPolicy.INITIAL_VERSION, new DecisionPolicyService("", false).current().getVersion());
+        assertNotEquals(version, DecisionPolicy.INITIAL_VERSION);
+    }
+
+    @Test
+    void givenMalformedFile_whenReload_thenKeepsCurrentPolicy() throws IOException {
+        Path file = Files.writeString(tempDir.resolve("scoring.rules"), "max-amount=8000\n");
+        DecisionPolicyService policies = new DecisionPolicyService(file.toString(), false);
+        DecisionPolicy current = policies.current();
+
+        Files.writeString(file, "max-amount=lots\n");
+
+        assertThrows(IllegalArgumentException.class, () -> policies.reload(file));
+        assertThrows(IOException.class, () -> policies.reload(tempDir.resolve("missing.rules")));
+        assertSame(current, policies.current());
+    }
+
+    @Test
+    void givenWatchedFile_whenChanged_thenReloadsWithoutRestart() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("scoring.rules"), "max-amount=8000\n");
+        DecisionPolicyService policies = new DecisionPolicyService(file.toString(), true);
+        int initialVersion = policies.current().getVersion();
+        try {
+            Files.writeString(file, "max-amount=6000\n");
+
+            long deadline = System.nanoTime() + 30_000_000_000L;
+            while (policies.current().getVersion() == initialVersion && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+
+            assertEquals(6000, policies.current().getRules().getMaxAmount());
+        } finally {
+            policies.close();
+        }
+    }
+
+    /**
+     * Swaps between two policies with different maximum amounts while other threads decide, and checks that
+     * every decision stays within the maximum amount of the policy it reports.
+     */
+    @Test
+    void givenPoliciesSwappedWhileDeciding_whenCalculateApprovedLoan_thenEachDecisionMatchesItsPolicy()
+            throws InterruptedException {
+        ScoringRules high = ScoringRules.defaults();
+        ScoringRules low = ScoringRules.parse(List.of("max-amount=5000", "segment-modifiers=100,300"));
+        DecisionPolicyService policies = new DecisionPolicyService(high);
+        DecisionEngine engine = engine(policies);
+        Map<Integer, ScoringRules> rulesByVersion = new ConcurrentHashMap<>(Map.of(DecisionPolicy.INITIAL_VERSION, high));
+        Decision[][] decisions = new Decision[4][20_000];
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        Thread[] deciders = new Thread[decisions.length];
+        for (int i = 0; i < deciders.length; i++) {
+            Decision[] made = decisions[i];
+            deciders[i] = new Thread(() -> {
+                for (int j = 0; j < made.length; j++) {
+                    made[j] = engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+                }
+            });
+            deciders[i].start();
+        }
+        Thread swapper = new Thread(() -> {
+            for (int i = 0; running.get(); i++) {
+                ScoringRules rules = i % 2 == 0 ? low : high;
+                rulesByVersion.put(policies.swap(rules).getVersion(), rules);
+            }
+        });
+        swapper.start();
+        for (Thread decider : deciders) {
+            decider.join();
+        }
+        running.set(false);
+        swapper.join();
+
+        assertEquals(2, rulesByVersion.size());
+        for (Decision[] made : decisions) {
+            for (Decision decision : made) {
+                Decision.Approved approved = assertInstanceOf(Decision.Approved.class, decision);
+                assertEquals(rulesByVersion.get(approved.policyVersion()).getMaxAmount(), approved.loanAmount());
+            }
+        }
+    }
+
+    private static DecisionEngine engine(DecisionPolicyService policies) {
+        LoanCalculator loanCalculator = new LoanCalculator(true, policies);
+        return new DecisionEngine(new PersonalCodeValidator(), new AgeValidator(policies),
+                new LoanInputValidator(policies), new CreditModifierService(), loanCalculator,
+                new DecisionTable(loanCalculator));
+    }
+}
@@ -0,0 +1,279 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.exceptions.CreditRegistryUnavailableException;
+import ee.taltech.inbankbackend.interfaces.CreditModifierSource;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecisionResultCacheTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Tallinn");
+    private static final String SEGMENT_3 = "49002010998";
+    private static final long SEGMENT_3_KEY = 49002010998L;
+
+    private final MutableClock clock = new MutableClock(LocalDateTime.of(2026, 10, 16, 12, 0));
+    private final CountingSource source = new CountingSource();
+    private final CreditModifierService creditModifierService = new CreditModifierService();
+    private final LoanCalculator loanCalculator = new LoanCalculator(true);
+    private final DecisionTable decisionTable = new DecisionTable(loanCalculator);
+    private long now;
+
+    DecisionResultCacheTest() {
+        creditModifierService.swap(source);
+    }
+
+    @Test
+    void givenApplications_whenKey_thenPacksEachTupleIntoItsOwnKey() {
+        long key = DecisionResultCache.key(SEGMENT_3, 4000L, 12);
+
+        assertNotEquals(DecisionResultCache.NO_KEY, key);
+        assertNotEquals(key, DecisionResultCache.key(SEGMENT_3, 4001L, 12));
+        assertNotEquals(key, DecisionResultCache.key(SEGMENT_3, 4000L, 13));
+        assertNotEquals(key, DecisionResultCache.key("49002010987", 4000L, 12));
+    }
+
+    @Test
+    void givenApplicationsOutOfRange_whenKey_thenReturnsNoKey() {
+        assertEquals(DecisionResultCache.NO_KEY, DecisionResultCache.key("1234", 4000L, 12));
+        assertEquals(DecisionResultCache.NO_KEY, DecisionResultCache.key(null, 4000L, 12));
+        assertEquals(DecisionResultCache.NO_KEY, DecisionResultCache.key(SEGMENT_3, null, 12));
+        assertEquals(DecisionResultCache.NO_KEY, DecisionResultCache.key(SEGMENT_3, -1L, 12));
+        assertEquals(DecisionResultCache.NO_KEY, DecisionResultCache.key(SEGMENT_3, 16384L, 12));
+        assertEquals(DecisionResultCache.NO_KEY, DecisionResultCache.key(SEGMENT_3, 4000L, 64));
+    }
+
+    @Test
+    void givenRepeatedApplication_whenCalculateApprovedLoan_thenDecidesOnce() {
+        DecisionResultCache cache = cache(16);
+        DecisionEngine engine = engine(cache);
+
+        Decision first = engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+        Decision second = engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+
+        assertInstanceOf(Decision.Approved.class, first);
+        assertEquals(first, second);
+        assertEquals(1, source.calls.get());
+        assertEquals(new DecisionResultCache.Stats(1, 1, 0), cache.getStats());
+        assertEquals(0.5, cache.getStats().hitRatio());
+    }
+
+    @Test
+    void givenRepeatedApplication_whenCalculateApprovedLoanAsync_thenDecidesOnce() {
+        DecisionEngine engine = engine(cache(16));
+
+        Decision first = engine.calculateApprovedLoanAsync(SEGMENT_3, 4000L, 12).join();
+        Decision second = engine.calculateApprovedLoanAsync(SEGMENT_3, 4000L, 12).join();
+
+        assertEquals(first, second);
+        assertEquals(1, source.calls.get());
+    }
+
+    @Test
+    void givenMidnightPassed_whenCalculateApprovedLoan_thenDecidesAgain() {
+        DecisionEngine engine = engine(cache(16));
+
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+        clock.set(LocalDateTime.of(2026, 10, 17, 0, 0));
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+
+        assertEquals(2, source.calls.get());
+    }
+
+    @Test
+    void givenModifiersSwapped_whenCalculateApprovedLoan_thenDecidesAgain() {
+        DecisionEngine engine = engine(cache(16));
+
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+        CountingSource debtors = new CountingSource(0);
+        creditModifierService.swap(debtors);
+        Decision decision = engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+
+        assertEquals(Decision.Rejected.of(RejectionReason.DEBT), decision);
+        assertEquals(1, debtors.calls.get());
+    }
+
+    @Test
+    void givenTableRebuilt_whenCalculateApprovedLoan_thenDecidesAgain() {
+        DecisionEngine engine = engine(cache(16));
+
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+        decisionTable.rebuild(new int[0]);
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+
+        assertEquals(2, source.calls.get());
+    }
+
+    @Test
+    void givenPolicyPublished_whenCalculateApprovedLoan_thenDecidesUnderNewPolicy() {
+        DecisionEngine engine = engine(cache(16));
+
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+        DecisionPolicy published = loanCalculator.getPolicies().swap(ScoringRules.parse(List.of("max-amount=9000")));
+        Decision decision = engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+
+        assertEquals(published.getVersion(), decision.policyVersion());
+        assertEquals(2, source.calls.get());
+    }
+
+    @Test
+    void givenTtlPassed_whenCalculateApprovedLoan_thenDecidesAgain() {
+        DecisionEngine engine = engine(cache(16));
+
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+        now += Duration.ofMinutes(5).toNanos() - 1;
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+        now += 1;
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+
+        assertEquals(2, source.calls.get());
+    }
+
+    @Test
+    void givenRegistryUnavailable_whenCalculateApprovedLoan_thenDoesNotCacheFallbackDecision() {
+        DecisionResultCache cache = cache(16);
+        DecisionEngine engine = engine(cache);
+        source.unavailable = true;
+
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+        source.unavailable = false;
+        Decision decision = engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+
+        assertInstanceOf(Decision.Approved.class, decision);
+        assertEquals(3, source.calls.get());
+        assertEquals(0, cache.getStats().hits());
+    }
+
+    @Test
+    void givenMoreApplicationsThanEntries_whenPut_thenStaysWithinBound() {
+        DecisionResultCache cache = cache(16);
+        long epoch = cache.epoch();
+
+        for (int amount = 2000; amount < 3000; amount++) {
+            cache.put(DecisionResultCache.key(SEGMENT_3, (long) amount, 12), epoch, new Decision.Approved(amount, 12));
+        }
+
+        assertEquals(16, cache.size());
+        assertEquals(1000 - 16, cache.getStats().evictions());
+        assertTrue(cache.getFootprintBytes() > 0);
+    }
+
+    @Test
+    void givenHitEntry_whenSetEvicts_thenKeepsHitEntry() {
+        DecisionResultCache cache = cache(4);
+        long epoch = cache.epoch();
+        for (int amount = 2000; amount < 2004; amount++) {
+            cache.put(DecisionResultCache.key(SEGMENT_3, (long) amount, 12), epoch, new Decision.Approved(amount, 12));
+        }
+        long hitKey = DecisionResultCache.key(SEGMENT_3, 2000L, 12);
+        cache.get(hitKey, epoch);
+
+        cache.put(DecisionResultCache.key(SEGMENT_3, 2004L, 12), epoch, new Decision.Approved(2004, 12));
+
+        assertEquals(new Decision.Approved(2000, 12), cache.get(hitKey, epoch));
+        assertNull(cache.get(DecisionResultCache.key(SEGMENT_3, 2001L, 12), epoch));
+    }
+
+    @Test
+    void givenDisabledCache_whenCalculateApprovedLoan_thenDecidesEveryTime() {
+        DecisionResultCache cache = cache(0);
+        DecisionEngine engine = engine(cache);
+
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+        engine.calculateApprovedLoan(SEGMENT_3, 4000L, 12);
+
+        assertFalse(cache.isEnabled());
+        assertEquals(2, source.calls.get());
+    }
+
+    @Test
+    void givenInvalidSize_whenCreated_thenThrows() {
+        assertThrows(IllegalArgumentException.class, () -> cache(3));
+        assertThrows(IllegalArgumentException.class, () -> cache(-1));
+    }
+
+    private DecisionResultCache cache(int maxEntries) {
+        return new DecisionResultCache(new PersonalCodeValidator(clock), creditModifierService, decisionTable,
+                loanCalculator.getPolicies(), maxEntries, Duration.ofMinutes(5), () -> now);
+    }
+
+    private DecisionEngine engine(DecisionResultCache cache) {
+        return new DecisionEngine(new PersonalCodeValidator(clock), new AgeValidator(), new LoanInputValidator(),
+                creditModifierService, loanCalculator, decisionTable, DecisionMetrics.disabled(), cache, null);
+    }
+
+    private static class CountingSource implements CreditModifierSource {
+        private final int modifier;
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile boolean unavailable;
+
+        private CountingSource() {
+            this(1000);
+        }
+
+        private CountingSource(int modifier) {
+            this.modifier = modifier;
+        }
+
+        @Override
+        public int get(long key, int defaultModifier) {
+            calls.incrementAndGet();
+            if (unavailable) {
+                throw new CreditRegistryUnavailableException("Registry down");
+            }
+            return key == SEGMENT_3_KEY ? modifier : defaultModifier;
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        public long getFootprintBytes() {
+            return 0;
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(LocalDateTime dateTime) {
+            set(dateTime);
+        }
+
+        void set(LocalDateTime dateTime) {
+            instant = dateTime.atZone(ZONE).toInstant();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZONE;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
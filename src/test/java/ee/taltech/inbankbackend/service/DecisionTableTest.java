@@ -0,0 +1,56 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.config.DecisionEngineConstants;
+import org.junit.jupiter.api.Test;
+
+import static ee.taltech.inbankbackend.service.DecisionEngines.creditModifiers;
+import static ee.taltech.inbankbackend.service.DecisionEngines.engine;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecisionTableTest {
+
+    private static final String PERSONAL_CODE = "50307172740";
+
+    private final LoanCalculator loanCalculator = new LoanCalculator(true);
+
+    @Test
+    void tabulatedDecisionsMatchCalculatedDecisions() {
+        int[] segmentModifiers = {
+                DecisionEngineConstants.SEGMENT_1_CREDIT_MODIFIER,
+                DecisionEngineConstants.SEGMENT_2_CREDIT_MODIFIER,
+                DecisionEngineConstants.SEGMENT_3_CREDIT_MODIFIER
+        };
+        for (int creditModifier : segmentModifiers) {
+            DecisionEngine tabulated = engine(creditModifiers(PERSONAL_CODE, creditModifier), loanCalculator,
+                    new DecisionTable(loanCalculator));
+            DecisionEngine calculated = engine(creditModifiers(PERSONAL_CODE, creditModifier), loanCalculator);
+            for (long amount = DecisionEngineConstants.MINIMUM_LOAN_AMOUNT; amount <= DecisionEngineConstants.MAXIMUM_LOAN_AMOUNT; amount++) {
+                for (int period = DecisionEngineConstants.MINIMUM_LOAN_PERIOD; period <= DecisionEngineConstants.MAXIMUM_LOAN_PERIOD; period++) {
+                    assertEquals(calculated.calculateApprovedLoan(PERSONAL_CODE, amount, period),
+                            tabulated.calculateApprovedLoan(PERSONAL_CODE, amount, period),
+                            "modifier " + creditModifier + ", amount " + amount + ", period " + period);
+                }
+            }
+        }
+    }
+
+    @Test
+    void unknownModifierIsNotTabulated() {
+        DecisionTable table = new DecisionTable(loanCalculator);
+        assertEquals(DecisionTable.NOT_TABULATED, table.lookup(42, DecisionEngineConstants.MINIMUM_LOAN_PERIOD));
+    }
+
+    @Test
+    void rebuildReplacesSegments() {
+        DecisionTable table = new DecisionTable(loanCalculator);
+        table.rebuild(new int[]{50, 40});
+
+        assertEquals(DecisionTable.NOT_TABULATED, table.lookup(DecisionEngineConstants.SEGMENT_1_CREDIT_MODIFIER, 12));
+        int cell = table.lookup(50, 12);
+        assertEquals(2000, DecisionTable.loanAmount(cell));
+        assertEquals(40, DecisionTable.loanPeriod(cell));
+        assertEquals(DecisionTable.NO_VALID_LOAN, table.lookup(40, 12));
+        assertTrue(table.getFootprintBytes() > 0);
+    }
+}
@@ -0,0 +1,98 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.config.DecisionEngineConstants;
+import org.junit.jupiter.api.Test;
+
+import static ee.taltech.inbankbackend.service.DecisionEngines.creditModifiers;
+import static ee.taltech.inbankbackend.service.DecisionEngines.engine;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Checks the closed-form solver against the 100-euro step search over the whole legal input domain.
+ */
+class LoanCalculatorTest {
+
+    private static final String PERSONAL_CODE = "50307172740";
+
+    private static final int[] SEGMENT_CREDIT_MODIFIERS = {
+            0,
+            DecisionEngineConstants.SEGMENT_1_CREDIT_MODIFIER,
+            DecisionEngineConstants.SEGMENT_2_CREDIT_MODIFIER,
+            DecisionEngineConstants.SEGMENT_3_CREDIT_MODIFIER
+    };
+
+    private final LoanCalculator closedForm = new LoanCalculator(true);
+    private final LoanCalculator iterative = new LoanCalculator(false);
+
+    @Test
+    void closedFormBestAmountMatchesIterativeSearch() {
+        for (int creditModifier = 0; creditModifier <= DecisionEngineConstants.SEGMENT_3_CREDIT_MODIFIER; creditModifier++) {
+            for (int period = DecisionEngineConstants.MINIMUM_LOAN_PERIOD; period <= DecisionEngineConstants.MAXIMUM_LOAN_PERIOD; period++) {
+                assertEquals(iterative.findBestPossibleAmount(creditModifier, period),
+                        closedForm.findBestPossibleAmount(creditModifier, period),
+                        "modifier " + creditModifier + ", period " + period);
+            }
+        }
+    }
+
+    @Test
+    void closedFormShortestPeriodMatchesIterativeSearch() {
+        for (int creditModifier = 0; creditModifier <= DecisionEngineConstants.SEGMENT_3_CREDIT_MODIFIER; creditModifier++) {
+            for (int period = DecisionEngineConstants.MINIMUM_LOAN_PERIOD; period <= DecisionEngineConstants.MAXIMUM_LOAN_PERIOD + 1; period++) {
+                assertEquals(iterative.findShortestValidPeriod(creditModifier, period),
+                        closedForm.findShortestValidPeriod(creditModifier, period),
+                        "modifier " + creditModifier + ", from period " + period);
+            }
+        }
+    }
+
+    @Test
+    void closedFormDecisionsMatchIterativeDecisions() {
+        for (int creditModifier : SEGMENT_CREDIT_MODIFIERS) {
+            DecisionEngine closedFormEngine = engine(creditModifiers(PERSONAL_CODE, creditModifier), closedForm);
+            DecisionEngine iterativeEngine = engine(creditModifiers(PERSONAL_CODE, creditModifier), iterative);
+            for (long amount = DecisionEngineConstants.MINIMUM_LOAN_AMOUNT; amount <= DecisionEngineConstants.MAXIMUM_LOAN_AMOUNT; amount++) {
+                for (int period = DecisionEngineConstants.MINIMUM_LOAN_PERIOD; period <= DecisionEngineConstants.MAXIMUM_LOAN_PERIOD; period++) {
+                    String input = "modifier " + creditModifier + ", amount " + amount + ", period " + period;
+                    assertEquals(iterativeEngine.calculateApprovedLoan(PERSONAL_CODE, amount, period),
+                            closedFormEngine.calculateApprovedLoan(PERSONAL_CODE, amount, period), input);
+                }
+            }
+        }
+    }
+
+    @Test
+    void closedFormAmountCurveMatchesIterativeSearch() {
+        for (int creditModifier = 0; creditModifier <= DecisionEngineConstants.SEGMENT_3_CREDIT_MODIFIER; creditModifier++) {
+            assertArrayEquals(iterative.findBestPossibleAmounts(creditModifier),
+                    closedForm.findBestPossibleAmounts(creditModifier), "modifier " + creditModifier);
+        }
+    }
+
+    @Test
+    void offerCurveMatchesDecisionsForMaximumAmount() {
+        for (int creditModifier = 1; creditModifier <= DecisionEngineConstants.SEGMENT_3_CREDIT_MODIFIER; creditModifier++) {
+            DecisionEngine engine = engine(creditModifiers(PERSONAL_CODE, creditModifier), closedForm);
+            OfferCurve curve = engine.calculateOfferCurve(PERSONAL_CODE);
+            int[] amounts = curve.getLoanAmounts();
+            assertEquals(DecisionEngineConstants.MAXIMUM_LOAN_PERIOD - curve.getStartPeriod() + 1, amounts.length);
+            for (int i = 0; i < amounts.length; i++) {
+                int period = curve.getStartPeriod() + i;
+                Decision decision = engine.calculateApprovedLoan(PERSONAL_CODE,
+                        (long) DecisionEngineConstants.MAXIMUM_LOAN_AMOUNT, period);
+                int expected = decision instanceof Decision.Approved approved && approved.loanPeriod() == period
+                        ? approved.loanAmount() : 0;
+                assertEquals(expected, amounts[i], "modifier " + creditModifier + ", period " + period);
+            }
+        }
+    }
+
+    @Test
+    void offerCurveOfDebtorIsRejected() {
+        OfferCurve curve = engine(creditModifiers(PERSONAL_CODE, 0), closedForm).calculateOfferCurve(PERSONAL_CODE);
+
+        assertEquals(RejectionReason.DEBT, curve.getRejection());
+        assertEquals(0, curve.getLoanAmounts().length);
+    }
+}
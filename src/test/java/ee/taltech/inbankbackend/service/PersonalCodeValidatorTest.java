@@ -0,0 +1,138 @@
+package ee.taltech.inbankbackend.service;
+
+import com.github.vladislavgoltjajev.personalcode.locale.estonia.EstonianPersonalCodeValidator;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.Period;
+import java.time.ZoneId;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Checks the single-pass parser against the java-personal-code library it replaces.
+ */
+class PersonalCodeValidatorTest {
+
+    private static final ZoneId ZONE = ZoneId.of("Europe/Tallinn");
+
+    private final EstonianPersonalCodeValidator library = new EstonianPersonalCodeValidator();
+
+    /**
+     * Sweeps every century digit, year, month from 00 to 13 and day from 00 to 32, with every check digit,
+     * so each date yields one valid code next to nine codes with a wrong check digit.
+     */
+    @Test
+    void givenSweepOfCodes_whenValidate_thenMatchesLibrary() {
+        LocalDate today = LocalDate.of(2026, 10, 17);
+        PersonalCodeValidator validator = new PersonalCodeValidator(new MutableClock(today.atStartOfDay()));
+        char[] code = new char[11];
+        int valid = 0;
+
+        for (int century = 0; century <= 9; century++) {
+            for (int year = 0; year < 100; year++) {
+                for (int month = 0; month <= 13; month++) {
+                    for (int day = 0; day <= 32; day++) {
+                        int serial = (year * 31 + month * 7 + day) % 1000;
+                        write(code, 0, century, 1);
+                        write(code, 1, year, 2);
+                        write(code, 3, month, 2);
+                        write(code, 5, day, 2);
+                        write(code, 7, serial, 3);
+                        for (int check = 0; check <= 9; check++) {
+                            code[10] = (char) ('0' + check);
+                            String personalCode = new String(code);
+                            boolean expected = library.isValid(personalCode);
+
+                            assertEquals(expected, validator.validate(personalCode) == null, personalCode);
+                            if (expected) {
+                                LocalDate birthDate = LocalDate.of(1800 + (century - 1) / 2 * 100 + year, month, day);
+                                assertEquals(Period.between(birthDate, today).getYears(), validator.calculateAge(personalCode), personalCode);
+                                valid++;
+                            } else {
+                                assertEquals(PersonalCodeValidator.INVALID_CODE, validator.calculateAge(personalCode), personalCode);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        // Each century from the 1800s to the 2100s has two gender digits; 1800, 1900 and 2100 are not leap years.
+        assertEquals(2 * (400 * 365 + 97), valid);
+    }
+
+    @Test
+    void givenMalformedCodes_whenValidate_thenMatchesLibrary() {
+        PersonalCodeValidator validator = new PersonalCodeValidator();
+        String[] malformed = {"", "4900201096", "490020109650", "4900201096a", " 9002010965", "49002010965 ",
+                "-9002010965", "4900201096٥", "٤9002010965", "+9002010965", "4900201.965"};
+
+        for (String personalCode : malformed) {
+            assertEquals(library.isValid(personalCode), validator.validate(personalCode) == null, personalCode);
+            assertEquals(PersonalCodeValidator.INVALID_CODE, validator.calculateAge(personalCode), personalCode);
+        }
+        assertEquals(RejectionReason.INVALID_PERSONAL_CODE, validator.validate(null));
+        assertEquals(PersonalCodeValidator.INVALID_CODE, validator.calculateAge(null));
+    }
+
+    @Test
+    void givenClockPassesMidnight_whenCalculateAge_thenUsesNewDate() {
+        MutableClock clock = new MutableClock(LocalDateTime.of(2026, 10, 16, 23, 59, 59));
+        PersonalCodeValidator validator = new PersonalCodeValidator(clock);
+        String eighteenOnOctober17 = withCheckDigit("5081017000");
+
+        assertEquals(17, validator.calculateAge(eighteenOnOctober17));
+        assertNull(validator.validate(eighteenOnOctober17));
+
+        clock.set(LocalDateTime.of(2026, 10, 17, 0, 0, 0));
+        assertEquals(18, validator.calculateAge(eighteenOnOctober17));
+    }
+
+    private static void write(char[] code, int offset, int value, int digits) {
+        for (int i = digits - 1; i >= 0; i--) {
+            code[offset + i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+
+    private static String withCheckDigit(String firstTenDigits) {
+        for (char check = '0'; check <= '9'; check++) {
+            String personalCode = firstTenDigits + check;
+            if (EstonianPersonalCode.parseBirthDate(personalCode) != EstonianPersonalCode.INVALID) {
+                return personalCode;
+            }
+        }
+        throw new IllegalArgumentException(firstTenDigits);
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant instant;
+
+        private MutableClock(LocalDateTime dateTime) {
+            set(dateTime);
+        }
+
+        void set(LocalDateTime dateTime) {
+            instant = dateTime.atZone(ZONE).toInstant();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZONE;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
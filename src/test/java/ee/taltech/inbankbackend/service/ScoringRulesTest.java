@@ -0,0 +1,154 @@
+package ee.taltech.inbankbackend.service;
+
+import ee.taltech.inbankbackend.interfaces.ScoreModifier;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static ee.taltech.inbankbackend.service.DecisionEngines.creditModifiers;
+import static ee.taltech.inbankbackend.service.DecisionEngines.engine;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScoringRulesTest {
+
+    private static final String PERSONAL_CODE = "50307172740";
+
+    @Test
+    void givenEmptyFile_whenParse_thenUsesDefaults() {
+        ScoringRules rules = ScoringRules.parse(List.of("# nothing configured", ""));
+
+        assertEquals(2000, rules.getMinAmount());
+        assertEquals(10000, rules.getMaxAmount());
+        assertEquals(12, rules.getMinPeriod());
+        assertEquals(48, rules.getMaxPeriod());
+        assertEquals(18, rules.getMinAge());
+        assertEquals(75, rules.getMaxAge());
+        assertArrayEquals(new int[]{100, 300, 1000}, rules.getSegmentModifiers());
+        assertEquals(0.1, rules.getScoreThreshold());
+        assertTrue(rules.usesBaseScore());
+    }
+
+    @Test
+    void givenSettingsAndRules_whenParse_thenOverridesDefaultsAndKeepsRuleOrder() {
+        ScoringRules rules = ScoringRules.parse(List.of(
+                "min-amount=1000",
+                "max-period = 60",
+                "max-age=70",
+                "segment-modifiers=200, 400",
+                "score-threshold=0.2",
+                "rule=period 36..60 multiply 1.5",
+                "rule=credit-modifier 100..299 add -0.05"));
+
+        assertEquals(1000, rules.getMinAmount());
+        assertEquals(60, rules.getMaxPeriod());
+        assertEquals(70, rules.getMaxAge());
+        assertArrayEquals(new int[]{200, 400}, rules.getSegmentModifiers());
+        assertEquals(List.of(
+                new ScoreRule(ScoreRule.Input.PERIOD, 36, 60, ScoreRule.Effect.MULTIPLY, 1.5),
+                new ScoreRule(ScoreRule.Input.CREDIT_MODIFIER, 100, 299, ScoreRule.Effect.ADD, -0.05)),
+                rules.getRules());
+        assertFalse(rules.usesBaseScore());
+        // (200 * 48 / 40000) * 1.5 - 0.05
+        assertEquals(0.31, rules.score(200, 4000, 48), 1e-12);
+    }
+
+    @Test
+    void givenMalformedLines_whenParse_thenThrowsWithLineNumber() {
+        assertEquals("Line 2: Unknown setting: max-loan",
+                assertThrows(IllegalArgumentException.class,
+                        () -> ScoringRules.parse(List.of("min-age=18", "max-loan=5"))).getMessage());
+        assertThrows(IllegalArgumentException.class, () -> ScoringRules.parse(List.of("min-age")));
+        assertThrows(IllegalArgumentException.class, () -> ScoringRules.parse(List.of("rule=age 18..25 add 1")));
+        assertThrows(IllegalArgumentException.class, () -> ScoringRules.parse(List.of("rule=period 36 add 1")));
+        assertThrows(IllegalArgumentException.class, () -> ScoringRules.parse(List.of("rule=period 48..36 add 1")));
+        assertThrows(IllegalArgumentException.class, () -> ScoringRules.parse(List.of("min-amount=20000")));
+        assertThrows(IllegalArgumentException.class, () -> ScoringRules.parse(List.of("score-threshold=0")));
+        assertThrows(IllegalArgumentException.class, () -> ScoringRules.parse(List.of("max-period=300")));
+    }
+
+    @Test
+    void givenRandomRules_whenScore_thenCompiledRulesMatchChain() {
+        Random random = new Random(42);
+        for (int count : new int[]{1, 10, 100}) {
+            List<ScoreRule> chain = randomRules(random, count);
+            ScoringRules rules = new ScoringRules(2000, 10000, 12, 48, 18, 75, new int[0], 0.1, chain);
+            for (int i = 0; i < 10_000; i++) {
+                int creditModifier = random.nextInt(1001);
+                int amount = 2000 + random.nextInt(8001);
+                int period = 12 + random.nextInt(37);
+                double expected = (creditModifier * period) / ((double) amount * 10.0);
+                for (ScoreModifier modifier : chain) {
+                    expected = modifier.modify(expected, creditModifier, amount, period);
+                }
+                assertEquals(expected, rules.score(creditModifier, amount, period),
+                        count + " rules, modifier " + creditModifier + ", amount " + amount + ", period " + period);
+            }
+        }
+    }
+
+    @Test
+    void givenConfiguredBounds_whenValidate_thenValidatorsUseThem() {
+        ScoringRules rules = ScoringRules.parse(List.of("min-amount=1000", "max-period=60", "min-age=21"));
+
+        assertNull(new LoanInputValidator(rules).validateLoanAmount(1000L));
+        assertEquals(RejectionReason.INVALID_LOAN_AMOUNT, new LoanInputValidator(rules).validateLoanAmount(999L));
+        assertNull(new LoanInputValidator(rules).validateLoanPeriod(60));
+        assertEquals(RejectionReason.UNDERAGE, new AgeValidator(rules).validate(20));
+        assertNull(new AgeValidator(rules).validate(21));
+    }
+
+    @Test
+    void givenBoostingRule_whenCalculateApprovedLoan_thenApprovesMoreThanBaseScore() {
+        ScoringRules rules = ScoringRules.parse(List.of("rule=period 24..48 multiply 2"));
+        DecisionEngine engine = engine(creditModifiers(PERSONAL_CODE, 100), new LoanCalculator(true, rules));
+
+        // Below 24 months only the base score applies, which first reaches the minimum amount at 20 months
+        assertEquals(new Decision.Approved(2000, 20), engine.calculateApprovedLoan(PERSONAL_CODE, 4000L, 12));
+        // The base score approves 100 * 24 = 2400 at most
+        assertEquals(new Decision.Approved(4800, 24), engine.calculateApprovedLoan(PERSONAL_CODE, 4000L, 24));
+    }
+
+    @Test
+    void givenPenalizingRule_whenCalculateApprovedLoan_thenTableAndCalculationAgree() {
+        ScoringRules rules = ScoringRules.parse(List.of(
+                "rule=amount 5000..10000 multiply 0.5",
+                "rule=credit-modifier 300..300 add -0.01"));
+        LoanCalculator loanCalculator = new LoanCalculator(true, rules);
+        for (int creditModifier : new int[]{100, 300, 1000}) {
+            DecisionEngine tabulated = engine(creditModifiers(PERSONAL_CODE, creditModifier), loanCalculator,
+                    new DecisionTable(loanCalculator));
+            DecisionEngine calculated = engine(creditModifiers(PERSONAL_CODE, creditModifier), loanCalculator);
+            for (long amount = 2000; amount <= 10000; amount += 500) {
+                for (int period = 12; period <= 48; period++) {
+                    assertEquals(calculated.calculateApprovedLoan(PERSONAL_CODE, amount, period),
+                            tabulated.calculateApprovedLoan(PERSONAL_CODE, amount, period),
+                            "modifier " + creditModifier + ", amount " + amount + ", period " + period);
+                }
+            }
+        }
+    }
+
+    private static List<ScoreRule> randomRules(Random random, int count) {
+        List<ScoreRule> rules = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ScoreRule.Input input = ScoreRule.Input.values()[random.nextInt(3)];
+            int min = switch (input) {
+                case CREDIT_MODIFIER -> random.nextInt(1000);
+                case AMOUNT -> 2000 + random.nextInt(8000);
+                case PERIOD -> 12 + random.nextInt(36);
+            };
+            int max = min + random.nextInt(500);
+            boolean multiply = random.nextBoolean();
+            rules.add(new ScoreRule(input, min, max, multiply ? ScoreRule.Effect.MULTIPLY : ScoreRule.Effect.ADD,
+                    multiply ? 0.5 + random.nextDouble() : random.nextDouble() * 0.1 - 0.05));
+        }
+        return rules;
+    }
+}
@@ -0,0 +1,54 @@
+package ee.taltech.inbankbackend.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SetAssociativeTableTest {
+
+    private static final long NOW = 1_000;
+    private static final long LATER = 2_000;
+
+    @Test
+    void givenStoredValue_whenGetWithOtherTagOrAfterExpiry_thenMisses() {
+        SetAssociativeTable<String> table = new SetAssociativeTable<>(16);
+        table.put(42, 1, "first", NOW, LATER);
+
+        assertEquals("first", table.get(42, 1, NOW));
+        assertNull(table.get(42, 2, NOW));
+        assertNull(table.get(42, 1, LATER));
+        assertEquals(0, table.size(LATER));
+    }
+
+    @Test
+    void givenEntryWithOtherTag_whenPut_thenReusesItWithoutEvicting() {
+        // Four ways in one set, so every key shares the set
+        SetAssociativeTable<String> table = new SetAssociativeTable<>(SetAssociativeTable.WAYS);
+        for (long key = 0; key < SetAssociativeTable.WAYS; key++) {
+            table.put(key, 1, "old", NOW, LATER);
+        }
+
+        table.put(100, 2, "new", NOW, LATER);
+
+        assertEquals(0, table.getEvictions());
+        assertEquals("new", table.get(100, 2, NOW));
+    }
+
+    @Test
+    void givenFullSet_whenPut_thenEvictsEntryNotHitBeforeEarlierExpiry() {
+        SetAssociativeTable<String> table = new SetAssociativeTable<>(SetAssociativeTable.WAYS);
+        for (long key = 0; key < SetAssociativeTable.WAYS; key++) {
+            table.put(key, 0, "old", NOW, LATER + key);
+        }
+        // Key 0 expires first, but was hit since the set last evicted
+        table.get(0, 0, NOW);
+
+        table.put(100, 0, "new", NOW, LATER + 100);
+
+        assertEquals(1, table.getEvictions());
+        assertEquals("old", table.peek(0, 0, NOW));
+        assertNull(table.peek(1, 0, NOW));
+        assertEquals("new", table.peek(100, 0, NOW));
+    }
+}